@@ -0,0 +1,133 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.util.BDecoder;
+import com.biglybt.core.util.BEncoder;
+
+/**
+ * Encode/decode of a torrent-like structure with many files, which is the shape that
+ * dominates startup (torrent files, resume data).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+BEncodingBenchmark
+{
+	@Param({ "10", "1000", "10000" })
+	public int	files;
+
+	private Map<String,Object>	map;
+	private byte[]				encoded;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		BenchmarkSupport.initialise();
+
+		Random	random = new Random( 0 );
+
+		List<Map<String,Object>>	file_list = new ArrayList<>( files );
+
+		for ( int i=0;i<files;i++){
+
+			Map<String,Object>	file = new HashMap<>();
+
+			List<byte[]>	path = new ArrayList<>();
+
+			path.add( ( "folder" + ( i % 17 )).getBytes( "UTF-8" ));
+			path.add( ( "file number " + i + ".dat" ).getBytes( "UTF-8" ));
+
+			file.put( "path", path );
+			file.put( "length", Long.valueOf( random.nextInt( Integer.MAX_VALUE )));
+
+			file_list.add( file );
+		}
+
+		byte[]	pieces = new byte[ 20 * Math.max( 1, files * 4 ) ];
+
+		random.nextBytes( pieces );
+
+		Map<String,Object>	info = new HashMap<>();
+
+		info.put( "name", "benchmark torrent".getBytes( "UTF-8" ));
+		info.put( "piece length", Long.valueOf( 256*1024 ));
+		info.put( "pieces", pieces );
+		info.put( "files", file_list );
+
+		map = new HashMap<>();
+
+		map.put( "announce", "http://tracker.example.com/announce".getBytes( "UTF-8" ));
+		map.put( "creation date", Long.valueOf( 1234567890L ));
+		map.put( "info", info );
+
+		encoded = BEncoder.encode( map );
+	}
+
+	@Benchmark
+	public byte[]
+	encode()
+
+		throws Exception
+	{
+		return( BEncoder.encode( map ));
+	}
+
+	@Benchmark
+	public Map<String,Object>
+	decode()
+
+		throws Exception
+	{
+		return( BDecoder.decode( encoded ));
+	}
+
+		// lazy decoding only pays for the keys that are touched
+
+	@Benchmark
+	public Object
+	decodeLazy()
+
+		throws Exception
+	{
+		Map<String,Object>	lazy = BDecoder.decodeLazy( ByteBuffer.wrap( encoded ));
+
+		Map<String,Object>	info = (Map<String,Object>)lazy.get( "info" );
+
+		return( info.get( "name" ));
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.networkmanager.RawMessage;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTHave;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTMessageEncoder;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTMessageFactory;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTPiece;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTRequest;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+
+/**
+ * Serialisation of the high volume BT messages into raw wire messages, including
+ * returning the buffers to the pool as the write path would
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+BTMessageEncoderBenchmark
+{
+	private static final byte VERSION = BTMessageFactory.MESSAGE_VERSION_SUPPORTS_PADDING;
+
+	private BTMessageEncoder	encoder;
+
+	private int		piece_number;
+
+	@Setup
+	public void
+	setup()
+	{
+		BenchmarkSupport.initialise();
+
+		encoder = new BTMessageEncoder();
+	}
+
+	@Benchmark
+	public int
+	encodeHave()
+	{
+		return( encodeAndDestroy( new BTHave( piece_number++ & 0xffff, VERSION )));
+	}
+
+	@Benchmark
+	public int
+	encodeRequest()
+	{
+		return( encodeAndDestroy( new BTRequest( piece_number++ & 0xffff, 16384, 16384, VERSION )));
+	}
+
+	@Benchmark
+	public int
+	encodePiece()
+	{
+		DirectByteBuffer	data = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_BT_PIECE, 16384 );
+
+		return( encodeAndDestroy( new BTPiece( piece_number++ & 0xffff, 0, data, VERSION )));
+	}
+
+	private int
+	encodeAndDestroy(
+		com.biglybt.core.peermanager.messaging.Message	message )
+	{
+		RawMessage[]	raw = encoder.encodeMessage( message );
+
+		int	len = 0;
+
+		for ( RawMessage r: raw ){
+
+			for ( DirectByteBuffer b: r.getRawData()){
+
+				len += b.remaining( DirectByteBuffer.SS_NET );
+			}
+
+			r.destroy();
+		}
+
+		return( len );
+	}
+}
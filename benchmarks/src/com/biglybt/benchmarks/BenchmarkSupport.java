@@ -0,0 +1,160 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import com.biglybt.core.util.SystemProperties;
+
+/**
+ * Shared setup for the JMH suites. Benchmarks run against a throwaway config directory
+ * and without the client's security manager (which would block JMH's forked VM exit).
+ */
+
+public class
+BenchmarkSupport
+{
+	private static boolean	initialised;
+
+	private static File		temp_dir;
+
+	public static synchronized void
+	initialise()
+	{
+		if ( initialised ){
+
+			return;
+		}
+
+		initialised = true;
+
+		try{
+			temp_dir = File.createTempFile( "biglybt-bench", "" );
+
+			temp_dir.delete();
+
+			temp_dir.mkdirs();
+
+		}catch( Throwable e ){
+
+			throw( new RuntimeException( e ));
+		}
+
+		System.setProperty( SystemProperties.SYSPROP_CONFIG_PATH, temp_dir.getAbsolutePath());
+		System.setProperty( SystemProperties.SYSPROP_SECURITY_MANAGER_INSTALL, "0" );
+		System.setProperty( SystemProperties.SYSPROP_SECURITY_MANAGER_PERMITEXIT, "1" );
+	}
+
+	public static File
+	getTempDir()
+	{
+		initialise();
+
+		return( temp_dir );
+	}
+
+		/**
+		 * Creates a stub implementation of an interface. Methods named in the answers map return
+		 * the mapped value, everything else returns null/false/0
+		 */
+
+	@SuppressWarnings("unchecked")
+	public static <T> T
+	stub(
+		Class<T>					cla,
+		final Map<String,Object>	answers )
+	{
+		return((T)Proxy.newProxyInstance(
+			cla.getClassLoader(),
+			new Class[]{ cla },
+			new InvocationHandler()
+			{
+				@Override
+				public Object
+				invoke(
+					Object		proxy,
+					Method		method,
+					Object[]	args )
+				{
+					String	name = method.getName();
+
+					if ( answers.containsKey( name )){
+
+						return( answers.get( name ));
+					}
+
+					if ( name.equals( "hashCode" )){
+
+						return( System.identityHashCode( proxy ));
+
+					}else if ( name.equals( "equals" )){
+
+						return( proxy == args[0] );
+
+					}else if ( name.equals( "toString" )){
+
+						return( cla.getSimpleName() + "@stub" );
+					}
+
+					Class<?> rt = method.getReturnType();
+
+					if ( !rt.isPrimitive() || rt == void.class ){
+
+						return( null );
+
+					}else if ( rt == boolean.class ){
+
+						return( false );
+
+					}else if ( rt == long.class ){
+
+						return( 0L );
+
+					}else if ( rt == int.class ){
+
+						return( 0 );
+
+					}else if ( rt == float.class ){
+
+						return( 0f );
+
+					}else if ( rt == double.class ){
+
+						return( 0d );
+
+					}else if ( rt == short.class ){
+
+						return((short)0 );
+
+					}else if ( rt == byte.class ){
+
+						return((byte)0 );
+
+					}else{
+
+						return((char)0 );
+					}
+				}
+			}));
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.diskmanager.cache.CacheFile;
+import com.biglybt.core.diskmanager.cache.CacheFileManagerFactory;
+import com.biglybt.core.diskmanager.cache.CacheFileOwner;
+import com.biglybt.core.torrent.TOTorrent;
+import com.biglybt.core.torrent.TOTorrentFile;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+
+/**
+ * Block writes and reads through the write cache (CacheFileWithCache) for a number of
+ * files, with several threads to show manager lock contention
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+CacheFileBenchmark
+{
+	private static final int	BLOCK_SIZE	= 16*1024;
+	private static final int	FILE_BLOCKS	= 1024;
+
+	@Param({ "16" })
+	public int	file_count;
+
+	private CacheFile[]	files;
+
+	@State(Scope.Thread)
+	public static class
+	ThreadState
+	{
+		int	next;
+	}
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		File	dir = new File( BenchmarkSupport.getTempDir(), "cachefiles" );
+
+		dir.mkdirs();
+
+		files = new CacheFile[file_count];
+
+			// files need to belong to a torrent and be big enough to be cached
+
+		Map<String,Object>	torrent_answers = new HashMap<>();
+
+		TOTorrent	torrent = BenchmarkSupport.stub( TOTorrent.class, torrent_answers );
+
+		TOTorrentFile[]	torrent_files = new TOTorrentFile[file_count];
+
+		for ( int i=0;i<file_count;i++){
+
+			Map<String,Object>	file_answers = new HashMap<>();
+
+			file_answers.put( "getLength", (long)FILE_BLOCKS*BLOCK_SIZE );
+			file_answers.put( "getTorrent", torrent );
+			file_answers.put( "getIndex", i );
+
+			torrent_files[i] = BenchmarkSupport.stub( TOTorrentFile.class, file_answers );
+		}
+
+		torrent_answers.put( "getFiles", torrent_files );
+		torrent_answers.put( "getPieceLength", (long)BLOCK_SIZE*16 );
+		torrent_answers.put( "getHash", new byte[20] );
+
+		for ( int i=0;i<file_count;i++){
+
+			final String	name = "file" + i;
+
+			final TOTorrentFile	torrent_file = torrent_files[i];
+
+			files[i] = CacheFileManagerFactory.getSingleton().createFile(
+				new CacheFileOwner()
+				{
+					@Override
+					public String
+					getCacheFileOwnerName()
+					{
+						return( name );
+					}
+
+					@Override
+					public TOTorrentFile
+					getCacheFileTorrentFile()
+					{
+						return( torrent_file );
+					}
+
+					@Override
+					public File
+					getCacheFileControlFileDir()
+					{
+						return( null );
+					}
+
+					@Override
+					public int
+					getCacheMode()
+					{
+						return( CacheFileOwner.CACHE_MODE_NORMAL );
+					}
+				},
+				new File( dir, name ),
+				CacheFile.CT_LINEAR,
+				false );
+
+			files[i].setAccessMode( CacheFile.CF_WRITE );
+		}
+	}
+
+	@TearDown
+	public void
+	tearDown()
+
+		throws Exception
+	{
+		for ( CacheFile file: files ){
+
+			file.close();
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void
+	writeBlock(
+		ThreadState		state )
+
+		throws Exception
+	{
+		int	n = state.next++;
+
+		CacheFile	file = files[ n % files.length ];
+
+		DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_OTHER, BLOCK_SIZE );
+
+		file.writeAndHandoverBuffer( buffer, (long)(( n / files.length ) % FILE_BLOCKS ) * BLOCK_SIZE );
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void
+	writeThenReadBlock(
+		ThreadState		state )
+
+		throws Exception
+	{
+		int	n = state.next++;
+
+		CacheFile	file = files[ n % files.length ];
+
+		long	offset = (long)(( n / files.length ) % FILE_BLOCKS ) * BLOCK_SIZE;
+
+		DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_OTHER, BLOCK_SIZE );
+
+		file.writeAndHandoverBuffer( buffer, offset );
+
+		DirectByteBuffer	read_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_OTHER, BLOCK_SIZE );
+
+		try{
+			file.read( read_buffer, offset, CacheFile.CP_READ_CACHE );
+
+		}finally{
+
+			read_buffer.returnToPool();
+		}
+	}
+}
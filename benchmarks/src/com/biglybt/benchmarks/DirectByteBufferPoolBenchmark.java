@@ -0,0 +1,79 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+
+/**
+ * Allocate/free cycles through the shared pool, single threaded and contended. Sizes
+ * cover slice-allocated message buffers up to full blocks
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+DirectByteBufferPoolBenchmark
+{
+	@Param({ "17", "1024", "16384", "131072" })
+	public int	size;
+
+	@Setup
+	public void
+	setup()
+	{
+		BenchmarkSupport.initialise();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int
+	allocFree()
+	{
+		return( allocFreeSupport());
+	}
+
+	@Benchmark
+	@Threads(8)
+	public int
+	allocFreeContended()
+	{
+		return( allocFreeSupport());
+	}
+
+	private int
+	allocFreeSupport()
+	{
+		DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_NET_CRYPT, size );
+
+		int	capacity = buffer.capacity( DirectByteBuffer.SS_EXTERNAL );
+
+		buffer.returnToPool();
+
+		return( capacity );
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.util.ConcurrentHasherBackend;
+import com.biglybt.core.util.SHA1Hasher;
+
+/**
+ * Builtin SHA-1 against the JDK's MessageDigest over typical piece sizes, for both
+ * heap and direct buffers (piece checks hash direct buffers)
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+SHA1Benchmark
+{
+	@Param({ "16384", "262144", "4194304" })
+	public int		size;
+
+	@Param({ "true", "false" })
+	public boolean	direct;
+
+	private ByteBuffer		buffer;
+
+	private SHA1Hasher		builtin;
+	private MessageDigest	jdk;
+
+	private ConcurrentHasherBackend	backend_builtin;
+	private ConcurrentHasherBackend	backend_jdk;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		BenchmarkSupport.initialise();
+
+		byte[]	data = new byte[size];
+
+		new Random( 0 ).nextBytes( data );
+
+		buffer = direct?ByteBuffer.allocateDirect( size ):ByteBuffer.allocate( size );
+
+		buffer.put( data );
+
+		buffer.flip();
+
+		builtin	= new SHA1Hasher();
+		jdk		= MessageDigest.getInstance( "SHA-1" );
+
+		backend_builtin	= ConcurrentHasherBackend.create( ConcurrentHasherBackend.BT_BUILTIN );
+		backend_jdk		= ConcurrentHasherBackend.create( ConcurrentHasherBackend.BT_JDK );
+	}
+
+	@Benchmark
+	public byte[]
+	sha1Builtin()
+	{
+		return( builtin.calculateHash( buffer ));
+	}
+
+	@Benchmark
+	public byte[]
+	sha1JDK()
+	{
+		buffer.mark();
+
+		jdk.update( buffer );
+
+		buffer.reset();
+
+		return( jdk.digest());
+	}
+
+	@Benchmark
+	public byte[]
+	backendBuiltin()
+	{
+		return( backend_builtin.calculateHash( buffer ));
+	}
+
+	@Benchmark
+	public byte[]
+	backendJDK()
+	{
+		return( backend_jdk.calculateHash( buffer ));
+	}
+}
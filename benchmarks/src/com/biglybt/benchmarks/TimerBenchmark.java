@@ -0,0 +1,111 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.core.util.SystemTime;
+import com.biglybt.core.util.Timer;
+import com.biglybt.core.util.TimerEvent;
+import com.biglybt.core.util.TimerEventPerformer;
+
+/**
+ * Schedule/cancel cycles against a timer already holding a backlog of future events, the
+ * pattern of subsystems that keep rescheduling a timeout, single threaded and contended
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+TimerBenchmark
+{
+	@Param({ "0", "10000" })
+	public int	backlog;
+
+	private Timer	timer;
+
+	private final TimerEventPerformer	performer =
+		new TimerEventPerformer()
+		{
+			@Override
+			public void
+			perform(
+				TimerEvent	event )
+			{
+			}
+		};
+
+	@Setup
+	public void
+	setup()
+	{
+		BenchmarkSupport.initialise();
+
+		timer = new Timer( "bench" );
+
+		long	now = SystemTime.getCurrentTime();
+
+		for ( int i=0;i<backlog;i++){
+
+			timer.addEvent( now + 60*60*1000 + i, performer );
+		}
+	}
+
+	@TearDown
+	public void
+	tearDown()
+	{
+		timer.destroy();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public TimerEvent
+	addCancel()
+	{
+		return( addCancelSupport());
+	}
+
+	@Benchmark
+	@Threads(8)
+	public TimerEvent
+	addCancelContended()
+	{
+		return( addCancelSupport());
+	}
+
+	private TimerEvent
+	addCancelSupport()
+	{
+		long	delay = 1000 + ThreadLocalRandom.current().nextInt( 10*60*1000 );
+
+		TimerEvent	event = timer.addEvent( SystemTime.getCurrentTime() + delay, performer );
+
+		event.cancel();
+
+		return( event );
+	}
+}
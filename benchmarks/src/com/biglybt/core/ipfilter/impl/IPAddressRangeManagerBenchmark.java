@@ -0,0 +1,142 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.ipfilter.impl;
+
+import java.net.InetAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.benchmarks.BenchmarkSupport;
+
+/**
+ * Lookups against a large blocklist. Lives in the ipfilter impl package so that it can
+ * construct an IPAddressRangeManager directly rather than going via the filter singleton
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class
+IPAddressRangeManagerBenchmark
+{
+	private static final int	LOOKUPS	= 4096;
+
+	@Param({ "10000", "1000000" })
+	public int	ranges;
+
+	private IPAddressRangeManager	manager;
+
+	private String[]		string_addresses;
+	private InetAddress[]	inet_addresses;
+	private InetAddress[]	inet6_addresses;
+
+	private int		next;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		BenchmarkSupport.initialise();
+
+		manager = new IPAddressRangeManager();
+
+		Random	random = new Random( 0 );
+
+		for ( int i=0;i<ranges;i++){
+
+			int	start 	= random.nextInt();
+			int	len		= random.nextInt( 4096 );
+
+			int	end = start + len;
+
+			if ( end < start ){
+
+				end = start;
+			}
+
+			manager.addRange( new IpRangeImpl( "", start, end, true ));
+		}
+
+			// a smaller set of IPv6 ranges, /64s within a /32
+
+		for ( int i=0;i<ranges/16;i++){
+
+			long	hi = 0x20010db800000000L | ( random.nextInt() & 0xffffffffL );
+
+			manager.addRange( new IpRangeImpl( "", hi, 0, hi, -1, true ));
+		}
+
+			// force the merge/rebuild now rather than in the first measured iteration
+
+		manager.isInRange( "1.2.3.4" );
+
+		string_addresses	= new String[LOOKUPS];
+		inet_addresses		= new InetAddress[LOOKUPS];
+		inet6_addresses		= new InetAddress[LOOKUPS];
+
+		byte[]	bytes = new byte[4];
+
+		for ( int i=0;i<LOOKUPS;i++){
+
+			random.nextBytes( bytes );
+
+			inet_addresses[i] 	= InetAddress.getByAddress( bytes.clone());
+			string_addresses[i]	= inet_addresses[i].getHostAddress();
+
+			byte[]	bytes6 = new byte[16];
+
+			random.nextBytes( bytes6 );
+
+			bytes6[0] = 0x20;
+			bytes6[1] = 0x01;
+			bytes6[2] = 0x0d;
+			bytes6[3] = (byte)0xb8;
+
+			inet6_addresses[i] = InetAddress.getByAddress( bytes6 );
+		}
+	}
+
+	@Benchmark
+	public Object
+	lookupString()
+	{
+		return( manager.isInRange( string_addresses[ next++ & ( LOOKUPS - 1 ) ] ));
+	}
+
+	@Benchmark
+	public Object
+	lookupInetAddress()
+	{
+		return( manager.isInRange( inet_addresses[ next++ & ( LOOKUPS - 1 ) ] ));
+	}
+
+	@Benchmark
+	public Object
+	lookupInet6Address()
+	{
+		return( manager.isInRange( inet6_addresses[ next++ & ( LOOKUPS - 1 ) ] ));
+	}
+}
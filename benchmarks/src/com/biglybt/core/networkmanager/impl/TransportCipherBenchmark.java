@@ -0,0 +1,155 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.networkmanager.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.gudy.bouncycastle.crypto.engines.RC4Engine;
+import org.gudy.bouncycastle.crypto.params.KeyParameter;
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.benchmarks.BenchmarkSupport;
+
+/**
+ * PHE RC4 over direct network buffers: the transport cipher (encrypt to a target buffer and
+ * in-place decrypt), the JCE's ARCFOUR via its ByteBuffer API and the previous path of copying
+ * out to a byte[] and running the bouncycastle engine
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+TransportCipherBenchmark
+{
+	@Param({ "1460", "16384" })
+	public int		size;
+
+	private ByteBuffer		source;
+	private ByteBuffer		target;
+
+	private TransportCipher	transport_cipher;
+	private Cipher			jce_cipher;
+	private RC4Engine		bc_engine;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		BenchmarkSupport.initialise();
+
+		Random	random = new Random( 0 );
+
+		byte[]	data = new byte[size];
+
+		random.nextBytes( data );
+
+		source = ByteBuffer.allocateDirect( size );
+		target = ByteBuffer.allocateDirect( size );
+
+		source.put( data );
+
+		source.flip();
+
+		byte[]	key = new byte[20];
+
+		random.nextBytes( key );
+
+		SecretKeySpec	key_spec = new SecretKeySpec( key, "RC4" );
+
+		transport_cipher = new TransportCipher( "RC4", Cipher.ENCRYPT_MODE, key_spec );
+
+		jce_cipher = Cipher.getInstance( "ARCFOUR" );
+
+		jce_cipher.init( Cipher.ENCRYPT_MODE, key_spec );
+
+		bc_engine = new RC4Engine();
+
+		bc_engine.init( true, new KeyParameter( key ));
+	}
+
+	@Benchmark
+	public ByteBuffer
+	transportCipher()
+
+		throws Exception
+	{
+		source.rewind();
+		target.clear();
+
+		transport_cipher.update( source, target );
+
+		return( target );
+	}
+
+	@Benchmark
+	public ByteBuffer
+	transportCipherInPlace()
+
+		throws Exception
+	{
+		transport_cipher.updateInPlace( target, 0, size );
+
+		return( target );
+	}
+
+	@Benchmark
+	public ByteBuffer
+	jce()
+
+		throws Exception
+	{
+		source.rewind();
+		target.clear();
+
+		jce_cipher.update( source, target );
+
+		return( target );
+	}
+
+	@Benchmark
+	public ByteBuffer
+	bouncyCastleCopy()
+	{
+		source.rewind();
+		target.clear();
+
+		byte[]	bytes = new byte[size];
+
+		source.get( bytes );
+
+		byte[]	result = new byte[size];
+
+		bc_engine.processBytes( bytes, 0, size, result, 0 );
+
+		target.put( result );
+
+		return( target );
+	}
+}
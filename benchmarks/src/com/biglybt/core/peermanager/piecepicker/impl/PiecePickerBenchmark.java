@@ -0,0 +1,249 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.peermanager.piecepicker.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.benchmarks.BenchmarkSupport;
+import com.biglybt.core.disk.DiskManager;
+import com.biglybt.core.disk.DiskManagerFileInfo;
+import com.biglybt.core.disk.DiskManagerPiece;
+import com.biglybt.core.disk.impl.piecemapper.DMPieceList;
+import com.biglybt.core.disk.impl.piecemapper.DMPieceMap;
+import com.biglybt.core.disk.impl.piecemapper.DMPieceMapEntry;
+import com.biglybt.core.peer.PEPeer;
+import com.biglybt.core.peer.PEPeerStats;
+import com.biglybt.core.peer.PEPiece;
+import com.biglybt.core.peer.impl.PEPeerControl;
+import com.biglybt.core.peer.impl.PEPeerTransport;
+import com.biglybt.core.peermanager.piecepicker.util.BitFlags;
+
+/**
+ * Availability maintenance and piece start selection for a large torrent. The peer manager,
+ * disk manager and peers are stubs so only the picker's own work is measured. Lives in the
+ * picker's package to reach getPieceToStart. With indexed=false the rarity index and priority
+ * ordered candidate selection are switched off to compare against the full scans
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class
+PiecePickerBenchmark
+{
+	@Param({ "1000", "100000" })
+	public int	pieces;
+
+	@Param({ "50" })
+	public int	peers;
+
+	@Param({ "true", "false" })
+	public boolean	indexed;
+
+	private PiecePickerImpl		picker;
+
+	private List<PEPeerTransport>	peer_list;
+
+	private Method				request_candidate;
+
+	private BitFlags			start_candidates;
+
+	private Field				time_last_avail;
+
+	private Random				random = new Random( 0 );
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		BenchmarkSupport.initialise();
+
+		Map<String,Object>	piece_answers = new HashMap<>();
+
+		piece_answers.put( "isDone", false );
+		piece_answers.put( "calcNeeded", true );
+		piece_answers.put( "isNeeded", true );
+		piece_answers.put( "isDownloadable", true );
+		piece_answers.put( "getLength", 256*1024 );
+
+		DiskManagerPiece	dm_piece = BenchmarkSupport.stub( DiskManagerPiece.class, piece_answers );
+
+		DiskManagerPiece[]	dm_pieces = new DiskManagerPiece[pieces];
+
+		for ( int i=0;i<pieces;i++){
+
+			dm_pieces[i] = dm_piece;
+		}
+
+		Map<String,Object>	dm_answers = new HashMap<>();
+
+		dm_answers.put( "getPieces", dm_pieces );
+		dm_answers.put( "getNbPieces", pieces );
+		Map<String,Object>	file_answers = new HashMap<>();
+
+		file_answers.put( "getLength", (long)pieces*256*1024 );
+		file_answers.put( "getNbPieces", pieces );
+		file_answers.put( "getLastPieceNumber", pieces - 1 );
+
+		DiskManagerFileInfo	file = BenchmarkSupport.stub( DiskManagerFileInfo.class, file_answers );
+
+		Map<String,Object>	entry_answers = new HashMap<>();
+
+		entry_answers.put( "getFile", file );
+
+		Map<String,Object>	list_answers = new HashMap<>();
+
+		list_answers.put( "size", 1 );
+		list_answers.put( "get", BenchmarkSupport.stub( DMPieceMapEntry.class, entry_answers ));
+
+		Map<String,Object>	map_answers = new HashMap<>();
+
+		map_answers.put( "getPieceList", BenchmarkSupport.stub( DMPieceList.class, list_answers ));
+
+		dm_answers.put( "getFiles", new DiskManagerFileInfo[]{ file });
+		dm_answers.put( "getPieceMap", BenchmarkSupport.stub( DMPieceMap.class, map_answers ));
+		dm_answers.put( "getPieceLength", 256*1024 );
+
+		DiskManager	disk_manager = BenchmarkSupport.stub( DiskManager.class, dm_answers );
+
+		PEPeerStats	stats = BenchmarkSupport.stub( PEPeerStats.class, new HashMap<>());
+
+		peer_list = new ArrayList<>();
+
+		for ( int i=0;i<peers;i++){
+
+			BitFlags	available = new BitFlags( pieces );
+
+			for ( int j=0;j<pieces;j++){
+
+				if ( random.nextInt( 4 ) == 0 ){
+
+					available.set( j );
+				}
+			}
+
+			Map<String,Object>	peer_answers = new HashMap<>();
+
+			peer_answers.put( "getPeerState", PEPeer.TRANSFERING );
+			peer_answers.put( "getAvailable", available );
+			peer_answers.put( "getStats", stats );
+			peer_answers.put( "getLastPiece", -1 );
+
+			peer_list.add( BenchmarkSupport.stub( PEPeerTransport.class, peer_answers ));
+		}
+
+		Map<String,Object>	pc_answers = new HashMap<>();
+
+		pc_answers.put( "getDiskManager", disk_manager );
+		pc_answers.put( "getPieces", new PEPiece[pieces] );
+		pc_answers.put( "getPeers", peer_list );
+		pc_answers.put( "getNbPeers", peers );
+		pc_answers.put( "getDisplayName", "benchmark" );
+
+		picker = new PiecePickerImpl( BenchmarkSupport.stub( PEPeerControl.class, pc_answers ));
+
+		Field	use_indexes = PiecePickerImpl.class.getDeclaredField( "use_indexes" );
+
+		use_indexes.setAccessible( true );
+
+		use_indexes.setBoolean( picker, indexed );
+
+		start_candidates = new BitFlags( pieces );
+
+		for ( int i=0;i<pieces;i++){
+
+			if ( random.nextBoolean()){
+
+				start_candidates.set( i );
+			}
+		}
+
+		time_last_avail = PiecePickerImpl.class.getDeclaredField( "time_last_avail" );
+
+		time_last_avail.setAccessible( true );
+
+		Method	compute_priorities = PiecePickerImpl.class.getDeclaredMethod( "computeBasePriorities" );
+
+		compute_priorities.setAccessible( true );
+
+		compute_priorities.invoke( picker );
+
+		request_candidate = PiecePickerImpl.class.getDeclaredMethod( "getRequestCandidate", PEPeerTransport.class );
+
+		request_candidate.setAccessible( true );
+	}
+
+		/**
+		 * a burst of HAVEs followed by the periodic availability recalculation that normally
+		 * runs at most once every TIME_MIN_AVAILABILITY - the throttle is reset each time
+		 */
+
+	@Benchmark
+	public float
+	haveAndUpdateAvailability()
+
+		throws Exception
+	{
+		for ( int i=0;i<16;i++){
+
+			picker.addHavePiece( peer_list.get( random.nextInt( peers )), random.nextInt( pieces ));
+		}
+
+		time_last_avail.setLong( picker, Long.MIN_VALUE );
+
+		picker.updateAvailability();
+
+		return( picker.getMinAvailability());
+	}
+
+		/**
+		 * the per-request piece selection for a random peer, priorities and availability are
+		 * left as computed in setup so the indexed variant reuses its priority order
+		 */
+
+	@Benchmark
+	public Object
+	requestCandidate()
+
+		throws Exception
+	{
+		return( request_candidate.invoke( picker, peer_list.get( random.nextInt( peers ))));
+	}
+
+	@Benchmark
+	public int
+	pieceToStart()
+	{
+		return( picker.getPieceToStart( start_candidates ));
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.tracker.server.impl;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.biglybt.benchmarks.BenchmarkSupport;
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.tracker.server.TRTrackerServerPeer;
+import com.biglybt.core.tracker.server.TRTrackerServerRequestListener;
+import com.biglybt.core.util.BEncoder;
+import com.biglybt.core.util.HashWrapper;
+
+/**
+ * Announce load generator - each operation is a peer update followed by building and encoding
+ * the announce response, which is the bulk of a tracker's per-request work once the HTTP or UDP
+ * request has been decoded. Run with -t to see how it scales across the torrent monitors
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class
+TrackerAnnounceBenchmark
+{
+	@Param({ "1", "64" })
+	public int	torrents;
+
+	@Param({ "50", "2000" })
+	public int	peers;
+
+	@Param({ "true", "false" })
+	public boolean	compact;
+
+	private benchmarkServer					server;
+	private TRTrackerServerTorrentImpl[]	torrent_list;
+	private HashWrapper[][]					peer_ids;
+	private String[][]						peer_ips;
+
+	@Setup
+	public void
+	setup()
+
+		throws Exception
+	{
+		BenchmarkSupport.initialise();
+
+			// no outbound connections from the benchmark
+
+		COConfigurationManager.setParameter( "Tracker NAT Check Enable", false );
+
+		server = new benchmarkServer();
+
+		torrent_list	= new TRTrackerServerTorrentImpl[torrents];
+		peer_ids		= new HashWrapper[torrents][peers];
+		peer_ips		= new String[torrents][peers];
+
+		Random	random = new Random( 0 );
+
+		for ( int i=0;i<torrents;i++){
+
+			byte[]	hash = new byte[20];
+
+			random.nextBytes( hash );
+
+			torrent_list[i] = (TRTrackerServerTorrentImpl)server.permit( "", hash, true );
+
+			for ( int j=0;j<peers;j++){
+
+				byte[]	id = new byte[20];
+
+				random.nextBytes( id );
+
+				peer_ids[i][j] = new HashWrapper( id );
+
+				byte[]	ip = new byte[4];
+
+				random.nextBytes( ip );
+
+				ip[0] = (byte)( 1 + ( ip[0] & 0x7f ));
+
+				peer_ips[i][j] = InetAddress.getByAddress( ip ).getHostAddress();
+
+				announce( i, j, random.nextBoolean()?0:1000000 );
+			}
+		}
+
+			// peer addresses are resolved asynchronously, wait for them so that they're returned
+
+		for ( int i=0;i<torrents;i++){
+
+			TRTrackerServerPeer[]	list = torrent_list[i].getPeers();
+
+			for ( TRTrackerServerPeer peer: list ){
+
+				while( ((TRTrackerServerPeerImpl)peer).getIPAddressBytes() == null ){
+
+					Thread.sleep( 10 );
+				}
+			}
+		}
+	}
+
+	@TearDown
+	public void
+	tearDown()
+	{
+		server.close();
+	}
+
+	@State(Scope.Thread)
+	public static class
+	requester
+	{
+		final Random	random = new Random();
+	}
+
+	@Benchmark
+	public byte[]
+	announce(
+		requester	req )
+
+		throws Exception
+	{
+		int	torrent = req.random.nextInt( torrents );
+		int	peer	= req.random.nextInt( peers );
+
+		TRTrackerServerPeerImpl	rp = announce( torrent, peer, req.random.nextInt( 2 ) * 1000000 );
+
+		Map	map = torrent_list[torrent].exportAnnounceToMap(
+						peer_ips[torrent][peer], new HashMap(), rp, true, 50, 1800, 60, true,
+						compact?TRTrackerServerTorrentImpl.COMPACT_MODE_NORMAL:TRTrackerServerTorrentImpl.COMPACT_MODE_NONE,
+						TRTrackerServerPeer.CRYPTO_NONE, null );
+
+		return( BEncoder.encode( map ));
+	}
+
+	private TRTrackerServerPeerImpl
+	announce(
+		int		torrent,
+		int		peer,
+		long	left )
+
+		throws Exception
+	{
+		String	ip = peer_ips[torrent][peer];
+
+		return( torrent_list[torrent].peerContact(
+					"", null, peer_ids[torrent][peer], 6881, 0, 0, TRTrackerServerPeer.CRYPTO_NONE, (byte)1,
+					ip, ip, false, false, null, 0, 0, left, 1800, 0, null ));
+	}
+
+	private static class
+	benchmarkServer
+		extends TRTrackerServerImpl
+	{
+		benchmarkServer()
+		{
+			super( "benchmark", true );
+		}
+
+		@Override
+		public int
+		getPort()
+		{
+			return( 6969 );
+		}
+
+		@Override
+		public String
+		getHost()
+		{
+			return( "127.0.0.1" );
+		}
+
+		@Override
+		public InetAddress
+		getBindIP()
+		{
+			return( null );
+		}
+
+		@Override
+		public boolean
+		isSSL()
+		{
+			return( false );
+		}
+
+		@Override
+		public void
+		addRequestListener(
+			TRTrackerServerRequestListener	l )
+		{
+		}
+
+		@Override
+		public void
+		removeRequestListener(
+			TRTrackerServerRequestListener	l )
+		{
+		}
+
+		@Override
+		protected void
+		closeSupport()
+		{
+			destroySupport();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.biglybt.core.diskmanager.cache.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CacheFileManagerShardTest
+{
+
+	private static CacheEntry entry(long offset, int size) {
+		CacheEntry entry = new CacheEntry(offset);
+		entry.size = size;
+		return entry;
+	}
+
+	private static List<Long> offsets(CacheFileManagerShard shard) {
+		List<Long> result = new ArrayList<>();
+		for (Iterator<CacheEntry> it = shard.iteratorLocked(); it.hasNext();) {
+			result.add(it.next().getFilePosition());
+		}
+		return result;
+	}
+
+	@Test
+	public void oldestIsFirstInsertedUntilUsed() {
+		CacheFileManagerShard shard = new CacheFileManagerShard(0);
+		CacheEntry a = entry(0, 10);
+		CacheEntry b = entry(10, 20);
+		CacheEntry c = entry(30, 30);
+
+		shard.addLocked(a);
+		shard.addLocked(b);
+		shard.addLocked(c);
+
+		assertThat(shard.getOldestLocked()).isSameAs(a);
+		assertThat(offsets(shard)).containsExactly(0L, 10L, 30L);
+
+		assertThat(shard.usedLocked(a)).isTrue();
+
+		assertThat(shard.getOldestLocked()).isSameAs(b);
+		assertThat(offsets(shard)).containsExactly(10L, 30L, 0L);
+
+		assertThat(shard.getHitCount()).isEqualTo(1);
+		assertThat(shard.getInsertCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void evictingInLruOrderDrainsShard() {
+		CacheFileManagerShard shard = new CacheFileManagerShard(0);
+		for (int i = 0; i < 8; i++) {
+			shard.addLocked(entry(i * 100, 100));
+		}
+
+		shard.usedLocked(shard.getOldestLocked());		// 0 to the tail
+
+		List<Long> evicted = new ArrayList<>();
+		CacheEntry oldest;
+		while ((oldest = shard.getOldestLocked()) != null) {
+			assertThat(shard.removeLocked(oldest)).isTrue();
+			shard.evicted();
+			evicted.add(oldest.getFilePosition());
+		}
+
+		assertThat(evicted).containsExactly(100L, 200L, 300L, 400L, 500L, 600L, 700L, 0L);
+		assertThat(shard.getEvictionCount()).isEqualTo(8);
+		assertThat(shard.getUsedSize()).isZero();
+		assertThat(shard.getEntryCount()).isZero();
+	}
+
+	@Test
+	public void usedSizeTracksAddsAndRemoves() {
+		CacheFileManagerShard shard = new CacheFileManagerShard(3);
+		CacheEntry a = entry(0, 1000);
+		CacheEntry b = entry(1000, 24);
+
+		shard.addLocked(a);
+		shard.addLocked(b);
+		assertThat(shard.getUsedSize()).isEqualTo(1024);
+
+		assertThat(shard.removeLocked(a)).isTrue();
+		assertThat(shard.getUsedSize()).isEqualTo(24);
+
+		assertThat(shard.removeLocked(a))
+				.describedAs("removing an entry twice")
+				.isFalse();
+		assertThat(shard.getUsedSize()).isEqualTo(24);
+	}
+
+	@Test
+	public void unknownEntriesAreNotHits() {
+		CacheFileManagerShard shard = new CacheFileManagerShard(0);
+		shard.addLocked(entry(0, 10));
+
+		assertThat(shard.usedLocked(entry(0, 10)))
+				.describedAs("entries are matched by identity")
+				.isFalse();
+		assertThat(shard.getHitCount()).isZero();
+	}
+
+	@Test
+	public void entriesSnapshotIsInAccessOrder() {
+		CacheFileManagerShard shard = new CacheFileManagerShard(0);
+		CacheEntry a = entry(0, 1);
+		CacheEntry b = entry(1, 1);
+		shard.addLocked(a);
+		shard.addLocked(b);
+		shard.usedLocked(a);
+
+		List<CacheEntry> entries = shard.getEntries();
+		assertThat(entries).containsExactly(b, a);
+
+		shard.removeLocked(b);
+		assertThat(entries)
+				.describedAs("snapshot is a copy")
+				.hasSize(2);
+	}
+}
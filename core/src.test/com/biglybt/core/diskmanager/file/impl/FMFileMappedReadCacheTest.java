@@ -0,0 +1,127 @@
+package com.biglybt.core.diskmanager.file.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.core.util.IndentWriter;
+
+public class FMFileMappedReadCacheTest
+{
+
+	private final FMFileMappedReadCache cache = FMFileMappedReadCache.getSingleton();
+
+	private File file;
+	private byte[] data;
+
+	private long unmaps() {
+		StringWriter sw = new StringWriter();
+		cache.generate(new IndentWriter(new PrintWriter(sw)));
+		Matcher m = Pattern.compile("unmaps=(\\d+)").matcher(sw.toString());
+		assertThat(m.find()).isTrue();
+		return Long.parseLong(m.group(1));
+	}
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		FMFileMappedReadCache.min_file_size = 0;
+		FMFileMappedReadCache.max_mapped = 64 * 1024 * 1024;
+
+		data = new byte[256 * 1024];
+		new Random(0).nextBytes(data);
+
+		file = File.createTempFile("mmapcache", ".dat");
+		Files.write(file.toPath(), data);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void sliceOutstandingAtCloseStaysReadableUntilReturned() throws Exception {
+		FMFileAccess.FileAccessor fa = FileUtil.newFileAccessor(file, "r");
+
+		DirectByteBuffer slice = cache.readSlice(fa, 1000, 5000);
+		assertThat(slice).isNotNull();
+
+		long unmaps = unmaps();
+
+		cache.closed(fa);
+		fa.close();
+
+		assertThat(unmaps())
+				.describedAs("window in use by the slice mustn't be unmapped on close")
+				.isEqualTo(unmaps);
+
+		ByteBuffer bb = slice.getBuffer(DirectByteBuffer.SS_EXTERNAL);
+		byte[] read = new byte[bb.remaining()];
+		bb.get(read);
+
+		byte[] expected = new byte[5000];
+		System.arraycopy(data, 1000, expected, 0, 5000);
+		assertThat(read).isEqualTo(expected);
+
+		slice.returnToPool();
+
+		assertThat(unmaps())
+				.describedAs("window unmapped once the last slice is returned")
+				.isEqualTo(unmaps + 1);
+
+		assertThat(file.delete())
+				.describedAs("nothing keeps the file open")
+				.isTrue();
+	}
+
+	@Test
+	public void closeWithoutSlicesUnmapsImmediately() throws Exception {
+		FMFileAccess.FileAccessor fa = FileUtil.newFileAccessor(file, "r");
+
+		DirectByteBuffer buffer = new DirectByteBuffer(ByteBuffer.allocateDirect(4096));
+		assertThat(cache.read(fa, new DirectByteBuffer[] { buffer }, 4096)).isTrue();
+
+		byte[] read = new byte[4096];
+		ByteBuffer bb = buffer.getBuffer(DirectByteBuffer.SS_EXTERNAL);
+		bb.flip();
+		bb.get(read);
+
+		byte[] expected = new byte[4096];
+		System.arraycopy(data, 4096, expected, 0, 4096);
+		assertThat(read).isEqualTo(expected);
+
+		long unmaps = unmaps();
+
+		cache.closed(fa);
+		fa.close();
+
+		assertThat(unmaps()).isEqualTo(unmaps + 1);
+	}
+
+	@Test
+	public void slicesSpanningWindowsOrTheEndAreDeclined() throws Exception {
+		FMFileAccess.FileAccessor fa = FileUtil.newFileAccessor(file, "r");
+
+		try {
+			assertThat(cache.readSlice(fa, data.length - 10, 20)).isNull();
+			assertThat(cache.readSlice(fa, 0, 0)).isNull();
+		} finally {
+			cache.closed(fa);
+			fa.close();
+		}
+	}
+}
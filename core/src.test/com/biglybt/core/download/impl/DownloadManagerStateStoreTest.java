@@ -0,0 +1,260 @@
+package com.biglybt.core.download.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DownloadManagerStateStoreTest
+{
+
+	private static final byte[] HASH_A = hash(1);
+	private static final byte[] HASH_B = hash(2);
+
+	private File dir;
+	private File file;
+
+	private static byte[] hash(int b) {
+		byte[] hash = new byte[20];
+		Arrays.fill(hash, (byte) b);
+		return hash;
+	}
+
+	private static byte[] payload(String key, Object value, String... removed) throws IOException {
+		Map<String, Object> changed = new HashMap<>();
+		if (key != null) {
+			changed.put(key, value);
+		}
+		return DownloadManagerStateStore.encodeAttributes(changed, Arrays.asList(removed));
+	}
+
+	private static Map<String, Object> replay(DownloadManagerStateStore store, byte[] hash, long generation) {
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put("base", 0L);
+		store.applyAttributes(hash, generation, attributes);
+		return attributes;
+	}
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("statestore").toFile();
+		file = new File(dir, "state.log");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void recordsAreFramedWithLengthCrcAndGeneration() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		byte[] payload = payload("x", 5L);
+		assertThat(store.appendAttributes(HASH_A, 7, payload)).isTrue();
+
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+		assertThat(new String(data.array(), 0, 4, "ISO-8859-1")).isEqualTo("BDMS");
+		assertThat(data.getInt(4)).isEqualTo(2);
+
+		int length = data.getInt(8);
+		assertThat(length).isEqualTo(10 + HASH_A.length + payload.length);
+		assertThat(data.limit()).isEqualTo(8 + 8 + length);
+
+		CRC32 crc = new CRC32();
+		crc.update(data.array(), 16, length);
+		assertThat(data.getInt(12)).isEqualTo((int) crc.getValue());
+
+		assertThat(data.get(16)).isEqualTo((byte) 1);
+		assertThat(data.getLong(17)).isEqualTo(7L);
+		assertThat(data.get(25) & 0xff).isEqualTo(HASH_A.length);
+		assertThat(Arrays.copyOfRange(data.array(), 26, 26 + HASH_A.length)).isEqualTo(HASH_A);
+		assertThat(Arrays.copyOfRange(data.array(), 26 + HASH_A.length, data.limit())).isEqualTo(payload);
+	}
+
+	@Test
+	public void recordsAreReplayedInAppendOrder() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload("x", 1L));
+		store.appendAttributes(HASH_B, 0, payload("x", 100L));
+		store.appendAttributes(HASH_A, 0, payload("y", 2L));
+		store.appendAttributes(HASH_A, 0, payload("x", 3L, "base"));
+		store.appendAttributes(HASH_A, 0, payload(null, null, "y"));
+
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("x", 3L);
+
+		assertThat(replay(store, HASH_A, 0)).isEqualTo(expected);
+
+		// and after reopening, when the index is rebuilt from the file
+
+		DownloadManagerStateStore reopened = new DownloadManagerStateStore(file);
+		assertThat(reopened.hasRecords(HASH_A)).isTrue();
+		assertThat(replay(reopened, HASH_A, 0)).isEqualTo(expected);
+		assertThat(replay(reopened, HASH_B, 0)).containsEntry("x", 100L);
+		assertThat(reopened.hasRecords(hash(3))).isFalse();
+	}
+
+	@Test
+	public void tornTailIsRejectedByCrc() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload("x", 1L));
+		long good_length = file.length();
+		store.appendAttributes(HASH_A, 0, payload("x", 2L));
+
+		// the length made it to disk but the rest of the last record didn't
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(file.length() - 3);
+			raf.write(new byte[3]);
+		}
+
+		DownloadManagerStateStore reopened = new DownloadManagerStateStore(file);
+		assertThat(replay(reopened, HASH_A, 0)).containsEntry("x", 1L);
+		assertThat(file.length()).isEqualTo(good_length);
+
+		// appends carry on after the truncated record
+
+		reopened.appendAttributes(HASH_A, 0, payload("y", 3L));
+		assertThat(replay(new DownloadManagerStateStore(file), HASH_A, 0))
+				.containsEntry("x", 1L)
+				.containsEntry("y", 3L);
+	}
+
+	@Test
+	public void partialRecordHeaderIsTruncated() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload("x", 1L));
+		long good_length = file.length();
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(good_length);
+			raf.writeInt(1000);
+			raf.writeInt(0);
+			raf.write(new byte[20]);
+		}
+
+		DownloadManagerStateStore reopened = new DownloadManagerStateStore(file);
+		assertThat(replay(reopened, HASH_A, 0)).containsEntry("x", 1L);
+		assertThat(file.length()).isEqualTo(good_length);
+	}
+
+	@Test
+	public void recordsOlderThanTheStateFileAreNotReplayed() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload("x", 1L));
+
+		// state file written as generation 1 but the reset never made it to disk
+
+		DownloadManagerStateStore reopened = new DownloadManagerStateStore(file);
+		assertThat(reopened.applyAttributes(HASH_A, 1, new HashMap<>())).isFalse();
+		assertThat(reopened.hasRecords(HASH_A)).isFalse();
+
+		reopened.appendAttributes(HASH_A, 1, payload("y", 2L));
+
+		Map<String, Object> attributes = replay(new DownloadManagerStateStore(file), HASH_A, 1);
+		assertThat(attributes).containsEntry("y", 2L).doesNotContainKey("x");
+	}
+
+	@Test
+	public void newerGenerationSupersedesOlderRecords() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload("x", 1L));
+		store.appendAttributes(HASH_A, 1, payload("y", 2L));
+
+		assertThat(replay(new DownloadManagerStateStore(file), HASH_A, 1))
+				.containsEntry("y", 2L)
+				.doesNotContainKey("x");
+	}
+
+	@Test
+	public void resetDiscardsRecords() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload("x", 1L));
+		store.appendAttributes(HASH_B, 0, payload("x", 2L));
+
+		store.reset(HASH_A);
+
+		assertThat(store.hasRecords(HASH_A)).isFalse();
+
+		DownloadManagerStateStore reopened = new DownloadManagerStateStore(file);
+		assertThat(reopened.hasRecords(HASH_A)).isFalse();
+		assertThat(replay(reopened, HASH_B, 0)).containsEntry("x", 2L);
+	}
+
+	@Test
+	public void compactionMergesRecordsAndKeepsGenerations() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		for (int i = 0; i < 100; i++) {
+			store.appendAttributes(HASH_A, 3, payload("x", (long) i));
+			store.appendAttributes(HASH_B, 0, payload("k" + (i % 5), (long) i));
+		}
+		store.appendAttributes(HASH_A, 3, payload(null, null, "base"));
+		store.appendAttributes(HASH_B, 0, payload(null, null, "k0"));
+
+		Map<String, Object> expected_a = replay(store, HASH_A, 3);
+		Map<String, Object> expected_b = replay(store, HASH_B, 0);
+
+		long length = file.length();
+
+		store.compact();
+
+		assertThat(file.length()).isLessThan(length / 10);
+		assertThat(new File(dir, "state.log.tmp")).doesNotExist();
+
+		assertThat(replay(store, HASH_A, 3)).isEqualTo(expected_a);
+
+		DownloadManagerStateStore reopened = new DownloadManagerStateStore(file);
+		assertThat(replay(reopened, HASH_A, 3)).isEqualTo(expected_a).doesNotContainKey("base");
+		assertThat(replay(reopened, HASH_B, 0)).isEqualTo(expected_b).doesNotContainKey("k0");
+
+		// generation survived compaction
+
+		assertThat(reopened.applyAttributes(HASH_A, 4, new HashMap<>())).isFalse();
+	}
+
+	@Test
+	public void removedThenChangedAttributeSurvivesCompaction() throws IOException {
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, payload(null, null, "x"));
+		store.appendAttributes(HASH_A, 0, payload("x", 9L));
+
+		store.compact();
+
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put("x", 1L);
+		new DownloadManagerStateStore(file).applyAttributes(HASH_A, 0, attributes);
+		assertThat(attributes).isEqualTo(Collections.singletonMap("x", 9L));
+	}
+
+	@Test
+	public void encodedPayloadListsRemovals() throws IOException {
+		List<String> removed = Arrays.asList("a", "b");
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put("a", 1L);
+		attributes.put("b", 1L);
+		attributes.put("c", 1L);
+
+		DownloadManagerStateStore store = new DownloadManagerStateStore(file);
+		store.appendAttributes(HASH_A, 0, DownloadManagerStateStore.encodeAttributes(new HashMap<>(), removed));
+		store.applyAttributes(HASH_A, 0, attributes);
+
+		assertThat(attributes).containsOnlyKeys("c");
+	}
+}
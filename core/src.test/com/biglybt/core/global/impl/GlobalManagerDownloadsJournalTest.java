@@ -0,0 +1,181 @@
+package com.biglybt.core.global.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class GlobalManagerDownloadsJournalTest
+{
+
+	private static final long ID = 1234;
+
+	private File file;
+	private GlobalManagerDownloadsJournal journal;
+
+	private static byte[] hash(int b) {
+		byte[] hash = new byte[20];
+		Arrays.fill(hash, (byte) b);
+		return hash;
+	}
+
+	private static Map entry(int b, long position, String state) {
+		Map<String, Object> entry = new HashMap<>();
+		entry.put("torrent_hash", hash(b));
+		entry.put("position", position);
+		entry.put("state", state.getBytes());
+		return entry;
+	}
+
+	private static Map config(long id, Map... entries) {
+		Map<String, Object> config = new HashMap<>();
+		config.put(GlobalManagerDownloadsJournal.KEY_JOURNAL_ID, id);
+		config.put("downloads", new ArrayList<>(Arrays.asList(entries)));
+		return config;
+	}
+
+	private static List<String> states(Map config) {
+		List<String> result = new ArrayList<>();
+		for (Object o : (List) config.get("downloads")) {
+			result.add(new String((byte[]) ((Map) o).get("state")));
+		}
+		return result;
+	}
+
+	private Map replay(Map config) {
+		return new GlobalManagerDownloadsJournal(file).apply(config);
+	}
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		file = File.createTempFile("downloads", ".journal");
+		journal = new GlobalManagerDownloadsJournal(file);
+		journal.reset(ID);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		journal.close();
+		file.delete();
+	}
+
+	@Test
+	public void recordsAreReplayedInOrder() {
+		journal.append(Collections.singletonList(entry(1, 0, "a1")), Collections.emptyList(), null);
+		journal.append(Collections.singletonList(entry(2, 1, "b1")), Collections.emptyList(), null);
+		journal.append(Collections.singletonList(entry(1, 0, "a2")), Collections.emptyList(), null);
+		journal.append(Collections.emptyList(), Collections.singletonList(hash(3)), null);
+
+		assertThat(journal.getRecordCount()).isEqualTo(4);
+
+		Map config = replay(config(ID, entry(1, 0, "a0"), entry(3, 2, "c0")));
+
+		assertThat(states(config)).containsExactly("a2", "b1");
+	}
+
+	@Test
+	public void removedThenReaddedDownloadIsKept() {
+		journal.append(Collections.emptyList(), Collections.singletonList(hash(1)), null);
+		journal.append(Collections.singletonList(entry(1, 0, "a1")), Collections.emptyList(), null);
+
+		assertThat(states(replay(config(ID, entry(1, 0, "a0"))))).containsExactly("a1");
+	}
+
+	@Test
+	public void downloadsAreOrderedByPosition() {
+		journal.append(Arrays.asList(entry(1, 3, "a"), entry(2, 1, "b")), Collections.emptyList(), null);
+
+		Map no_hash = new HashMap();
+		no_hash.put("state", "n".getBytes());
+
+		Map config = config(ID, entry(3, 2, "c"), no_hash);
+
+		assertThat(states(replay(config))).containsExactly("b", "c", "a", "n");
+	}
+
+	@Test
+	public void pauseDataIsReplacedAndCleared() {
+		Map config = config(ID);
+		config.put("pause_data", Collections.singletonList("old".getBytes()));
+
+		journal.append(Collections.emptyList(), Collections.emptyList(), Collections.singletonList("new".getBytes()));
+
+		List pause_data = (List) replay(config).get("pause_data");
+		assertThat(new String((byte[]) pause_data.get(0))).isEqualTo("new");
+
+		journal.append(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+		assertThat(replay(config)).doesNotContainKey("pause_data");
+	}
+
+	@Test
+	public void journalForAnotherSnapshotIsIgnored() {
+		journal.append(Collections.singletonList(entry(1, 0, "a1")), Collections.emptyList(), null);
+
+		assertThat(states(replay(config(ID + 1, entry(1, 0, "a0"))))).containsExactly("a0");
+
+		Map no_id = config(ID, entry(1, 0, "a0"));
+		no_id.remove(GlobalManagerDownloadsJournal.KEY_JOURNAL_ID);
+		assertThat(states(replay(no_id))).containsExactly("a0");
+	}
+
+	@Test
+	public void tornTailIsIgnored() throws IOException {
+		journal.append(Collections.singletonList(entry(1, 0, "a1")), Collections.emptyList(), null);
+		long good_length = journal.getLength();
+		journal.append(Collections.singletonList(entry(1, 0, "a2")), Collections.emptyList(), null);
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(journal.getLength() - 5);
+		}
+
+		assertThat(states(replay(config(ID, entry(1, 0, "a0"))))).containsExactly("a1");
+
+		// length intact but the payload not
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(journal.getLength());
+			raf.seek(journal.getLength() - 5);
+			raf.write(new byte[5]);
+		}
+
+		assertThat(file.length()).isGreaterThan(good_length);
+		assertThat(states(replay(config(ID, entry(1, 0, "a0"))))).containsExactly("a1");
+	}
+
+	@Test
+	public void resetStartsAnEmptyJournal() {
+		journal.append(Collections.singletonList(entry(1, 0, "a1")), Collections.emptyList(), null);
+
+		long id = journal.getSnapshotId();
+		assertThat(id).isNotEqualTo(ID);
+
+		journal.reset(id);
+
+		assertThat(journal.getRecordCount()).isZero();
+		assertThat(journal.getSnapshotId())
+				.describedAs("an empty journal keeps its id")
+				.isEqualTo(id);
+		assertThat(states(replay(config(id, entry(1, 0, "a0"))))).containsExactly("a0");
+	}
+
+	@Test
+	public void appendFailsWhenClosed() {
+		journal.close();
+
+		assertThat(journal.append(Collections.singletonList(entry(1, 0, "a1")), Collections.emptyList(), null))
+				.isFalse();
+	}
+}
@@ -0,0 +1,315 @@
+package com.biglybt.core.ipfilter.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.biglybt.core.ipfilter.IpRange;
+
+public class IPAddressRangeIndexTest
+{
+
+	private static long unsigned(int address) {
+		return address & 0xffffffffL;
+	}
+
+	private static boolean contains(IpRange range, int address) {
+		long a = unsigned(address);
+		return range.getStartIpLong() <= a && a <= range.getEndIpLong();
+	}
+
+	private static int compareUnsigned(long hi1, long lo1, long hi2, long lo2) {
+		int c = Long.compareUnsigned(hi1, hi2);
+		return c != 0 ? c : Long.compareUnsigned(lo1, lo2);
+	}
+
+	private static boolean contains(long[] range, long hi, long lo) {
+		return compareUnsigned(hi, lo, range[0], range[1]) >= 0 && compareUnsigned(hi, lo, range[2], range[3]) <= 0;
+	}
+
+	/**
+	 * The old manager's behaviour, a scan over every entry
+	 */
+	private static IpRange linear(List<IpRange> ranges, int address) {
+		for (IpRange range : ranges) {
+			if (range.isValid() && contains(range, address)) {
+				return range;
+			}
+		}
+		return null;
+	}
+
+	private static void check(IPAddressRangeIndex index, List<IpRange> ranges, int address) {
+		IpRange expected = linear(ranges, address);
+		IpRange actual = index.lookup(address);
+
+		String desc = "address " + Long.toHexString(unsigned(address));
+
+		if (expected == null) {
+			assertThat(actual).describedAs(desc).isNull();
+		} else {
+			assertThat(actual).describedAs(desc).isNotNull();
+			assertThat(contains(actual, address)).describedAs(desc + " -> " + actual).isTrue();
+		}
+	}
+
+	private static List<IpRange> randomRanges(Random random, int count) {
+		List<IpRange> ranges = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			int start;
+			int length;
+
+			switch (random.nextInt(4)) {
+				case 0:
+					// single addresses
+					start = random.nextInt();
+					length = 0;
+					break;
+				case 1:
+					// clustered so that they overlap, nest and abut
+					start = 0x0a000000 + random.nextInt(1 << 16);
+					length = random.nextInt(1 << 10);
+					break;
+				case 2:
+					// across the sign bit
+					start = Integer.MIN_VALUE - random.nextInt(1 << 20);
+					length = random.nextInt(1 << 21);
+					break;
+				default:
+					start = random.nextInt();
+					length = random.nextInt(1 << 24);
+					break;
+			}
+
+			long end = Math.min(unsigned(start) + length, 0xffffffffL);
+
+			ranges.add(new IpRangeImpl("r" + i, start, (int) end, true));
+		}
+
+		return ranges;
+	}
+
+	@Test
+	public void lookupsMatchALinearScan() {
+		Random random = new Random(0);
+
+		for (int round = 0; round < 5; round++) {
+			List<IpRange> ranges = randomRanges(random, 2000);
+
+			// an invalid (reversed) range mustn't match anything
+
+			ranges.add(new IpRangeImpl("reversed", 0x0b000010, 0x0b000000, true));
+
+			IPAddressRangeIndex index = new IPAddressRangeIndex(ranges);
+
+			for (IpRange range : ranges) {
+				int start = (int) range.getStartIpLong();
+				int end = (int) range.getEndIpLong();
+
+				for (int address : new int[] { start - 1, start, start + 1, end - 1, end, end + 1 }) {
+					check(index, ranges, address);
+				}
+			}
+
+			for (int address : new int[] { 0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x0a000000, 0x0b000008 }) {
+				check(index, ranges, address);
+			}
+
+			for (int i = 0; i < 20000; i++) {
+				check(index, ranges, random.nextInt());
+			}
+		}
+	}
+
+	@Test
+	public void spanCountsOverlappingRangesOnce() {
+		Random random = new Random(1);
+
+		List<IpRange> ranges = randomRanges(random, 500);
+		ranges.add(new IpRangeImpl("all-top", -16, -1, true));
+		ranges.add(new IpRangeImpl("bottom", 0, 0, true));
+
+		// reference: merge sorted intervals
+
+		long[][] intervals = new long[ranges.size()][];
+		for (int i = 0; i < intervals.length; i++) {
+			IpRange range = ranges.get(i);
+			intervals[i] = new long[] { range.getStartIpLong(), range.getEndIpLong() };
+		}
+		Arrays.sort(intervals, (a, b) -> Long.compare(a[0], b[0]));
+
+		long span = 0;
+		long cur_start = -1;
+		long cur_end = -1;
+
+		for (long[] interval : intervals) {
+			if (cur_start >= 0 && interval[0] <= cur_end + 1) {
+				cur_end = Math.max(cur_end, interval[1]);
+			} else {
+				if (cur_start >= 0) {
+					span += cur_end - cur_start + 1;
+				}
+				cur_start = interval[0];
+				cur_end = interval[1];
+			}
+		}
+		span += cur_end - cur_start + 1;
+
+		assertThat(new IPAddressRangeIndex(ranges).getIPv4Span()).isEqualTo(span);
+	}
+
+	@Test
+	public void ipv6LookupsMatchALinearScan() {
+		Random random = new Random(2);
+
+		List<IpRange> ranges = new ArrayList<>();
+		List<long[]> bounds = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			long hi;
+			long lo;
+
+			switch (random.nextInt(3)) {
+				case 0:
+					// ranges crossing the sign bit of the low half
+					hi = 0x20010db800000000L + random.nextInt(4);
+					lo = Long.MIN_VALUE - random.nextInt(1 << 20);
+					break;
+				case 1:
+					// and of the high half
+					hi = random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE;
+					lo = random.nextLong();
+					break;
+				default:
+					hi = random.nextLong();
+					lo = random.nextLong();
+					break;
+			}
+
+			long length = random.nextInt(1 << 21);
+
+			long end_lo = lo + length;
+			long end_hi = Long.compareUnsigned(end_lo, lo) < 0 ? hi + 1 : hi;
+
+			if (compareUnsigned(end_hi, end_lo, hi, lo) < 0) {
+				// wrapped past the top of the address space
+				end_hi = -1;
+				end_lo = -1;
+			}
+
+			long[] range = { hi, lo, end_hi, end_lo };
+			bounds.add(range);
+			ranges.add(new IpRangeImpl("v6-" + i, hi, lo, end_hi, end_lo, true));
+		}
+
+		// plus some IPv4 ranges that mustn't interfere
+
+		ranges.addAll(randomRanges(random, 100));
+
+		IPAddressRangeIndex index = new IPAddressRangeIndex(ranges);
+
+		assertThat(index.hasIPv6()).isTrue();
+		assertThat(new IPAddressRangeIndex(ranges.subList(1000, ranges.size())).hasIPv6()).isFalse();
+
+		List<long[]> probes = new ArrayList<>();
+		for (long[] range : bounds) {
+			probes.add(new long[] { range[0], range[1] });
+			probes.add(new long[] { range[0], range[1] - 1 });
+			probes.add(new long[] { range[2], range[3] });
+			probes.add(new long[] { range[2], range[3] + 1 });
+		}
+		probes.add(new long[] { 0, 0 });
+		probes.add(new long[] { -1, -1 });
+		for (int i = 0; i < 20000; i++) {
+			probes.add(new long[] { random.nextLong(), random.nextLong() });
+		}
+
+		for (long[] probe : probes) {
+			boolean expected = false;
+			for (long[] range : bounds) {
+				if (contains(range, probe[0], probe[1])) {
+					expected = true;
+					break;
+				}
+			}
+
+			IpRange actual = index.lookup(probe[0], probe[1]);
+
+			String desc = Long.toHexString(probe[0]) + ":" + Long.toHexString(probe[1]);
+
+			if (expected) {
+				assertThat(actual).describedAs(desc).isNotNull();
+				long[] range = bounds.get(ranges.indexOf(actual));
+				assertThat(contains(range, probe[0], probe[1])).describedAs(desc).isTrue();
+			} else {
+				assertThat(actual).describedAs(desc).isNull();
+			}
+		}
+	}
+
+	@Test
+	public void managerLooksUpAddressStrings() throws Exception {
+		IPAddressRangeManager manager = new IPAddressRangeManager();
+
+		IpRange v4 = new IpRangeImpl("v4", "10.1.0.0", "10.1.255.255", true);
+		IpRange v6 = new IpRangeImpl("v6", "2001:db8::", "2001:db8::ffff", true);
+
+		manager.addRange(v4);
+		manager.addRange(v6);
+
+		assertThat(manager.isInRange("10.1.2.3")).isSameAs(v4);
+		assertThat(manager.isInRange("10.2.0.0")).isNull();
+		assertThat(manager.isInRange(InetAddress.getByName("10.1.255.255"))).isSameAs(v4);
+
+		assertThat(manager.isInRange("2001:db8::1234")).isSameAs(v6);
+		assertThat(manager.isInRange("2001:db8::1:0")).isNull();
+		assertThat(manager.isInRange(InetAddress.getByName("2001:db8::ffff"))).isSameAs(v6);
+
+		assertThat(manager.hasIPv6Ranges()).isTrue();
+
+		manager.removeRange(v6);
+
+		// rebuilds are rate limited
+
+		manager.last_rebuild_time = 0;
+
+		assertThat(manager.isInRange("2001:db8::1234")).isNull();
+		assertThat(manager.hasIPv6Ranges()).isFalse();
+	}
+
+	@Test
+	public void parsesOnlyPlainDottedQuads() throws Exception {
+		for (String s : new String[] { "0.0.0.0", "255.255.255.255", "10.1.2.3", "192.168.001.010", "128.0.0.1" }) {
+			long expected = 0;
+			for (byte b : InetAddress.getByName(s).getAddress()) {
+				expected = (expected << 8) | (b & 0xff);
+			}
+			assertThat(IPAddressRangeIndex.parseIPv4(s)).describedAs(s).isEqualTo(expected);
+		}
+
+		for (String s : new String[] { "", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1.2.3.1000", "1..2.3", ".1.2.3",
+				"1.2.3.", "1.2.3.a", " 1.2.3.4", "1.2.3.4 ", "1.2.3.-4", "localhost", "::1", "1234.1.1.1" }) {
+			assertThat(IPAddressRangeIndex.parseIPv4(s)).describedAs(s).isEqualTo(-1);
+		}
+	}
+
+	@Test
+	public void ipv6BytesRoundTrip() throws Exception {
+		byte[] bytes = InetAddress.getByName("2001:db8:8000::ff01").getAddress();
+
+		long[] address = IPAddressRangeIndex.toIPv6(bytes);
+		assertThat(address).containsExactly(0x20010db880000000L, 0xff01L);
+		assertThat(IPAddressRangeIndex.fromIPv6(address[0], address[1])).isEqualTo(bytes);
+
+		assertThat(IPAddressRangeIndex.parseIPv6("2001:db8:8000::ff01")).containsExactly(address);
+		assertThat(IPAddressRangeIndex.parseIPv6("10.1.2.3")).isNull();
+		assertThat(IPAddressRangeIndex.parseIPv6("::ffff:zz")).isNull();
+	}
+}
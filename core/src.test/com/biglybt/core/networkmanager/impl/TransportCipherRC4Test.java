@@ -0,0 +1,224 @@
+package com.biglybt.core.networkmanager.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+public class TransportCipherRC4Test
+{
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	private static byte[] hex(String str) {
+		str = str.replace(" ", "");
+		byte[] result = new byte[str.length() / 2];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (byte) Integer.parseInt(str.substring(i * 2, i * 2 + 2), 16);
+		}
+		return result;
+	}
+
+	private static byte[] keystream(byte[] key, int length) {
+		byte[] result = new byte[length];
+		new TransportCipherRC4(key).processBytes(result, 0, length, result, 0);
+		return result;
+	}
+
+	private static byte[] jce(byte[] key, byte[] data) throws Exception {
+		Cipher cipher = Cipher.getInstance("ARCFOUR");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "ARCFOUR"));
+		return cipher.update(data);
+	}
+
+	private static void assertKeystream(String key, int offset, String expected) {
+		byte[] stream = keystream(hex(key), offset + 16);
+		assertThat(Arrays.copyOfRange(stream, offset, offset + 16))
+				.describedAs("key " + key + " offset " + offset)
+				.isEqualTo(hex(expected));
+	}
+
+	@Test
+	public void classicVectors() {
+		String[][] vectors = {
+			{ "Key", "Plaintext", "bbf316e8d940af0ad3" },
+			{ "Wiki", "pedia", "1021bf0420" },
+			{ "Secret", "Attack at dawn", "45a01f645fc35b383552544b9bf5" },
+		};
+
+		for (String[] v : vectors) {
+			byte[] plain = v[1].getBytes(ISO_8859_1);
+			byte[] out = new byte[plain.length];
+			new TransportCipherRC4(v[0].getBytes(ISO_8859_1)).processBytes(plain, 0, plain.length, out, 0);
+			assertThat(out).describedAs(v[0]).isEqualTo(hex(v[2]));
+		}
+	}
+
+	/**
+	 * RFC 6229 test vectors, including the offset 1024 we start at after the initial discard
+	 */
+	@Test
+	public void rfc6229Vectors() {
+		String key40 = "0102030405";
+		assertKeystream(key40, 0, "b2 39 63 05 f0 3d c0 27 cc c3 52 4a 0a 11 18 a8");
+		assertKeystream(key40, 16, "69 82 94 4f 18 fc 82 d5 89 c4 03 a4 7a 0d 09 19");
+		assertKeystream(key40, 240, "28 cb 11 32 c9 6c e2 86 42 1d ca ad b8 b6 9e ae");
+		assertKeystream(key40, 1024, "30 ab bc c7 c2 0b 01 60 9f 23 ee 2d 5f 6b b7 df");
+		assertKeystream(key40, 4080, "06 83 26 a2 11 84 16 d2 1f 9d 04 b2 cd 1c a0 50");
+
+		String key128 = "0102030405060708090a0b0c0d0e0f10";
+		assertKeystream(key128, 0, "9a c7 cc 9a 60 9d 1e f7 b2 93 28 99 cd e4 1b 97");
+		assertKeystream(key128, 256, "d3 9d 56 6b c6 bc e3 01 07 68 15 15 49 f3 87 3f");
+		assertKeystream(key128, 1024, "bd f0 32 4e 60 83 dc c6 d3 ce dd 3c a8 c5 3c 16");
+		assertKeystream(key128, 4096, "a3 6a 4c 30 1a e8 ac 13 61 0c cb c1 22 56 ca cc");
+
+		String key256 = "0102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f20";
+		assertKeystream(key256, 0, "ea a6 bd 25 88 0b f9 3d 3f 5d 1e 4c a2 61 1d 91");
+		assertKeystream(key256, 1008, "c7 99 b5 96 73 8f 6b 01 8c 76 c7 4b 17 59 bd 90");
+		assertKeystream(key256, 1024, "7f ec 5b fd 9f 9b 89 ce 65 48 30 90 92 d7 e9 58");
+		assertKeystream(key256, 4096, "f3 e4 c0 a2 e0 2d 1d 01 f7 f0 a7 46 18 af 2b 48");
+	}
+
+	@Test
+	public void matchesJceForPheSizedKeys() throws Exception {
+		Random random = new Random(0);
+
+		for (int i = 0; i < 20; i++) {
+			// PHE derives 160 bit keys
+			byte[] key = new byte[20];
+			random.nextBytes(key);
+
+			byte[] data = new byte[random.nextInt(40000)];
+			random.nextBytes(data);
+
+			byte[] expected = jce(key, data);
+
+			// in chunks so that state carries across calls
+
+			TransportCipherRC4 rc4 = new TransportCipherRC4(key);
+			byte[] out = new byte[data.length];
+			int pos = 0;
+			while (pos < data.length) {
+				int chunk = Math.min(data.length - pos, random.nextInt(3000));
+				rc4.processBytes(data, pos, chunk, out, pos);
+				pos += chunk;
+			}
+
+			assertThat(out).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void bufferPathsMatchTheArrayPath() throws Exception {
+		Random random = new Random(1);
+
+		byte[] key = new byte[20];
+		random.nextBytes(key);
+
+		// bigger than the scratch array so direct buffers go round more than once
+
+		byte[] data = new byte[20000];
+		random.nextBytes(data);
+
+		byte[] expected = jce(key, data);
+
+		for (boolean source_direct : new boolean[] { false, true }) {
+			for (boolean target_direct : new boolean[] { false, true }) {
+				ByteBuffer source = source_direct ? ByteBuffer.allocateDirect(data.length + 10) : ByteBuffer.allocate(data.length + 10);
+				ByteBuffer target = target_direct ? ByteBuffer.allocateDirect(data.length + 20) : ByteBuffer.allocate(data.length + 20);
+
+				source.position(10);
+				source.put(data);
+				source.position(10);
+
+				// heap slices have a non-zero array offset
+
+				source = source.slice();
+				target.position(5);
+				target = target.slice();
+				target.position(3);
+
+				new TransportCipherRC4(key).process(source, target);
+
+				String desc = "source direct=" + source_direct + ", target direct=" + target_direct;
+
+				assertThat(source.remaining()).describedAs(desc).isZero();
+				assertThat(target.position()).describedAs(desc).isEqualTo(3 + data.length);
+
+				byte[] out = new byte[data.length];
+				target.position(3);
+				target.get(out);
+				assertThat(out).describedAs(desc).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	public void inPlaceLeavesPositionAndLimitAlone() throws Exception {
+		Random random = new Random(2);
+
+		byte[] key = new byte[20];
+		random.nextBytes(key);
+
+		byte[] data = new byte[20000];
+		random.nextBytes(data);
+
+		byte[] expected = jce(key, Arrays.copyOfRange(data, 100, 19000));
+
+		for (boolean direct : new boolean[] { false, true }) {
+			ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+			buffer.put(data);
+			buffer.position(7);
+			buffer.limit(50);
+
+			TransportCipherRC4 rc4 = new TransportCipherRC4(key);
+			rc4.process(buffer, 100, 9000);
+			rc4.process(buffer, 9000, 19000);
+
+			assertThat(buffer.position()).isEqualTo(7);
+			assertThat(buffer.limit()).isEqualTo(50);
+
+			byte[] out = new byte[data.length];
+			buffer.clear();
+			buffer.get(out);
+
+			assertThat(Arrays.copyOfRange(out, 100, 19000)).describedAs("direct=" + direct).isEqualTo(expected);
+			assertThat(Arrays.copyOfRange(out, 0, 100)).isEqualTo(Arrays.copyOfRange(data, 0, 100));
+			assertThat(Arrays.copyOfRange(out, 19000, data.length)).isEqualTo(Arrays.copyOfRange(data, 19000, data.length));
+		}
+	}
+
+	@Test
+	public void transportCipherDiscardsTheFirstKilobyte() throws Exception {
+		byte[] key = hex("0102030405060708090a0b0c0d0e0f10");
+
+		TransportCipher cipher = new TransportCipher("RC4", Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "RC4"));
+
+		assertThat(cipher.update(new byte[16])).isEqualTo(hex("bd f0 32 4e 60 83 dc c6 d3 ce dd 3c a8 c5 3c 16"));
+
+		// and the buffer paths continue the same stream
+
+		byte[] stream = keystream(key, 1024 + 16 + 64);
+
+		ByteBuffer source = ByteBuffer.allocateDirect(32);
+		ByteBuffer target = ByteBuffer.allocateDirect(32);
+		cipher.update(source, target);
+
+		ByteBuffer in_place = ByteBuffer.allocateDirect(32);
+		cipher.updateInPlace(in_place, 0, 32);
+
+		byte[] out = new byte[64];
+		target.flip();
+		target.get(out, 0, 32);
+		in_place.get(out, 32, 32);
+
+		assertThat(out).isEqualTo(Arrays.copyOfRange(stream, 1024 + 16, stream.length));
+	}
+}
@@ -0,0 +1,256 @@
+package com.biglybt.core.peermanager.control.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.biglybt.core.peermanager.control.PeerControlInstance;
+import com.biglybt.core.peermanager.control.PeerControlScheduler;
+
+public class PeerControlSchedulerWheelTest
+{
+
+	private static class TestInstance
+		implements PeerControlInstance
+	{
+		final String name;
+		volatile int stride = 1;
+
+		final AtomicInteger schedules = new AtomicInteger();
+		final AtomicInteger periods = new AtomicInteger();
+		final AtomicInteger active = new AtomicInteger();
+		volatile boolean overlapped;
+
+		TestInstance(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void schedule() {
+			schedule(1);
+		}
+
+		@Override
+		public void schedule(int p) {
+			if (active.incrementAndGet() > 1) {
+				overlapped = true;
+			}
+			schedules.incrementAndGet();
+			periods.addAndGet(p);
+			active.decrementAndGet();
+		}
+
+		@Override
+		public int getScheduleStride() {
+			return stride;
+		}
+
+		@Override
+		public int getSchedulePriority() {
+			return 0;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public int[] getPeerCount() {
+			return new int[] { 0, 0 };
+		}
+	}
+
+	/**
+	 * Returns the wheel's current tick, inserting at (or before) it places an instance in the next one
+	 */
+	private static long currentTick(PeerControlSchedulerWheel wheel) {
+		PeerControlSchedulerWheel.instanceWrapper probe = wheel.new instanceWrapper(new TestInstance("probe"));
+		probe.unregister();
+		wheel.insert(probe, 0);
+		return probe.due_tick - 1;
+	}
+
+	private static List<PeerControlSchedulerWheel.instanceWrapper> advance(PeerControlSchedulerWheel wheel) {
+		List<PeerControlSchedulerWheel.instanceWrapper> due = new ArrayList<>();
+		wheel.advance(due);
+		return due;
+	}
+
+	@Test
+	public void instancesComeDueOnTheirTick() {
+		PeerControlSchedulerWheel wheel = new PeerControlSchedulerWheel();
+
+		Random random = new Random(0);
+
+		// advance to a few different points relative to the wheel revolutions
+
+		for (int round = 0; round < 5; round++) {
+			int skip = random.nextInt(200);
+			for (int i = 0; i < skip; i++) {
+				advance(wheel);
+			}
+
+			long now = currentTick(wheel);
+
+			int[] offsets = { 1, 2, 5, 63, 64, 65, 127, 128, 200, 1000, 4000, PeerControlSchedulerWheel.MAX_STRIDE };
+
+			Map<PeerControlSchedulerWheel.instanceWrapper, Long> expected = new HashMap<>();
+
+			for (int offset : offsets) {
+				PeerControlSchedulerWheel.instanceWrapper w = wheel.new instanceWrapper(new TestInstance("i" + offset));
+				wheel.insert(w, now + offset);
+				expected.put(w, now + offset);
+			}
+
+			for (int tick = 1; tick <= PeerControlSchedulerWheel.MAX_STRIDE; tick++) {
+				for (PeerControlSchedulerWheel.instanceWrapper w : advance(wheel)) {
+					assertThat(expected.remove(w))
+							.describedAs("round " + round + ": " + w.getString())
+							.isEqualTo(now + tick);
+				}
+			}
+
+			assertThat(expected).isEmpty();
+		}
+	}
+
+	@Test
+	public void dueTicksAreClamped() {
+		PeerControlSchedulerWheel wheel = new PeerControlSchedulerWheel();
+
+		long now = currentTick(wheel);
+
+		PeerControlSchedulerWheel.instanceWrapper past = wheel.new instanceWrapper(new TestInstance("past"));
+		wheel.insert(past, now - 100);
+		assertThat(past.due_tick).isEqualTo(now + 1);
+
+		PeerControlSchedulerWheel.instanceWrapper far = wheel.new instanceWrapper(new TestInstance("far"));
+		wheel.insert(far, now + 100000);
+		assertThat(far.due_tick).isEqualTo(now + PeerControlSchedulerWheel.MAX_STRIDE);
+
+		assertThat(advance(wheel)).containsExactly(past);
+	}
+
+	@Test
+	public void instancesDueTogetherAllComeOut() {
+		PeerControlSchedulerWheel wheel = new PeerControlSchedulerWheel();
+
+		long now = currentTick(wheel);
+
+		List<PeerControlSchedulerWheel.instanceWrapper> inserted = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			PeerControlSchedulerWheel.instanceWrapper w = wheel.new instanceWrapper(new TestInstance("i" + i));
+			wheel.insert(w, now + 100);
+			inserted.add(w);
+		}
+
+		for (int i = 1; i < 100; i++) {
+			assertThat(advance(wheel)).isEmpty();
+		}
+
+		assertThat(advance(wheel)).containsExactlyInAnyOrderElementsOf(inserted);
+	}
+
+	@Test
+	public void unregisteredInstancesAreDropped() {
+		PeerControlSchedulerWheel wheel = new PeerControlSchedulerWheel();
+
+		TestInstance a = new TestInstance("a");
+		TestInstance b = new TestInstance("b");
+
+		wheel.register(a);
+		wheel.register(b);
+		wheel.unregister(b);
+
+		int spread = Math.max(1, 1000 / PeerControlScheduler.SCHEDULE_PERIOD_MILLIS);
+
+		List<PeerControlSchedulerWheel.instanceWrapper> due = new ArrayList<>();
+		for (int i = 0; i <= spread; i++) {
+			due.addAll(advance(wheel));
+		}
+
+		assertThat(due).hasSize(1);
+		assertThat(due.get(0).getString()).startsWith("a:");
+	}
+
+	@Test
+	public void strideIsPickedUpAfterEachSchedule() {
+		PeerControlSchedulerWheel wheel = new PeerControlSchedulerWheel();
+
+		TestInstance instance = new TestInstance("i");
+		PeerControlSchedulerWheel.instanceWrapper w = wheel.new instanceWrapper(instance);
+
+		instance.stride = 10;
+
+		w.schedule();
+		assertThat(instance.periods.get()).describedAs("first schedule is a single period").isEqualTo(1);
+		assertThat(w.getStride()).isEqualTo(10);
+
+		w.schedule();
+		assertThat(instance.periods.get()).isEqualTo(11);
+
+		instance.stride = 0;
+		w.schedule();
+		assertThat(w.getStride()).isEqualTo(1);
+
+		instance.stride = Integer.MAX_VALUE;
+		w.schedule();
+		assertThat(w.getStride()).isEqualTo(PeerControlSchedulerWheel.MAX_STRIDE);
+
+		assertThat(instance.schedules.get()).isEqualTo(4);
+	}
+
+	@Test
+	public void workersRunStridedInstancesLessOftenAndNeverConcurrently() throws InterruptedException {
+		PeerControlSchedulerWheel wheel = new PeerControlSchedulerWheel();
+
+		List<TestInstance> every = new ArrayList<>();
+		List<TestInstance> strided = new ArrayList<>();
+
+		for (int i = 0; i < 20; i++) {
+			TestInstance e = new TestInstance("e" + i);
+			TestInstance s = new TestInstance("s" + i);
+			s.stride = 20;
+			every.add(e);
+			strided.add(s);
+			wheel.register(e);
+			wheel.register(s);
+		}
+
+		wheel.start();
+
+		Thread.sleep(3000);
+
+		for (TestInstance i : every) {
+			wheel.unregister(i);
+		}
+		for (TestInstance i : strided) {
+			wheel.unregister(i);
+		}
+
+		long every_schedules = 0;
+		long strided_schedules = 0;
+
+		for (TestInstance i : every) {
+			assertThat(i.overlapped).isFalse();
+			assertThat(i.schedules.get()).isPositive();
+			every_schedules += i.schedules.get();
+		}
+
+		for (TestInstance i : strided) {
+			assertThat(i.overlapped).isFalse();
+			assertThat(i.schedules.get()).isPositive();
+			strided_schedules += i.schedules.get();
+		}
+
+		assertThat(strided_schedules * 4).isLessThan(every_schedules);
+	}
+}
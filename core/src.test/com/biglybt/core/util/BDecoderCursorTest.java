@@ -0,0 +1,284 @@
+package com.biglybt.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks BDecoderCursor and BDecoder.decodeLazy against BDecoder, which they must behave
+ * identically to for both well formed and malformed input
+ */
+public class BDecoderCursorTest
+{
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(Constants.BYTE_ENCODING_CHARSET);
+	}
+
+	private static Object decodeEager(byte[] data) {
+		try {
+			return BDecoder.decode(data);
+		} catch (IOException e) {
+			return e;
+		}
+	}
+
+	private static Object decodeLazy(ByteBuffer buffer) {
+		try {
+			Map<String, Object> map = BDecoder.decodeLazy(buffer);
+			// force every value to be decoded
+			return copy(map);
+		} catch (IOException e) {
+			return e;
+		}
+	}
+
+	private static Object copy(Object o) {
+		if (o instanceof Map) {
+			Map<String, Object> result = new HashMap<>();
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+				result.put((String) e.getKey(), copy(e.getValue()));
+			}
+			return result;
+		}
+		if (o instanceof List) {
+			List<Object> result = new ArrayList<>();
+			for (Object x : (List<?>) o) {
+				result.add(copy(x));
+			}
+			return result;
+		}
+		return o;
+	}
+
+	private static void assertDeepEquals(String where, Object expected, Object actual) {
+		if (expected instanceof Map) {
+			assertThat(actual).describedAs(where).isInstanceOf(Map.class);
+			Map<?, ?> e = (Map<?, ?>) expected;
+			Map<?, ?> a = (Map<?, ?>) actual;
+			assertThat(a.keySet()).describedAs(where).isEqualTo(e.keySet());
+			for (Object key : e.keySet()) {
+				assertDeepEquals(where + "/" + key, e.get(key), a.get(key));
+			}
+		} else if (expected instanceof List) {
+			assertThat(actual).describedAs(where).isInstanceOf(List.class);
+			List<?> e = (List<?>) expected;
+			List<?> a = (List<?>) actual;
+			assertThat(a).describedAs(where).hasSameSizeAs(e);
+			for (int i = 0; i < e.size(); i++) {
+				assertDeepEquals(where + "[" + i + "]", e.get(i), a.get(i));
+			}
+		} else if (expected instanceof byte[]) {
+			assertThat(actual).describedAs(where).isInstanceOf(byte[].class);
+			assertThat((byte[]) actual).describedAs(where).isEqualTo((byte[]) expected);
+		} else {
+			assertThat(actual).describedAs(where).isEqualTo(expected);
+		}
+	}
+
+	private static void assertSameAsBDecoder(String where, byte[] data) {
+		Object expected = decodeEager(data);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data);
+		direct.flip();
+
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(data), direct }) {
+			assertSameOutcome(where, expected, decodeLazy(buffer));
+		}
+	}
+
+	private static void assertSameOutcome(String where, Object expected, Object actual) {
+		if (expected instanceof IOException) {
+			assertThat(actual)
+					.describedAs(where + ": BDecoder failed with " + expected)
+					.isInstanceOf(IOException.class);
+		} else {
+			if (actual instanceof IOException) {
+				fail(where + ": BDecoder returned " + expected + " but decodeLazy failed", (IOException) actual);
+			}
+			assertDeepEquals(where, expected, actual);
+		}
+	}
+
+	private static Object decodeLazy(File file) {
+		try {
+			return copy(BDecoder.decodeLazy(file));
+		} catch (IOException e) {
+			return e;
+		}
+	}
+
+	private static Object randomValue(Random random, int depth) {
+		int type = random.nextInt(depth > 4 ? 2 : 4);
+		switch (type) {
+			case 0:
+				return random.nextLong() >> random.nextInt(64);
+			case 1: {
+				byte[] b = new byte[random.nextInt(random.nextInt(10) == 0 ? 3000 : 20)];
+				random.nextBytes(b);
+				return b;
+			}
+			case 2: {
+				List<Object> list = new ArrayList<>();
+				for (int i = random.nextInt(6); i > 0; i--) {
+					list.add(randomValue(random, depth + 1));
+				}
+				return list;
+			}
+			default:
+				return randomMap(random, depth + 1);
+		}
+	}
+
+	private static Map<String, Object> randomMap(Random random, int depth) {
+		Map<String, Object> map = new HashMap<>();
+		for (int i = random.nextInt(depth == 0 ? 40 : 12); i > 0; i--) {
+			map.put("k" + random.nextInt(1000), randomValue(random, depth));
+		}
+		return map;
+	}
+
+	@Test
+	public void wellFormedInputMatchesBDecoder() throws IOException {
+		Random random = new Random(1);
+		for (int i = 0; i < 200; i++) {
+			byte[] data = BEncoder.encode(randomMap(random, 0));
+			assertSameAsBDecoder("random map " + i, data);
+		}
+	}
+
+	@Test
+	public void specialKeysMatchBDecoder() throws IOException {
+		Map<String, Object> file_tree = new HashMap<>();
+		Map<String, Object> leaf = new HashMap<>();
+		leaf.put("length", 12L);
+		file_tree.put(new String("für été.txt".getBytes(Constants.UTF_8), Constants.BYTE_ENCODING_CHARSET), leaf);
+
+		Map<String, Object> info = new HashMap<>();
+		info.put("file tree", file_tree);
+		info.put("name", bytes("x"));
+
+		byte[] root_hash = new byte[32];
+		Arrays.fill(root_hash, (byte) 0xfe);
+		Map<String, Object> piece_layers = new HashMap<>();
+		piece_layers.put(new String(root_hash, Constants.BYTE_ENCODING_CHARSET), new byte[64]);
+
+		Map<String, Object> root = new HashMap<>();
+		root.put("info", info);
+		root.put("piece layers", piece_layers);
+		assertSameAsBDecoder("file tree", BEncoder.encode(root));
+	}
+
+	@Test
+	public void truncatedTopLevelDictionaryIsRecovered() throws IOException {
+		Map<String, Object> map = BDecoder.decodeLazy(ByteBuffer.wrap(bytes("d3:abci1e")));
+		assertThat(map).containsOnlyKeys("abc");
+		assertThat(map.get("abc")).isEqualTo(1L);
+
+		map = BDecoder.decodeLazy(ByteBuffer.wrap(bytes("d1:ai1e1:b")));
+		assertThat(map).containsOnlyKeys("a");
+	}
+
+	@Test
+	public void malformedInputMatchesBDecoder() {
+		String[] cases = {
+			"", "d", "de", "d3:abci1e", "d1:ai1e1:b", "d1:ai12", "d1:ai1e1:bi", "d1:a3", "d1:a3:ab",
+			"d1:ae", "d1:ai1e1", "d12:ab", "d1:ad1:bi1e", "d1:ali1e", "d1:ali1ee", "d1:ad1:bi1ee",
+			"l1:ae", "i12e", "x", "d1:ax", "d1:ai1ee", "d1:ai1e1:bd", "d1:ai1e1:bl", "d1:aie",
+			"d1:ai1.5e", "d1:a0:e", "d1:ai1e1:ai2ee"
+		};
+		for (String c : cases) {
+			assertSameAsBDecoder("'" + c + "'", bytes(c));
+		}
+	}
+
+	@Test
+	public void everyTruncationMatchesBDecoder() throws IOException {
+		Random random = new Random(7);
+		for (int i = 0; i < 20; i++) {
+			Map<String, Object> map = randomMap(random, 3);
+			map.put("last", randomValue(random, 3));
+			byte[] data = BEncoder.encode(map);
+			for (int len = 0; len <= data.length; len++) {
+				assertSameAsBDecoder("map " + i + " cut at " + len, Arrays.copyOf(data, len));
+			}
+		}
+	}
+
+	@Test
+	public void largeFilesAreDecodedFromTheFile() throws IOException {
+		Map<String, Object> map = new HashMap<>();
+		byte[] big = new byte[200 * 1024];
+		new Random(3).nextBytes(big);
+		map.put("big", big);
+		Map<String, Object> resume = new HashMap<>();
+		resume.put("data", bytes("some resume data"));
+		resume.put("valid", 1L);
+		map.put("resume", resume);
+
+		byte[] data = BEncoder.encode(map);
+
+		File file = File.createTempFile("bdecodercursor", ".dat");
+		try {
+			Files.write(file.toPath(), data);
+
+			assertDeepEquals("file", BDecoder.decode(data), decodeLazy(file));
+
+			// truncated on disk too, in the resume map and in the big value before it
+
+			for (int cut : new int[] { 1, 2, 20, 100 * 1024 }) {
+				byte[] truncated = Arrays.copyOf(data, data.length - cut);
+				Files.write(file.toPath(), truncated);
+				assertSameOutcome("file cut by " + cut, decodeEager(truncated), decodeLazy(file));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void lazyMapIsReadOnly() throws IOException {
+		Map<String, Object> map = BDecoder.decodeLazy(ByteBuffer.wrap(bytes("d1:ai1ee")));
+		assertThatThrownBy(() -> map.put("b", 2L)).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	public void cursorReportsEventsAndSkips() throws IOException {
+		BDecoderCursor cursor = new BDecoderCursor(ByteBuffer.wrap(bytes("d1:ali1ei2ee1:b3:xyz1:cd1:di4eee")));
+
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_DICT_START);
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_KEY);
+		assertThat(cursor.getKey()).isEqualTo("a");
+		assertThat(cursor.skipValue()).isTrue();
+
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_KEY);
+		assertThat(cursor.getKey()).isEqualTo("b");
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_BYTES);
+		assertThat(cursor.getBytes()).isEqualTo(bytes("xyz"));
+		assertThat(cursor.getByteBuffer().remaining()).isEqualTo(3);
+
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_KEY);
+		assertThat(cursor.getKey()).isEqualTo("c");
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_DICT_START);
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_KEY);
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_INTEGER);
+		assertThat(cursor.getLong()).isEqualTo(4L);
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_END);
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_END);
+		assertThat(cursor.next()).isEqualTo(BDecoderCursor.EV_EOF);
+	}
+}
@@ -0,0 +1,106 @@
+package com.biglybt.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentHasherBackendTest
+{
+
+	private static final int[] TYPES = {
+		ConcurrentHasherBackend.BT_BUILTIN,
+		ConcurrentHasherBackend.BT_JDK
+	};
+
+	private static byte[] hash(ConcurrentHasherBackend backend, String text) {
+		return backend.calculateHash(ByteBuffer.wrap(text.getBytes(Constants.UTF_8)));
+	}
+
+	@Test
+	public void createReturnsRequestedBackend() {
+		for (int type : TYPES) {
+			assertThat(ConcurrentHasherBackend.create(type).getType()).isEqualTo(type);
+		}
+		assertThat(ConcurrentHasherBackend.create(ConcurrentHasherBackend.BT_JDK).getName())
+				.isEqualTo("jdk");
+	}
+
+	@Test
+	public void knownAnswers() {
+		for (int type : TYPES) {
+			ConcurrentHasherBackend backend = ConcurrentHasherBackend.create(type);
+
+			// FIPS 180-1 test vectors
+
+			assertThat(ByteFormatter.encodeString(hash(backend, "")))
+					.isEqualToIgnoringCase("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+			assertThat(ByteFormatter.encodeString(hash(backend, "abc")))
+					.isEqualToIgnoringCase("a9993e364706816aba3e25717850c26c9cd0d89d");
+			assertThat(ByteFormatter.encodeString(
+					hash(backend, "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq")))
+					.isEqualToIgnoringCase("84983e441c3bd26ebaae4aa1f95129e5e54670f1");
+
+			byte[] million = new byte[1000000];
+			Arrays.fill(million, (byte) 'a');
+			assertThat(ByteFormatter.encodeString(backend.calculateHash(ByteBuffer.wrap(million))))
+					.isEqualToIgnoringCase("34aa973cd4c4daa4f61eeb2bdbad27316534016f");
+		}
+	}
+
+	@Test
+	public void backendsAgreeOnHeapAndDirectBuffers() {
+		ConcurrentHasherBackend builtin = ConcurrentHasherBackend.create(ConcurrentHasherBackend.BT_BUILTIN);
+		ConcurrentHasherBackend jdk = ConcurrentHasherBackend.create(ConcurrentHasherBackend.BT_JDK);
+
+		Random random = new Random(0);
+
+		for (int len : new int[] { 1, 55, 56, 63, 64, 65, 1000, 16384, 262144 + 7 }) {
+			byte[] data = new byte[len];
+			random.nextBytes(data);
+
+			ByteBuffer heap = ByteBuffer.wrap(data);
+			ByteBuffer direct = ByteBuffer.allocateDirect(len);
+			direct.put(data);
+			direct.flip();
+
+			byte[] expected = builtin.calculateHash(heap);
+
+			assertThat(jdk.calculateHash(heap)).describedAs("heap, len=" + len).isEqualTo(expected);
+			assertThat(jdk.calculateHash(direct)).describedAs("direct, len=" + len).isEqualTo(expected);
+			assertThat(builtin.calculateHash(direct)).describedAs("direct, len=" + len).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void hashesFromPositionToLimitAndLeavesPosition() {
+		byte[] data = "xxabcyy".getBytes(Constants.UTF_8);
+
+		for (int type : TYPES) {
+			ConcurrentHasherBackend backend = ConcurrentHasherBackend.create(type);
+
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			buffer.position(2);
+			buffer.limit(5);
+
+			assertThat(ByteFormatter.encodeString(backend.calculateHash(buffer)))
+					.isEqualToIgnoringCase("a9993e364706816aba3e25717850c26c9cd0d89d");
+			assertThat(buffer.position()).isEqualTo(2);
+			assertThat(buffer.limit()).isEqualTo(5);
+		}
+	}
+
+	@Test
+	public void instancesAreReusable() {
+		for (int type : TYPES) {
+			ConcurrentHasherBackend backend = ConcurrentHasherBackend.create(type);
+
+			byte[] first = hash(backend, "abc");
+			hash(backend, "something else entirely");
+			assertThat(hash(backend, "abc")).isEqualTo(first);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.biglybt.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.biglybt.core.disk.DiskManager;
+
+public class DirectByteBufferPoolSlabTest
+{
+
+	private static final int THREADS = 8;
+
+	@BeforeAll
+	public static void initPool() {
+		// the pool base class creates its default implementation when initialised, it has to be
+		// initialised before the slab class as it is in normal use
+		DirectByteBufferPool.getBuffer(DirectByteBuffer.AL_NET_CRYPT, 8).returnToPool();
+	}
+
+	private static int expectedCapacity(int length) {
+		if (length > DiskManager.BLOCK_SIZE && length <= DiskManager.BLOCK_SIZE + 128) {
+			return DiskManager.BLOCK_SIZE + 128;
+		}
+		int size = 8;
+		while (size < length) {
+			size <<= 1;
+		}
+		return size;
+	}
+
+	// the whole capacity, past the limit, so that overlapping slices show up
+
+	private static void fill(ByteBuffer bb, long tag) {
+		ByteBuffer all = bb.duplicate();
+		all.clear();
+		for (int i = 0; i + 8 <= all.capacity(); i += 8) {
+			all.putLong(i, tag);
+		}
+	}
+
+	private static boolean check(ByteBuffer bb, long tag) {
+		ByteBuffer all = bb.duplicate();
+		all.clear();
+		for (int i = 0; i + 8 <= all.capacity(); i += 8) {
+			if (all.getLong(i) != tag) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void checkBuffer(DirectByteBuffer dbb, int length) {
+		ByteBuffer bb = dbb.getBufferInternal();
+		assertThat(bb.isDirect()).isTrue();
+		assertThat(bb.capacity()).describedAs("capacity for " + length).isEqualTo(expectedCapacity(length));
+		assertThat(bb.limit()).isEqualTo(length);
+		assertThat(bb.position()).isZero();
+	}
+
+	private static void runThreads(Runnable task) throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			Thread t = new Thread(task, "pool stress " + i);
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+	}
+
+	@Test
+	public void buffersComeFromTheSmallestFittingClass() {
+		DirectByteBufferPoolSlab pool = new DirectByteBufferPoolSlab();
+
+		int[] lengths = {
+			1, 7, 8, 9, 100, 2047, 2048, 2049, 16384, 16385, 16512, 16513, 65536, 1 << 20
+		};
+
+		for (int length : lengths) {
+			DirectByteBuffer dbb = pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, length);
+			checkBuffer(dbb, length);
+			dbb.getBufferInternal().position(length / 2);
+			pool.returnBufferSupport(dbb);
+
+			// and again from the free list or thread cache, reset
+
+			dbb = pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, length);
+			checkBuffer(dbb, length);
+			pool.returnBufferSupport(dbb);
+		}
+
+		assertThat(pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, 0)).isNull();
+		assertThat(pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, DirectByteBufferPoolSlab.MAX_SIZE + 1)).isNull();
+	}
+
+	@Test
+	public void slabSlicesDontOverlap() {
+		DirectByteBufferPoolSlab pool = new DirectByteBufferPoolSlab();
+
+		for (int size : new int[] { 8, 100, 1000, 2048 }) {
+			// enough to need a few slabs
+
+			int count = 3 * 64 * 1024 / expectedCapacity(size);
+
+			List<DirectByteBuffer> buffers = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				DirectByteBuffer dbb = pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, size);
+				checkBuffer(dbb, size);
+				fill(dbb.getBufferInternal(), i);
+				buffers.add(dbb);
+			}
+
+			for (int i = 0; i < count; i++) {
+				assertThat(check(buffers.get(i).getBufferInternal(), i))
+						.describedAs("slice " + i + " of size " + size + " overwritten")
+						.isTrue();
+			}
+
+			for (DirectByteBuffer dbb : buffers) {
+				pool.returnBufferSupport(dbb);
+			}
+		}
+
+		assertThat(pool.getFreeBytes()).isLessThanOrEqualTo(pool.getMaxFreeBytes());
+	}
+
+	@Test
+	public void concurrentAllocateAndReturn() throws InterruptedException {
+		final DirectByteBufferPoolSlab pool = new DirectByteBufferPoolSlab();
+
+		final int[] lengths = {
+			1, 13, 64, 200, 1500, 2048, 2049, 4096, 16384, 16400, 16512, 65536
+		};
+
+		final AtomicReference<String> failure = new AtomicReference<>();
+
+		runThreads(new Runnable() {
+			@Override
+			public void run() {
+				Random random = new Random(Thread.currentThread().getName().hashCode());
+				long thread_tag = random.nextLong() << 20;
+
+				List<DirectByteBuffer> held = new ArrayList<>();
+				List<Long> tags = new ArrayList<>();
+
+				for (int i = 0; i < 20000 && failure.get() == null; i++) {
+					if (held.size() < 16 && (held.isEmpty() || random.nextBoolean())) {
+						int length = lengths[random.nextInt(lengths.length)];
+
+						DirectByteBuffer dbb = pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, length);
+						ByteBuffer bb = dbb.getBufferInternal();
+
+						if (bb.capacity() != expectedCapacity(length) || bb.limit() != length || bb.position() != 0) {
+							failure.compareAndSet(null, "bad buffer for " + length + ": " + bb);
+						}
+
+						long tag = thread_tag + i;
+						fill(bb, tag);
+						held.add(dbb);
+						tags.add(tag);
+					} else {
+						int index = random.nextInt(held.size());
+						DirectByteBuffer dbb = held.remove(index);
+						long tag = tags.remove(index);
+
+						if (!check(dbb.getBufferInternal(), tag)) {
+							failure.compareAndSet(null, "buffer of " + dbb.getBufferInternal().capacity()
+									+ " shared with another holder");
+						}
+
+						pool.returnBufferSupport(dbb);
+					}
+				}
+
+				for (DirectByteBuffer dbb : held) {
+					pool.returnBufferSupport(dbb);
+				}
+			}
+		});
+
+		assertThat(failure.get()).isNull();
+		assertThat(pool.getFreeBytes()).isNotNegative();
+	}
+
+	@Test
+	public void freeLimitHoldsUnderConcurrentReturns() throws InterruptedException {
+		final DirectByteBufferPoolSlab pool = new DirectByteBufferPoolSlab();
+
+		// large classes aren't slab allocated or thread cached so every return hits the limit check.
+		// between them the threads hold well over the limit
+
+		final int size = 256 * 1024;
+		final int per_thread = (int) (pool.getMaxFreeBytes() / size / 2) + 1;
+
+		final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+
+		for (int round = 0; round < 20; round++) {
+			runThreads(new Runnable() {
+				@Override
+				public void run() {
+					List<DirectByteBuffer> held = new ArrayList<>();
+					for (int i = 0; i < per_thread; i++) {
+						held.add(pool.getBufferSupport(DirectByteBuffer.AL_NET_CRYPT, size));
+					}
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					for (DirectByteBuffer dbb : held) {
+						pool.returnBufferSupport(dbb);
+					}
+				}
+			});
+
+			assertThat(pool.getFreeBytes())
+					.describedAs("round " + round)
+					.isLessThanOrEqualTo(pool.getMaxFreeBytes())
+					.isGreaterThan(pool.getMaxFreeBytes() - size);
+		}
+	}
+}
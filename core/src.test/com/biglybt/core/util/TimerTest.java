@@ -0,0 +1,282 @@
+package com.biglybt.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimerTest
+{
+
+	private static final long TICK_MILLIS = 10;
+
+	private Timer timer;
+
+	private static class Recorder
+		implements TimerEventPerformer
+	{
+		final List<TimerEvent> runs = Collections.synchronizedList(new ArrayList<TimerEvent>());
+		final List<Long> times = Collections.synchronizedList(new ArrayList<Long>());
+		final CountDownLatch latch;
+
+		Recorder(int expected) {
+			latch = new CountDownLatch(expected);
+		}
+
+		@Override
+		public void perform(TimerEvent event) {
+			times.add(SystemTime.getCurrentTime());
+			runs.add(event);
+			latch.countDown();
+		}
+	}
+
+	@BeforeEach
+	public void setUp() {
+		timer = new Timer("test");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		timer.destroy();
+	}
+
+	@Test
+	public void eventsRunInWhenOrderAcrossWheelLevels() throws InterruptedException {
+		Random random = new Random(0);
+
+		long now = SystemTime.getCurrentTime();
+
+		List<TimerEvent> events = new ArrayList<>();
+
+		// the bottom level covers 2.56 seconds, the later ones get cascaded down
+
+		long[] whens = new long[300];
+		for (int i = 0; i < whens.length; i++) {
+			whens[i] = now + 300 + random.nextInt(3500);
+		}
+
+		// several due on the same tick and at the same time
+
+		whens[10] = whens[11] = whens[12];
+		whens[20] = whens[21] - 1;
+
+		Recorder recorder = new Recorder(whens.length + 2);
+
+		for (long when : whens) {
+			events.add(timer.addEvent(when, recorder));
+		}
+
+		// and already due
+
+		events.add(timer.addEvent(now - 1000, recorder));
+		events.add(timer.addEvent(now, recorder));
+
+		assertThat(recorder.latch.await(10, TimeUnit.SECONDS)).isTrue();
+
+		List<TimerEvent> expected = new ArrayList<>(events);
+		Collections.sort(expected);
+
+		assertThat(recorder.runs).containsExactlyElementsOf(expected);
+
+		for (int i = 0; i < recorder.runs.size(); i++) {
+			TimerEvent event = recorder.runs.get(i);
+
+			assertThat(event.hasRun()).isTrue();
+
+			// events fire on the tick containing their time
+
+			assertThat(recorder.times.get(i))
+					.describedAs(event.getString())
+					.isGreaterThanOrEqualTo(event.getWhen() / TICK_MILLIS * TICK_MILLIS);
+		}
+
+		assertThat(timer.getEventCount()).isZero();
+	}
+
+	@Test
+	public void cancelledEventsDontRun() throws InterruptedException {
+		long now = SystemTime.getCurrentTime();
+
+		final Recorder recorder = new Recorder(0);
+
+		List<TimerEvent> kept = new ArrayList<>();
+		final List<TimerEvent> cancelled = new ArrayList<>();
+
+		for (int i = 0; i < 200; i++) {
+			TimerEvent event = timer.addEvent(now + 400 + i * 5, recorder);
+
+			if (i % 2 == 0) {
+				kept.add(event);
+			} else {
+				cancelled.add(event);
+			}
+		}
+
+		// some cancelled straight away, before the timer has picked up the add, the others from an
+		// event that runs before them
+
+		for (int i = 0; i < cancelled.size() / 2; i++) {
+			cancelled.get(i).cancel();
+		}
+
+		final CountDownLatch cancelled_latch = new CountDownLatch(1);
+
+		timer.addEvent(now + 200, new TimerEventPerformer() {
+			@Override
+			public void perform(TimerEvent event) {
+				for (TimerEvent e : cancelled) {
+					e.cancel();
+				}
+				cancelled_latch.countDown();
+			}
+		});
+
+		// and one cancelled after it's come due
+
+		TimerEvent run = timer.addEvent(now + 100, recorder);
+
+		assertThat(cancelled_latch.await(5, TimeUnit.SECONDS)).isTrue();
+
+		run.cancel();
+
+		TimerEvent last = kept.get(kept.size() - 1);
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!last.hasRun() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+
+		// the last one's performer may not have finished yet
+
+		Thread.sleep(200);
+
+		List<TimerEvent> expected = new ArrayList<>();
+		expected.add(run);
+		expected.addAll(kept);
+
+		assertThat(recorder.runs).containsExactlyElementsOf(expected);
+
+		for (TimerEvent event : cancelled) {
+			assertThat(event.isCancelled()).isTrue();
+			assertThat(event.hasRun()).isFalse();
+		}
+
+		assertThat(timer.getEventCount()).isZero();
+	}
+
+	@Test
+	public void cancellingEveryEventEmptiesTheWheel() throws InterruptedException {
+		long now = SystemTime.getCurrentTime();
+
+		Recorder recorder = new Recorder(0);
+
+		List<TimerEvent> events = new ArrayList<>();
+
+		// spread over every level including the overflow list
+
+		for (long offset : new long[] { 1000, 5000, 60000, 600000, 6000000, 24 * 60 * 60 * 1000L }) {
+			for (int i = 0; i < 10; i++) {
+				events.add(timer.addEvent(now + offset + i, recorder));
+			}
+		}
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (timer.getEvents().size() < events.size() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertThat(timer.getEvents()).containsExactlyInAnyOrderElementsOf(events);
+
+		for (TimerEvent event : events) {
+			event.cancel();
+		}
+
+		deadline = System.currentTimeMillis() + 5000;
+		while (timer.getEventCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertThat(timer.getEventCount()).isZero();
+		assertThat(recorder.runs).isEmpty();
+	}
+
+	@Test
+	public void periodicEventsRepeatUntilCancelled() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(5);
+
+		TimerEventPeriodic periodic = timer.addPeriodicEvent("periodic", 20, new TimerEventPerformer() {
+			@Override
+			public void perform(TimerEvent event) {
+				runs.incrementAndGet();
+				latch.countDown();
+			}
+		});
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+
+		periodic.cancel();
+
+		Thread.sleep(100);
+
+		int count = runs.get();
+
+		Thread.sleep(200);
+
+		assertThat(runs.get()).isEqualTo(count);
+		assertThat(timer.getEventCount()).isZero();
+	}
+
+	@Test
+	public void eventStatsAreNeverPublishedEmpty() throws InterruptedException {
+		final TimerEventPerformer performer = new TimerEventPerformer() {
+			@Override
+			public void perform(TimerEvent event) {
+			}
+		};
+
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final int names = 20000;
+
+		Thread dumper = new Thread("stats dumper") {
+			@Override
+			public void run() {
+				try {
+					while (!isInterrupted() && timer.getEventStats().size() < names) {
+						// loop
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+
+		dumper.start();
+
+		for (int i = 0; i < names; i++) {
+			TimerEvent event = new TimerEvent(timer, i, 0, 0, false, performer);
+			event.setName("event " + i);
+			timer.eventRun(event, 5, 2);
+		}
+
+		dumper.join(10000);
+		dumper.interrupt();
+
+		assertThat(failure.get()).isNull();
+
+		List<String> stats = timer.getEventStats();
+		assertThat(stats).hasSize(names);
+		assertThat(stats.get(0)).contains("runs=1,run=2/2/2,late=5/5");
+	}
+}
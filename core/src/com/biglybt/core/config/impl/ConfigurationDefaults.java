@@ -452,6 +452,7 @@ public class ConfigurationDefaults {
     def.put( "General_sDefaultTorrent_Directory", SystemProperties.getUserPath()+"torrents");
     def.put( "Delete Original Torrent Files", FALSE );
     def.put( "Delete Saved Torrent Files", FALSE );
+    def.put( "download.state.store.enable", TRUE );	// log attribute-only state changes instead of rewriting active/*.dat
 
     def.put( "Bind IP", "" );
     def.put( "Check Bind IP On Start", TRUE );
@@ -538,6 +539,7 @@ public class ConfigurationDefaults {
     def.put( "Tracker TCP NonBlocking Restrict Request Types", TRUE);
     def.put( "Tracker TCP NonBlocking Conc Max", new Long(2048));
     def.put( "Tracker TCP NonBlocking Immediate Close", FALSE );
+    def.put( "Tracker TCP NonBlocking Select Loops", new Long(1));	// 0 -> one per cpu
 
     def.put( "Tracker Client Scrape Enable", TRUE);
     def.put( "Tracker Client Scrape Total Disable", FALSE );
@@ -601,6 +603,8 @@ public class ConfigurationDefaults {
     def.put( "diskmanager.hashchecking.strategy", ONE );
     def.put( "diskmanager.hashchecking.smallestfirst", TRUE );
     def.put( "diskmanager.hashchecking.maxactive", ONE );
+    def.put( "diskmanager.hashchecking.v1.backend", ZERO );	// 0 = auto, 1 = builtin, 2 = jdk
+    def.put( "diskmanager.hashchecking.batch", TRUE );
     def.put( "Default Start Torrents Stopped", FALSE);
     def.put( "Default Start Torrents Stopped Auto Pause", FALSE );
     def.put( "Server Enable UDP", TRUE); // this actually means the UDP tracker client
@@ -612,6 +616,7 @@ public class ConfigurationDefaults {
     def.put( "diskmanager.perf.cache.enable.write", TRUE);
     def.put( "diskmanager.perf.cache.size", new Long(4));		// 4 MB
     def.put( "diskmanager.perf.cache.notsmallerthan", new Long(1024));	// 1024 K
+    def.put( "diskmanager.perf.cache.shards", ZERO );	// 0 = auto
     def.put( "diskmanager.perf.read.maxthreads", new Long(32));
     def.put( "diskmanager.perf.read.maxmb", new Long(5));
     def.put( "diskmanager.perf.write.maxthreads", new Long(32));
@@ -627,6 +632,13 @@ public class ConfigurationDefaults {
     def.put( "diskmanager.perf.checking.read.priority", FALSE );
     def.put( "diskmanager.perf.checking.fully.async", FALSE );
     def.put( "diskmanager.perf.queue.torrent.bias", TRUE );
+    def.put( "diskmanager.perf.access.backend", ZERO );	// 0 = threads, 1 = shared pool, 2 = per device
+    def.put( "diskmanager.perf.read.async.depth", new Long(64));
+    def.put( "diskmanager.perf.write.async.depth", new Long(16));
+    def.put( "diskmanager.perf.read.mmap.enable", FALSE );
+    def.put( "diskmanager.perf.read.mmap.maxmb", new Long(256));
+    def.put( "diskmanager.perf.read.mmap.minmb", new Long(64));	// only map files at least this big
+    def.put( "diskmanager.perf.read.mmap.upload", FALSE );	// send mapped data directly to unencrypted tcp peers, mappings outlive file close until sent
 
     	// Peer control
 
@@ -635,6 +647,8 @@ public class ConfigurationDefaults {
     def.put( "peercontrol.udp.probe.enable", FALSE );
     def.put( "peercontrol.hide.piece", FALSE );
     def.put( "peercontrol.scheduler.use.priorities", TRUE );
+    def.put( "peercontrol.scheduler.use.wheel", FALSE );
+    def.put( "peercontrol.scheduler.wheel.workers", new Long(0));	// 0 -> min( 4, cpus )
     def.put( "peercontrol.prefer.udp", FALSE );
 
     def.put( "File.truncate.if.too.large", FALSE);
@@ -657,11 +671,13 @@ public class ConfigurationDefaults {
     def.put( "network.udp.poll.time", new Long( 100 ));
     def.put( "network.tcp.socket.SO_SNDBUF", ZERO );
     def.put( "network.tcp.socket.SO_RCVBUF", ZERO );
+    def.put( "network.udp.socket.SO_RCVBUF", ZERO );
     def.put( "network.tcp.socket.IPDiffServ", "" );
     def.put( "network.tcp.read.select.time", new Long(25));
     def.put( "network.tcp.read.select.min.time", ZERO );
     def.put( "network.tcp.write.select.time", new Long(25));
     def.put( "network.tcp.write.select.min.time", ZERO );
+    def.put( "network.tcp.select.loop.count", new Long(1));	// read/write selector thread pairs, channels have fixed affinity
     def.put( "network.tcp.connect.select.time", new Long( 100 ));
     def.put( "network.tcp.connect.select.min.time", ZERO );
 
@@ -669,6 +685,7 @@ public class ConfigurationDefaults {
 
     def.put( "network.control.write.idle.time", new Long(50));
     def.put( "network.control.write.aggressive", FALSE );
+    def.put( "network.control.write.batch.bytes", new Long(16*1024));	// per connection per turn for pooled uploads, <= mss for one packet per turn
     def.put( "network.control.read.idle.time", new Long(50));
     def.put( "network.control.read.aggressive", FALSE );
     def.put( "network.control.read.processor.count", new Long(1));
@@ -693,6 +710,8 @@ public class ConfigurationDefaults {
     def.put( "network.transport.encrypted.fallback.incoming", FALSE );
     def.put( "network.transport.encrypted.use.crypto.port", FALSE );
     def.put( "network.transport.encrypted.allow.incoming", TRUE );	// should always be TRUE, here for testing only
+    def.put( "network.transport.decode.batch.enable", FALSE );	// read-ahead and parse multiple messages per read, needs restart
+    def.put( "network.transport.decode.batch.size", new Long(16*1024));
 
     def.put( "network.bind.local.port", ZERO );
 
@@ -50,4 +50,22 @@ DHTControlStats
 
 	public long
 	getEstimatedDHTSize();
+
+		/**
+		 * Elapsed time of recent external lookups (gets and lookups made on behalf of plugins etc)
+		 * @param percentile 0-100
+		 * @return millis, -1 if there haven't been any
+		 */
+
+	public long
+	getLookupLatency(
+		int		percentile );
+
+		/**
+		 * Number of gets that joined an identical get already in progress
+		 * @return
+		 */
+
+	public long
+	getLookupsCoalesced();
 }
@@ -69,6 +69,16 @@ DHTControlImpl
 
 	private static final int INTEGRATION_TIME_MAX			= 15*1000;
 
+		// a lookup query that hasn't been answered within a few times the contact's Vivaldi
+		// estimated RTT is treated as stalled and another query is allowed to start alongside it,
+		// up to doubling the lookup's concurrency
+
+	private static final int LOOKUP_STALL_RTT_MULTIPLIER	= 3;
+	private static final int LOOKUP_STALL_RTT_SLACK			= 200;
+	private static final int LOOKUP_STALL_MIN				= 500;
+	private static final int LOOKUP_STALL_MAX				= 4000;
+	private static final int LOOKUP_STALL_DEFAULT			= 2000;
+
 
 	final DHTControlAdapter		adapter;
 	private final DHTTransport			transport;
@@ -103,6 +113,8 @@ DHTControlImpl
 
 	private final Map<HashWrapper, Object>			imported_state	= new HashMap<>();
 
+	private final Map<HashWrapper,coalescedGet>		active_gets		= new HashMap<>();
+
 	volatile boolean	seeded;
 
 	long		last_lookup;
@@ -1853,6 +1865,32 @@ DHTControlImpl
 			DHTLog.log( "get for " + DHTLog.getString( encoded_key ));
 		}
 
+			// identical gets already in progress (e.g. several announces for the same torrent) are
+			// joined rather than repeated
+
+		final HashWrapper	coalesce_key = getCoalesceKey( encoded_key, flags, max_values, exhaustive );
+
+		coalescedGet	existing;
+
+		synchronized( active_gets ){
+
+			existing = active_gets.get( coalesce_key );
+		}
+
+		if ( existing != null && existing.join( get_listener, timeout, high_priority )){
+
+			stats.lookupCoalesced();
+
+			return;
+		}
+
+		final coalescedGet	coalesced = new coalescedGet( get_listener, timeout, high_priority );
+
+		synchronized( active_gets ){
+
+			active_gets.put( coalesce_key, coalesced );
+		}
+
 		final DhtTaskSet[] task_set = { null };
 
 		DHTOperationListenerDemuxer demuxer =
@@ -1866,7 +1904,7 @@ DHTControlImpl
 						int					level,
 						int					active_searches )
 					{
-						get_listener.searching(contact, level, active_searches);
+						coalesced.searching(contact, level, active_searches);
 					}
 
 					@Override
@@ -1874,7 +1912,7 @@ DHTControlImpl
 					diversified(
 						String				desc )
 					{
-						return( get_listener.diversified(desc));
+						return( coalesced.diversified(desc));
 					}
 
 					@Override
@@ -1883,7 +1921,7 @@ DHTControlImpl
 						DHTTransportContact	contact,
 						boolean				is_closest )
 					{
-						get_listener.found(contact,is_closest);
+						coalesced.found(contact,is_closest);
 					}
 
 					@Override
@@ -1892,7 +1930,7 @@ DHTControlImpl
 						DHTTransportContact	contact,
 						DHTTransportValue	value )
 					{
-						get_listener.read(contact, value);
+						coalesced.read(contact, value);
 					}
 
 					@Override
@@ -1901,7 +1939,7 @@ DHTControlImpl
 						DHTTransportContact	contact,
 						DHTTransportValue	value )
 					{
-						get_listener.wrote(contact, value);
+						coalesced.wrote(contact, value);
 					}
 
 					@Override
@@ -1910,7 +1948,15 @@ DHTControlImpl
 						boolean				timeout )
 					{
 						try{
-							get_listener.complete(timeout);
+							synchronized( active_gets ){
+
+								if ( active_gets.get( coalesce_key ) == coalesced ){
+
+									active_gets.remove( coalesce_key );
+								}
+							}
+
+							coalesced.complete(timeout);
 
 						}catch( Throwable e ){
 
@@ -1930,6 +1976,30 @@ DHTControlImpl
 		task_set[0] = getSupport( encoded_key, description, flags, max_values, timeout, exhaustive, high_priority, demuxer );
 	}
 
+	private static HashWrapper
+	getCoalesceKey(
+		byte[]		encoded_key,
+		short		flags,
+		int			max_values,
+		boolean		exhaustive )
+	{
+		byte[]	bytes = new byte[encoded_key.length+7];
+
+		System.arraycopy( encoded_key, 0, bytes, 0, encoded_key.length );
+
+		int	pos = encoded_key.length;
+
+		bytes[pos++] = (byte)( flags >> 8 );
+		bytes[pos++] = (byte)flags;
+		bytes[pos++] = (byte)( max_values >> 24 );
+		bytes[pos++] = (byte)( max_values >> 16 );
+		bytes[pos++] = (byte)( max_values >> 8 );
+		bytes[pos++] = (byte)max_values;
+		bytes[pos++] = (byte)( exhaustive?1:0 );
+
+		return( new HashWrapper( bytes ));
+	}
+
 	@Override
 	public boolean
 	isDiversified(
@@ -2399,6 +2469,7 @@ DHTControlImpl
 
 				private int runningState = 1; // -1 terminated, 0 waiting, 1 running
 				private int freeTasksCount = concurrency;
+				private int stallBoost;
 
 
 				private boolean	cancelled;
@@ -2484,6 +2555,11 @@ DHTControlImpl
 						runningState = -1;
 					}
 
+					if ( thread_pool == external_lookup_pool ){
+
+						stats.lookupComplete( SystemTime.getMonotonousTime() - start );
+					}
+
 					try{
 						if(!error){
 
@@ -2558,6 +2634,105 @@ DHTControlImpl
 					}
 				}
 
+				private void
+				scheduleStallCheck(
+					DHTTransportContact		contact,
+					final searchStall		stall )
+				{
+					float rtt = DHTNetworkPositionManager.estimateRTT( local_contact.getNetworkPositions(), contact.getNetworkPositions());
+
+					long	delay;
+
+					if ( Float.isNaN( rtt ) || rtt <= 0 ){
+
+						delay = LOOKUP_STALL_DEFAULT;
+
+					}else{
+
+						delay = Math.max( LOOKUP_STALL_MIN, Math.min( LOOKUP_STALL_MAX, (long)( rtt*LOOKUP_STALL_RTT_MULTIPLIER ) + LOOKUP_STALL_RTT_SLACK ));
+					}
+
+					TimerEvent	event =
+						SimpleTimer.addEvent(
+							"DHT lookup stall",
+							SystemTime.getOffsetTime( delay ),
+							new TimerEventPerformer()
+							{
+								@Override
+								public void
+								perform(
+									TimerEvent	event )
+								{
+									stallDetected( stall );
+								}
+							});
+
+					synchronized( this ){
+
+						if ( !stall.done ){
+
+							stall.event = event;
+
+							return;
+						}
+					}
+
+					event.cancel();
+				}
+
+				void
+				stallDetected(
+					searchStall		stall )
+				{
+					synchronized( this ){
+
+						if ( stall.done || runningState == -1 || stallBoost >= concurrency ){
+
+							return;
+						}
+
+						stall.stalled = true;
+
+						stallBoost++;
+					}
+
+						// lend the stalled query's slot to a new one
+
+					release();
+				}
+
+				void
+				searchComplete(
+					searchStall		stall )
+				{
+					TimerEvent	event;
+
+					synchronized( this ){
+
+						stall.done = true;
+
+						event = stall.event;
+
+						if ( stall.stalled ){
+
+								// the slot was lent out when the query stalled, take it back
+
+							stall.stalled = false;
+
+							stallBoost--;
+
+							freeTasksCount--;
+						}
+					}
+
+					if ( event != null ){
+
+						event.cancel();
+					}
+
+					release();
+				}
+
 				@Override
 				protected synchronized void
 				cancel()
@@ -2699,6 +2874,7 @@ DHTControlImpl
 								active_searches++;
 								handler.searching(closest, search_level, active_searches);
 
+								final searchStall stall = new searchStall();
 
 								DHTTransportReplyHandlerAdapter replyHandler = new DHTTransportReplyHandlerAdapter() {
 									private boolean	value_reply_received	= false;
@@ -2766,7 +2942,7 @@ DHTControlImpl
 											{
 												contacts_to_query_mon.exit();
 											}
-											release();
+											searchComplete( stall );
 										}
 									}
 
@@ -2895,7 +3071,7 @@ DHTControlImpl
 												{
 													contacts_to_query_mon.exit();
 												}
-												release();
+												searchComplete( stall );
 											}
 										}
 									}
@@ -2930,7 +3106,7 @@ DHTControlImpl
 											{
 												contacts_to_query_mon.exit();
 											}
-											release();
+											searchComplete( stall );
 										}
 									}
 
@@ -2945,6 +3121,9 @@ DHTControlImpl
 
 
 								router.recordLookup(lookup_id);
+
+								scheduleStallCheck( closest, stall );
+
 								if (value_search)
 								{
 									int rem = max_values - values_found;
@@ -4981,6 +5160,176 @@ DHTControlImpl
 		}
 	}
 
+		/**
+		 * A get shared by callers asking for the same thing at the same time. Events go to all of
+		 * them; values already read are replayed to a caller that joins late. The first caller's
+		 * listener decides whether diversifications are followed
+		 */
+
+	private static final class
+	coalescedGet
+	{
+		private final List<DHTOperationListener>	listeners	= new ArrayList<>( 1 );
+		private final List<Object[]>				reads		= new ArrayList<>();
+
+		private final long		deadline;
+		private final boolean	high_priority;
+
+		private boolean			completed;
+
+		coalescedGet(
+			DHTOperationListener	listener,
+			long					timeout,
+			boolean					_high_priority )
+		{
+			listeners.add( listener );
+
+			deadline		= timeout<=0?Long.MAX_VALUE:( SystemTime.getMonotonousTime() + timeout );
+			high_priority	= _high_priority;
+		}
+
+		boolean
+		join(
+			DHTOperationListener	listener,
+			long					timeout,
+			boolean					_high_priority )
+		{
+			long	my_deadline = timeout<=0?Long.MAX_VALUE:( SystemTime.getMonotonousTime() + timeout );
+
+			List<Object[]>	replay;
+
+			synchronized( this ){
+
+					// don't make the caller wait longer than it asked for or at lower priority
+
+				if ( completed || deadline > my_deadline || ( _high_priority && !high_priority )){
+
+					return( false );
+				}
+
+				listeners.add( listener );
+
+				replay = new ArrayList<>( reads );
+			}
+
+			for ( Object[] entry: replay ){
+
+				listener.read((DHTTransportContact)entry[0], (DHTTransportValue)entry[1] );
+			}
+
+			return( true );
+		}
+
+		private synchronized DHTOperationListener[]
+		getListeners()
+		{
+			return( listeners.toArray( new DHTOperationListener[listeners.size()]));
+		}
+
+		void
+		searching(
+			DHTTransportContact	contact,
+			int					level,
+			int					active_searches )
+		{
+			for ( DHTOperationListener l: getListeners()){
+
+				l.searching( contact, level, active_searches );
+			}
+		}
+
+		boolean
+		diversified(
+			String				desc )
+		{
+			DHTOperationListener[]	ls = getListeners();
+
+			boolean	result = ls[0].diversified( desc );
+
+			for ( int i=1;i<ls.length;i++){
+
+				ls[i].diversified( desc );
+			}
+
+			return( result );
+		}
+
+		void
+		found(
+			DHTTransportContact	contact,
+			boolean				is_closest )
+		{
+			for ( DHTOperationListener l: getListeners()){
+
+				l.found( contact, is_closest );
+			}
+		}
+
+		void
+		read(
+			DHTTransportContact	contact,
+			DHTTransportValue	value )
+		{
+			DHTOperationListener[]	ls;
+
+			synchronized( this ){
+
+				reads.add( new Object[]{ contact, value });
+
+				ls = listeners.toArray( new DHTOperationListener[listeners.size()]);
+			}
+
+			for ( DHTOperationListener l: ls ){
+
+				l.read( contact, value );
+			}
+		}
+
+		void
+		wrote(
+			DHTTransportContact	contact,
+			DHTTransportValue	value )
+		{
+			for ( DHTOperationListener l: getListeners()){
+
+				l.wrote( contact, value );
+			}
+		}
+
+		void
+		complete(
+			boolean				timeout )
+		{
+			DHTOperationListener[]	ls;
+
+			synchronized( this ){
+
+				completed = true;
+
+				ls = listeners.toArray( new DHTOperationListener[listeners.size()]);
+			}
+
+			for ( DHTOperationListener l: ls ){
+
+				try{
+					l.complete( timeout );
+
+				}catch( Throwable e ){
+
+					Debug.out( e );
+				}
+			}
+		}
+	}
+
+	private static final class
+	searchStall
+	{
+		boolean			done;
+		boolean			stalled;
+		TimerEvent		event;
+	}
+
 	abstract static class
 	lookupResultHandler
 		extends DHTOperationListenerDemuxer
@@ -19,6 +19,8 @@
 
 package com.biglybt.core.dht.control.impl;
 
+import java.util.Arrays;
+
 import com.biglybt.core.dht.control.DHTControlStats;
 import com.biglybt.core.dht.db.DHTDBStats;
 import com.biglybt.core.dht.router.DHTRouterStats;
@@ -47,6 +49,14 @@ DHTControlStatsImpl
 	private final Average	bytes_in_average 		= Average.getInstance(UPDATE_INTERVAL, UPDATE_PERIOD );
 	private final Average	bytes_out_average 		= Average.getInstance(UPDATE_INTERVAL, UPDATE_PERIOD );
 
+	private static final int	LOOKUP_LATENCY_HISTORY	= 1024;
+
+	private final long[]	lookup_latencies	= new long[LOOKUP_LATENCY_HISTORY];
+	private int				lookup_latency_next;
+	private int				lookup_latency_count;
+
+	private volatile long	lookups_coalesced;
+
 	private DHTTransportStats	transport_snapshot;
 	private long[]				router_snapshot;
 	private int[]				value_details_snapshot;
@@ -323,6 +333,60 @@ DHTControlStatsImpl
 		return( control.getEstimatedDHTSize());
 	}
 
+	protected void
+	lookupComplete(
+		long		elapsed )
+	{
+		synchronized( lookup_latencies ){
+
+			lookup_latencies[lookup_latency_next] = elapsed;
+
+			lookup_latency_next = ( lookup_latency_next + 1 ) % LOOKUP_LATENCY_HISTORY;
+
+			if ( lookup_latency_count < LOOKUP_LATENCY_HISTORY ){
+
+				lookup_latency_count++;
+			}
+		}
+	}
+
+	@Override
+	public long
+	getLookupLatency(
+		int		percentile )
+	{
+		long[]	sorted;
+
+		synchronized( lookup_latencies ){
+
+			if ( lookup_latency_count == 0 ){
+
+				return( -1 );
+			}
+
+			sorted = Arrays.copyOf( lookup_latencies, lookup_latency_count );
+		}
+
+		Arrays.sort( sorted );
+
+		int	index = (int)Math.ceil( sorted.length * Math.max( 0, Math.min( 100, percentile )) / 100.0 ) - 1;
+
+		return( sorted[Math.max( 0, index )] );
+	}
+
+	protected void
+	lookupCoalesced()
+	{
+		lookups_coalesced++;
+	}
+
+	@Override
+	public long
+	getLookupsCoalesced()
+	{
+		return( lookups_coalesced );
+	}
+
 	@Override
 	public String
 	getString()
@@ -44,6 +44,26 @@ DHTDBStats
 	public int
 	getValueCount();
 
+		/**
+		 * Memory held for stored value data: the off-heap value store's reserved slabs plus any
+		 * value bytes left on the heap. Measured, excludes per key and per value object overheads
+		 * @return bytes
+		 */
+
+	public long
+	getEstimatedMemory();
+
+		/**
+		 * Off-heap bytes currently reserved by the value store
+		 * @return bytes
+		 */
+
+	public long
+	getValueStoreMemory();
+
+	public int
+	getEstimatedMemoryPerValue();
+
 		/**
 		 * returned values indexed by above VD_ constants for meaning
 		 * @return
@@ -0,0 +1,140 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.dht.db.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mappings holding cached values, bucketed by when those values expire so that the periodic
+ * expiry check only visits the mappings that have something due rather than every value in
+ * the database. Entries aren't removed when values are replaced or deleted, a mapping that
+ * comes due with nothing to expire is simply skipped, and the index is rebuilt on each full
+ * scan to drop references to mappings that have gone.
+ * <p>
+ * Not thread safe, used under the database monitor
+ */
+
+final class
+DHTDBExpiryIndex
+{
+	private final long	bucket_period;
+
+	private final TreeMap<Long,ArrayList<DHTDBMapping>>	buckets = new TreeMap<>();
+
+	private int		entries;
+
+	DHTDBExpiryIndex(
+		long		_bucket_period )
+	{
+		bucket_period	= _bucket_period;
+	}
+
+	void
+	add(
+		DHTDBMapping	mapping,
+		long			expiry_time )
+	{
+			// bucket b is due once time reaches b*period, which is strictly after any expiry it holds
+
+		Long	bucket = expiry_time/bucket_period + 1;
+
+		ArrayList<DHTDBMapping>	list = buckets.get( bucket );
+
+		if ( list == null ){
+
+			list = new ArrayList<>( 4 );
+
+			buckets.put( bucket, list );
+
+		}else if ( list.get( list.size()-1 ) == mapping ){
+
+				// the values of a single store usually land together
+
+			return;
+		}
+
+		list.add( mapping );
+
+		entries++;
+	}
+
+		/**
+		 * Removes and returns the mappings from all buckets that are due. A mapping may appear
+		 * more than once and may no longer be stored
+		 */
+
+	List<DHTDBMapping>
+	removeDue(
+		long		now )
+	{
+		long	current = now/bucket_period;
+
+		List<DHTDBMapping>	result = null;
+
+		while( !buckets.isEmpty()){
+
+			Map.Entry<Long,ArrayList<DHTDBMapping>>	first = buckets.firstEntry();
+
+			if ( first.getKey() > current ){
+
+				break;
+			}
+
+			buckets.pollFirstEntry();
+
+			ArrayList<DHTDBMapping>	list = first.getValue();
+
+			entries -= list.size();
+
+			if ( result == null ){
+
+				result = list;
+
+			}else{
+
+				result.addAll( list );
+			}
+		}
+
+		if ( result == null ){
+
+			return( Collections.emptyList());
+		}
+
+		return( result );
+	}
+
+	void
+	clear()
+	{
+		buckets.clear();
+
+		entries = 0;
+	}
+
+	int
+	size()
+	{
+		return( entries );
+	}
+}
@@ -71,6 +71,12 @@ DHTDBImpl
 	private static final long		MIN_CACHE_EXPIRY_CHECK_INTERVAL		= 60*1000;
 	private long		last_cache_expiry_check;
 
+	private final DHTDBExpiryIndex	expiry_index = new DHTDBExpiryIndex( MIN_CACHE_EXPIRY_CHECK_INTERVAL );
+
+		// mappings whose last value has gone since the last expiry check
+
+	private final List<DHTDBMapping>	emptied_mappings = new ArrayList<>();
+
 	private static final long	IP_BLOOM_FILTER_REBUILD_PERIOD		= 15*60*1000;
 	private static final int	IP_COUNT_BLOOM_SIZE_INCREASE_CHUNK	= 1000;
 
@@ -85,6 +91,7 @@ DHTDBImpl
 	protected static final int		QUERY_STORE_REPLY_ENTRY_SIZE	= 2;
 
 	final Map<HashWrapper,DHTDBMapping>				stored_values 				= new HashMap<>();
+	private final DHTDBValueStore							value_store					= new DHTDBValueStore();
 	private final Map<DHTDBMapping.ShortHash,DHTDBMapping>	stored_values_prefix_map	= new HashMap<>();
 
 	DHTControl				control;
@@ -802,6 +809,33 @@ DHTDBImpl
 		return total_size;
 	}
 
+	@Override
+	public long
+	getEstimatedMemory()
+	{
+			// slabs reserved by the value store plus value bytes that didn't go into it
+
+		long	heap_bytes = total_size - value_store.getStoredBytes();
+
+		return( value_store.getReservedBytes() + Math.max( 0, heap_bytes ));
+	}
+
+	@Override
+	public long
+	getValueStoreMemory()
+	{
+		return( value_store.getReservedBytes());
+	}
+
+	@Override
+	public int
+	getEstimatedMemoryPerValue()
+	{
+		int	values = total_values;
+
+		return( values==0?0:(int)( getEstimatedMemory()/values ));
+	}
+
 	@Override
 	public int[]
 	getValueDetails()
@@ -1485,72 +1519,70 @@ DHTDBImpl
 
 			last_cache_expiry_check	= now;
 
-			Iterator<DHTDBMapping>	it = stored_values.values().iterator();
+			if ( force ){
 
-			while( it.hasNext()){
+					// full scan, also picks up mappings emptied by other means and rebuilds the
+					// expiry index so it doesn't hang on to mappings that have since gone
 
-				DHTDBMapping	mapping = it.next();
-
-				if ( mapping.getValueCount() == 0 ){
+				expiry_index.clear();
 
-					it.remove();
+				emptied_mappings.clear();
 
-					removeFromPrefixMap( mapping );
+				Iterator<DHTDBMapping>	it = stored_values.values().iterator();
 
-					mapping.destroy();
+				while( it.hasNext()){
 
-				}else{
+					DHTDBMapping	mapping = it.next();
 
-					Iterator<DHTDBValueImpl>	it2 = mapping.getValues();
+					if ( mapping.getValueCount() == 0 ){
 
-					while( it2.hasNext()){
+						it.remove();
 
-						DHTDBValueImpl	value = it2.next();
+						removeFromPrefixMap( mapping );
 
-						if ( !value.isLocal()){
+						mapping.destroy();
 
-								// distance 1 = initial store location. We use the initial creation date
-								// when deciding whether or not to remove this, plus a bit, as the
-								// original publisher is supposed to republish these
+					}else{
 
-							int life_hours = value.getLifeTimeHours();
+						expireCacheValues( mapping, now, true );
+					}
+				}
+			}else{
 
-							int	max_age;
+				for ( DHTDBMapping mapping: emptied_mappings ){
 
-							if ( life_hours < 1 ){
+					HashWrapper	key = mapping.getKey();
 
-								max_age = original_republish_interval;
+					if ( mapping.getValueCount() == 0 && stored_values.get( key ) == mapping ){
 
-							}else{
+						stored_values.remove( key );
 
-								max_age = life_hours * 60*60*1000;
+						removeFromPrefixMap( mapping );
 
-								if ( max_age > MAX_VALUE_LIFETIME ){
+						mapping.destroy();
+					}
+				}
 
-									max_age = MAX_VALUE_LIFETIME;
-								}
-							}
+				emptied_mappings.clear();
 
-							int	grace;
+				for ( DHTDBMapping mapping: expiry_index.removeDue( now )){
 
-							if (( value.getFlags() & DHT.FLAG_PUT_AND_FORGET ) != 0 ){
+					HashWrapper	key = mapping.getKey();
 
-								grace = 0;
+					if ( stored_values.get( key ) != mapping ){
 
-							}else{
+						continue;
+					}
 
-									// scale the grace period for short lifetimes
+					expireCacheValues( mapping, now, false );
 
-								grace = Math.min( ORIGINAL_REPUBLISH_INTERVAL_GRACE, max_age/4 );
-							}
+					if ( mapping.getValueCount() == 0 ){
 
-							if ( now > value.getCreationTime() + max_age + grace ){
+						stored_values.remove( key );
 
-								DHTLog.log( "removing cache entry (" + value.getString() + ")" );
+						removeFromPrefixMap( mapping );
 
-								it2.remove();
-							}
-						}
+						mapping.destroy();
 					}
 				}
 			}
@@ -1560,6 +1592,102 @@ DHTDBImpl
 		}
 	}
 
+	private void
+	expireCacheValues(
+		DHTDBMapping	mapping,
+		long			now,
+		boolean			reindex )
+	{
+		Iterator<DHTDBValueImpl>	it = mapping.getValues();
+
+		while( it.hasNext()){
+
+			DHTDBValueImpl	value = it.next();
+
+			if ( !value.isLocal()){
+
+				long	expiry = getCacheExpiryTime( value );
+
+				if ( now > expiry ){
+
+					DHTLog.log( "removing cache entry (" + value.getString() + ")" );
+
+					it.remove();
+
+				}else if ( reindex ){
+
+					expiry_index.add( mapping, expiry );
+				}
+			}
+		}
+	}
+
+	private long
+	getCacheExpiryTime(
+		DHTDBValueImpl	value )
+	{
+			// distance 1 = initial store location. We use the initial creation date
+			// when deciding whether or not to remove this, plus a bit, as the
+			// original publisher is supposed to republish these
+
+		int life_hours = value.getLifeTimeHours();
+
+		int	max_age;
+
+		if ( life_hours < 1 ){
+
+			max_age = original_republish_interval;
+
+		}else{
+
+			max_age = life_hours * 60*60*1000;
+
+			if ( max_age > MAX_VALUE_LIFETIME ){
+
+				max_age = MAX_VALUE_LIFETIME;
+			}
+		}
+
+		int	grace;
+
+		if (( value.getFlags() & DHT.FLAG_PUT_AND_FORGET ) != 0 ){
+
+			grace = 0;
+
+		}else{
+
+				// scale the grace period for short lifetimes
+
+			grace = Math.min( ORIGINAL_REPUBLISH_INTERVAL_GRACE, max_age/4 );
+		}
+
+		return( value.getCreationTime() + max_age + grace );
+	}
+
+	protected DHTDBValueStore
+	getValueStore()
+	{
+		return( value_store );
+	}
+
+	protected void
+	mappingEmptied(
+		DHTDBMapping		mapping )
+	{
+		emptied_mappings.add( mapping );
+	}
+
+	protected void
+	valueStored(
+		DHTDBMapping		mapping,
+		DHTDBValueImpl		value )
+	{
+		if ( !value.isLocal()){
+
+			expiry_index.add( mapping, getCacheExpiryTime( value ));
+		}
+	}
+
 	protected void
 	addToPrefixMap(
 		DHTDBMapping		mapping )
@@ -3623,7 +3751,7 @@ DHTDBImpl
 
 				DHTDBValue	val = (DHTDBValue)it2.next();
 
-				sz += val.getValue().length;
+				sz += ((DHTDBValueImpl)val).getValueLength();
 			}
 
 			if ( sz != reported_size ){
@@ -3809,7 +3937,7 @@ DHTDBImpl
 			DHTTransportValue	value )
 		{
 			total_values++;
-			total_size += value.getValue().length;
+			total_size += ((DHTDBValueImpl)value).getValueLength();
 
 			reportSizes( "valueAdded");
 
@@ -3835,7 +3963,7 @@ DHTDBImpl
 			DHTTransportValue	old_value,
 			DHTTransportValue	new_value )
 		{
-			total_size += (new_value.getValue().length - old_value.getValue().length );
+			total_size += ((DHTDBValueImpl)new_value).getValueLength() - ((DHTDBValueImpl)old_value).getValueLength();
 
 			reportSizes("valueUpdated");
 
@@ -3849,7 +3977,7 @@ DHTDBImpl
 			DHTTransportValue	value )
 		{
 			total_values--;
-			total_size -= value.getValue().length;
+			total_size -= ((DHTDBValueImpl)value).getValueLength();
 
 			reportSizes("valueDeleted");
 
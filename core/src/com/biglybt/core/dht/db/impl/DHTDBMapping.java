@@ -141,9 +141,9 @@ DHTDBMapping
 
 				changed.add( value );
 
-				direct_data_size -= value.getValue().length;
+				direct_data_size -= value.getValueLength();
 
-				local_size	-= value.getValue().length;
+				local_size	-= value.getValueLength();
 
 				it.remove();
 
@@ -425,7 +425,7 @@ DHTDBMapping
 
 					// zero length values imply deleted values so don't return them
 
-				if ( entry_value.getValue().length > 0 ){
+				if ( entry_value.getValueLength() > 0 ){
 
 					res.add( entry_value );
 
@@ -538,7 +538,7 @@ DHTDBMapping
 
 					// zero length values imply deleted values so don't return them
 
-				if ( entry_value.getValue().length > 0 ){
+				if ( entry_value.getValueLength() > 0 ){
 
 					res.add( entry_value );
 				}
@@ -663,11 +663,11 @@ DHTDBMapping
 				System.out.println( "addDirect:" + old.getString() + "/" + value.getString());
 			}
 
-			direct_data_size -= old.getValue().length;
+			direct_data_size -= old.getValueLength();
 
 			if ( old.isLocal()){
 
-				local_size -= old.getValue().length;
+				local_size -= old.getValueLength();
 			}
 		}else{
 
@@ -676,11 +676,11 @@ DHTDBMapping
 			}
 		}
 
-		direct_data_size += value.getValue().length;
+		direct_data_size += value.getValueLength();
 
 		if ( value.isLocal()){
 
-			local_size += value.getValue().length;
+			local_size += value.getValueLength();
 		}
 
 		if ( old == null ){
@@ -706,11 +706,11 @@ DHTDBMapping
 
 		if ( old != null ){
 
-			direct_data_size -= old.getValue().length;
+			direct_data_size -= old.getValueLength();
 
 			if ( old.isLocal()){
 
-				local_size -= old.getValue().length;
+				local_size -= old.getValueLength();
 			}
 
 			informDeleted( old );
@@ -782,11 +782,11 @@ DHTDBMapping
 				System.out.println( "addIndirect:" + old.getString() + "/" + value.getString());
 			}
 
-			indirect_data_size -= old.getValue().length;
+			indirect_data_size -= old.getValueLength();
 
 			if ( old.isLocal()){
 
-				local_size -= old.getValue().length;
+				local_size -= old.getValueLength();
 			}
 		}else{
 			if ( TRACE_ADDS ){
@@ -794,11 +794,11 @@ DHTDBMapping
 			}
 		}
 
-		indirect_data_size += value.getValue().length;
+		indirect_data_size += value.getValueLength();
 
 		if ( value.isLocal()){
 
-			local_size += value.getValue().length;
+			local_size += value.getValueLength();
 		}
 
 		if ( old == null ){
@@ -819,11 +819,11 @@ DHTDBMapping
 
 		if ( old != null ){
 
-			indirect_data_size -= old.getValue().length;
+			indirect_data_size -= old.getValueLength();
 
 			if ( old.isLocal()){
 
-				local_size -= old.getValue().length;
+				local_size -= old.getValueLength();
 			}
 
 			informDeleted( old );
@@ -835,6 +835,15 @@ DHTDBMapping
 	protected void
 	destroy()
 	{
+			// values left in place when there's no adapter key still hold store slots
+
+		Iterator<DHTDBValueImpl>	values = getValues();
+
+		while( values.hasNext()){
+
+			values.next().unpack();
+		}
+
 		try{
 			if ( adapter_key != null ){
 
@@ -860,6 +869,13 @@ DHTDBMapping
 	informDeleted(
 		DHTDBValueImpl		value )
 	{
+		value.unpack();
+
+		if ( getValueCount() == 0 ){
+
+			db.mappingEmptied( this );
+		}
+
 		boolean	direct =
 			(!value.isLocal())&&
 			Arrays.equals( value.getOriginator().getID(), value.getSender().getID());
@@ -886,6 +902,8 @@ DHTDBMapping
 	informAdded(
 		DHTDBValueImpl		value )
 	{
+		db.valueStored( this, value );
+
 		boolean	direct =
 			(!value.isLocal()) &&
 			Arrays.equals( value.getOriginator().getID(), value.getSender().getID());
@@ -906,6 +924,8 @@ DHTDBMapping
 
 			Debug.printStackTrace(e);
 		}
+
+		value.pack( db.getValueStore());
 	}
 
 	private void
@@ -913,6 +933,10 @@ DHTDBMapping
 		DHTDBValueImpl		old_value,
 		DHTDBValueImpl		new_value)
 	{
+		old_value.unpack();
+
+		db.valueStored( this, new_value );
+
 		boolean	old_direct =
 			(!old_value.isLocal()) &&
 			Arrays.equals( old_value.getOriginator().getID(), old_value.getSender().getID());
@@ -937,6 +961,8 @@ DHTDBMapping
 
 			Debug.printStackTrace(e);
 		}
+
+		new_value.pack( db.getValueStore());
 	}
 
 	private void
@@ -1223,16 +1249,16 @@ DHTDBMapping
 
 				if( value.isLocal()){
 
-					local_size -= value.getValue().length;
+					local_size -= value.getValueLength();
 				}
 
 				if (  map == indirect_originator_value_map ){
 
-					indirect_data_size -= value.getValue().length;
+					indirect_data_size -= value.getValueLength();
 
 				}else{
 
-					direct_data_size -= value.getValue().length;
+					direct_data_size -= value.getValueLength();
 				}
 
 					// remove before informing
@@ -49,6 +49,12 @@ DHTDBValueImpl
 
 	private long				store_time;
 
+		// while held by the database the bytes live in the value store, 'value' is null
+
+	private DHTDBValueStore		value_store;
+	private int					value_handle;
+	private int					value_length;
+
 		/**
 		 * constructor for the originator of values only
 		 * @param _creation_time
@@ -166,7 +172,82 @@ DHTDBValueImpl
 	public byte[]
 	getValue()
 	{
-		return( value );
+		synchronized( this ){
+
+			if ( value_store == null ){
+
+				return( value );
+			}
+
+			return( value_store.read( value_handle, value_length ));
+		}
+	}
+
+	protected int
+	getValueLength()
+	{
+		synchronized( this ){
+
+			if ( value_store == null ){
+
+				return( value==null?0:value.length );
+			}
+
+			return( value_length );
+		}
+	}
+
+		/**
+		 * Moves the value bytes into the store, called once the value is held by a mapping
+		 * @param store
+		 */
+
+	protected void
+	pack(
+		DHTDBValueStore		store )
+	{
+		synchronized( this ){
+
+			if ( value_store != null || value == null || value.length == 0 ){
+
+				return;
+			}
+
+			int	handle = store.put( value );
+
+			if ( handle == -1 ){
+
+				return;
+			}
+
+			value_store		= store;
+			value_handle	= handle;
+			value_length	= value.length;
+			value			= null;
+		}
+	}
+
+		/**
+		 * Brings the value bytes back onto the heap and frees the slot, called as the value leaves
+		 * its mapping. Anyone still holding the value continues to see the same bytes
+		 */
+
+	protected void
+	unpack()
+	{
+		synchronized( this ){
+
+			if ( value_store == null ){
+
+				return;
+			}
+
+			value = value_store.read( value_handle, value_length );
+
+			value_store.free( value_handle, value_length );
+
+			value_store = null;
+		}
 	}
 
 	@Override
@@ -269,7 +350,9 @@ DHTDBValueImpl
 	{
 		long	now = SystemTime.getCurrentTime();
 
-		return( DHTLog.getString( value ) + " - " + new String(value) + "{v=" + version + ",f=" +
+		byte[]	bytes = getValue();
+
+		return( DHTLog.getString( bytes ) + " - " + new String(bytes) + "{v=" + version + ",f=" +
 				Integer.toHexString(flags) + ",l=" + life_hours + ",r=" + Integer.toHexString( rep_control ) + ",ca=" + (now - creation_time ) + ",sa=" + (now-store_time)+
 				",se=" + sender.getString() + ",or=" + originator.getString() +"}" );
 	}
@@ -0,0 +1,306 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.dht.db.impl;
+
+import java.nio.ByteBuffer;
+
+import com.biglybt.core.dht.DHT;
+
+/**
+ * Off-heap storage for the bytes of values held by the database so that a large database
+ * doesn't keep a long lived byte[] per value on the heap for the collector to trace.
+ * <p>
+ * Values are packed into fixed size slots carved out of direct buffer slabs, one set of slabs
+ * per power of two slot size from 16 bytes up to DHT.MAX_VALUE_SIZE. A slot is identified by
+ * an int handle (slot size class, slab, slot) and free slots are kept on per class int stacks,
+ * so the store itself holds no per value objects. Slabs of a class are released, bar one, when
+ * the class empties.
+ * <p>
+ * Thread safe, values read their bytes back from outside the database monitor
+ */
+
+final class
+DHTDBValueStore
+{
+	private static final int	SLAB_SIZE		= 64*1024;
+	private static final int	MIN_SLOT_SHIFT	= 4;		// 16 bytes
+
+	private static final int	SLOT_BITS		= 12;		// SLAB_SIZE >> MIN_SLOT_SHIFT slots at most
+	private static final int	SLAB_BITS		= 16;
+
+	private static final int	SLOT_MASK		= ( 1 << SLOT_BITS ) - 1;
+	private static final int	SLAB_MASK		= ( 1 << SLAB_BITS ) - 1;
+
+	private static final int	CLASS_COUNT;
+
+	static{
+		int	classes = 1;
+
+		while(( 1 << ( MIN_SLOT_SHIFT + classes - 1 )) < DHT.MAX_VALUE_SIZE ){
+
+			classes++;
+		}
+
+		CLASS_COUNT = classes;
+	}
+
+	private final ByteBuffer[][]	slabs		= new ByteBuffer[CLASS_COUNT][];
+	private final int[]				slab_counts	= new int[CLASS_COUNT];
+
+	private final int[][]			free_slots	= new int[CLASS_COUNT][];
+	private final int[]				free_counts	= new int[CLASS_COUNT];
+
+	private final int[]				used_counts	= new int[CLASS_COUNT];
+
+	private long	reserved_bytes;
+	private long	stored_bytes;
+	private int		stored_values;
+
+	DHTDBValueStore()
+	{
+		for ( int i=0;i<CLASS_COUNT;i++){
+
+			slabs[i]		= new ByteBuffer[4];
+			free_slots[i]	= new int[64];
+		}
+	}
+
+		/**
+		 * @return handle of the slot now holding the bytes or -1 if they can't be stored
+		 */
+
+	synchronized int
+	put(
+		byte[]		bytes )
+	{
+		int	cls = getSlotClass( bytes.length );
+
+		if ( cls < 0 ){
+
+			return( -1 );
+		}
+
+		if ( free_counts[cls] == 0 && !addSlab( cls )){
+
+			return( -1 );
+		}
+
+		int	handle = free_slots[cls][--free_counts[cls]];
+
+		ByteBuffer	slab = getSlab( handle );
+
+		slab.position( getSlotOffset( handle ));
+
+		slab.put( bytes );
+
+		used_counts[cls]++;
+
+		stored_bytes += bytes.length;
+
+		stored_values++;
+
+		return( handle );
+	}
+
+	synchronized byte[]
+	read(
+		int			handle,
+		int			length )
+	{
+		byte[]	res = new byte[length];
+
+		ByteBuffer	slab = getSlab( handle );
+
+		slab.position( getSlotOffset( handle ));
+
+		slab.get( res );
+
+		return( res );
+	}
+
+	synchronized void
+	free(
+		int			handle,
+		int			length )
+	{
+		int	cls = handle >>> ( SLOT_BITS + SLAB_BITS );
+
+		used_counts[cls]--;
+
+		stored_bytes -= length;
+
+		stored_values--;
+
+		if ( used_counts[cls] == 0 && slab_counts[cls] > 1 ){
+
+				// class has emptied, hand back all but the first slab
+
+			reserved_bytes -= (long)( slab_counts[cls] - 1 ) * SLAB_SIZE;
+
+			slabs[cls]			= new ByteBuffer[]{ slabs[cls][0], null, null, null };
+			slab_counts[cls]	= 1;
+			free_counts[cls]	= 0;
+
+			addSlabSlots( cls, 0 );
+
+		}else{
+
+			int[]	stack = free_slots[cls];
+
+			if ( free_counts[cls] == stack.length ){
+
+				int[]	new_stack = new int[ stack.length*2 ];
+
+				System.arraycopy( stack, 0, new_stack, 0, stack.length );
+
+				free_slots[cls] = stack = new_stack;
+			}
+
+			stack[free_counts[cls]++] = handle;
+		}
+	}
+
+	synchronized long
+	getReservedBytes()
+	{
+		return( reserved_bytes );
+	}
+
+	synchronized long
+	getStoredBytes()
+	{
+		return( stored_bytes );
+	}
+
+	synchronized int
+	getStoredValueCount()
+	{
+		return( stored_values );
+	}
+
+	private boolean
+	addSlab(
+		int		cls )
+	{
+		int	slab_index = slab_counts[cls];
+
+		if ( slab_index > SLAB_MASK ){
+
+			return( false );
+		}
+
+		ByteBuffer	slab;
+
+		try{
+			slab = ByteBuffer.allocateDirect( SLAB_SIZE );
+
+		}catch( OutOfMemoryError e ){
+
+				// direct memory exhausted, value stays on the heap
+
+			return( false );
+		}
+
+		ByteBuffer[]	class_slabs = slabs[cls];
+
+		if ( slab_index == class_slabs.length ){
+
+			ByteBuffer[]	new_slabs = new ByteBuffer[ class_slabs.length*2 ];
+
+			System.arraycopy( class_slabs, 0, new_slabs, 0, class_slabs.length );
+
+			slabs[cls] = class_slabs = new_slabs;
+		}
+
+		class_slabs[slab_index] = slab;
+
+		slab_counts[cls]++;
+
+		reserved_bytes += SLAB_SIZE;
+
+		addSlabSlots( cls, slab_index );
+
+		return( true );
+	}
+
+	private void
+	addSlabSlots(
+		int		cls,
+		int		slab_index )
+	{
+		int	slots = SLAB_SIZE >>> ( MIN_SLOT_SHIFT + cls );
+
+		int[]	stack = free_slots[cls];
+
+		int	required = free_counts[cls] + slots;
+
+		if ( required > stack.length ){
+
+			int[]	new_stack = new int[ Math.max( required, stack.length*2 )];
+
+			System.arraycopy( stack, 0, new_stack, 0, free_counts[cls] );
+
+			free_slots[cls] = stack = new_stack;
+		}
+
+		int	base = ( cls << ( SLOT_BITS + SLAB_BITS )) | ( slab_index << SLOT_BITS );
+
+			// pushed in reverse so the slab fills from the start
+
+		for ( int i=slots-1;i>=0;i--){
+
+			stack[free_counts[cls]++] = base | i;
+		}
+	}
+
+	private ByteBuffer
+	getSlab(
+		int		handle )
+	{
+		return( slabs[ handle >>> ( SLOT_BITS + SLAB_BITS )][( handle >>> SLOT_BITS ) & SLAB_MASK ]);
+	}
+
+	private static int
+	getSlotOffset(
+		int		handle )
+	{
+		int	cls = handle >>> ( SLOT_BITS + SLAB_BITS );
+
+		return(( handle & SLOT_MASK ) << ( MIN_SLOT_SHIFT + cls ));
+	}
+
+	private static int
+	getSlotClass(
+		int		length )
+	{
+		if ( length <= 0 || length > ( 1 << ( MIN_SLOT_SHIFT + CLASS_COUNT - 1 ))){
+
+			return( -1 );
+		}
+
+		int	cls = 0;
+
+		while(( 1 << ( MIN_SLOT_SHIFT + cls )) < length ){
+
+			cls++;
+		}
+
+		return( cls );
+	}
+}
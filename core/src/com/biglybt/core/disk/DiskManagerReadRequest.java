@@ -66,6 +66,18 @@ DiskManagerReadRequest
 	public boolean
 	getUseCache();
 
+		/**
+		 * If set the data may be returned as a read-only view onto a memory mapping of the file rather
+		 * than a copy, for consumers that only pass it on (uploads to unencrypted connections)
+		 */
+
+	public void
+	setZeroCopy(
+		boolean	zero_copy );
+
+	public boolean
+	getZeroCopy();
+
 	public void
 	setLatencyTest();
 
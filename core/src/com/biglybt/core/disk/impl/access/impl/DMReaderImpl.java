@@ -48,6 +48,10 @@ DMReaderImpl
 {
 	private static final LogIDs LOGID = LogIDs.DISK;
 
+		// mapping and faulting in zero-copy reads can block so keep them off the caller's thread
+
+	private static final ThreadPool	zero_copy_pool = new ThreadPool( "DMReader:zeroCopy", 8, true );
+
 	final DiskManagerHelper		disk_manager;
 	final DiskAccessController	disk_access;
 
@@ -302,15 +306,23 @@ DMReaderImpl
 		try{
 			int	length		= request.getLength();
 
-			buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_DM_READ,length );
+				// a zero-copy read hands on a view of the mapped file so only needs a buffer if it
+				// has to fall back to a normal read
 
-			if ( buffer == null ) { // Fix for bug #804874
+			boolean	zero_copy = request.getZeroCopy() && !request.getFlush();
 
-				Debug.out("DiskManager::readBlock:: ByteBufferPool returned null buffer");
+			if ( !zero_copy ){
 
-				listener.readFailed( request, new Exception( "Out of memory" ));
+				buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_DM_READ,length );
 
-				return;
+				if ( buffer == null ) { // Fix for bug #804874
+
+					Debug.out("DiskManager::readBlock:: ByteBufferPool returned null buffer");
+
+					listener.readFailed( request, new Exception( "Out of memory" ));
+
+					return;
+				}
 			}
 
 			int	pieceNumber	= request.getPieceNumber();
@@ -324,7 +336,7 @@ DMReaderImpl
 
 				Debug.out("no pieceList entries for " + pieceNumber);
 
-				listener.readCompleted( request, buffer );
+				listener.readCompleted( request, buffer==null?DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_DM_READ, length ):buffer );
 
 				return;
 			}
@@ -383,7 +395,7 @@ DMReaderImpl
 
 				Debug.out("no chunk reads for " + pieceNumber);
 
-				listener.readCompleted( request, buffer );
+				listener.readCompleted( request, buffer==null?DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_DM_READ, length ):buffer );
 
 				return;
 			}
@@ -464,7 +476,10 @@ DMReaderImpl
 
 				if ( stopped ){
 
-					buffer.returnToPool();
+					if ( buffer != null ){
+
+						buffer.returnToPool();
+					}
 
 					listener.readFailed( request, new Exception( "Disk reader has been stopped" ));
 
@@ -480,6 +495,41 @@ DMReaderImpl
 				this_mon.exit();
 			}
 
+			if ( zero_copy && chunks.size() == 1 ){
+
+				Object[]	chunk = (Object[])chunks.get(0);
+
+				if (((Integer)chunk[2]).intValue() == length ){
+
+					final List	f_chunks	= chunks;
+
+					zero_copy_pool.run(
+						new AERunnable()
+						{
+							@Override
+							public void
+							runSupport()
+							{
+								readMapped( request, l, f_chunks );
+							}
+						});
+
+					return;
+				}
+			}
+
+			if ( buffer == null ){
+
+				buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_DM_READ, length );
+
+				if ( buffer == null ){
+
+					l.readFailed( request, new Exception( "Out of memory" ));
+
+					return;
+				}
+			}
+
 			new requestDispatcher( request, l, buffer, chunks );
 
 		}catch( Throwable e ){
@@ -497,6 +547,49 @@ DMReaderImpl
 		}
 	}
 
+	void
+	readMapped(
+		DiskManagerReadRequest			request,
+		DiskManagerReadRequestListener	listener,
+		List							chunks )
+	{
+		Object[]	chunk = (Object[])chunks.get(0);
+
+		int	length = request.getLength();
+
+		DirectByteBuffer	mapped = null;
+
+		try{
+			mapped = ((CacheFile)chunk[0]).readMapped(((Long)chunk[1]).longValue(), length );
+
+		}catch( Throwable e ){
+
+				// the normal read will report anything that's really wrong
+		}
+
+		if ( mapped == null ){
+
+			DirectByteBuffer	buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_DM_READ, length );
+
+			if ( buffer == null ){
+
+				listener.readFailed( request, new Exception( "Out of memory" ));
+
+			}else{
+
+				new requestDispatcher( request, listener, buffer, chunks );
+			}
+		}else{
+
+			total_read_bytes 	+= length;
+			total_read_ops		++;
+
+			listener.requestExecuted( length );
+
+			listener.readCompleted( request, mapped );
+		}
+	}
+
 	protected class
 	requestDispatcher
 		implements DiskAccessRequestListener
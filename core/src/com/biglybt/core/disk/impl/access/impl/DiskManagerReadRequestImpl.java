@@ -53,6 +53,7 @@ DiskManagerReadRequestImpl
   private boolean	cancelled;
   private boolean	use_cache	= true;
   private boolean	latency_test;
+  private boolean	zero_copy;
 
 
   /**
@@ -154,6 +155,21 @@ DiskManagerReadRequestImpl
 		return( use_cache );
 	}
 
+	@Override
+	public void
+	setZeroCopy(
+		boolean	_zero_copy )
+	{
+		zero_copy	= _zero_copy;
+	}
+
+	@Override
+	public boolean
+	getZeroCopy()
+	{
+		return( zero_copy );
+	}
+
 	@Override
 	public void
 	cancel()
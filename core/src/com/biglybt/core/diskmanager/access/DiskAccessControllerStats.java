@@ -28,4 +28,51 @@ DiskAccessControllerStats
 
 	public long
 	getTotalReadBytes();
+
+		/**
+		 * Per-device queues, empty unless the per-device backend is in use
+		 */
+
+	public DeviceStats[]
+	getReadDeviceStats();
+
+	public DeviceStats[]
+	getWriteDeviceStats();
+
+	public interface
+	DeviceStats
+	{
+			/**
+			 * @return description of the file store the device's files are on
+			 */
+
+		public String
+		getName();
+
+		public int
+		getQueueLength();
+
+		public int
+		getInFlight();
+
+			/**
+			 * @return current adaptive limit on concurrent requests
+			 */
+
+		public int
+		getConcurrencyLimit();
+
+			/**
+			 * @return average request latency over the most recent sample window
+			 */
+
+		public long
+		getAverageLatencyMicros();
+
+		public long
+		getTotalRequests();
+
+		public long
+		getTotalBytes();
+	}
 }
@@ -0,0 +1,759 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.diskmanager.access.impl;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import com.biglybt.core.diskmanager.access.DiskAccessControllerStats;
+import com.biglybt.core.diskmanager.cache.CacheFile;
+import com.biglybt.core.util.AEThread2;
+import com.biglybt.core.util.SystemTime;
+
+/**
+ * Per-device scheduler. Requests are grouped by the file store (device/filesystem) that their
+ * file lives on and each device gets its own queue and workers, so a slow or busy drive doesn't
+ * hold up requests for the others.
+ * <p/>
+ * Within a device requests are served elevator style - ordered by file and offset with a cursor
+ * that sweeps upwards and wraps (C-SCAN) - except that prioritised requests go first and a
+ * request that has been queued longer than the deadline is served ahead of the sweep.
+ * <p/>
+ * The number of requests in flight per device adapts to the observed latency: it is increased
+ * while latency stays close to the best seen for the device and there is a backlog, and cut back
+ * when latency degrades (additive increase, multiplicative decrease).
+ * <p/>
+ * When aggregation is enabled, unprioritised requests that follow on contiguously from the one
+ * taken are run with it as a single operation, as the dispatchers do.
+ */
+
+class
+DiskAccessControllerDeviceScheduler
+{
+	private static final int	IDLE_TIMEOUT		= 10*1000;
+
+	private static final int	ADAPT_SAMPLES		= 32;
+	private static final int	INCREASE_FACTOR		= 2;	// increase while avg latency <= 2 x baseline
+	private static final int	DECREASE_FACTOR		= 4;	// decrease once avg latency > 4 x baseline
+
+	private static final int	DIR_CACHE_MAX		= 1024;
+
+	private static final String	UNKNOWN_DEVICE		= "unknown";
+
+	private static Method		mFiles_getFileStore;
+	private static Method		mFile_toPath;
+
+	static{
+		try{
+				// FileStore is minSDK 26 on Android
+
+			Class claPath	= Class.forName( "java.nio.file.Path" );
+			Class claFiles	= Class.forName( "java.nio.file.Files" );
+
+			mFiles_getFileStore	= claFiles.getMethod( "getFileStore", claPath );
+			mFile_toPath		= File.class.getMethod( "toPath" );
+
+		}catch( Throwable e ){
+		}
+	}
+
+	final DiskAccessControllerInstance	instance;
+	final int							max_depth;
+	final int							deadline;
+
+	private final Map<CacheFile,fileInfo>	file_map	= new WeakHashMap<>();
+	private final Map<String,Object>		dir_cache	= new HashMap<>();
+	private final Map<Object,device>		device_map	= new LinkedHashMap<>();
+
+	private int		next_file_id;
+	private long	next_seq;
+
+	protected
+	DiskAccessControllerDeviceScheduler(
+		DiskAccessControllerInstance	_instance,
+		int								_max_depth,
+		int								_deadline )
+	{
+		instance	= _instance;
+		max_depth	= Math.max( 1, _max_depth );
+		deadline	= _deadline;
+	}
+
+	protected void
+	queue(
+		DiskAccessRequestImpl		request )
+	{
+		CacheFile	file = request.getFile();
+
+		String		name = file.getName();
+
+		fileInfo	info;
+		device		dev;
+		long		seq;
+
+		synchronized( file_map ){
+
+			info = file_map.get( file );
+
+			if ( info == null ){
+
+				info = new fileInfo( next_file_id++ );
+
+				file_map.put( file, info );
+			}
+
+			dev = info.dev != null && name.equals( info.name )?info.dev:null;
+
+			seq = next_seq++;
+		}
+
+		if ( dev == null ){
+
+				// first time through or the file has been moved, the file store lookup can be
+				// slow so it isn't done while holding the lock
+
+			Object	key = getDeviceKey( name );
+
+			synchronized( file_map ){
+
+				info.name	= name;
+				info.dev	= getDevice( key );
+
+				dev = info.dev;
+			}
+		}
+
+		int priority = request.getPriority();
+
+		dev.queue( new queuedRequest( request, info.file_id, priority<0?-1:priority, seq ));
+	}
+
+	private Object
+	getDeviceKey(
+		String		name )
+	{
+		File	parent = new File( name ).getParentFile();
+
+		String	dir = parent==null?"":parent.getPath();
+
+		synchronized( file_map ){
+
+			Object	key = dir_cache.get( dir );
+
+			if ( key != null ){
+
+				return( key );
+			}
+		}
+
+		Object	key = getFileStore( parent );
+
+		synchronized( file_map ){
+
+			if ( dir_cache.size() >= DIR_CACHE_MAX ){
+
+				dir_cache.clear();
+			}
+
+			dir_cache.put( dir, key );
+		}
+
+		return( key );
+	}
+
+		/**
+		 * file_map lock held
+		 */
+
+	private device
+	getDevice(
+		Object		key )
+	{
+		device	dev = device_map.get( key );
+
+		if ( dev == null ){
+
+			dev = new device( key.toString());
+
+			device_map.put( key, dev );
+		}
+
+		return( dev );
+	}
+
+	private static Object
+	getFileStore(
+		File		file )
+	{
+		if ( mFiles_getFileStore != null ){
+
+				// file may not have been created yet, use the nearest existing ancestor
+
+			while( file != null && !file.exists()){
+
+				file = file.getParentFile();
+			}
+
+			if ( file != null ){
+
+				try{
+					Object	fs = mFiles_getFileStore.invoke( null, mFile_toPath.invoke( file ));
+
+					if ( fs != null ){
+
+						return( fs );
+					}
+				}catch( Throwable e ){
+				}
+			}
+		}
+
+		return( UNKNOWN_DEVICE );
+	}
+
+	protected int
+	getInFlight()
+	{
+		int	result = 0;
+
+		for ( device dev: getDevices()){
+
+			result += dev.in_flight;
+		}
+
+		return( result );
+	}
+
+	protected List<device>
+	getDevices()
+	{
+		synchronized( file_map ){
+
+			return( new ArrayList<>( device_map.values()));
+		}
+	}
+
+	protected String
+	getString()
+	{
+		StringBuilder	str = new StringBuilder( "device=" + max_depth + "/" + deadline );
+
+		for ( device dev: getDevices()){
+
+			str.append( ",[" ).append( dev.getString()).append( "]" );
+		}
+
+		return( str.toString());
+	}
+
+	protected class
+	device
+		implements DiskAccessControllerStats.DeviceStats
+	{
+		final String	name;
+
+			// elevator order: file, offset, then submission order
+
+		private final TreeSet<queuedRequest>	elevator	=
+			new TreeSet<>(
+				new Comparator<queuedRequest>()
+				{
+					@Override
+					public int
+					compare(
+						queuedRequest	q1,
+						queuedRequest	q2 )
+					{
+						if ( q1.file_id != q2.file_id ){
+
+							return( q1.file_id < q2.file_id ? -1 : 1 );
+						}
+
+						if ( q1.offset != q2.offset ){
+
+							return( q1.offset < q2.offset ? -1 : 1 );
+						}
+
+						return( q1.seq < q2.seq ? -1 : ( q1.seq > q2.seq ? 1 : 0 ));
+					}
+				});
+
+			// same requests in arrival order for deadline checks
+
+		private final LinkedHashSet<queuedRequest>	fifo	= new LinkedHashSet<>();
+
+			// prioritised requests bypass the elevator
+
+		private final PriorityQueue<queuedRequest>	priority_queue	=
+			new PriorityQueue<>(
+				16,
+				new Comparator<queuedRequest>()
+				{
+					@Override
+					public int
+					compare(
+						queuedRequest	q1,
+						queuedRequest	q2 )
+					{
+						if ( q1.priority != q2.priority ){
+
+							return( q2.priority - q1.priority );
+						}
+
+						return( q1.seq < q2.seq ? -1 : ( q1.seq > q2.seq ? 1 : 0 ));
+					}
+				});
+
+		private final queuedRequest	cursor	= new queuedRequest( null, 0, -1, -1 );
+
+		int		workers;
+		int		idle_workers;
+		int		in_flight;
+		int		limit;
+
+		private int		max_in_flight;
+
+		private int		window_samples;
+		private long	window_micros;
+		private long	baseline_micros;
+		private long	average_micros;
+
+		long	total_requests;
+		long	total_bytes;
+		long	deadline_misses;
+
+		protected
+		device(
+			String	_name )
+		{
+			name	= _name;
+			limit	= Math.max( 1, max_depth/8 );
+		}
+
+		private int
+		size()
+		{
+			return( elevator.size() + priority_queue.size());
+		}
+
+		protected void
+		queue(
+			queuedRequest	qr )
+		{
+			synchronized( this ){
+
+				if ( qr.priority >= 0 ){
+
+					priority_queue.add( qr );
+
+				}else{
+
+					elevator.add( qr );
+
+					fifo.add( qr );
+				}
+
+				if ( idle_workers > 0 ){
+
+					notify();
+				}
+
+				checkWorkers();
+			}
+		}
+
+		private void
+		checkWorkers()
+		{
+			if ( size() > idle_workers && workers < limit ){
+
+				workers++;
+
+				startWorker( workers );
+			}
+		}
+
+		private DiskAccessRequestImpl[]
+		next()
+		{
+			queuedRequest	qr = priority_queue.poll();
+
+			if ( qr != null ){
+
+				return( new DiskAccessRequestImpl[]{ qr.request });
+			}
+
+			if ( elevator.isEmpty()){
+
+				return( null );
+			}
+
+			queuedRequest	oldest = fifo.iterator().next();
+
+			if ( SystemTime.getMonotonousTime() - oldest.queued > deadline ){
+
+				deadline_misses++;
+
+				qr = oldest;
+
+			}else{
+
+				qr = elevator.ceiling( cursor );
+
+				if ( qr == null ){
+
+						// end of sweep, wrap around
+
+					qr = elevator.first();
+				}
+			}
+
+			elevator.remove( qr );
+
+			fifo.remove( qr );
+
+			DiskAccessRequestImpl	request = qr.request;
+
+			List<DiskAccessRequestImpl>	aggregated = null;
+
+			if ( instance.enable_aggregation && !request.isCancelled()){
+
+					// the elevator is in file/offset order so a contiguous successor is the next entry
+
+				long	aggregated_bytes = request.getSize();
+
+				queuedRequest	current = qr;
+
+				while( true ){
+
+					queuedRequest	next = elevator.higher( current );
+
+					if ( 	next == null ||
+							next.file_id != qr.file_id ||
+							next.offset != current.offset + current.request.getSize() ||
+							next.request.isCancelled() ||
+							!next.request.canBeAggregatedWith( request )){
+
+						break;
+					}
+
+					elevator.remove( next );
+
+					fifo.remove( next );
+
+					if ( aggregated == null ){
+
+						aggregated = new ArrayList<>( 8 );
+
+						aggregated.add( request );
+					}
+
+					aggregated.add( next.request );
+
+					aggregated_bytes += next.request.getSize();
+
+					current = next;
+
+					if ( aggregated.size() > instance.aggregation_request_limit || aggregated_bytes >= instance.aggregation_byte_limit ){
+
+						break;
+					}
+				}
+
+				qr = current;
+			}
+
+			cursor.file_id	= qr.file_id;
+			cursor.offset	= qr.offset + qr.request.getSize();
+
+			if ( aggregated == null ){
+
+				return( new DiskAccessRequestImpl[]{ request });
+			}
+
+			return( aggregated.toArray( new DiskAccessRequestImpl[ aggregated.size()]));
+		}
+
+		private void
+		startWorker(
+			int		worker_num )
+		{
+			new AEThread2( "DiskAccessController:device(" + instance.getName() + "," + name + ")[" + worker_num + "]", true )
+			{
+				@Override
+				public void
+				run()
+				{
+					DiskAccessControllerInstance.tls.set( this );
+
+					while( true ){
+
+						DiskAccessRequestImpl[]	requests;
+
+						synchronized( device.this ){
+
+							if ( workers > limit ){
+
+									// limit has been reduced
+
+								workers--;
+
+								break;
+							}
+
+							if ( size() == 0 ){
+
+								long	wait_start = SystemTime.getMonotonousTime();
+
+								idle_workers++;
+
+								try{
+									while( size() == 0 ){
+
+										long	remaining = IDLE_TIMEOUT - ( SystemTime.getMonotonousTime() - wait_start );
+
+										if ( remaining <= 0 ){
+
+											break;
+										}
+
+										device.this.wait( remaining );
+									}
+								}catch( InterruptedException e ){
+
+								}finally{
+
+									idle_workers--;
+								}
+
+								if ( size() == 0 ){
+
+									workers--;
+
+									break;
+								}
+							}
+
+							requests = next();
+
+							in_flight++;
+
+							if ( in_flight > max_in_flight ){
+
+								max_in_flight = in_flight;
+							}
+						}
+
+						long	elapsed = 0;
+
+						try{
+							elapsed = instance.executeRequests( requests );
+
+						}finally{
+
+							int	bytes = 0;
+
+							for ( DiskAccessRequestImpl r: requests ){
+
+								bytes += r.getSize();
+							}
+
+							synchronized( device.this ){
+
+								in_flight--;
+
+								completed( elapsed, requests.length, bytes );
+							}
+						}
+					}
+				}
+			}.start();
+		}
+
+		private void
+		completed(
+			long		nanos,
+			int			requests,
+			int			bytes )
+		{
+			total_requests += requests;
+			total_bytes += bytes;
+
+			window_samples++;
+			window_micros += nanos/1000;
+
+			if ( window_samples < ADAPT_SAMPLES ){
+
+				return;
+			}
+
+			long	avg = window_micros / window_samples;
+
+			window_samples	= 0;
+			window_micros	= 0;
+
+			average_micros	= avg;
+
+			if ( baseline_micros == 0 || avg < baseline_micros ){
+
+				baseline_micros = Math.max( 1, avg );
+
+			}else{
+
+					// drift upwards slowly so a single lucky window doesn't pin the baseline forever
+
+				baseline_micros += ( avg - baseline_micros ) / 64;
+			}
+
+			if ( avg > DECREASE_FACTOR*baseline_micros ){
+
+				if ( limit > 1 ){
+
+					limit = Math.max( 1, ( limit*3 )/4 );
+				}
+			}else if ( avg <= INCREASE_FACTOR*baseline_micros && size() > 0 && limit < max_depth ){
+
+				limit++;
+
+				checkWorkers();
+			}
+		}
+
+		@Override
+		public String
+		getName()
+		{
+			return( name );
+		}
+
+		@Override
+		public int
+		getQueueLength()
+		{
+			synchronized( this ){
+
+				return( size());
+			}
+		}
+
+		@Override
+		public int
+		getInFlight()
+		{
+			return( in_flight );
+		}
+
+		@Override
+		public int
+		getConcurrencyLimit()
+		{
+			return( limit );
+		}
+
+		@Override
+		public long
+		getAverageLatencyMicros()
+		{
+			return( average_micros );
+		}
+
+		@Override
+		public long
+		getTotalRequests()
+		{
+			return( total_requests );
+		}
+
+		@Override
+		public long
+		getTotalBytes()
+		{
+			return( total_bytes );
+		}
+
+		protected String
+		getString()
+		{
+			synchronized( this ){
+
+				return(
+					name +
+					":q=" + size() +
+					",w=" + workers +
+					",fl=" + in_flight +
+					",lim=" + limit +
+					",max_fl=" + max_in_flight +
+					",lat=" + average_micros + "/" + baseline_micros +
+					",done=" + total_requests +
+					",late=" + deadline_misses );
+			}
+		}
+	}
+
+	private static class
+	fileInfo
+	{
+		final int	file_id;
+
+		String		name;
+		device		dev;
+
+		fileInfo(
+			int		_file_id )
+		{
+			file_id	= _file_id;
+		}
+	}
+
+	private static class
+	queuedRequest
+	{
+		final DiskAccessRequestImpl	request;
+		final int					priority;
+		final long					seq;
+		final long					queued;
+
+		int		file_id;
+		long	offset;
+
+		queuedRequest(
+			DiskAccessRequestImpl	_request,
+			int						_file_id,
+			int						_priority,
+			long					_seq )
+		{
+			request		= _request;
+			file_id		= _file_id;
+			offset		= _request==null?0:_request.getOffset();
+			priority	= _priority;
+			seq			= _seq;
+			queued		= SystemTime.getMonotonousTime();
+		}
+	}
+}
@@ -37,6 +37,13 @@ public class
 DiskAccessControllerImpl
 	implements DiskAccessController, CoreStatsProvider
 {
+	public static final int	BACKEND_THREADS		= 0;	// per-torrent dispatcher threads
+	public static final int	BACKEND_POOLED		= 1;	// shared queue, bounded worker pool
+	public static final int	BACKEND_DEVICE		= 2;	// per-device elevator queues, adaptive concurrency
+
+	private static final int	READ_DEADLINE	= 500;
+	private static final int	WRITE_DEADLINE	= 2000;
+
 	final DiskAccessControllerInstance	read_dispatcher;
 	final DiskAccessControllerInstance	write_dispatcher;
 
@@ -57,6 +64,13 @@ DiskAccessControllerImpl
 		int		write_aggregation_request_limit = COConfigurationManager.getIntParameter( "diskmanager.perf.write.aggregate.request.limit", 8 );
 		int		write_aggregation_byte_limit 	= COConfigurationManager.getIntParameter( "diskmanager.perf.write.aggregate.byte.limit", 128*1024 );
 
+		int		backend = COConfigurationManager.getIntParameter( "diskmanager.perf.access.backend" );
+
+			// for the per-device backend the depths are the maximum concurrency per device
+
+		int		read_async_depth	= COConfigurationManager.getIntParameter( "diskmanager.perf.read.async.depth" );
+		int		write_async_depth	= COConfigurationManager.getIntParameter( "diskmanager.perf.write.async.depth" );
+
 		read_dispatcher 	=
 			new DiskAccessControllerInstance(
 					_name + "/" + "read",
@@ -64,7 +78,10 @@ DiskAccessControllerImpl
 					read_aggregation_request_limit,
 					read_aggregation_byte_limit,
 					_max_read_threads,
-					_max_read_mb );
+					_max_read_mb,
+					backend,
+					read_async_depth,
+					READ_DEADLINE );
 
 		write_dispatcher 	=
 			new DiskAccessControllerInstance(
@@ -73,7 +90,10 @@ DiskAccessControllerImpl
 					write_aggregation_request_limit,
 					write_aggregation_byte_limit,
 					_max_write_threads,
-					_max_write_mb );
+					_max_write_mb,
+					backend,
+					write_async_depth,
+					WRITE_DEADLINE );
 
 		Set	types = new HashSet();
 
@@ -271,6 +291,9 @@ DiskAccessControllerImpl
 				final long	read_total_req 		= read_dispatcher.getTotalRequests();
 				final long	read_total_bytes 	= read_dispatcher.getTotalBytes();
 
+				final DeviceStats[]	read_devices	= read_dispatcher.getDeviceStats();
+				final DeviceStats[]	write_devices	= write_dispatcher.getDeviceStats();
+
 				@Override
 				public long
 				getTotalReadRequests()
@@ -284,6 +307,20 @@ DiskAccessControllerImpl
 				{
 					return( read_total_bytes );
 				}
+
+				@Override
+				public DeviceStats[]
+				getReadDeviceStats()
+				{
+					return( read_devices );
+				}
+
+				@Override
+				public DeviceStats[]
+				getWriteDeviceStats()
+				{
+					return( write_devices );
+				}
 			});
 	}
 
@@ -22,6 +22,7 @@ package com.biglybt.core.diskmanager.access.impl;
 import java.util.*;
 
 import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.diskmanager.access.DiskAccessControllerStats;
 import com.biglybt.core.diskmanager.cache.CacheFile;
 import com.biglybt.core.torrent.TOTorrent;
 import com.biglybt.core.util.*;
@@ -58,6 +59,9 @@ DiskAccessControllerInstance
 
 	private final requestDispatcher[]	dispatchers;
 
+	private final DiskAccessControllerPooledDispatcher	pooled_dispatcher;
+	private final DiskAccessControllerDeviceScheduler	device_scheduler;
+
 	private long		last_check		= 0;
 
 	private final Map			torrent_dispatcher_map	= new HashMap();
@@ -86,7 +90,10 @@ DiskAccessControllerInstance
 		int		_aggregation_request_limit,
 		int		_aggregation_byte_limit,
 		int		_max_threads,
-		int		_max_mb )
+		int		_max_mb,
+		int		_backend,
+		int		_queue_depth,
+		int		_deadline )
 	{
 		name				= _name;
 
@@ -99,11 +106,65 @@ DiskAccessControllerInstance
 		max_mb_sem 			= new groupSemaphore( max_mb_queued );
 		max_threads			= _max_threads;
 
-		dispatchers	= new requestDispatcher[invert_threads?1:max_threads];
+			// the pooled and per-device backends replace the dispatchers
+
+		if ( _backend == DiskAccessControllerImpl.BACKEND_POOLED ){
+
+			pooled_dispatcher	= new DiskAccessControllerPooledDispatcher( this, _queue_depth );
+			device_scheduler	= null;
+
+			dispatchers	= new requestDispatcher[0];
+
+		}else if ( _backend == DiskAccessControllerImpl.BACKEND_DEVICE ){
+
+			pooled_dispatcher	= null;
+			device_scheduler	= new DiskAccessControllerDeviceScheduler( this, _queue_depth, _deadline );
+
+			dispatchers	= new requestDispatcher[0];
+
+		}else{
+
+			pooled_dispatcher	= null;
+			device_scheduler	= null;
+
+			dispatchers	= new requestDispatcher[invert_threads?1:max_threads];
+
+			for (int i=0;i<dispatchers.length;i++){
+				dispatchers[i]	= new requestDispatcher(i);
+			}
+		}
+	}
+
+	protected boolean
+	isAsync()
+	{
+		return( pooled_dispatcher != null || device_scheduler != null );
+	}
+
+	protected int
+	getInFlight()
+	{
+		if ( pooled_dispatcher != null ){
+
+			return( pooled_dispatcher.getInFlight());
+
+		}else if ( device_scheduler != null ){
+
+			return( device_scheduler.getInFlight());
+		}
+
+		return( 0 );
+	}
+
+	protected DiskAccessControllerStats.DeviceStats[]
+	getDeviceStats()
+	{
+		if ( device_scheduler == null ){
 
-		for (int i=0;i<dispatchers.length;i++){
-			dispatchers[i]	= new requestDispatcher(i);
+			return( new DiskAccessControllerStats.DeviceStats[0] );
 		}
+
+		return( device_scheduler.getDevices().toArray( new DiskAccessControllerStats.DeviceStats[0] ));
 	}
 
 	protected String
@@ -182,6 +243,13 @@ DiskAccessControllerInstance
 	queueRequest(
 		DiskAccessRequestImpl	request )
 	{
+		if ( pooled_dispatcher != null || device_scheduler != null ){
+
+			queueAsyncRequest( request );
+
+			return;
+		}
+
 		requestDispatcher	dispatcher;
 
 		if ( dispatchers.length == 1 ){
@@ -262,6 +330,116 @@ DiskAccessControllerInstance
 		dispatcher.queue( request );
 	}
 
+	private void
+	queueAsyncRequest(
+		DiskAccessRequestImpl	request )
+	{
+		if ( tls.get() != null ){
+
+				// let recursive calls straight through as the dispatchers do
+
+			synchronized( torrent_dispatcher_map ){
+
+				total_requests++;
+
+				total_single_requests_made++;
+
+				total_bytes	+= request.getSize();
+
+				total_single_bytes += request.getSize();
+			}
+
+			try{
+				request.runRequest();
+
+			}catch( Throwable e ){
+
+				io_count++;
+
+				Debug.printStackTrace(e);
+			}
+		}else{
+
+			getSpaceAllowance( request );
+
+			synchronized( torrent_dispatcher_map ){
+
+				total_requests++;
+
+				total_bytes	+= request.getSize();
+			}
+
+			if ( pooled_dispatcher != null ){
+
+				pooled_dispatcher.queue( request );
+
+			}else{
+
+				device_scheduler.queue( request );
+			}
+		}
+	}
+
+		/**
+		 * Runs a single request or a contiguous aggregated set for the pooled and per-device
+		 * backends, maintaining the stats and space allowance as the dispatchers do
+		 * @return elapsed nanos
+		 */
+
+	protected long
+	executeRequests(
+		DiskAccessRequestImpl[]		requests )
+	{
+		long	io_start = SystemTime.getHighPrecisionCounter();
+
+		try{
+			if ( requests.length == 1 ){
+
+				requests[0].runRequest();
+
+			}else{
+
+				DiskAccessRequestImpl.runAggregated( requests[0], requests );
+			}
+		}catch( Throwable e ){
+
+			Debug.printStackTrace(e);
+
+		}finally{
+
+			long	io_end = SystemTime.getHighPrecisionCounter();
+
+				// stats not synced, but they're only stats...
+
+			io_time += ( io_end - io_start );
+
+			io_count++;
+
+			if ( requests.length == 1 ){
+
+				total_single_requests_made++;
+
+				total_single_bytes += requests[0].getSize();
+
+			}else{
+
+				total_aggregated_requests_made++;
+			}
+
+			for ( DiskAccessRequestImpl r: requests ){
+
+				if ( requests.length > 1 ){
+
+					total_aggregated_bytes += r.getSize();
+				}
+
+				releaseSpaceAllowance( r );
+			}
+		}
+
+		return( SystemTime.getHighPrecisionCounter() - io_start );
+	}
+
 	protected void
 	getSpaceAllowance(
 		DiskAccessRequestImpl	request )
@@ -348,7 +526,9 @@ DiskAccessControllerInstance
 			",q_req=" + requests_queued +
 			",t_req=" + total_requests +
 			",t_byte=" + DisplayFormatters.formatByteCountToKiBEtc( total_bytes ) +
-			",io=" + io_count );
+			",io=" + io_count +
+			( pooled_dispatcher==null?"":( "," + pooled_dispatcher.getString())) +
+			( device_scheduler==null?"":( "," + device_scheduler.getString())));
 	}
 
 	protected class
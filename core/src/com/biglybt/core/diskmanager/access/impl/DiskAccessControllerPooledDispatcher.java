@@ -0,0 +1,365 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.diskmanager.access.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.biglybt.core.diskmanager.cache.CacheFile;
+import com.biglybt.core.util.AEThread2;
+import com.biglybt.core.util.SystemTime;
+
+/**
+ * Shared worker pool alternative to the per-torrent request dispatchers. Requests from all
+ * torrents go onto one priority ordered queue that is served by up to 'depth' worker threads,
+ * so a single busy torrent is no longer limited to one outstanding request.
+ * <p/>
+ * This is not asynchronous I/O: requests still run through the CacheFile layer (the cache,
+ * piece-reorder and compact storage all sit below it) as blocking calls on the workers, so the
+ * number of requests in flight is bounded by the number of workers. Workers are started on
+ * demand and exit when idle.
+ * <p/>
+ * As with the dispatchers, unprioritised requests that are contiguous with the one taken are
+ * aggregated into a single operation when aggregation is enabled.
+ */
+
+class
+DiskAccessControllerPooledDispatcher
+{
+	private static final int	IDLE_TIMEOUT	= 10*1000;
+
+	final DiskAccessControllerInstance	instance;
+	final int							depth;
+
+		// higher priorities first, requests with no priority (< 0) in submission order
+
+	final PriorityQueue<queuedRequest>	queue	=
+		new PriorityQueue<>(
+			64,
+			new Comparator<queuedRequest>()
+			{
+				@Override
+				public int
+				compare(
+					queuedRequest	q1,
+					queuedRequest	q2 )
+				{
+					if ( q1.priority != q2.priority ){
+
+						return( q2.priority - q1.priority );
+					}
+
+					return( q1.seq < q2.seq ? -1 : ( q1.seq > q2.seq ? 1 : 0 ));
+				}
+			});
+
+		// unprioritised requests by file and offset for aggregation. Requests aggregated into
+		// another are flagged as taken and skipped when they reach the head of the queue
+
+	private final Map<CacheFile,Map<Long,queuedRequest>>	request_map = new HashMap<>();
+
+	private long	next_seq;
+
+	int				pending;
+
+	int				workers;
+	int				idle_workers;
+	int				in_flight;
+
+	private int		max_in_flight;
+	long			completed;
+
+	protected
+	DiskAccessControllerPooledDispatcher(
+		DiskAccessControllerInstance	_instance,
+		int								_depth )
+	{
+		instance	= _instance;
+		depth		= Math.max( 1, _depth );
+	}
+
+	protected void
+	queue(
+		DiskAccessRequestImpl		request )
+	{
+		synchronized( queue ){
+
+			int priority = request.getPriority();
+
+			queuedRequest	qr = new queuedRequest( request, priority<0?-1:priority, next_seq++ );
+
+			queue.add( qr );
+
+			pending++;
+
+			if ( instance.enable_aggregation && qr.priority < 0 ){
+
+				CacheFile	file = request.getFile();
+
+				Map<Long,queuedRequest>	file_map = request_map.get( file );
+
+				if ( file_map == null ){
+
+					file_map = new HashMap<>();
+
+					request_map.put( file, file_map );
+				}
+
+					// keyed on non-unique offset, a replaced entry just doesn't get aggregated
+
+				file_map.put( request.getOffset(), qr );
+			}
+
+			if ( idle_workers > 0 ){
+
+				queue.notify();
+			}
+
+			if ( pending > idle_workers && workers < depth ){
+
+				workers++;
+
+				startWorker( workers );
+			}
+		}
+	}
+
+		/**
+		 * Removes the next request and any that can be aggregated with it, queue monitor held
+		 */
+
+	private DiskAccessRequestImpl[]
+	take()
+	{
+		queuedRequest	qr;
+
+		while( true ){
+
+			qr = queue.poll();
+
+			if ( !qr.taken ){
+
+				break;
+			}
+		}
+
+		qr.taken = true;
+
+		pending--;
+
+		DiskAccessRequestImpl	request = qr.request;
+
+		if ( !instance.enable_aggregation || qr.priority >= 0 ){
+
+			return( new DiskAccessRequestImpl[]{ request });
+		}
+
+		CacheFile	file = request.getFile();
+
+		Map<Long,queuedRequest>	file_map = request_map.get( file );
+
+		if ( file_map == null ){
+
+			return( new DiskAccessRequestImpl[]{ request });
+		}
+
+		if ( file_map.get( request.getOffset()) == qr ){
+
+			file_map.remove( request.getOffset());
+		}
+
+		List<DiskAccessRequestImpl>	aggregated = null;
+
+		if ( !request.isCancelled()){
+
+			DiskAccessRequestImpl	current = request;
+
+			long	aggregated_bytes = current.getSize();
+
+			while( true ){
+
+				long	end = current.getOffset() + current.getSize();
+
+				queuedRequest	next = file_map.get( end );
+
+				if ( 	next == null || next.taken || next.request.isCancelled() ||
+						!next.request.canBeAggregatedWith( request )){
+
+					break;
+				}
+
+				file_map.remove( end );
+
+				next.taken = true;
+
+				pending--;
+
+				if ( aggregated == null ){
+
+					aggregated = new ArrayList<>( 8 );
+
+					aggregated.add( request );
+				}
+
+				aggregated.add( next.request );
+
+				aggregated_bytes += next.request.getSize();
+
+				if ( aggregated.size() > instance.aggregation_request_limit || aggregated_bytes >= instance.aggregation_byte_limit ){
+
+					break;
+				}
+
+				current = next.request;
+			}
+		}
+
+		if ( file_map.isEmpty()){
+
+			request_map.remove( file );
+		}
+
+		if ( aggregated == null ){
+
+			return( new DiskAccessRequestImpl[]{ request });
+		}
+
+		return( aggregated.toArray( new DiskAccessRequestImpl[ aggregated.size()]));
+	}
+
+	private void
+	startWorker(
+		int		worker_num )
+	{
+		new AEThread2( "DiskAccessController:pool(" + instance.getName() + ")[" + worker_num + "]", true )
+		{
+			@Override
+			public void
+			run()
+			{
+				DiskAccessControllerInstance.tls.set( this );
+
+				while( true ){
+
+					DiskAccessRequestImpl[]	requests;
+
+					synchronized( queue ){
+
+						if ( pending == 0 ){
+
+							long	wait_start = SystemTime.getMonotonousTime();
+
+							idle_workers++;
+
+							try{
+								while( pending == 0 ){
+
+									long	remaining = IDLE_TIMEOUT - ( SystemTime.getMonotonousTime() - wait_start );
+
+									if ( remaining <= 0 ){
+
+										break;
+									}
+
+									queue.wait( remaining );
+								}
+							}catch( InterruptedException e ){
+
+							}finally{
+
+								idle_workers--;
+							}
+
+							if ( pending == 0 ){
+
+								workers--;
+
+								break;
+							}
+						}
+
+						requests = take();
+
+						in_flight++;
+
+						if ( in_flight > max_in_flight ){
+
+							max_in_flight = in_flight;
+						}
+					}
+
+					try{
+						instance.executeRequests( requests );
+
+					}finally{
+
+						synchronized( queue ){
+
+							in_flight--;
+
+							completed += requests.length;
+						}
+					}
+				}
+			}
+		}.start();
+	}
+
+	protected int
+	getDepth()
+	{
+		return( depth );
+	}
+
+	protected int
+	getInFlight()
+	{
+		return( in_flight );
+	}
+
+	protected String
+	getString()
+	{
+		return( "pool=" + depth + ",w=" + workers + ",fl=" + in_flight + ",max_fl=" + max_in_flight + ",done=" + completed );
+	}
+
+	private static class
+	queuedRequest
+	{
+		final DiskAccessRequestImpl	request;
+		final int					priority;
+		final long					seq;
+
+		boolean		taken;
+
+		queuedRequest(
+			DiskAccessRequestImpl	_request,
+			int						_priority,
+			long					_seq )
+		{
+			request		= _request;
+			priority	= _priority;
+			seq			= _seq;
+		}
+	}
+}
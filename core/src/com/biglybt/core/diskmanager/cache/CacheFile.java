@@ -47,6 +47,13 @@ CacheFile
 	public TOTorrentFile
 	getTorrentFile();
 
+		/**
+		 * @return the path of the underlying file
+		 */
+
+	public String
+	getName();
+
 	public boolean
 	exists();
 
@@ -123,6 +130,19 @@ CacheFile
 
 		throws CacheFileManagerException;
 
+		/**
+		 * Returns a read-only view of the data backed directly by a memory mapping of the file, bypassing
+		 * the cache, or null if that isn't possible (cached data present, file not open for read, mapped
+		 * reads disabled...). The buffer must be returned to pool to release the mapping
+		 */
+
+	public DirectByteBuffer
+	readMapped(
+		long				offset,
+		int					length )
+
+		throws CacheFileManagerException;
+
 	public void
 	write(
 		DirectByteBuffer	buffer,
@@ -71,6 +71,27 @@ CacheFileManagerStats
 	public long
 	getFileWriteCount();
 
+		// the cache is split into independently locked shards, these report on each one
+
+	public int
+	getShardCount();
+
+	public long
+	getShardUsedSize(
+		int		shard );
+
+	public long
+	getShardEntryCount(
+		int		shard );
+
+	public long
+	getShardHitCount(
+		int		shard );
+
+	public long
+	getShardEvictionCount(
+		int		shard );
+
 		// returns the number of bytes in the requested range that are in cache
 
 	public boolean[] getBytesInCache(TOTorrent torrent, long[] absoluteOffsets, long[] lengths);
@@ -26,6 +26,7 @@ package com.biglybt.core.diskmanager.cache.impl;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.diskmanager.cache.*;
@@ -49,6 +50,8 @@ CacheFileManagerImpl
 	public static final int		STATS_UPDATE_FREQUENCY		= 1*1000;	// 1 sec
 	public static final long	DIRTY_CACHE_WRITE_MAX_AGE	= 120*1000;	// 2 mins
 
+	public static final int		MAX_SHARDS					= 64;
+
 	static{
 		if ( DEBUG ){
 
@@ -108,7 +111,8 @@ CacheFileManagerImpl
 	protected long		cache_files_not_smaller_than;
 
 	protected long		cache_minimum_free_size;
-	protected long		cache_space_free;
+
+	protected final AtomicLong	cache_space_free	= new AtomicLong();
 
 	private long	cache_file_id_next	= 0;
 
@@ -119,24 +123,27 @@ CacheFileManagerImpl
 	protected WeakHashMap		cache_files			= new WeakHashMap();
 	protected WeakHashMap		updated_cache_files	= null;
 
-		// access order
+		// each cached file is bound to one shard, each shard has its own access ordered
+		// entry list and monitor so unrelated files don't contend
+
+	protected CacheFileManagerShard[]	shards;
 
-	protected final LinkedHashMap		cache_entries = new LinkedHashMap(1024, 0.75f, true );
+	private int		shard_next;
 
 	protected CacheFileManagerStatsImpl	stats;
 
 
 	protected final Map	torrent_to_cache_file_map	= new LightHashMap();
 
-	protected long				cache_bytes_written;
-	protected long				cache_bytes_read;
-	protected long				file_bytes_written;
-	protected long				file_bytes_read;
+	protected final AtomicLong	cache_bytes_written	= new AtomicLong();
+	protected final AtomicLong	cache_bytes_read	= new AtomicLong();
+	protected final AtomicLong	file_bytes_written	= new AtomicLong();
+	protected final AtomicLong	file_bytes_read		= new AtomicLong();
 
-	protected long				cache_read_count;
-	protected long				cache_write_count;
-	protected long				file_read_count;
-	protected long				file_write_count;
+	protected final AtomicLong	cache_read_count	= new AtomicLong();
+	protected final AtomicLong	cache_write_count	= new AtomicLong();
+	protected final AtomicLong	file_read_count		= new AtomicLong();
+	protected final AtomicLong	file_write_count	= new AtomicLong();
 
 	protected final AEMonitor			this_mon	= new AEMonitor( "CacheFileManager" );
 
@@ -165,6 +172,10 @@ CacheFileManagerImpl
 
 		int		not_smaller_than	= 1024*COConfigurationManager.getIntParameter( "notsmallerthan" );
 
+			// 0 -> pick based on available processors
+
+		int		shard_count			= COConfigurationManager.getIntParameter( "diskmanager.perf.cache.shards" );
+
 		if ( size <= 0 ){
 
 			Debug.out( "Invalid cache size parameter (" + size + "), caching disabled" );
@@ -172,7 +183,7 @@ CacheFileManagerImpl
 			enabled	= false;
 		}
 
-		initialise( enabled, enable_read, enable_write, size, not_smaller_than );
+		initialise( enabled, enable_read, enable_write, size, not_smaller_than, shard_count );
 	}
 
 	protected void
@@ -181,7 +192,8 @@ CacheFileManagerImpl
 		boolean	enable_read,
 		boolean	enable_write,
 		long	size,
-		long	not_smaller_than )
+		long	not_smaller_than,
+		int		shard_count )
 	{
 		cache_enabled			= enabled && ( enable_read || enable_write );
 
@@ -195,7 +207,25 @@ CacheFileManagerImpl
 
 		cache_minimum_free_size	= cache_size/4;
 
-		cache_space_free		= cache_size;
+		cache_space_free.set( cache_size );
+
+		if ( shard_count <= 0 ){
+
+			shard_count = Runtime.getRuntime().availableProcessors() * 2;
+		}
+
+		shard_count = Math.min( shard_count, MAX_SHARDS );
+
+			// no point in having shards that can't hold a reasonable amount of data
+
+		shard_count = (int)Math.max( 1, Math.min( shard_count, cache_size / ( 1024*1024 )));
+
+		shards = new CacheFileManagerShard[ shard_count ];
+
+		for ( int i=0;i<shards.length;i++){
+
+			shards[i] = new CacheFileManagerShard( i );
+		}
 
 		stats = new CacheFileManagerStatsImpl( this );
 
@@ -206,7 +236,7 @@ CacheFileManagerImpl
 		if (Logger.isEnabled())
 			Logger.log(new LogEvent(LOGID, "DiskCache: enabled = " + cache_enabled
 					+ ", read = " + cache_read_enabled + ", write = "
-					+ cache_write_enabled + ", size = " + cache_size + " B"));
+					+ cache_write_enabled + ", size = " + cache_size + " B, shards = " + shards.length ));
 	}
 
 	protected boolean
@@ -287,7 +317,19 @@ CacheFileManagerImpl
 
 			}else{
 
-				cf = new CacheFileWithCache( this, fm_file, tf );
+				CacheFileManagerShard	shard;
+
+				try{
+					this_mon.enter();
+
+					shard = shards[ ( shard_next++ & Integer.MAX_VALUE ) % shards.length ];
+
+				}finally{
+
+					this_mon.exit();
+				}
+
+				cf = new CacheFileWithCache( this, shard, fm_file, tf );
 
 				try{
 					this_mon.enter();
@@ -371,30 +413,35 @@ CacheFileManagerImpl
 
 			CacheEntry	oldest_entry	= null;
 
-			try{
-				this_mon.enter();
+			long	free = cache_space_free.get();
 
-				if ( length < cache_space_free || cache_space_free == cache_size ){
+			if ( length < free || free == cache_size ){
 
-					ok	= true;
+				ok	= true;
 
-				}else{
+			}else{
 
-					oldest_entry = (CacheEntry)cache_entries.keySet().iterator().next();
-				}
-			}finally{
+				oldest_entry = getOldestEntry();
 
-				this_mon.exit();
+				if ( oldest_entry == null ){
+
+						// space is accounted for but not yet visible in any shard (allocation
+						// races with addCacheSpace), nothing to flush so just go ahead
+
+					ok	= true;
+				}
 			}
 
 			if ( !ok ){
 
 				log	= true;
 
-				long	old_free	= cache_space_free;
+				long	old_free	= free;
 
 				CacheFileWithCache	oldest_file = oldest_entry.getFile();
 
+				oldest_file.getShard().evicted();
+
 				try{
 
 					oldest_file.flushCache( oldest_entry.getFilePosition(), true, cache_minimum_free_size );
@@ -415,7 +462,7 @@ CacheFileManagerImpl
 					}
 				}
 
-				long	flushed = cache_space_free - old_free;
+				long	flushed = cache_space_free.get() - old_free;
 
 				if (Logger.isEnabled()) {
 					TOTorrentFile tf = file.getTorrentFile();
@@ -427,11 +474,12 @@ CacheFileManagerImpl
 
 				if ( flushed == 0 ){
 
+					CacheFileManagerShard	shard = oldest_file.getShard();
+
 					try{
-						this_mon.enter();
+						shard.this_mon.enter();
 
-						if (	cache_entries.size() > 0 &&
-								(CacheEntry)cache_entries.keySet().iterator().next() == oldest_entry ){
+						if ( shard.getOldestLocked() == oldest_entry ){
 
 								// hmm, something wrong with cache as the flush should have got rid
 								// of at least the oldest entry
@@ -440,7 +488,7 @@ CacheFileManagerImpl
 						}
 					}finally{
 
-						this_mon.exit();
+						shard.this_mon.exit();
 					}
 				}
 			}
@@ -453,13 +501,51 @@ CacheFileManagerImpl
 			TOTorrent torrent = tf == null ? null : tf.getTorrent();
 
 			Logger.log(new LogEvent(torrent, LOGID, "DiskCache: cr="
-					+ cache_bytes_read + ",cw=" + cache_bytes_written + ",fr="
-					+ file_bytes_read + ",fw=" + file_bytes_written));
+					+ cache_bytes_read.get() + ",cw=" + cache_bytes_written.get() + ",fr="
+					+ file_bytes_read.get() + ",fw=" + file_bytes_written.get()));
 		}
 
 		return( entry );
 	}
 
+		/**
+		 * Approximate global LRU - each shard's list is access ordered so the head is its least
+		 * recently used entry, pick the oldest of these. Shards are inspected one at a time so
+		 * the result may be slightly stale by the time it is used, which is fine for eviction
+		 */
+
+	protected CacheEntry
+	getOldestEntry()
+	{
+		CacheEntry	oldest 		= null;
+		long		oldest_time	= Long.MAX_VALUE;
+
+		for ( CacheFileManagerShard shard: shards ){
+
+			try{
+				shard.this_mon.enter();
+
+				CacheEntry entry = shard.getOldestLocked();
+
+				if ( entry != null ){
+
+					long	last_used = entry.getLastUsed();
+
+					if ( oldest == null || last_used < oldest_time ){
+
+						oldest		= entry;
+						oldest_time	= last_used;
+					}
+				}
+			}finally{
+
+				shard.this_mon.exit();
+			}
+		}
+
+		return( oldest );
+	}
+
 	protected void
 	cacheStatsAndCleaner()
 	{
@@ -502,13 +588,23 @@ CacheFileManagerImpl
 								updated_cache_files	= null;
 							}
 
-							if ( cache_entries.size() > 0 ){
+							// System.out.println( "cache file = " + cache_files.size() + ", torrent map = " + torrent_to_cache_file_map.size());
 
-								Iterator it = cache_entries.keySet().iterator();
+						}finally{
+
+							this_mon.exit();
+						}
+
+						for ( CacheFileManagerShard shard: shards ){
+
+							try{
+								shard.this_mon.enter();
+
+								Iterator<CacheEntry> it = shard.iteratorLocked();
 
 								while( it.hasNext()){
 
-									CacheEntry	entry = (CacheEntry)it.next();
+									CacheEntry	entry = it.next();
 
 									// System.out.println( "oldest entry = " + ( now - entry.getLastUsed()));
 
@@ -517,13 +613,10 @@ CacheFileManagerImpl
 										dirty_files.add( entry.getFile());
 									}
 								}
-							}
-
-							// System.out.println( "cache file = " + cache_files.size() + ", torrent map = " + torrent_to_cache_file_map.size());
+							}finally{
 
-						}finally{
-
-							this_mon.exit();
+								shard.this_mon.exit();
+							}
 						}
 
 						Iterator	it = dirty_files.iterator();
@@ -577,28 +670,30 @@ CacheFileManagerImpl
 
 		throws CacheFileManagerException
 	{
+		CacheFileWithCache		file	= new_entry.getFile();
+
+		CacheFileManagerShard	shard	= file.getShard();
+
 		try{
-			this_mon.enter();
+			shard.this_mon.enter();
 
-			cache_space_free	-= new_entry.getLength();
+			cache_space_free.addAndGet( -new_entry.getLength());
 
 				// 	System.out.println( "Total cache space = " + cache_space_free );
 
-			cache_entries.put( new_entry, new_entry );
+			shard.addLocked( new_entry );
 
 			if ( DEBUG ){
 
-				CacheFileWithCache	file	= new_entry.getFile();
-
 				long	total_cache_size	= 0;
 
 				int		my_count = 0;
 
-				Iterator it = cache_entries.keySet().iterator();
+				Iterator<CacheEntry> it = shard.iteratorLocked();
 
 				while( it.hasNext()){
 
-					CacheEntry	entry = (CacheEntry)it.next();
+					CacheEntry	entry = it.next();
 
 					total_cache_size	+= entry.getLength();
 
@@ -619,9 +714,9 @@ CacheFileManagerImpl
 					//System.out.println( "Cache: file_count = " + my_count );
 				}
 
-				if ( total_cache_size != cache_size - cache_space_free ){
+				if ( total_cache_size != shard.getUsedSize()){
 
-					Debug.out( "Cache inconsistency: used_size = " + total_cache_size + ", free = " + cache_space_free + ", size = " + cache_size );
+					Debug.out( "Cache inconsistency: used_size = " + total_cache_size + ", shard used = " + shard.getUsedSize() + ", size = " + cache_size );
 
 					throw( new CacheFileManagerException( null, "Cache inconsistency: sizes differ"));
 
@@ -632,7 +727,7 @@ CacheFileManagerImpl
 			}
 		}finally{
 
-			this_mon.exit();
+			shard.this_mon.exit();
 		}
 	}
 
@@ -642,12 +737,12 @@ CacheFileManagerImpl
 
 		throws CacheFileManagerException
 	{
-		try{
-			this_mon.enter();
+		CacheFileManagerShard	shard	= entry.getFile().getShard();
 
-				// note that the "get" operation update the MRU in cache_entries
+		try{
+			shard.this_mon.enter();
 
-			if ( cache_entries.get( entry ) == null ){
+			if ( !shard.usedLocked( entry )){
 
 				Debug.out( "Cache inconsistency: entry missing on usage" );
 
@@ -659,7 +754,7 @@ CacheFileManagerImpl
 			}
 		}finally{
 
-			this_mon.exit();
+			shard.this_mon.exit();
 		}
 	}
 
@@ -671,12 +766,14 @@ CacheFileManagerImpl
 	{
 		entry.getBuffer().returnToPool();
 
+		CacheFileManagerShard	shard	= entry.getFile().getShard();
+
 		try{
-			this_mon.enter();
+			shard.this_mon.enter();
 
-			cache_space_free	+= entry.getLength();
+			cache_space_free.addAndGet( entry.getLength());
 
-			if ( cache_entries.remove( entry ) == null ){
+			if ( !shard.removeLocked( entry )){
 
 				Debug.out( "Cache inconsistency: entry missing on removal" );
 
@@ -700,10 +797,16 @@ CacheFileManagerImpl
 			// System.out.println( "Total cache space = " + cache_space_free );
 		}finally{
 
-			this_mon.exit();
+			shard.this_mon.exit();
 		}
 	}
 
+	protected CacheFileManagerShard[]
+	getShards()
+	{
+		return( shards );
+	}
+
 	protected long
 	getCacheSize()
 	{
@@ -713,7 +816,7 @@ CacheFileManagerImpl
 	protected long
 	getCacheUsed()
 	{
-		long free = cache_space_free;
+		long free = cache_space_free.get();
 
 		if ( free < 0 ){
 
@@ -727,115 +830,84 @@ CacheFileManagerImpl
 	cacheBytesWritten(
 		long		num )
 	{
-		try{
-			this_mon.enter();
-
-			cache_bytes_written	+= num;
-
-			cache_write_count++;
-
-		}finally{
+		cache_bytes_written.addAndGet( num );
 
-			this_mon.exit();
-		}
+		cache_write_count.incrementAndGet();
 	}
 
 	protected void
 	cacheBytesRead(
 		int		num )
 	{
-		try{
-			this_mon.enter();
-
-			cache_bytes_read	+= num;
-
-			cache_read_count++;
-
-		}finally{
+		cache_bytes_read.addAndGet( num );
 
-			this_mon.exit();
-		}
+		cache_read_count.incrementAndGet();
 	}
 
 	protected void
 	fileBytesWritten(
 		long	num )
 	{
-		try{
-			this_mon.enter();
-
-			file_bytes_written	+= num;
-
-			file_write_count++;
-
-		}finally{
+		file_bytes_written.addAndGet( num );
 
-			this_mon.exit();
-		}
+		file_write_count.incrementAndGet();
 	}
 
 	protected void
 	fileBytesRead(
 		int		num )
 	{
-		try{
-			this_mon.enter();
-
-			file_bytes_read	+= num;
-
-			file_read_count++;
-		}finally{
+		file_bytes_read.addAndGet( num );
 
-			this_mon.exit();
-		}
+		file_read_count.incrementAndGet();
 	}
 
 	protected long
 	getBytesWrittenToCache()
 	{
-		return( cache_bytes_written );
+		return( cache_bytes_written.get());
 	}
 
 	protected long
 	getBytesWrittenToFile()
 	{
-		return( file_bytes_written );
+		return( file_bytes_written.get());
 	}
 
 	protected long
 	getBytesReadFromCache()
 	{
-		return( cache_bytes_read );
+		return( cache_bytes_read.get());
 	}
 
 	protected long
 	getBytesReadFromFile()
 	{
-		return( file_bytes_read );
+		return( file_bytes_read.get());
 	}
 
 	public long
 	getCacheReadCount()
 	{
-		return( cache_read_count );
+		return( cache_read_count.get());
 	}
 
 	public long
 	getCacheWriteCount()
 	{
-		return( cache_write_count );
+		return( cache_write_count.get());
 	}
 
 	public long
 	getFileReadCount()
 	{
-		return( file_read_count );
+		return( file_read_count.get());
 	}
 
 	public long
 	getFileWriteCount()
 	{
-		return( file_write_count );
+		return( file_write_count.get());
 	}
 
 	protected void
@@ -968,28 +1040,23 @@ CacheFileManagerImpl
 		try{
 			writer.indent();
 
-			Iterator it;
-
-				// grab a copy to avoid potential deadlock as we never take the manager monitor
+				// grab a copy to avoid potential deadlock as we never take a shard monitor
 				// and then the file's own monitor, always the other way around
 
-			try{
-				this_mon.enter();
+			List<CacheEntry>	entries = new ArrayList<>();
 
-				it = new ArrayList( cache_entries.keySet()).iterator();
+			for ( CacheFileManagerShard shard: shards ){
 
-			}finally{
+				entries.addAll( shard.getEntries());
 
-				this_mon.exit();
+				writer.println( shard.getString());
 			}
 
-			writer.println( "Entries = " + cache_entries.size());
+			writer.println( "Entries = " + entries.size());
 
 			Set	files = new HashSet();
 
-			while( it.hasNext()){
-
-				CacheEntry	entry = (CacheEntry)it.next();
+			for ( CacheEntry entry: entries ){
 
 				CacheFileWithCache file = entry.getFile();
 
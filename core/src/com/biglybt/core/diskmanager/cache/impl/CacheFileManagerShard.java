@@ -0,0 +1,195 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.diskmanager.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.biglybt.core.util.AEMonitor;
+
+/**
+ * One segment of the disk cache. Each CacheFileWithCache is bound to a single shard
+ * for its lifetime so that cache activity for different files only contends when
+ * they happen to share a shard. The shard keeps its own access-ordered entry list;
+ * the manager picks eviction victims by comparing the least recently used entry
+ * of each shard, which gives an approximate global LRU.
+ */
+
+public class
+CacheFileManagerShard
+{
+	private final int		index;
+
+		// access order
+
+	private final LinkedHashMap<CacheEntry,CacheEntry>	cache_entries = new LinkedHashMap<>(256, 0.75f, true );
+
+	final AEMonitor		this_mon;
+
+	private long		used_size;
+
+	private long		hit_count;
+	private long		insert_count;
+	private long		eviction_count;
+
+	protected
+	CacheFileManagerShard(
+		int		_index )
+	{
+		index		= _index;
+
+		this_mon	= new AEMonitor( "CacheFileManager:shard" + index );
+	}
+
+	protected int
+	getIndex()
+	{
+		return( index );
+	}
+
+		// all of the following "locked" methods must be called with this_mon held
+
+	protected void
+	addLocked(
+		CacheEntry		entry )
+	{
+		cache_entries.put( entry, entry );
+
+		used_size	+= entry.getLength();
+
+		insert_count++;
+	}
+
+	protected boolean
+	usedLocked(
+		CacheEntry		entry )
+	{
+			// note that the "get" operation updates the MRU in cache_entries
+
+		if ( cache_entries.get( entry ) == null ){
+
+			return( false );
+		}
+
+		hit_count++;
+
+		return( true );
+	}
+
+	protected boolean
+	removeLocked(
+		CacheEntry		entry )
+	{
+		if ( cache_entries.remove( entry ) == null ){
+
+			return( false );
+		}
+
+		used_size	-= entry.getLength();
+
+		return( true );
+	}
+
+	protected CacheEntry
+	getOldestLocked()
+	{
+		if ( cache_entries.isEmpty()){
+
+			return( null );
+		}
+
+		return( cache_entries.keySet().iterator().next());
+	}
+
+	protected Iterator<CacheEntry>
+	iteratorLocked()
+	{
+		return( cache_entries.keySet().iterator());
+	}
+
+	protected List<CacheEntry>
+	getEntries()
+	{
+		try{
+			this_mon.enter();
+
+			return( new ArrayList<>( cache_entries.keySet()));
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	protected void
+	evicted()
+	{
+		try{
+			this_mon.enter();
+
+			eviction_count++;
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+		// stats - unsynchronised reads, good enough for display
+
+	protected long
+	getUsedSize()
+	{
+		return( used_size );
+	}
+
+	protected int
+	getEntryCount()
+	{
+		return( cache_entries.size());
+	}
+
+	protected long
+	getHitCount()
+	{
+		return( hit_count );
+	}
+
+	protected long
+	getInsertCount()
+	{
+		return( insert_count );
+	}
+
+	protected long
+	getEvictionCount()
+	{
+		return( eviction_count );
+	}
+
+	protected String
+	getString()
+	{
+		return( "shard " + index + ": entries=" + cache_entries.size() +
+				", used=" + used_size + ", inserts=" + insert_count + ", hits=" + hit_count +
+				", evictions=" + eviction_count );
+	}
+}
@@ -205,6 +205,45 @@ CacheFileManagerStatsImpl
 		return( manager.getFileWriteCount());
 	}
 
+	@Override
+	public int
+	getShardCount()
+	{
+		return( manager.getShards().length );
+	}
+
+	@Override
+	public long
+	getShardUsedSize(
+		int		shard )
+	{
+		return( manager.getShards()[shard].getUsedSize());
+	}
+
+	@Override
+	public long
+	getShardEntryCount(
+		int		shard )
+	{
+		return( manager.getShards()[shard].getEntryCount());
+	}
+
+	@Override
+	public long
+	getShardHitCount(
+		int		shard )
+	{
+		return( manager.getShards()[shard].getHitCount());
+	}
+
+	@Override
+	public long
+	getShardEvictionCount(
+		int		shard )
+	{
+		return( manager.getShards()[shard].getEvictionCount());
+	}
+
 	@Override
 	public boolean[] getBytesInCache(TOTorrent torrent, long[] absoluteOffsets, long[] lengths)
 	{
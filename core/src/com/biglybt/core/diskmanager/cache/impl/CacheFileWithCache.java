@@ -100,6 +100,7 @@ CacheFileWithCache
 	protected final static int		READAHEAD_HISTORY	= 32;
 
 	protected final CacheFileManagerImpl		manager;
+	protected final CacheFileManagerShard		shard;
 	protected final FMFile					file;
 	protected int						access_mode	= CF_READ;
 	protected TOTorrentFile				torrent_file;
@@ -138,10 +139,12 @@ CacheFileWithCache
 	protected
 	CacheFileWithCache(
 		CacheFileManagerImpl	_manager,
+		CacheFileManagerShard	_shard,
 		FMFile					_file,
 		TOTorrentFile			_torrent_file )
 	{
 		manager		= _manager;
+		shard		= _shard;
 		file		= _file;
 
 		if ( _torrent_file != null ){
@@ -182,6 +185,12 @@ CacheFileWithCache
 		return( torrent_file );
 	}
 
+	protected CacheFileManagerShard
+	getShard()
+	{
+		return( shard );
+	}
+
 	protected void
 	updateStats()
 	{
@@ -1306,7 +1315,8 @@ CacheFileWithCache
 		pending_exception	= e;
 	}
 
-	protected String
+	@Override
+	public String
 	getName()
 	{
 		return( file.getName());
@@ -1619,6 +1629,49 @@ CacheFileWithCache
 		readCache( buffer, position, false, !read_cache );
 	}
 
+	@Override
+	public DirectByteBuffer
+	readMapped(
+		long				position,
+		int					length )
+
+		throws CacheFileManagerException
+	{
+		checkPendingException();
+
+		try{
+			this_mon.enter();
+
+				// anything held in the cache takes precedence (and may not have been written yet)
+
+			if ( !cache.isEmpty()){
+
+				return( null );
+			}
+
+			DirectByteBuffer	result = getFMFile().readMapped( position, length );
+
+			if ( result != null ){
+
+				manager.fileBytesRead( length );
+
+				bytes_read += length;
+			}
+
+			return( result );
+
+		}catch( FMFileManagerException e ){
+
+			manager.rethrow(this,e);
+
+			return( null );
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
 	@Override
 	public void
 	write(
@@ -64,6 +64,13 @@ CacheFileWithoutCache
 		return( torrent_file );
 	}
 
+	@Override
+	public String
+	getName()
+	{
+		return( file.getName());
+	}
+
 	@Override
 	public boolean
 	exists()
@@ -268,6 +275,34 @@ CacheFileWithoutCache
 		}
 	}
 
+	@Override
+	public DirectByteBuffer
+	readMapped(
+		long				position,
+		int					length )
+
+		throws CacheFileManagerException
+	{
+		try{
+			DirectByteBuffer	result = file.readMapped( position, length );
+
+			if ( result != null ){
+
+				manager.fileBytesRead( length );
+
+				bytes_read += length;
+			}
+
+			return( result );
+
+		}catch( FMFileManagerException e ){
+
+			manager.rethrow(this,e);
+
+			return( null );
+		}
+	}
+
 	@Override
 	public void
 	write(
@@ -71,6 +71,13 @@ CacheFileWithoutCacheMT
 		return( torrent_file );
 	}
 
+	@Override
+	public String
+	getName()
+	{
+		return( base_file.getName());
+	}
+
 	@Override
 	public boolean
 	exists()
@@ -529,6 +536,42 @@ CacheFileWithoutCacheMT
 		}
 	}
 
+	@Override
+	public DirectByteBuffer
+	readMapped(
+		long				position,
+		int					length )
+
+		throws CacheFileManagerException
+	{
+		FMFile file = null;
+
+		try{
+			file	= getFile();
+
+			DirectByteBuffer	result = file.readMapped( position, length );
+
+			if ( result != null ){
+
+				manager.fileBytesRead( length );
+
+				bytes_read += length;
+			}
+
+			return( result );
+
+		}catch( FMFileManagerException e ){
+
+			manager.rethrow(this,e);
+
+			return( null );
+
+		}finally{
+
+			releaseFile( file );
+		}
+	}
+
 	@Override
 	public void
 	write(
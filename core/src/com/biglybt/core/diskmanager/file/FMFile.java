@@ -121,6 +121,20 @@ FMFile
 
 		throws FMFileManagerException;
 
+		/**
+		 * Returns a read-only view directly onto the file's data, backed by a memory mapping, that
+		 * must be returned to pool when finished with. Only available for linear files open for read
+		 * when mapped reads are enabled
+		 * @return null if not available for this file/range
+		 */
+
+	public DirectByteBuffer
+	readMapped(
+		long		offset,
+		int			length )
+
+		throws FMFileManagerException;
+
 	public void
 	write(
 		DirectByteBuffer	buffer,
@@ -26,6 +26,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.Locale;
 
+import com.biglybt.core.diskmanager.file.FMFile;
 import com.biglybt.core.diskmanager.file.FMFileManagerException;
 import com.biglybt.core.util.*;
 
@@ -255,6 +256,31 @@ FMFileAccessLinear
 
 		int[]	original_positions = new int[buffers.length];
 
+		if ( FMFileMappedReadCache.isEnabled() && owner.getAccessMode() == FMFile.FM_READ ){
+
+			for (int i=0;i<buffers.length;i++){
+
+				original_positions[i] = buffers[i].position( DirectByteBuffer.SS_FILE );
+			}
+
+			try{
+				if ( FMFileMappedReadCache.getSingleton().read( fa, buffers, offset )){
+
+					return;
+				}
+			}catch( Throwable e ){
+
+					// fall back to a normal read
+
+				Debug.out( "Mapped read failed: " + owner.getString(), e );
+
+				for (int i=0;i<buffers.length;i++){
+
+					buffers[i].position( DirectByteBuffer.SS_FILE, original_positions[i] );
+				}
+			}
+		}
+
 		long read_start = SystemTime.getHighPrecisionCounter();
 
 		try{
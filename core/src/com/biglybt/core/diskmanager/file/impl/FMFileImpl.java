@@ -563,6 +563,7 @@ FMFileImpl
 		if ( fa != null ){
 
 			try{
+				FMFileMappedReadCache.getSingleton().closed( fa );
 
 				fa.close();
 
@@ -670,6 +671,8 @@ FMFileImpl
 		}else{
 
 			try{
+				FMFileMappedReadCache.getSingleton().closed( fa );
+
 				fa.close();
 
 			}catch( Throwable e ){
@@ -738,6 +741,29 @@ FMFileImpl
 		}
 	}
 
+	protected DirectByteBuffer
+	readMappedSupport(
+		long		offset,
+		int			length )
+
+		throws FMFileManagerException
+	{
+		if ( 	!FMFileMappedReadCache.isSliceEnabled() ||
+				access_mode != FM_READ ||
+				file_access.getStorageType() != FT_LINEAR ){
+
+			return( null );
+		}
+
+		try{
+			return( FMFileMappedReadCache.getSingleton().readSlice( fa, offset, length ));
+
+		}catch( Throwable e ){
+
+			throw( new FMFileManagerException( "readMapped fails", e ));
+		}
+	}
+
 	protected void
 	readSupport(
 		DirectByteBuffer	buffer,
@@ -274,6 +274,27 @@ FMFileLimited
 	}
 
 
+	@Override
+	public DirectByteBuffer
+	readMapped(
+		long		offset,
+		int			length )
+
+		throws FMFileManagerException
+	{
+		try{
+			this_mon.enter();
+
+			ensureOpen( "FMFileLimited:readMapped" );
+
+			return( readMappedSupport( offset, length ));
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
 	@Override
 	public void
 	write(
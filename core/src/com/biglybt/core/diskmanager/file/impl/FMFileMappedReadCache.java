@@ -0,0 +1,593 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.diskmanager.file.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ParameterListener;
+import com.biglybt.core.util.AEDiagnostics;
+import com.biglybt.core.util.AEDiagnosticsEvidenceGenerator;
+import com.biglybt.core.util.Constants;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+import com.biglybt.core.util.DisplayFormatters;
+import com.biglybt.core.util.IndentWriter;
+
+/**
+ * Serves reads of large files opened read-only (i.e. complete, seeding) from memory mapped
+ * windows rather than FileChannel reads. Windows are WINDOW_SIZE aligned regions of a file,
+ * the total mapped across all files is bounded and the least recently used windows are unmapped
+ * when the limit is reached. Windows are reference counted while being copied from so that an
+ * unmap never races with a reader, and all windows of a file are unmapped when it is closed.
+ */
+
+class
+FMFileMappedReadCache
+	implements AEDiagnosticsEvidenceGenerator
+{
+	private static final int	WINDOW_SIZE		= 16*1024*1024;
+
+	private static final FMFileMappedReadCache	singleton = new FMFileMappedReadCache();
+
+	static volatile boolean	enabled;
+	static volatile boolean	slices_enabled;
+	static volatile long	max_mapped;
+	static volatile long	min_file_size;
+
+	static{
+		COConfigurationManager.addAndFireParameterListeners(
+			new String[]{
+				"diskmanager.perf.read.mmap.enable",
+				"diskmanager.perf.read.mmap.upload",
+				"diskmanager.perf.read.mmap.maxmb",
+				"diskmanager.perf.read.mmap.minmb" },
+			new ParameterListener()
+			{
+				@Override
+				public void
+				parameterChanged(
+					String	name )
+				{
+						// 32 bit VMs don't have the address space to spare
+
+					enabled 		= COConfigurationManager.getBooleanParameter( "diskmanager.perf.read.mmap.enable" ) && Constants.is64Bit;
+					slices_enabled	= COConfigurationManager.getBooleanParameter( "diskmanager.perf.read.mmap.upload" ) && Constants.is64Bit;
+					max_mapped		= Math.max( 1, COConfigurationManager.getIntParameter( "diskmanager.perf.read.mmap.maxmb" ))*1024L*1024;
+					min_file_size	= COConfigurationManager.getIntParameter( "diskmanager.perf.read.mmap.minmb" )*1024L*1024;
+				}
+			});
+	}
+
+	protected static FMFileMappedReadCache
+	getSingleton()
+	{
+		return( singleton );
+	}
+
+	protected static boolean
+	isEnabled()
+	{
+		return( enabled );
+	}
+
+		/**
+		 * Zero-copy slices for uploads are controlled separately from mapped reads, the windows
+		 * share the same limits either way
+		 */
+
+	protected static boolean
+	isSliceEnabled()
+	{
+		return( slices_enabled );
+	}
+
+	private final Object	lock = new Object();
+
+	private final Map<FileChannel,mappedFile>	files	= new IdentityHashMap<>();
+
+		// access order
+
+	private final LinkedHashMap<window,window>	windows	= new LinkedHashMap<>( 16, 0.75f, true );
+
+	private long	mapped_bytes;
+
+	private long	read_count;
+	private long	read_bytes;
+	private long	slice_count;
+	private long	slice_bytes;
+	private long	slice_declined;
+	private long	map_count;
+	private long	unmap_count;
+	private long	unmap_fails;
+
+	private
+	FMFileMappedReadCache()
+	{
+		AEDiagnostics.addWeakEvidenceGenerator( this );
+	}
+
+	/**
+	 * @return false if the file isn't eligible and the caller should read it normally
+	 */
+
+	protected boolean
+	read(
+		FMFileAccess.FileAccessor	fa,
+		DirectByteBuffer[]			buffers,
+		long						offset )
+
+		throws Exception
+	{
+		FileChannel	fc = fa.getChannel();
+
+		mappedFile	file;
+
+		synchronized( lock ){
+
+			file = files.get( fc );
+
+			if ( file == null ){
+
+				long	length = fa.getLength();
+
+				if ( length < min_file_size ){
+
+					return( false );
+				}
+
+				file = new mappedFile( fc, length );
+
+				files.put( fc, file );
+			}
+		}
+
+		long	pos = offset;
+
+		for ( DirectByteBuffer buffer: buffers ){
+
+			ByteBuffer	bb = buffer.getBuffer( DirectByteBuffer.SS_FILE );
+
+			while( bb.hasRemaining() && pos < file.length ){
+
+				window	w = getWindow( file, (int)( pos / WINDOW_SIZE ));
+
+				try{
+					int	window_offset	= (int)( pos - w.start );
+					int	chunk			= Math.min( bb.remaining(), w.buffer.capacity() - window_offset );
+
+					ByteBuffer	src = w.buffer.duplicate();
+
+					src.limit( window_offset + chunk );
+					src.position( window_offset );
+
+					bb.put( src );
+
+					pos += chunk;
+
+				}finally{
+
+					releaseWindow( w );
+				}
+			}
+		}
+
+		synchronized( lock ){
+
+			read_count++;
+			read_bytes += pos - offset;
+		}
+
+		return( true );
+	}
+
+	/**
+	 * Returns a read-only buffer that is a view directly onto the mapped file data, for callers that
+	 * can hand the data on (e.g. to a socket) without copying it. The mapping is held until the buffer
+	 * is returned to pool. Pages are touched here so that faulting them in happens on the caller's
+	 * (disk) thread rather than wherever the buffer is eventually consumed
+	 * @return null if the file isn't eligible or the range spans windows
+	 */
+
+	protected DirectByteBuffer
+	readSlice(
+		FMFileAccess.FileAccessor	fa,
+		long						offset,
+		int							length )
+
+		throws Exception
+	{
+		FileChannel	fc = fa.getChannel();
+
+		mappedFile	file;
+
+		synchronized( lock ){
+
+			file = files.get( fc );
+
+			if ( file == null ){
+
+				long	file_length = fa.getLength();
+
+				if ( file_length < min_file_size ){
+
+					slice_declined++;
+
+					return( null );
+				}
+
+				file = new mappedFile( fc, file_length );
+
+				files.put( fc, file );
+			}
+
+			int	index = (int)( offset / WINDOW_SIZE );
+
+			if ( 	length <= 0 ||
+					offset + length > file.length ||
+					(int)(( offset + length - 1 ) / WINDOW_SIZE ) != index ){
+
+				slice_declined++;
+
+				return( null );
+			}
+		}
+
+		final window	w = getWindow( file, (int)( offset / WINDOW_SIZE ));
+
+		boolean	ok = false;
+
+		try{
+			int	window_offset = (int)( offset - w.start );
+
+			ByteBuffer	slice = w.buffer.duplicate();
+
+			slice.limit( window_offset + length );
+			slice.position( window_offset );
+
+			slice = slice.slice().asReadOnlyBuffer();
+
+			for ( int i=0;i<length;i+=4096 ){
+
+				slice.get( i );
+			}
+
+			DirectByteBuffer	result =
+				new DirectByteBuffer(
+					DirectByteBuffer.AL_FILE,
+					slice,
+					new DirectByteBufferPool()
+					{
+						@Override
+						protected DirectByteBuffer
+						getBufferSupport(
+							byte		allocator,
+							int			length )
+						{
+							throw( new RuntimeException( "not supported" ));
+						}
+
+						@Override
+						protected void
+						returnBufferSupport(
+							DirectByteBuffer	buffer )
+						{
+							releaseWindow( w );
+						}
+					});
+
+			synchronized( lock ){
+
+				slice_count++;
+				slice_bytes += length;
+			}
+
+			ok = true;
+
+			return( result );
+
+		}finally{
+
+			if ( !ok ){
+
+				releaseWindow( w );
+			}
+		}
+	}
+
+	private window
+	getWindow(
+		mappedFile		file,
+		int				index )
+
+		throws Exception
+	{
+		synchronized( lock ){
+
+			window	w = file.windows.get( index );
+
+			if ( w != null ){
+
+					// updates the LRU
+
+				windows.get( w );
+
+				w.users++;
+
+				return( w );
+			}
+
+			long	start 	= (long)index * WINDOW_SIZE;
+			int		size	= (int)Math.min( WINDOW_SIZE, file.length - start );
+
+			MappedByteBuffer	buffer = file.channel.map( MapMode.READ_ONLY, start, size );
+
+			w = new window( file, index, start, buffer );
+
+			w.users++;
+
+			file.windows.put( index, w );
+
+			windows.put( w, w );
+
+			mapped_bytes += size;
+
+			map_count++;
+
+			Iterator<window>	it = windows.keySet().iterator();
+
+			while( mapped_bytes > max_mapped && it.hasNext()){
+
+				window	old = it.next();
+
+				if ( old == w ){
+
+					continue;
+				}
+
+				it.remove();
+
+				removeWindow( old );
+			}
+
+			return( w );
+		}
+	}
+
+	private void
+	releaseWindow(
+		window		w )
+	{
+		synchronized( lock ){
+
+			w.users--;
+
+			if ( w.users == 0 && w.removed ){
+
+				unmap( w );
+			}
+		}
+	}
+
+		// lock held
+
+	private void
+	removeWindow(
+		window		w )
+	{
+		w.file.windows.remove( w.index );
+
+		w.removed = true;
+
+		mapped_bytes -= w.buffer.capacity();
+
+		if ( w.users == 0 ){
+
+			unmap( w );
+		}
+	}
+
+	/**
+	 * Called before the file accessor is closed, unmaps everything mapped from it
+	 */
+
+	protected void
+	closed(
+		FMFileAccess.FileAccessor	fa )
+	{
+		FileChannel	fc = fa.getChannel();
+
+		synchronized( lock ){
+
+			mappedFile	file = files.remove( fc );
+
+			if ( file != null ){
+
+				for ( window w: file.windows.values().toArray( new window[0] )){
+
+					windows.remove( w );
+
+					removeWindow( w );
+				}
+			}
+		}
+	}
+
+	private void
+	unmap(
+		window		w )
+	{
+		unmap_count++;
+
+		if ( !Unmapper.unmap( w.buffer )){
+
+				// left for the GC to release
+
+			unmap_fails++;
+		}
+	}
+
+	@Override
+	public void
+	generate(
+		IndentWriter		writer )
+	{
+		writer.println( "Mapped Read Cache" );
+
+		try{
+			writer.indent();
+
+			synchronized( lock ){
+
+				writer.println(
+					"enabled=" + enabled + ", slices=" + slices_enabled + ", files=" + files.size() + ", windows=" + windows.size() +
+					", mapped=" + DisplayFormatters.formatByteCountToKiBEtc( mapped_bytes ) +
+					"/" + DisplayFormatters.formatByteCountToKiBEtc( max_mapped ));
+
+				writer.println(
+					"reads=" + read_count + ", read=" + DisplayFormatters.formatByteCountToKiBEtc( read_bytes ) +
+					", maps=" + map_count + ", unmaps=" + unmap_count + ", unmap_fails=" + unmap_fails );
+
+				writer.println(
+					"zero copy: slices=" + slice_count + ", sliced=" + DisplayFormatters.formatByteCountToKiBEtc( slice_bytes ) +
+					", declined=" + slice_declined );
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	private static class
+	mappedFile
+	{
+		final FileChannel			channel;
+		final long					length;
+
+		final Map<Integer,window>	windows = new LinkedHashMap<>();
+
+		mappedFile(
+			FileChannel		_channel,
+			long			_length )
+		{
+			channel	= _channel;
+			length	= _length;
+		}
+	}
+
+	private static class
+	window
+	{
+		final mappedFile		file;
+		final int				index;
+		final long				start;
+		final MappedByteBuffer	buffer;
+
+		int			users;
+		boolean		removed;
+
+		window(
+			mappedFile			_file,
+			int					_index,
+			long				_start,
+			MappedByteBuffer	_buffer )
+		{
+			file	= _file;
+			index	= _index;
+			start	= _start;
+			buffer	= _buffer;
+		}
+	}
+
+	private static class
+	Unmapper
+	{
+		private static Object	unsafe;
+		private static Method	invoke_cleaner;
+
+		private static boolean	java8_style;
+
+		static{
+			try{
+					// Java 9+
+
+				Class<?>	unsafe_class = Class.forName( "sun.misc.Unsafe" );
+
+				Method m = unsafe_class.getMethod( "invokeCleaner", ByteBuffer.class );
+
+				Field f = unsafe_class.getDeclaredField( "theUnsafe" );
+
+				f.setAccessible( true );
+
+				unsafe			= f.get( null );
+				invoke_cleaner	= m;
+
+			}catch( Throwable e ){
+
+				java8_style = true;
+			}
+		}
+
+		static boolean
+		unmap(
+			MappedByteBuffer	buffer )
+		{
+			try{
+				if ( invoke_cleaner != null ){
+
+					invoke_cleaner.invoke( unsafe, buffer );
+
+					return( true );
+
+				}else if ( java8_style ){
+
+					Method	cleaner_method = buffer.getClass().getMethod( "cleaner" );
+
+					cleaner_method.setAccessible( true );
+
+					Object	cleaner = cleaner_method.invoke( buffer );
+
+					if ( cleaner != null ){
+
+						cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+
+						return( true );
+					}
+				}
+			}catch( Throwable e ){
+
+				java8_style = false;
+
+				Debug.out( "Failed to unmap buffer", e );
+			}
+
+			return( false );
+		}
+	}
+}
@@ -191,6 +191,14 @@ FMFilePadding
 		}
 	}
 
+	public DirectByteBuffer
+	readMapped(
+		long		offset,
+		int			length )
+	{
+		return( null );
+	}
+
 	public void
 	write(
 		DirectByteBuffer	buffer,
@@ -225,6 +225,27 @@ FMFileUnlimited
 	}
 
 
+	@Override
+	public DirectByteBuffer
+	readMapped(
+		long		offset,
+		int			length )
+
+		throws FMFileManagerException
+	{
+		try{
+			this_mon.enter();
+
+			ensureOpen( "FMFileUnlimited:readMapped" );
+
+			return( readMappedSupport( offset, length ));
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
 	@Override
 	public void
 	write(
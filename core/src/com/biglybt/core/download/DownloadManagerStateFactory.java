@@ -82,6 +82,12 @@ DownloadManagerStateFactory
 		DownloadManagerStateImpl.discardGlobalStateCache();
 	}
 
+	public static void
+	compactStateStore()
+	{
+		DownloadManagerStateImpl.compactStateStore();
+	}
+
 	public static void
 	importDownloadState(
 		File		source_dir,
@@ -83,6 +83,34 @@ DownloadManagerStateImpl
 
 	private static final Random	random = RandomUtils.SECURE_RANDOM;
 
+		// attribute-only saves are appended to the state store rather than rewriting the state file,
+		// force a full write every so often to pick up anything changed outside of the attributes
+
+	private static final int	STORE_MAX_DELTAS	= 64;
+
+		// generation of the state file as far as the state store is concerned, kept in the attributes
+
+	private static final String	AT_STORE_GENERATION	= "storegen";
+
+	private static volatile boolean	store_enabled;
+
+	private static DownloadManagerStateStore	state_store;
+
+	static{
+		COConfigurationManager.addAndFireParameterListener(
+			"download.state.store.enable",
+			new ParameterListener()
+			{
+				@Override
+				public void
+				parameterChanged(
+					String name )
+				{
+					store_enabled = COConfigurationManager.getBooleanParameter( name );
+				}
+			});
+	}
+
 	private static final Map	default_parameters;
 	private static final Map	default_attributes;
 
@@ -251,6 +279,11 @@ DownloadManagerStateImpl
 
 	private boolean						write_required_soon;
 	private boolean						write_required_sometime;
+	private boolean						write_required_full;
+
+	private Set<String>					dirty_attributes;
+	private int							store_deltas;
+	private long						store_generation;
 
 	private Category 	category;
 
@@ -539,6 +572,46 @@ DownloadManagerStateImpl
 		return( FileUtil.newFile( ACTIVE_DIR, "cache.dat" ));
 	}
 
+	private static DownloadManagerStateStore
+	getStateStore()
+	{
+		try{
+			class_mon.enter();
+
+			if ( state_store == null ){
+
+				state_store = new DownloadManagerStateStore( FileUtil.newFile( ACTIVE_DIR, "state.log" ));
+			}
+
+			return( state_store );
+
+		}finally{
+
+			class_mon.exit();
+		}
+	}
+
+	public static void
+	compactStateStore()
+	{
+		DownloadManagerStateStore store;
+
+		try{
+			class_mon.enter();
+
+			store = state_store;
+
+		}finally{
+
+			class_mon.exit();
+		}
+
+		if ( store != null ){
+
+			store.compact();
+		}
+	}
+
 	public static void
 	loadGlobalStateCache()
 	{
@@ -692,6 +765,10 @@ DownloadManagerStateImpl
 			throw( new DownloadManagerException( "Failed to copy state file: " + source_state_file + " -> " + target_state_file ));
 		}
 
+			// any logged changes relate to the state file just replaced
+
+		getStateStore().reset( download_hash );
+
 		File	source_state_dir = FileUtil.newFile( source_dir, hash_str );
 
 		if ( source_state_dir.exists()){
@@ -740,6 +817,11 @@ DownloadManagerStateImpl
 
 		FileUtil.newFile( source_dir, state_file + ".bak" ).delete();
 
+		if ( source_dir.equals( ACTIVE_DIR )){
+
+			getStateStore().reset( download_hash );
+		}
+
 		File	target_state_dir = FileUtil.newFile( source_dir, hash_str );
 
 		if ( target_state_dir.exists()){
@@ -766,6 +848,28 @@ DownloadManagerStateImpl
 			attributes	= new HashMap();
         }
 
+		Object	gen = attributes.get( AT_STORE_GENERATION );
+
+		if ( gen instanceof Long ){
+
+			store_generation = (Long)gen;
+		}
+
+			// cached state was exported at closedown so is already more recent than anything logged
+
+		if ( !( torrent instanceof CachedStateWrapper )){
+
+			try{
+				if ( getStateStore().applyAttributes( torrent.getHash(), store_generation, attributes )){
+
+					torrent.setAdditionalMapProperty( ATTRIBUTE_KEY, attributes );
+				}
+			}catch( Throwable e ){
+
+				Debug.out( e );
+			}
+		}
+
         String cat_string = getStringAttribute( AT_CATEGORY );
 
         if ( cat_string != null ){
@@ -1108,6 +1212,32 @@ DownloadManagerStateImpl
 	private void
 	setDirty(
 		boolean		slightly )
+	{
+			// something other than an attribute so the state file needs rewriting
+
+		write_required_full = true;
+
+		setDirtySupport( slightly );
+	}
+
+	private void
+	setDirty(
+		String		attribute_name,
+		boolean		slightly )
+	{
+		if ( dirty_attributes == null ){
+
+			dirty_attributes = new HashSet<>();
+		}
+
+		dirty_attributes.add( attribute_name );
+
+		setDirtySupport( slightly );
+	}
+
+	private void
+	setDirtySupport(
+		boolean		slightly )
 	{
 		//Debug.out( (slightly?"slightly":"dirty" )+ ": " + new String(torrent.getName()));
 		
@@ -1139,11 +1269,15 @@ DownloadManagerStateImpl
 			return;
 		}
 
- 		boolean do_write;
+			// resolve the store before taking this_mon as getting it takes class_mon
+
+		DownloadManagerStateStore	store = getStateStore();
 
 		try{
 			this_mon.enter();
 
+ 			boolean do_write;
+
 			if ( write_required_soon ){
 				
 				do_write = true;
@@ -1157,17 +1291,60 @@ DownloadManagerStateImpl
 				do_write = false;
 			}
 			
-			if ( do_write ){
-			
-				write_required_soon 	= false;
-				write_required_sometime	= false;
+			boolean	full = write_required_full || force || !store_enabled || store_deltas >= STORE_MAX_DELTAS;
+
+			if ( !do_write && force ){
+
+					// a forced save is made before the state file is exported or dropped so changes
+					// that so far only exist in the log need writing out even if nothing is dirty
+
+				do_write = store.hasRecords( torrent.getHash());
 			}
-		}finally{
 
-			this_mon.exit();
-		}
+			if ( !do_write ){
+
+				// System.out.println( "not writing download state for '" + new String(torrent.getName()));
+
+				return;
+			}
+
+			byte[]	delta = null;
+
+			if ( !full && dirty_attributes != null ){
 
-		if ( do_write ){
+				delta = encodeDirtyAttributes();
+			}
+
+			write_required_soon 	= false;
+			write_required_sometime	= false;
+			write_required_full		= false;
+
+			dirty_attributes = null;
+
+				// the append and the reset following a full write are done under this_mon so that
+				// a concurrent save can't have its record discarded by a reset for an older write
+
+			if ( delta != null ){
+
+				boolean	ok = false;
+
+				try{
+					ok = store.appendAttributes( torrent.getHash(), store_generation, delta );
+
+				}catch( Throwable e ){
+
+					Debug.out( e );
+				}
+
+				if ( ok ){
+
+					store_deltas++;
+
+					return;
+				}
+
+					// fall back to writing everything
+			}
 
 			try{
 				
@@ -1177,17 +1354,73 @@ DownloadManagerStateImpl
 					Logger.log(new LogEvent(torrent, LOGID, "Saving state for download '"
 							+ TorrentUtils.getLocalisedName(torrent) + "'"));
 
+					// records logged so far are older than the file being written, should we crash
+					// before the reset below they mustn't be replayed over it
+
+				long	generation = store_generation + 1;
+
+				attributes.put( AT_STORE_GENERATION, generation );
+
 				torrent.setAdditionalMapProperty( ATTRIBUTE_KEY, attributes );
 
-				TorrentUtils.writeToFile(torrent, true);
+				try{
+					TorrentUtils.writeToFile(torrent, true);
+
+				}catch( Throwable e ){
+
+					attributes.put( AT_STORE_GENERATION, store_generation );
+
+					throw( e );
+				}
+
+				store_generation = generation;
+
+				store_deltas = 0;
+
+				store.reset( torrent.getHash());
 
 			}catch ( Throwable e ){
 				
 				Logger.log(new LogEvent(torrent, LOGID, "Saving state", e));
 			}
-		}else{
+		}catch( TOTorrentException e ){
+
+			Debug.out( e );
+
+		}finally{
 
-			// System.out.println( "not writing download state for '" + new String(torrent.getName()));
+			this_mon.exit();
+		}
+	}
+
+	private byte[]
+	encodeDirtyAttributes()
+	{
+		Map<String,Object>	changed = new HashMap<>();
+		List<String>		removed	= new ArrayList<>();
+
+		for ( String name: dirty_attributes ){
+
+			Object	value = attributes.get( name );
+
+			if ( value == null ){
+
+				removed.add( name );
+
+			}else{
+
+				changed.put( name, value );
+			}
+		}
+
+		try{
+			return( DownloadManagerStateStore.encodeAttributes( changed, removed ));
+
+		}catch( Throwable e ){
+
+			Debug.out( e );
+
+			return( null );
 		}
 	}
 
@@ -1204,6 +1437,8 @@ DownloadManagerStateImpl
 
 	        TorrentUtils.delete( torrent );
 
+	        getStateStore().reset( wrapper.getBytes());
+
 	        String	hash_str = ByteFormatter.encodeString( wrapper.getBytes());
 	        
 			String	state_file = hash_str + ".dat";
@@ -2389,7 +2624,7 @@ DownloadManagerStateImpl
 
 					changed = true;
 					
-					setDirty( attribute_name == DownloadManagerState.AT_AGGREGATE_SCRAPE_CACHE );
+					setDirty( attribute_name, attribute_name == DownloadManagerState.AT_AGGREGATE_SCRAPE_CACHE );
 				}
 			}else{
 
@@ -2399,7 +2634,7 @@ DownloadManagerStateImpl
 				if (existing_bytes == null || !Arrays.equals(existing_bytes, new_bytes)) {
 					attributes.put(attribute_name, new_bytes);
 					changed = true;
-					setDirty( attribute_name == DownloadManagerState.AT_AGGREGATE_SCRAPE_CACHE );
+					setDirty( attribute_name, attribute_name == DownloadManagerState.AT_AGGREGATE_SCRAPE_CACHE );
 				}
 			}
 		}finally{
@@ -2451,7 +2686,7 @@ DownloadManagerStateImpl
 
 					attributes.put( attribute_name, new Long( res ));
 
-					setDirty( false );
+					setDirty( attribute_name, false );
 
 					return( res );
 				}
@@ -2487,7 +2722,7 @@ DownloadManagerStateImpl
 
 				changed = true;
 								
-				setDirty( attribute_name == DownloadManagerState.AT_SCRAPE_CACHE );
+				setDirty( attribute_name, attribute_name == DownloadManagerState.AT_SCRAPE_CACHE );
 			}
 		}finally{
 
@@ -2645,7 +2880,7 @@ DownloadManagerStateImpl
 
 					changed = true;
 					
-					setDirty( false );
+					setDirty( attribute_name, false );
 				}
 			}else{
 
@@ -2657,7 +2892,7 @@ DownloadManagerStateImpl
 
 					changed = true;
 					
-					setDirty( false );
+					setDirty( attribute_name, false );
 
 				}else{
 
@@ -2670,7 +2905,7 @@ DownloadManagerStateImpl
 
 					if ( changed ){
 
-						setDirty( false );
+						setDirty( attribute_name, false );
 
 						attributes.put( attribute_name, attribute_value );
 					}
@@ -2735,7 +2970,7 @@ DownloadManagerStateImpl
 
 					changed = true;
 					
-					setDirty( false );
+					setDirty( attribute_name, false );
 				}
 			}else{
 
@@ -2747,7 +2982,7 @@ DownloadManagerStateImpl
 
 					changed = true;
 					
-					setDirty( false );
+					setDirty( attribute_name, false );
 
 				}else{
 
@@ -2760,7 +2995,7 @@ DownloadManagerStateImpl
 
 					if ( changed ){
 
-						setDirty( false );
+						setDirty( attribute_name, false );
 
 						attributes.put( attribute_name, attribute_value );
 					}
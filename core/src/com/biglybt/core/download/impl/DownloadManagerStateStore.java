@@ -0,0 +1,899 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.download.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.biglybt.core.util.AEDiagnostics;
+import com.biglybt.core.util.AEDiagnosticsEvidenceGenerator;
+import com.biglybt.core.util.AEMonitor;
+import com.biglybt.core.util.BDecoder;
+import com.biglybt.core.util.BEncoder;
+import com.biglybt.core.util.ByteFormatter;
+import com.biglybt.core.util.Constants;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.HashWrapper;
+import com.biglybt.core.util.IndentWriter;
+
+/**
+ * Append-only log of per-download attribute changes kept alongside the active/*.dat files.
+ * <p/>
+ * Most state saves only change a handful of attributes, rewriting the whole state file
+ * (which is a full copy of the torrent) for these gets expensive with thousands of downloads.
+ * Instead the changed attributes are appended here and replayed over the attributes read
+ * from the state file when the download state is next created. A full write of the state file
+ * resets the download's entries.
+ * <p/>
+ * Each full write of a state file moves the download on to a new generation, which is stored in
+ * the file's attributes, and every record is stamped with the generation it was appended in. Only
+ * records of the state file's generation (or later) are replayed so that records left behind by a
+ * crash between a full write and the reset that follows it aren't applied over newer state.
+ * <p/>
+ * Each record is [length][crc32][type][generation][hash length][hash][bencoded payload]. Records
+ * are checked against their CRC when the log is opened and the log truncated at the first bad one
+ * (crash during append), payloads are decoded when the download's state is first loaded. The log
+ * is compacted to one record per download once it has grown sufficiently, and on close.
+ */
+
+public class
+DownloadManagerStateStore
+	implements AEDiagnosticsEvidenceGenerator
+{
+	private static final byte[]	MAGIC		= { 'B', 'D', 'M', 'S' };
+	private static final int	VERSION		= 2;
+	private static final int	HEADER_SIZE	= 8;
+
+	private static final byte	RT_ATTRIBUTES	= 1;
+	private static final byte	RT_RESET		= 2;
+
+	private static final int	RECORD_HEADER_SIZE	= 10;	// type, generation, hash length
+
+	private static final int	MAX_RECORD_SIZE		= 16*1024*1024;
+
+	private static final long	COMPACT_MIN_SIZE	= 1024*1024;
+
+	private static final String	KEY_CHANGED		= "a";
+	private static final String	KEY_REMOVED		= "d";
+
+	private final File			file;
+
+	private final AEMonitor		this_mon	= new AEMonitor( "DownloadManagerStateStore" );
+
+	private boolean				opened;
+	private RandomAccessFile	raf;
+	private FileChannel			channel;
+	private long				file_length;
+	private long				compacted_length;
+
+		// the live records for each download
+
+	private final Map<HashWrapper,Records>	index = new HashMap<>();
+
+	private long	append_count;
+	private long	append_bytes;
+	private long	reset_count;
+	private long	replay_count;
+	private long	compaction_count;
+	private long	error_count;
+
+	protected
+	DownloadManagerStateStore(
+		File		_file )
+	{
+		file	= _file;
+
+		AEDiagnostics.addWeakEvidenceGenerator( this );
+	}
+
+	/**
+	 * Replays any logged changes for the download over the supplied attributes
+	 * @param generation the generation of the state file the attributes were read from
+	 * @return true if there were changes
+	 */
+
+	protected boolean
+	applyAttributes(
+		byte[]		hash,
+		long		generation,
+		Map			attributes )
+	{
+		List<Map>	records = new ArrayList<>();
+
+		try{
+			this_mon.enter();
+
+			if ( !open()){
+
+				return( false );
+			}
+
+			HashWrapper	hw = new HashWrapper( hash );
+
+			Records	recs = index.get( hw );
+
+			if ( recs == null ){
+
+				return( false );
+			}
+
+			if ( recs.generation < generation ){
+
+					// the state file was written after these, the reset that should have followed
+					// didn't make it to disk
+
+				index.remove( hw );
+
+				return( false );
+			}
+
+			for ( long offset: recs.offsets ){
+
+				Map	payload = readPayload( offset );
+
+				if ( payload != null ){
+
+					records.add( payload );
+				}
+			}
+
+			replay_count++;
+
+		}finally{
+
+			this_mon.exit();
+		}
+
+		for ( Map payload: records ){
+
+			applyPayload( payload, attributes );
+		}
+
+		return( !records.isEmpty());
+	}
+
+	/**
+	 * @return true if changes are logged for the download that its state file doesn't yet contain
+	 */
+
+	protected boolean
+	hasRecords(
+		byte[]		hash )
+	{
+		try{
+			this_mon.enter();
+
+			if ( !open()){
+
+				return( false );
+			}
+
+			return( index.get( new HashWrapper( hash )) != null );
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	/**
+	 * Builds the encoded record payload for a set of changed attributes. Must be called while
+	 * the caller holds whatever protects the attribute values as they are encoded immediately
+	 */
+
+	protected static byte[]
+	encodeAttributes(
+		Map<String,Object>	changed,
+		List<String>		removed )
+
+		throws IOException
+	{
+		Map<String,Object>	payload = new HashMap<>();
+
+		if ( !changed.isEmpty()){
+
+			payload.put( KEY_CHANGED, changed );
+		}
+
+		if ( !removed.isEmpty()){
+
+			payload.put( KEY_REMOVED, removed );
+		}
+
+		return( BEncoder.encode( payload ));
+	}
+
+	/**
+	 * @param generation the generation of the download's current state file
+	 * @return false if the record couldn't be written, in which case the caller needs to
+	 * fall back to writing the full state
+	 */
+
+	protected boolean
+	appendAttributes(
+		byte[]		hash,
+		long		generation,
+		byte[]		payload )
+	{
+		try{
+			this_mon.enter();
+
+			if ( !open()){
+
+				return( false );
+			}
+
+			if ( !append( hash, RT_ATTRIBUTES, generation, payload )){
+
+				return( false );
+			}
+
+			if ( file_length > COMPACT_MIN_SIZE && file_length > compacted_length*2 ){
+
+				compactSupport();
+			}
+
+			return( true );
+
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	/**
+	 * Discards any logged changes for a download, called once its state file has been
+	 * completely rewritten or removed
+	 */
+
+	protected void
+	reset(
+		byte[]		hash )
+	{
+		try{
+			this_mon.enter();
+
+			if ( !open()){
+
+				return;
+			}
+
+			if ( index.get( new HashWrapper( hash )) == null ){
+
+				return;
+			}
+
+			reset_count++;
+
+			if ( !append( hash, RT_RESET, 0, new byte[0] )){
+
+					// stale records must not be replayed over the newer state file, rewrite
+					// the log without them
+
+				index.remove( new HashWrapper( hash ));
+
+				compactSupport();
+
+			}else if ( index.isEmpty()){
+
+					// nothing live so just start again
+
+				try{
+					truncate( HEADER_SIZE );
+
+					compacted_length = file_length;
+
+				}catch( Throwable e ){
+
+					Debug.out( e );
+				}
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	protected void
+	compact()
+	{
+		try{
+			this_mon.enter();
+
+			if ( opened && channel != null && file_length > compacted_length ){
+
+				compactSupport();
+			}
+		}finally{
+
+			this_mon.exit();
+		}
+	}
+
+	private boolean
+	open()
+	{
+		if ( opened ){
+
+			return( channel != null );
+		}
+
+		opened = true;
+
+		try{
+			if ( file.exists() && file.length() >= HEADER_SIZE ){
+
+				long	valid_length = scan();
+
+				raf = new RandomAccessFile( file, "rw" );
+
+				channel = raf.getChannel();
+
+				file_length = channel.size();
+
+				if ( valid_length < file_length ){
+
+					Debug.out( "Truncating download state log " + file + " from " + file_length + " to " + valid_length );
+
+					truncate( valid_length );
+				}
+			}else{
+
+				raf = new RandomAccessFile( file, "rw" );
+
+				channel = raf.getChannel();
+
+				writeHeader();
+			}
+
+			compacted_length = file_length;
+
+			return( true );
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to open download state log " + file, e );
+
+			error_count++;
+
+			closeSupport();
+
+			index.clear();
+
+			return( false );
+		}
+	}
+
+	private void
+	writeHeader()
+
+		throws IOException
+	{
+		channel.truncate( 0 );
+
+		ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+		header.put( MAGIC );
+		header.putInt( VERSION );
+
+		header.flip();
+
+		channel.write( header, 0 );
+
+		file_length = HEADER_SIZE;
+	}
+
+	/**
+	 * Reads and checks the records to build the index
+	 * @return the length of the valid part of the file
+	 */
+
+	private long
+	scan()
+
+		throws IOException
+	{
+		DataInputStream	is = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 64*1024 ));
+
+		try{
+			byte[]	magic = new byte[MAGIC.length];
+
+			is.readFully( magic );
+
+			int	version = is.readInt();
+
+			for ( int i=0;i<MAGIC.length;i++ ){
+
+				if ( magic[i] != MAGIC[i] ){
+
+					throw( new IOException( "Invalid download state log header" ));
+				}
+			}
+
+			if ( version != VERSION ){
+
+				throw( new IOException( "Unsupported download state log version " + version ));
+			}
+
+			long	file_len	= file.length();
+			long	pos			= HEADER_SIZE;
+
+			byte[]	body	= new byte[1024];
+			CRC32	crc		= new CRC32();
+
+			while( pos + 8 < file_len ){
+
+				int	length		= is.readInt();
+				int	body_crc	= is.readInt();
+
+				if ( length < RECORD_HEADER_SIZE || length > MAX_RECORD_SIZE || pos + 8 + length > file_len ){
+
+					break;
+				}
+
+				if ( length > body.length ){
+
+					body = new byte[Math.max( length, body.length*2 )];
+				}
+
+				is.readFully( body, 0, length );
+
+				crc.reset();
+
+				crc.update( body, 0, length );
+
+				if ((int)crc.getValue() != body_crc ){
+
+						// torn write, the length made it to disk but not all of the record
+
+					break;
+				}
+
+				ByteBuffer	bb = ByteBuffer.wrap( body, 0, length );
+
+				byte	type		= bb.get();
+				long	generation	= bb.getLong();
+				int		hash_len	= bb.get() & 0xff;
+
+				if ( hash_len + RECORD_HEADER_SIZE > length ){
+
+					break;
+				}
+
+				byte[]	hash = new byte[hash_len];
+
+				bb.get( hash );
+
+				indexRecord( new HashWrapper( hash ), type, generation, pos );
+
+				pos += 8 + length;
+			}
+
+			return( pos );
+
+		}finally{
+
+			is.close();
+		}
+	}
+
+	private void
+	indexRecord(
+		HashWrapper		hash,
+		byte			type,
+		long			generation,
+		long			offset )
+	{
+		if ( type == RT_RESET ){
+
+			index.remove( hash );
+
+		}else{
+
+			Records	recs = index.get( hash );
+
+			if ( recs == null || recs.generation < generation ){
+
+					// anything from an earlier generation is already in the state file
+
+				index.put( hash, new Records( generation, offset ));
+
+			}else if ( recs.generation == generation ){
+
+				recs.add( offset );
+			}
+		}
+	}
+
+	private boolean
+	append(
+		byte[]		hash,
+		byte		type,
+		long		generation,
+		byte[]		payload )
+	{
+		int	length = RECORD_HEADER_SIZE + hash.length + payload.length;
+
+		if ( length > MAX_RECORD_SIZE ){
+
+			return( false );
+		}
+
+		ByteBuffer	buffer = ByteBuffer.allocate( 8 + length );
+
+		buffer.position( 8 );
+
+		buffer.put( type );
+		buffer.putLong( generation );
+		buffer.put((byte)hash.length );
+		buffer.put( hash );
+		buffer.put( payload );
+
+		CRC32	crc = new CRC32();
+
+		crc.update( buffer.array(), 8, length );
+
+		buffer.putInt( 0, length );
+		buffer.putInt( 4, (int)crc.getValue());
+
+		buffer.position( 0 );
+
+		long	offset = file_length;
+
+		try{
+			while( buffer.hasRemaining()){
+
+				channel.write( buffer, offset + buffer.position());
+			}
+
+			file_length += buffer.limit();
+
+			indexRecord( new HashWrapper( hash ), type, generation, offset );
+
+			append_count++;
+			append_bytes += buffer.limit();
+
+			return( true );
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to append to download state log " + file, e );
+
+			error_count++;
+
+				// drop any partial record so later appends aren't lost behind it
+
+			try{
+				channel.truncate( offset );
+
+			}catch( Throwable f ){
+			}
+
+			return( false );
+		}
+	}
+
+	private Map
+	readPayload(
+		long		offset )
+	{
+		try{
+			ByteBuffer	header = ByteBuffer.allocate( 8 );
+
+			readFully( header, offset );
+
+			int	length	= header.getInt( 0 );
+			int	crc		= header.getInt( 4 );
+
+			ByteBuffer	body = ByteBuffer.allocate( length );
+
+			readFully( body, offset + 8 );
+
+			CRC32	check = new CRC32();
+
+			check.update( body.array(), 0, length );
+
+			if ((int)check.getValue() != crc ){
+
+				throw( new IOException( "CRC mismatch" ));
+			}
+
+			int	hash_len = body.get( RECORD_HEADER_SIZE - 1 ) & 0xff;
+
+			int	payload_offset = RECORD_HEADER_SIZE + hash_len;
+
+			return( BDecoder.decode( body.array(), payload_offset, length - payload_offset ));
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to read download state log record at " + offset + " in " + file, e );
+
+			error_count++;
+
+			return( null );
+		}
+	}
+
+	private void
+	readFully(
+		ByteBuffer	buffer,
+		long		offset )
+
+		throws IOException
+	{
+		while( buffer.hasRemaining()){
+
+			if ( channel.read( buffer, offset + buffer.position()) < 0 ){
+
+				throw( new EOFException());
+			}
+		}
+	}
+
+	private static void
+	applyPayload(
+		Map		payload,
+		Map		attributes )
+	{
+		List	removed = (List)payload.get( KEY_REMOVED );
+
+		if ( removed != null ){
+
+			for ( Object o: removed ){
+
+				attributes.remove( new String((byte[])o, Constants.UTF_8 ));
+			}
+		}
+
+		Map	changed = (Map)payload.get( KEY_CHANGED );
+
+		if ( changed != null ){
+
+			attributes.putAll( changed );
+		}
+	}
+
+	private void
+	truncate(
+		long		length )
+
+		throws IOException
+	{
+		channel.truncate( length );
+
+		file_length = length;
+	}
+
+	private void
+	compactSupport()
+	{
+		File	temp_file = new File( file.getParentFile(), file.getName() + ".tmp" );
+
+		try{
+				// merge each download's records into one
+
+			Map<HashWrapper,byte[]>	merged		= new HashMap<>();
+			Map<HashWrapper,Long>	generations	= new HashMap<>();
+
+			for ( Map.Entry<HashWrapper,Records> entry: index.entrySet()){
+
+				Map<String,Object>	attributes	= new HashMap<>();
+				List<String>		removed		= new ArrayList<>();
+
+				for ( long offset: entry.getValue().offsets ){
+
+					Map	payload = readPayload( offset );
+
+					if ( payload == null ){
+
+						continue;
+					}
+
+					List	r = (List)payload.get( KEY_REMOVED );
+
+					if ( r != null ){
+
+						for ( Object o: r ){
+
+							String	name = new String((byte[])o, Constants.UTF_8 );
+
+							attributes.remove( name );
+
+							if ( !removed.contains( name )){
+
+								removed.add( name );
+							}
+						}
+					}
+
+					Map	c = (Map)payload.get( KEY_CHANGED );
+
+					if ( c != null ){
+
+						attributes.putAll( c );
+
+						removed.removeAll( c.keySet());
+					}
+				}
+
+				merged.put( entry.getKey(), encodeAttributes( attributes, removed ));
+
+				generations.put( entry.getKey(), entry.getValue().generation );
+			}
+
+			closeSupport();
+
+			temp_file.delete();
+
+			raf		= new RandomAccessFile( temp_file, "rw" );
+			channel	= raf.getChannel();
+
+			writeHeader();
+
+			index.clear();
+
+			for ( Map.Entry<HashWrapper,byte[]> entry: merged.entrySet()){
+
+				if ( !append( entry.getKey().getBytes(), RT_ATTRIBUTES, generations.get( entry.getKey()), entry.getValue())){
+
+					throw( new IOException( "Append failed" ));
+				}
+			}
+
+			channel.force( true );
+
+			closeSupport();
+
+			try{
+				Files.move( temp_file.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+			}catch( AtomicMoveNotSupportedException e ){
+
+				Files.move( temp_file.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+			}
+
+			raf		= new RandomAccessFile( file, "rw" );
+			channel	= raf.getChannel();
+
+			compacted_length = file_length;
+
+			compaction_count++;
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to compact download state log " + file, e );
+
+			error_count++;
+
+				// fall back to whatever is on disk
+
+			closeSupport();
+
+			temp_file.delete();
+
+			index.clear();
+
+			opened = false;
+
+			open();
+		}
+	}
+
+	private void
+	closeSupport()
+	{
+		if ( raf != null ){
+
+			try{
+				raf.close();
+
+			}catch( Throwable e ){
+			}
+
+			raf		= null;
+			channel	= null;
+		}
+	}
+
+	@Override
+	public void
+	generate(
+		IndentWriter		writer )
+	{
+		writer.println( "Download State Store" );
+
+		try{
+			writer.indent();
+
+			try{
+				this_mon.enter();
+
+				writer.println(
+					"file=" + file + ", length=" + file_length + ", compacted=" + compacted_length +
+					", downloads=" + index.size());
+
+				writer.println(
+					"appends=" + append_count + " (" + append_bytes + " bytes), resets=" + reset_count +
+					", replays=" + replay_count + ", compactions=" + compaction_count + ", errors=" + error_count );
+
+				int	num = 0;
+
+				for ( Iterator<Map.Entry<HashWrapper,Records>> it = index.entrySet().iterator(); it.hasNext() && num < 8; num++ ){
+
+					Map.Entry<HashWrapper,Records>	entry = it.next();
+
+					writer.println(
+						ByteFormatter.encodeString( entry.getKey().getBytes()) + ": generation=" + entry.getValue().generation +
+						", records=" + entry.getValue().offsets.length );
+				}
+			}finally{
+
+				this_mon.exit();
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	private static class
+	Records
+	{
+		final long	generation;
+
+		long[]		offsets;	// in append order
+
+		Records(
+			long		_generation,
+			long		offset )
+		{
+			generation	= _generation;
+			offsets		= new long[]{ offset };
+		}
+
+		void
+		add(
+			long		offset )
+		{
+			long[]	temp = new long[offsets.length+1];
+
+			System.arraycopy( offsets, 0, temp, 0, offsets.length );
+
+			temp[offsets.length] = offset;
+
+			offsets = temp;
+		}
+	}
+}
@@ -0,0 +1,458 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.global.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.biglybt.core.util.BDecoder;
+import com.biglybt.core.util.BEncoder;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.FileUtil;
+import com.biglybt.core.util.HashWrapper;
+import com.biglybt.core.util.RandomUtils;
+import com.biglybt.core.util.SystemProperties;
+
+/**
+ * Delta journal for downloads.config. Between full saves only the entries of downloads whose
+ * exported state changed are appended, each record is [length][crc32][bencoded payload].
+ * <p/>
+ * The journal header carries an id that is also written into downloads.config by the full save
+ * that started it, so a journal is only ever replayed over the snapshot it belongs to (a crash
+ * between writing a new snapshot and resetting the journal leaves ids that don't match).
+ */
+
+class
+GlobalManagerDownloadsJournal
+{
+	protected static final String	KEY_JOURNAL_ID	= "journal_id";
+
+	private static final String	FILE_NAME		= "downloads.journal";
+
+	private static final byte[]	MAGIC			= { 'B', 'D', 'J', '1' };
+	private static final int	HEADER_SIZE		= 12;
+	private static final int	MAX_RECORD_SIZE	= 64*1024*1024;
+
+	private static final String	KEY_UPDATED		= "u";
+	private static final String	KEY_REMOVED		= "r";
+	private static final String	KEY_PAUSE_DATA	= "p";
+
+	private final File			file;
+
+	private RandomAccessFile	raf;
+	private FileChannel			channel;
+	private long				file_length;
+	private long				journal_id;
+
+	private int					record_count;
+
+	protected
+	GlobalManagerDownloadsJournal()
+	{
+		this( FileUtil.newFile( SystemProperties.getUserPath(), FILE_NAME ));
+	}
+
+	protected
+	GlobalManagerDownloadsJournal(
+		File		_file )
+	{
+		file = _file;
+	}
+
+	protected long
+	getLength()
+	{
+		return( file_length );
+	}
+
+	protected int
+	getRecordCount()
+	{
+		return( record_count );
+	}
+
+	/**
+	 * Applies the journal to the map read from downloads.config, returning the merged map
+	 */
+
+	protected Map
+	apply(
+		Map		config )
+	{
+		Long	config_id = (Long)config.get( KEY_JOURNAL_ID );
+
+		if ( config_id == null || !file.exists()){
+
+			return( config );
+		}
+
+		List<Map>	records = new ArrayList<>();
+
+		try{
+			RandomAccessFile	in = new RandomAccessFile( file, "r" );
+
+			try{
+				long	len = in.length();
+
+				if ( len < HEADER_SIZE ){
+
+					return( config );
+				}
+
+				byte[]	magic = new byte[MAGIC.length];
+
+				in.readFully( magic );
+
+				long	id = in.readLong();
+
+				for ( int i=0;i<MAGIC.length;i++){
+
+					if ( magic[i] != MAGIC[i] ){
+
+						throw( new IOException( "Invalid journal header" ));
+					}
+				}
+
+				if ( id != config_id.longValue()){
+
+						// journal belongs to a different snapshot
+
+					return( config );
+				}
+
+				long	pos = HEADER_SIZE;
+
+				while( pos + 8 <= len ){
+
+					int	length	= in.readInt();
+					int	crc		= in.readInt();
+
+					if ( length <= 0 || length > MAX_RECORD_SIZE || pos + 8 + length > len ){
+
+						break;	// torn record
+					}
+
+					byte[]	payload = new byte[length];
+
+					in.readFully( payload );
+
+					CRC32	check = new CRC32();
+
+					check.update( payload );
+
+					if ((int)check.getValue() != crc ){
+
+						Debug.out( "downloads.journal: CRC mismatch at " + pos + ", ignoring remainder" );
+
+						break;
+					}
+
+					records.add( BDecoder.decode( payload ));
+
+					pos += 8 + length;
+				}
+			}finally{
+
+				in.close();
+			}
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to read " + file, e );
+		}
+
+		if ( records.isEmpty()){
+
+			return( config );
+		}
+
+		List	downloads = (List)config.get( "downloads" );
+
+		if ( downloads == null ){
+
+			downloads = new ArrayList();
+		}
+
+		Map<HashWrapper,Map>	entries	= new LinkedHashMap<>();
+		List<Map>				no_hash	= new ArrayList<>();
+
+		for ( Object o: downloads ){
+
+			Map		entry	= (Map)o;
+			byte[]	hash	= (byte[])entry.get( "torrent_hash" );
+
+			if ( hash == null ){
+
+				no_hash.add( entry );
+
+			}else{
+
+				entries.put( new HashWrapper( hash ), entry );
+			}
+		}
+
+		for ( Map record: records ){
+
+			List	updated = (List)record.get( KEY_UPDATED );
+
+			if ( updated != null ){
+
+				for ( Object o: updated ){
+
+					Map	entry = (Map)o;
+
+					entries.put( new HashWrapper((byte[])entry.get( "torrent_hash" )), entry );
+				}
+			}
+
+			List	removed = (List)record.get( KEY_REMOVED );
+
+			if ( removed != null ){
+
+				for ( Object o: removed ){
+
+					entries.remove( new HashWrapper((byte[])o ));
+				}
+			}
+
+			List	pause_data = (List)record.get( KEY_PAUSE_DATA );
+
+			if ( pause_data != null ){
+
+				if ( pause_data.isEmpty()){
+
+					config.remove( "pause_data" );
+
+				}else{
+
+					config.put( "pause_data", pause_data );
+				}
+			}
+		}
+
+		List<Map>	merged = new ArrayList<>( entries.values());
+
+			// full saves write downloads in position order, do the same (the sort is stable)
+
+		Collections.sort(
+			merged,
+			new Comparator<Map>()
+			{
+				@Override
+				public int
+				compare(
+					Map	m1,
+					Map	m2 )
+				{
+					long	p1 = getPosition( m1 );
+					long	p2 = getPosition( m2 );
+
+					return( p1 < p2 ? -1 : ( p1 > p2 ? 1 : 0 ));
+				}
+			});
+
+		merged.addAll( no_hash );
+
+		config.put( "downloads", merged );
+
+		return( config );
+	}
+
+	private static long
+	getPosition(
+		Map		entry )
+	{
+		Long	pos = (Long)entry.get( "position" );
+
+		return( pos==null?Long.MAX_VALUE:pos.longValue());
+	}
+
+	/**
+	 * Returns the id to store in a new snapshot. An empty journal keeps its id so that rewriting
+	 * an unchanged snapshot stays byte-identical (and is skipped by the resilient file writer)
+	 */
+
+	protected long
+	getSnapshotId()
+	{
+		if ( channel != null && record_count == 0 ){
+
+			return( journal_id );
+		}
+
+		return( RandomUtils.nextSecureAbsoluteLong());
+	}
+
+	protected void
+	reset(
+		long		id )
+	{
+		if ( channel != null && record_count == 0 && id == journal_id ){
+
+			return;
+		}
+
+		try{
+			if ( channel == null ){
+
+				raf		= new RandomAccessFile( file, "rw" );
+				channel	= raf.getChannel();
+			}
+
+			channel.truncate( 0 );
+
+			ByteBuffer	header = ByteBuffer.allocate( HEADER_SIZE );
+
+			header.put( MAGIC );
+			header.putLong( id );
+
+			header.flip();
+
+			write( header, 0 );
+
+			file_length		= HEADER_SIZE;
+			journal_id		= id;
+			record_count	= 0;
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to reset " + file, e );
+
+			close();
+		}
+	}
+
+	/**
+	 * @param pause_data null if unchanged
+	 * @return false if the caller needs to fall back to a full save
+	 */
+
+	protected boolean
+	append(
+		List<Map>		updated,
+		List<byte[]>	removed,
+		List			pause_data )
+	{
+		if ( channel == null ){
+
+			return( false );
+		}
+
+		Map<String,Object>	record = new HashMap<>();
+
+		if ( !updated.isEmpty()){
+
+			record.put( KEY_UPDATED, updated );
+		}
+
+		if ( !removed.isEmpty()){
+
+			record.put( KEY_REMOVED, removed );
+		}
+
+		if ( pause_data != null ){
+
+			record.put( KEY_PAUSE_DATA, pause_data );
+		}
+
+		long	offset = file_length;
+
+		try{
+			byte[]	payload = BEncoder.encode( record );
+
+			if ( payload.length > MAX_RECORD_SIZE ){
+
+				return( false );
+			}
+
+			CRC32	crc = new CRC32();
+
+			crc.update( payload );
+
+			ByteBuffer	buffer = ByteBuffer.allocate( 8 + payload.length );
+
+			buffer.putInt( payload.length );
+			buffer.putInt((int)crc.getValue());
+			buffer.put( payload );
+
+			buffer.flip();
+
+			write( buffer, offset );
+
+			file_length += buffer.limit();
+
+			record_count++;
+
+			return( true );
+
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to append to " + file, e );
+
+			try{
+				channel.truncate( offset );
+
+			}catch( Throwable f ){
+
+				close();
+			}
+
+			return( false );
+		}
+	}
+
+	private void
+	write(
+		ByteBuffer	buffer,
+		long		offset )
+
+		throws IOException
+	{
+		while( buffer.hasRemaining()){
+
+			channel.write( buffer, offset + buffer.position());
+		}
+	}
+
+	protected void
+	close()
+	{
+		if ( raf != null ){
+
+			try{
+				raf.close();
+
+			}catch( Throwable e ){
+			}
+
+			raf		= null;
+			channel	= null;
+		}
+	}
+}
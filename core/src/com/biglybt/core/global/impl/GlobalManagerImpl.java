@@ -240,6 +240,22 @@ public class GlobalManagerImpl
     // Do *NOT* change this - only the constructor should set it once.
 	private final boolean cripple_downloads_config;
 
+		// between full saves of downloads.config only changed entries are appended to a journal
+
+	private static final int	DOWNLOADS_JOURNAL_MAX	= 1024*1024;
+
+	private final GlobalManagerDownloadsJournal	downloads_journal = new GlobalManagerDownloadsJournal();
+
+	private Map<HashWrapper,Map>	downloads_saved;
+	private List					downloads_saved_pause_data;
+
+		// interim saves only re-export downloads that have been flagged by a listener event, are running
+		// or have a changed setting that isn't notified, the rest reuse the map from the last save
+
+	private final Set<DownloadManager>	downloads_dirty = Collections.newSetFromMap( new ConcurrentHashMap<>());
+
+	private Map<DownloadManager,Map>	downloads_exported;
+
 	private final TRTrackerScraper 			trackerScraper;
 	private GlobalManagerStatsWriter 	stats_writer;
 	private GlobalManagerHostSupport	host_support;
@@ -1725,6 +1741,8 @@ public class GlobalManagerImpl
 
 	  manager.removeListener(this);
 
+	  downloads_dirty.remove( manager );
+
 	  DownloadManagerState dms = manager.getDownloadState();
 
 	  if ( dms.getCategory() != null){
@@ -1833,9 +1851,12 @@ public class GlobalManagerImpl
 	  // Disable DNS Mods lookup while shutting down
 	  TorrentUtils.temporarilyDisableDNSHandling();
 	  DownloadManagerStateFactory.saveGlobalStateCache();
+	  DownloadManagerStateFactory.compactStateStore();
 
 	  synchronized( managers_lock ){
 
+		  downloads_journal.close();
+
 		  managers_list_cow	= new DownloadManager[0];
 
 		  manager_id_set.clear();
@@ -2551,7 +2572,7 @@ public class GlobalManagerImpl
 				  progress_listener.reportCurrentTask(MessageText.getString("splash.loadingTorrents"));
 			  }
 
-			  Map map = FileUtil.readResilientConfigFile("downloads.config");
+			  Map map = downloads_journal.apply( FileUtil.readResilientConfigFile("downloads.config"));
 
 			  ArrayList pause_data = (ArrayList)map.get( "pause_data" );
 
@@ -2758,6 +2779,21 @@ public class GlobalManagerImpl
 
 		  String prefix = MessageText.getString( "label.saving.downloads" );
 		  
+		  boolean	incremental =
+				  interim &&
+				  downloads_saved != null &&
+				  downloads_exported != null &&
+				  downloads_journal.getLength() < DOWNLOADS_JOURNAL_MAX;
+
+		  if ( !incremental ){
+
+				  // everything is exported below
+
+			  downloads_dirty.clear();
+		  }
+
+		  Map<DownloadManager,Map> exported = new IdentityHashMap<>( nbDownloads );
+
 		  for ( int i=0;i<nbDownloads;i++){
 			  
 			  DownloadManager dm = managers_temp[i];
@@ -2769,17 +2805,43 @@ public class GlobalManagerImpl
 				  listener_maybe_null.reportPercent((i*100)/nbDownloads );
 			  }
 			  
-			  Map dmMap = exportDownloadStateToMapSupport( dm, true, interim );
+			  Map dmMap = null;
+
+			  if ( incremental ){
+
+				  Map previous = downloads_exported.get( dm );
+
+				  if ( 	previous != null &&
+						!downloads_dirty.remove( dm ) &&
+						!downloadNeedsExport( dm, previous )){
+
+						  // the download's own state still gets its chance to save
+
+					  dm.saveDownload( interim );
+
+					  dmMap = previous;
+				  }
+			  }
+
+			  if ( dmMap == null ){
+
+				  downloads_dirty.remove( dm );
+
+				  dmMap = exportDownloadStateToMapSupport( dm, true, interim );
+			  }
+
+			  exported.put( dm, dmMap );
 
 			  list.add(dmMap);
 		  }
 
 		  map.put("downloads", list);
 
+		  ArrayList pause_data = new ArrayList();
+
 		  //save pause/resume state
 		  try {  paused_list_mon.enter();
 			  if( !paused_list.isEmpty() ) {
-				  ArrayList pause_data = new ArrayList();
 				  for ( Map.Entry<HashWrapper,Boolean> entry: paused_list.entrySet()){
 	
 					  HashWrapper 	hash 	= entry.getKey();
@@ -2797,9 +2859,161 @@ public class GlobalManagerImpl
 		  }
 		  finally {  paused_list_mon.exit();  }
 
+		  if ( incremental && saveDownloadsIncremental( list, pause_data )){
+
+			  downloads_exported = exported;
+
+			  return;
+		  }
+
+		  long journal_id = downloads_journal.getSnapshotId();
+
+		  map.put( GlobalManagerDownloadsJournal.KEY_JOURNAL_ID, journal_id );
+
+		  if ( !FileUtil.writeResilientConfigFileWithResult("downloads.config", map )){
+
+				  // the journal still applies to the previous snapshot so must be kept, try
+				  // another full save next time
+
+			  downloads_saved 			= null;
+			  downloads_saved_pause_data	= null;
+			  downloads_exported			= null;
+
+			  return;
+		  }
+
+		  downloads_journal.reset( journal_id );
+
+		  Map<HashWrapper,Map> saved = new HashMap<>( list.size()*2 );
+
+		  for ( Map dmMap: list ){
+
+			  byte[] hash = (byte[])dmMap.get( "torrent_hash" );
+
+			  if ( hash == null ){
+
+					  // can't be tracked, keep doing full saves
+
+				  saved = null;
+
+				  break;
+			  }
+
+			  saved.put( new HashWrapper( hash ), dmMap );
+		  }
+
+		  downloads_saved 			= saved;
+		  downloads_saved_pause_data	= pause_data;
+		  downloads_exported			= saved==null?null:exported;
+	  }
+  }
+
+  	/**
+  	 * Checks the exported values that can change without a download listener event being raised
+  	 */
+
+  private static boolean
+  downloadNeedsExport(
+	DownloadManager		dm,
+	Map					previous )
+  {
+	  int state = dm.getState();
+
+	  if ( state != DownloadManager.STATE_STOPPED && state != DownloadManager.STATE_QUEUED ){
+
+			  // stats move on while running
+
+		  return( true );
+	  }
+
+	  DownloadManagerStats dm_stats = dm.getStats();
+
+	  return(	!exportedValueIs( previous, "persistent", dm.isPersistent()?1:0 ) ||
+			  	!exportedValueIs( previous, "maxdl", dm_stats.getDownloadRateLimitBytesPerSecond()) ||
+			  	!exportedValueIs( previous, "maxul", dm_stats.getUploadRateLimitBytesPerSecond()) ||
+			  	!exportedValueIs( previous, "uploads", dm.getMaxUploads()) ||
+			  	!exportedValueIs( previous, "forceStart", dm.isForceStart()?1:0 ) ||
+			  	!exportedValueIs( previous, "allocated", dm.isDataAlreadyAllocated()?1:0 ) ||
+			  	!exportedValueIs( previous, "downloaded", dm_stats.getTotalDataBytesReceived()) ||
+			  	!exportedValueIs( previous, "uploaded", dm_stats.getTotalDataBytesSent()) ||
+			  	!Objects.equals( previous.get( "torrent" ), dm.getTorrentFileName()));
+  }
+
+  private static boolean
+  exportedValueIs(
+	Map			map,
+	String		key,
+	long		value )
+  {
+	  Long	l = (Long)map.get( key );
+
+	  return( l != null && l.longValue() == value );
+  }
+
+  	/**
+  	 * Appends the entries that differ from the last save to the journal, called with managers_lock held
+  	 * @return false if a full save is required
+  	 */
+
+  private boolean
+  saveDownloadsIncremental(
+	List<Map>		list,
+	List			pause_data )
+  {
+	  Map<HashWrapper,Map>	saved	= new HashMap<>( list.size()*2 );
+	  List<Map>				updated	= new ArrayList<>();
+
+	  for ( Map dmMap: list ){
+
+		  byte[] hash = (byte[])dmMap.get( "torrent_hash" );
+
+		  if ( hash == null ){
+
+			  return( false );
+		  }
+
+		  HashWrapper hw = new HashWrapper( hash );
+
+		  saved.put( hw, dmMap );
+
+		  Map previous = downloads_saved.get( hw );
+
+		  if ( dmMap != previous && !BEncoder.mapsAreIdentical( dmMap, previous )){
+
+			  updated.add( dmMap );
+		  }
+	  }
+
+	  List<byte[]>	removed = new ArrayList<>();
+
+	  for ( HashWrapper hw: downloads_saved.keySet()){
+
+		  if ( !saved.containsKey( hw )){
+
+			  removed.add( hw.getHash());
+		  }
+	  }
+
+	  boolean pause_changed = !BEncoder.listsAreIdentical( pause_data, downloads_saved_pause_data );
 
-		  FileUtil.writeResilientConfigFile("downloads.config", map );
+	  if ( updated.isEmpty() && removed.isEmpty() && !pause_changed ){
+
+		  return( true );
+	  }
+
+	  if ( !downloads_journal.append( updated, removed, pause_changed?pause_data:null )){
+
+		  return( false );
+	  }
+
+	  if (Logger.isEnabled()){
+		  Logger.log(new LogEvent(LOGID, "Journaled Download List changes (" + updated.size() + " updated, " + removed.size() + " removed)"));
 	  }
+
+	  downloads_saved				= saved;
+	  downloads_saved_pause_data	= pause_data;
+
+	  return( true );
   }
 
   public DownloadManager
@@ -3570,6 +3784,8 @@ public class GlobalManagerImpl
 	DownloadManager 	manager,
 	int 				new_state )
   {
+	  downloads_dirty.add( manager );
+
 	  if ( needsSavingCozStateChanged == 0  ){
 
 		  needsSavingCozStateChanged = SystemTime.getMonotonousTime(); //make sure we update 'downloads.config' on state changes
@@ -3595,6 +3811,43 @@ public class GlobalManagerImpl
 	  checkForceStart( manager.isForceStart() && new_state == DownloadManager.STATE_DOWNLOADING );
   }
 
+  @Override
+  public void
+  completionChanged(
+	DownloadManager 	manager,
+	boolean 			completed )
+  {
+	  downloads_dirty.add( manager );
+  }
+
+  @Override
+  public void
+  positionChanged(
+	DownloadManager 	download,
+	int 				oldPosition,
+	int 				newPosition )
+  {
+	  downloads_dirty.add( download );
+  }
+
+  @Override
+  public void
+  filePriorityChanged(
+	DownloadManager 		download,
+	DiskManagerFileInfo 	file )
+  {
+	  downloads_dirty.add( download );
+  }
+
+  @Override
+  public void
+  fileLocationChanged(
+	DownloadManager 		download,
+	DiskManagerFileInfo 	file )
+  {
+	  downloads_dirty.add( download );
+  }
+
   protected void
   checkForceStart(
 	 boolean	known_to_exist )
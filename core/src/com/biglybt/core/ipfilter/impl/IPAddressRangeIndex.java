@@ -0,0 +1,549 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.ipfilter.impl;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.biglybt.core.ipfilter.IpRange;
+
+/**
+ * Immutable lookup structure built from the range manager's entries. Ranges are sorted by
+ * start and overlapping ones merged, but rather than recording the merge on the range
+ * objects only the 'chain' is kept - the ranges that extend the end of a merged block.
+ * Chain ends are strictly increasing so a lookup is a single binary chop over primitive
+ * arrays for the first chain end >= the address followed by one start comparison, the
+ * range object is only touched for a hit.
+ * <p>
+ * IPv4 addresses are held as ints and IPv6 as hi/lo longs, in both cases with the sign bit
+ * flipped so that signed comparison gives unsigned ordering.
+ */
+
+final class
+IPAddressRangeIndex
+{
+	static final IPAddressRangeIndex	EMPTY = new IPAddressRangeIndex();
+
+	private static final int[]		NO_INTS		= {};
+	private static final long[]		NO_LONGS	= {};
+	private static final IpRange[]	NO_RANGES	= {};
+
+	private final int[]		v4_starts;
+	private final int[]		v4_ends;
+	private final IpRange[]	v4_ranges;
+
+	private final long[]	v6_start_his;
+	private final long[]	v6_start_los;
+	private final long[]	v6_end_his;
+	private final long[]	v6_end_los;
+	private final IpRange[]	v6_ranges;
+
+	private final int		v4_blocks;
+	private final int		v6_blocks;
+	private final long		v4_span;
+
+	private
+	IPAddressRangeIndex()
+	{
+		v4_starts	= NO_INTS;
+		v4_ends		= NO_INTS;
+		v4_ranges	= NO_RANGES;
+
+		v6_start_his	= NO_LONGS;
+		v6_start_los	= NO_LONGS;
+		v6_end_his		= NO_LONGS;
+		v6_end_los		= NO_LONGS;
+		v6_ranges		= NO_RANGES;
+
+		v4_blocks	= 0;
+		v6_blocks	= 0;
+		v4_span		= 0;
+	}
+
+	IPAddressRangeIndex(
+		List<IpRange>	entries )
+	{
+		int	num = entries.size();
+
+		int[]		starts4 	= new int[num];
+		int[]		ends4		= new int[num];
+		IpRange[]	ranges4		= new IpRange[num];
+		int			num4		= 0;
+
+		long[]		v6			= null;
+		IpRange[]	ranges6		= null;
+		int			num6		= 0;
+
+		for ( int i=0;i<num;i++){
+
+			IpRange	range = entries.get(i);
+
+			if ( !range.isValid()){
+
+				continue;
+			}
+
+			if ( range instanceof IpRangeImpl && ((IpRangeImpl)range).isIPv6()){
+
+				if ( v6 == null ){
+
+					v6		= new long[16*4];
+					ranges6	= new IpRange[16];
+
+				}else if ( num6 == ranges6.length ){
+
+					v6		= Arrays.copyOf( v6, v6.length*2 );
+					ranges6	= Arrays.copyOf( ranges6, ranges6.length*2 );
+				}
+
+				((IpRangeImpl)range).getIPv6( v6, num6*4 );
+
+				for ( int j=0;j<4;j++){
+
+					v6[num6*4+j] ^= Long.MIN_VALUE;
+				}
+
+				ranges6[num6++] = range;
+
+			}else{
+
+				long	start 	= range.getStartIpLong();
+				long	end		= range.getEndIpLong();
+
+				if ( start < 0 || end < 0 ){
+
+					continue;
+				}
+
+				starts4[num4]	= ((int)start) ^ Integer.MIN_VALUE;
+				ends4[num4]		= ((int)end) ^ Integer.MIN_VALUE;
+				ranges4[num4]	= range;
+
+				num4++;
+			}
+		}
+
+			// v4 - pack the (flipped) start and the entry index into a long so we can sort
+			// primitives rather than the range objects
+
+		long[]	keys = new long[num4];
+
+		for ( int i=0;i<num4;i++){
+
+			keys[i] = (((long)starts4[i]) << 32 ) | i;
+		}
+
+		Arrays.sort( keys );
+
+		int[]		c_starts	= new int[num4];
+		int[]		c_ends		= new int[num4];
+		IpRange[]	c_ranges	= new IpRange[num4];
+		int			c_num		= 0;
+
+		int		blocks	= 0;
+		long	span	= 0;
+
+		int		block_start	= 0;
+		int		block_end	= 0;
+
+		for ( int i=0;i<num4;i++){
+
+			int	index = (int)keys[i];
+
+			int	start	= starts4[index];
+			int	end		= ends4[index];
+
+			if ( blocks == 0 || start > block_end ){
+
+				if ( blocks > 0 ){
+
+					span += ((long)block_end - block_start ) + 1;
+				}
+
+				blocks++;
+
+				block_start	= start;
+				block_end	= end;
+
+			}else if ( end > block_end ){
+
+				block_end = end;
+
+			}else{
+
+					// wholly contained in the current block, can never be the first chain
+					// entry to cover an address
+
+				continue;
+			}
+
+			c_starts[c_num]	= start;
+			c_ends[c_num]	= end;
+			c_ranges[c_num]	= ranges4[index];
+
+			c_num++;
+		}
+
+		if ( blocks > 0 ){
+
+			span += ((long)block_end - block_start ) + 1;
+		}
+
+		v4_starts	= Arrays.copyOf( c_starts, c_num );
+		v4_ends		= Arrays.copyOf( c_ends, c_num );
+		v4_ranges	= Arrays.copyOf( c_ranges, c_num );
+		v4_blocks	= blocks;
+		v4_span		= span;
+
+			// v6 - lists are generally small so a boxed sort is fine
+
+		if ( num6 == 0 ){
+
+			v6_start_his	= NO_LONGS;
+			v6_start_los	= NO_LONGS;
+			v6_end_his		= NO_LONGS;
+			v6_end_los		= NO_LONGS;
+			v6_ranges		= NO_RANGES;
+			v6_blocks		= 0;
+
+		}else{
+
+			final long[]	f_v6 = v6;
+
+			Integer[]	order = new Integer[num6];
+
+			for ( int i=0;i<num6;i++){
+
+				order[i] = i;
+			}
+
+			Arrays.sort(
+				order,
+				new Comparator<Integer>()
+				{
+					@Override
+					public int
+					compare(
+						Integer	i1,
+						Integer	i2 )
+					{
+						return( compare128( f_v6[i1*4], f_v6[i1*4+1], f_v6[i2*4], f_v6[i2*4+1] ));
+					}
+				});
+
+			long[]		s_his		= new long[num6];
+			long[]		s_los		= new long[num6];
+			long[]		e_his		= new long[num6];
+			long[]		e_los		= new long[num6];
+			IpRange[]	rs			= new IpRange[num6];
+			int			n			= 0;
+
+			blocks = 0;
+
+			long	end_hi	= 0;
+			long	end_lo	= 0;
+
+			for ( int i=0;i<num6;i++){
+
+				int	index = order[i]*4;
+
+				long	s_hi	= v6[index];
+				long	s_lo	= v6[index+1];
+				long	e_hi	= v6[index+2];
+				long	e_lo	= v6[index+3];
+
+				if ( blocks == 0 || compare128( s_hi, s_lo, end_hi, end_lo ) > 0 ){
+
+					blocks++;
+
+				}else if ( compare128( e_hi, e_lo, end_hi, end_lo ) <= 0 ){
+
+					continue;
+				}
+
+				end_hi	= e_hi;
+				end_lo	= e_lo;
+
+				s_his[n]	= s_hi;
+				s_los[n]	= s_lo;
+				e_his[n]	= e_hi;
+				e_los[n]	= e_lo;
+				rs[n]		= ranges6[order[i]];
+
+				n++;
+			}
+
+			v6_start_his	= Arrays.copyOf( s_his, n );
+			v6_start_los	= Arrays.copyOf( s_los, n );
+			v6_end_his		= Arrays.copyOf( e_his, n );
+			v6_end_los		= Arrays.copyOf( e_los, n );
+			v6_ranges		= Arrays.copyOf( rs, n );
+			v6_blocks		= blocks;
+		}
+	}
+
+	IpRange
+	lookup(
+		int		address )
+	{
+		int[]	ends = v4_ends;
+
+		if ( ends.length == 0 ){
+
+			return( null );
+		}
+
+		int	a = address ^ Integer.MIN_VALUE;
+
+			// first chain entry with end >= address
+
+		int	bottom	= 0;
+		int	top		= ends.length;
+
+		while( bottom < top ){
+
+			int	mid = ( bottom + top ) >>> 1;
+
+			if ( ends[mid] < a ){
+
+				bottom = mid + 1;
+
+			}else{
+
+				top = mid;
+			}
+		}
+
+		if ( bottom < ends.length && v4_starts[bottom] <= a ){
+
+			return( v4_ranges[bottom] );
+		}
+
+		return( null );
+	}
+
+	IpRange
+	lookup(
+		long	hi,
+		long	lo )
+	{
+		long[]	end_his = v6_end_his;
+
+		if ( end_his.length == 0 ){
+
+			return( null );
+		}
+
+		long	a_hi	= hi ^ Long.MIN_VALUE;
+		long	a_lo	= lo ^ Long.MIN_VALUE;
+
+		long[]	end_los = v6_end_los;
+
+		int	bottom	= 0;
+		int	top		= end_his.length;
+
+		while( bottom < top ){
+
+			int	mid = ( bottom + top ) >>> 1;
+
+			if ( compare128( end_his[mid], end_los[mid], a_hi, a_lo ) < 0 ){
+
+				bottom = mid + 1;
+
+			}else{
+
+				top = mid;
+			}
+		}
+
+		if ( bottom < end_his.length && compare128( v6_start_his[bottom], v6_start_los[bottom], a_hi, a_lo ) <= 0 ){
+
+			return( v6_ranges[bottom] );
+		}
+
+		return( null );
+	}
+
+	boolean
+	hasIPv6()
+	{
+		return( v6_ranges.length > 0 );
+	}
+
+		/**
+		 * @return total number of IPv4 addresses covered (inclusive)
+		 */
+
+	long
+	getIPv4Span()
+	{
+		return( v4_span );
+	}
+
+	String
+	getString()
+	{
+		return( "v4 blocks=" + v4_blocks + ", chain=" + v4_ranges.length + ", v6 blocks=" + v6_blocks + ", chain=" + v6_ranges.length );
+	}
+
+	private static int
+	compare128(
+		long	hi1,
+		long	lo1,
+		long	hi2,
+		long	lo2 )
+	{
+		if ( hi1 != hi2 ){
+
+			return( hi1 < hi2?-1:1 );
+		}
+
+		if ( lo1 != lo2 ){
+
+			return( lo1 < lo2?-1:1 );
+		}
+
+		return( 0 );
+	}
+
+		/**
+		 * Quick dotted-quad parse avoiding the resolver
+		 * @return the address as an unsigned value or -1 if not a plain IPv4 literal
+		 */
+
+	static long
+	parseIPv4(
+		String		str )
+	{
+		int	len = str.length();
+
+		if ( len < 7 || len > 15 ){
+
+			return( -1 );
+		}
+
+		long	result	= 0;
+		int		part	= 0;
+		int		digits	= 0;
+		int		dots	= 0;
+
+		for ( int i=0;i<len;i++){
+
+			char	c = str.charAt(i);
+
+			if ( c >= '0' && c <= '9' ){
+
+				part = part*10 + ( c - '0' );
+
+				if ( ++digits > 3 || part > 255 ){
+
+					return( -1 );
+				}
+
+			}else if ( c == '.' ){
+
+				if ( digits == 0 || ++dots > 3 ){
+
+					return( -1 );
+				}
+
+				result = ( result << 8 ) | part;
+
+				part	= 0;
+				digits	= 0;
+
+			}else{
+
+				return( -1 );
+			}
+		}
+
+		if ( digits == 0 || dots != 3 ){
+
+			return( -1 );
+		}
+
+		return(( result << 8 ) | part );
+	}
+
+		/**
+		 * Parses an IPv6 literal (no name resolution is performed for strings containing ':')
+		 * @return hi/lo or null if not an IPv6 address
+		 */
+
+	static long[]
+	parseIPv6(
+		String		str )
+	{
+		if ( str.indexOf( ':' ) == -1 ){
+
+			return( null );
+		}
+
+		try{
+			InetAddress	address = InetAddress.getByName( str.trim());
+
+			if ( address instanceof Inet6Address ){
+
+				return( toIPv6( address.getAddress()));
+			}
+		}catch( Throwable e ){
+		}
+
+		return( null );
+	}
+
+	static long[]
+	toIPv6(
+		byte[]		bytes )
+	{
+		long	hi = 0;
+		long	lo = 0;
+
+		for ( int i=0;i<8;i++){
+
+			hi = ( hi << 8 ) | ( bytes[i] & 0xff );
+			lo = ( lo << 8 ) | ( bytes[i+8] & 0xff );
+		}
+
+		return( new long[]{ hi, lo });
+	}
+
+	static byte[]
+	fromIPv6(
+		long	hi,
+		long	lo )
+	{
+		byte[]	bytes = new byte[16];
+
+		for ( int i=7;i>=0;i--){
+
+			bytes[i]	= (byte)hi;
+			bytes[i+8]	= (byte)lo;
+
+			hi >>>= 8;
+			lo >>>= 8;
+		}
+
+		return( bytes );
+	}
+}
@@ -24,6 +24,7 @@ package com.biglybt.core.ipfilter.impl;
  *
  */
 
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
@@ -35,7 +36,6 @@ import com.biglybt.core.logging.LogIDs;
 import com.biglybt.core.logging.Logger;
 import com.biglybt.core.tracker.protocol.PRHelpers;
 import com.biglybt.core.util.AEMonitor;
-import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.SystemTime;
 import com.biglybt.core.util.UnresolvableHostManager;
 
@@ -48,10 +48,12 @@ IPAddressRangeManager
 
 	protected long		total_span;
 
-	protected boolean	rebuild_required;
-	protected long		last_rebuild_time;
+	protected volatile boolean	rebuild_required;
+	protected long				last_rebuild_time;
 
-	protected IpRange[] mergedRanges = new IpRange[0];
+		// replaced wholesale on rebuild so lookups don't need the monitor
+
+	private volatile IPAddressRangeIndex	index = IPAddressRangeIndex.EMPTY;
 
 	protected final AEMonitor	this_mon	= new AEMonitor( "IPAddressRangeManager" );
 
@@ -105,26 +107,25 @@ IPAddressRangeManager
 			return( null );
 		}
 
-		try{
-			this_mon.enter();
+		if ( ip.indexOf( ':' ) != -1 ){
 
-			long address_long = addressToInt( ip );
+			long[]	address = IPAddressRangeIndex.parseIPv6( ip );
 
-			if ( address_long < 0 ){
+			if ( address != null ){
 
-				address_long += 0x100000000L;
+				return( getIndex().lookup( address[0], address[1] ));
 			}
+		}
 
-			Object res = isInRange( address_long );
+		long	quick = IPAddressRangeIndex.parseIPv4( ip );
 
-			// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + "/" + merged_entries.length + " -> " + res );
+		int	address = quick >= 0?(int)quick:addressToInt( ip );
 
-			return( res );
+		Object res = getIndex().lookup( address );
 
-		}finally{
+		// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + " -> " + res );
 
-			this_mon.exit();
-		}
+		return( res );
 	}
 
 	public Object
@@ -138,126 +139,48 @@ IPAddressRangeManager
 			return( null );
 		}
 
-		try{
-			this_mon.enter();
-
-			long address_long = addressToInt( ip );
+		if ( ip instanceof Inet6Address ){
 
-			if ( address_long < 0 ){
-
-				address_long += 0x100000000L;
-			}
+			long[]	address = IPAddressRangeIndex.toIPv6( ip.getAddress());
 
-			Object res = isInRange( address_long );
+			return( getIndex().lookup( address[0], address[1] ));
+		}
 
-			// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + "/" + merged_entries.length + " -> " + res );
+		return( getIndex().lookup( addressToInt( ip )));
+	}
 
-			return( res );
+		/**
+		 * @return true if any IPv6 ranges are present - used to avoid applying an IPv4 only
+		 * allow-list to IPv6 peers
+		 */
 
-		}finally{
+	public boolean
+	hasIPv6Ranges()
+	{
+		if ( entries.size() == 0 ){
 
-			this_mon.exit();
+			return( false );
 		}
+
+		return( getIndex().hasIPv6());
 	}
 
 	protected Object
 	isInRange(
 		long	address_long )
 	{
-		try{
-			this_mon.enter();
-
-			checkRebuild();
-
-			if ( mergedRanges.length == 0 ){
-
-				return( null );
-			}
-
-				// assisted binary chop
-
-			int	bottom 	= 0;
-			int	top		= mergedRanges.length-1;
-
-			int	current	= -1;
-
-			while( top >= 0 && bottom < mergedRanges.length && bottom <= top){
-
-				current = (bottom+top)/2;
-
-				IpRange	e = mergedRanges[current];
-
-				long	this_start 	= e.getStartIpLong();
-				long 	this_end	= e.getMergedEndLong();
-
-				if ( address_long == this_start ){
-
-					break;
-
-				}else if ( address_long > this_start ){
-
-					if ( address_long <= this_end ){
-
-						break;
-					}
-
-						// lies to the right of this entry
-
-					bottom	= current + 1;
-
-				}else if ( address_long == this_end ){
-
-					break;
-
-				}else{
-					// < this_end
-
-					if ( address_long >= this_start ){
-
-						break;
-					}
-
-					top = current - 1;
-				}
-			}
-
-			if ( top >= 0 && bottom < mergedRanges.length && bottom <= top ){
-
-				IpRange	e = mergedRanges[current];
-
-				if ( address_long <= e.getEndIpLong()){
-
-					return( e );
-				}
-
-				IpRange[]	merged = e.getMergedEntries();
-
-				if ( merged == null ){
-
-					Debug.out( "IPAddressRangeManager: inconsistent merged details - no entries" );
-
-					return( null );
-				}
-
-				for (int i=0;i<merged.length;i++){
-
-					IpRange	me = merged[i];
-
-					if ( me.getStartIpLong() <= address_long && me.getEndIpLong() >= address_long ){
-
-						return( me );
-					}
-				}
-
-				Debug.out( "IPAddressRangeManager: inconsistent merged details - entry not found" );
-			}
-
-			return( null );
+		return( getIndex().lookup((int)address_long ));
+	}
 
-		}finally{
+	private IPAddressRangeIndex
+	getIndex()
+	{
+		if ( rebuild_required ){
 
-			this_mon.exit();
+			checkRebuild();
 		}
+
+		return( index );
 	}
 
 	protected int
@@ -320,128 +243,15 @@ IPAddressRangeManager
 			Logger.log(new LogEvent(LOGID, "IPAddressRangeManager: rebuilding "
 					+ entries.size() + " entries starts"));
 
-		IpRange[]	ents = new IpRange[entries.size()];
-
-		entries.toArray(ents);
-
-		for (int i=0;i<ents.length;i++){
-
-			ents[i].resetMergeInfo();
-		}
-
-			// sort based on start address
-
-		Arrays.sort(
-			ents,
-			new Comparator<IpRange>()
-			{
-				@Override
-				public int
-				compare(
-					IpRange e1,
-					IpRange e2 )
-				{
-					long diff = e1.getStartIpLong() - e2.getStartIpLong();
-
-					if (diff == 0) {
-
-						diff = e2.getEndIpLong() - e1.getEndIpLong();
-					}
-
-					return signum(diff);
-				}
-			});
-
-			// now merge overlapping ranges
-
-		List me = new ArrayList( ents.length );
-
-		for (int i=0;i<ents.length;i++){
-
-			IpRange	entry = ents[i];
-
-			if ( entry.getMerged()){
-
-				continue;
-			}
-
-			me.add( entry );
-
-			int	pos = i+1;
-
-			while( pos < ents.length ){
-
-				long	end_pos = entry.getMergedEndLong();
+		IPAddressRangeIndex	new_index = new IPAddressRangeIndex((List<IpRange>)entries );
 
-				IpRange	e2 = ents[pos++];
-
-				if (!e2.getMerged()){
-
-					if ( end_pos >= e2.getStartIpLong()){
-
-						e2.setMerged();
-
-						if ( e2.getEndIpLong() > end_pos ){
-
-							entry.setMergedEnd( e2.getEndIpLong() );
-
-							entry.addMergedEntry( e2 );
-						}
-					}else{
-
-						break;
-					}
-				}
-			}
-		}
-
-		/*
-		for (int i=0;i<ents.length;i++){
-
-			entry	e = ents[i];
-
-			System.out.println( Long.toHexString(e.getStart()) + " - " + Long.toHexString(e.getEnd()) + ": " + e.getMerged() + "/" + Long.toHexString(e.getMergedEnd()));
-		}
-		*/
-
-		mergedRanges = new IpRange[me.size()];
-
-		me.toArray( mergedRanges );
-
-		total_span	= 0;
-
-		for (int i=0;i<mergedRanges.length;i++){
-
-			IpRange	e = mergedRanges[i];
-
-				// span is inclusive
-
-			long	span = ( e.getMergedEndLong() - e.getStartIpLong()) + 1;
-
-			total_span	+= span;
-		}
-			//	System.out.println( "non_merged = " + merged_entries.length );
+		index		= new_index;
+		total_span	= new_index.getIPv4Span();
 
 		if (Logger.isEnabled())
 			Logger.log(new LogEvent(LOGID, "IPAddressRangeManager: rebuilding "
-					+ entries.size() + " entries ends"));
-
-	}
-
-	/**
-	 * @param diff
-	 * @return
-	 */
-	protected int signum(long diff) {
-		if (diff > 0) {
-			return 1;
-		}
-
-		if (diff < 0) {
-			return -1;
-		}
+					+ entries.size() + " entries ends (" + new_index.getString() + ")"));
 
-		return 0;
 	}
 
 	protected long
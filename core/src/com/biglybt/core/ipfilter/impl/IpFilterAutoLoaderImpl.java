@@ -22,6 +22,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -51,6 +52,12 @@ public class IpFilterAutoLoaderImpl
 {
 	static final LogIDs LOGID = LogIDs.CORE;
 
+	static final Pattern DAT_PATTERN = Pattern.compile("^(.*):([0-9\\.]+)[^0-9]+([0-9\\.]+).*");
+
+	static final int DAT_PARSE_CHUNK = 16384;
+
+	static final int DAT_PARSE_THREADS = 4;
+
 	public static final String CFG_AUTOLOAD_LAST 	= "Ip Filter Autoload Last Date";
 	public static final String CFG_AUTOLOAD_DAYS 	= "Ip Filter Autoload Days";
 
@@ -75,38 +82,192 @@ public class IpFilterAutoLoaderImpl
 
 	/**
 	 * Load dat filter as specified at http://wiki.phoenixlabs.org/wiki/DAT_Format
+	 * <p>
+	 * Lines are read sequentially and handed out in chunks to be parsed in parallel
+	 * (when there's more than one CPU), the results are then appended in file order
+	 *
 	 * @param fin
-	 * @throws Exception
+	 * @param ranges receives the parsed ranges
 	 *
 	 * @since 3.0.1.5
 	 */
-	private void loadDATFilters(InputStream fin) {
+	private void loadDATFilters(InputStream fin, IpRangeCompiledList ranges) {
+		InputStreamReader streamReader = null;
+		BufferedReader reader = null;
+
+		final LinkedList<DATChunk> queue = new LinkedList<>();
+		final boolean[] reading_done = { false };
+
+		List<DATChunk> chunks = new ArrayList<>();
+
+		int max_workers = Math.min(DAT_PARSE_THREADS,
+				Runtime.getRuntime().availableProcessors()) - 1;
+		int num_workers = 0;
+
 		try {
-			class_mon.enter();
+			int parseMode = -1;
 
-			List new_ipRanges = new ArrayList(1024);
+			//open the file
+			// TODO: test charset fallback (should fallback to ascii)
+			streamReader = new InputStreamReader(fin, "utf8");
+			reader = new BufferedReader(streamReader);
 
-			InputStreamReader streamReader = null;
-			BufferedReader reader = null;
-			try {
-				Pattern pattern = Pattern.compile("^(.*):([0-9\\.]+)[^0-9]+([0-9\\.]+).*");
-				int parseMode = -1;
+			DATChunk chunk = null;
 
-				//open the file
-				// TODO: test charset fallback (should fallback to ascii)
-				streamReader = new InputStreamReader(fin, "utf8");
-				reader = new BufferedReader(streamReader);
+			while (true) {
+				String line = reader.readLine();
+				//System.out.println("line=" + line);
+				if (line == null) {
+					break;
+				}
+
+				if (parseMode == -1) {
+					// the format is decided by the first line that isn't a comment
+					String trimmed = line.trim();
+
+					if (trimmed.startsWith("#") || trimmed.length() == 0) {
+						continue;
+					}
+
+					if (DAT_PATTERN.matcher(trimmed).find()) {
+						parseMode = 1;
+					} else {
+						Logger.log(new LogEvent(LOGID, LogEvent.LT_WARNING,
+								"unrecognized line while reading ip filter: " + trimmed));
+						parseMode = 2;
+					}
+				}
+
+				if (chunk == null) {
+					chunk = new DATChunk(parseMode);
+				}
+
+				chunk.lines[chunk.num_lines++] = line;
+
+				if (chunk.num_lines == DAT_PARSE_CHUNK) {
+					chunks.add(chunk);
+
+					if (max_workers > 0) {
+						synchronized (queue) {
+							queue.add(chunk);
+							queue.notify();
+						}
+
+						if (num_workers < max_workers && chunks.size() > num_workers) {
+							num_workers++;
+							startDATWorker(queue, reading_done);
+						}
+					} else {
+						chunk.parse();
+					}
+
+					chunk = null;
+				}
+			}
+
+			if (chunk != null) {
+				chunks.add(chunk);
+				chunk.parse();
+			}
+		} catch (IOException e) {
+			Debug.out(e);
+		} finally {
+
+			synchronized (queue) {
+				reading_done[0] = true;
+				queue.notifyAll();
+			}
+
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (Throwable e) {
+				}
+			}
+			if (streamReader != null) {
+				try {
+					streamReader.close();
+				} catch (Throwable e) {
+				}
+			}
+		}
+
+		// help out with anything still queued then collect in order
+
+		while (true) {
+			DATChunk chunk;
+			synchronized (queue) {
+				if (queue.isEmpty()) {
+					break;
+				}
+				chunk = queue.removeFirst();
+			}
+			chunk.parse();
+		}
+
+		for (DATChunk chunk : chunks) {
+			chunk.done_sem.reserve();
+
+			ranges.addAll(chunk.ranges);
+
+			if (chunk.aborted) {
+				break;
+			}
+		}
+	}
 
+	private static void startDATWorker(final LinkedList<DATChunk> queue,
+			final boolean[] reading_done) {
+		new AEThread2("IpFilter:DATParser", true) {
+			@Override
+			public void run() {
+				while (true) {
+					DATChunk chunk;
+					synchronized (queue) {
+						while (queue.isEmpty()) {
+							if (reading_done[0]) {
+								return;
+							}
+							try {
+								queue.wait();
+							} catch (InterruptedException e) {
+							}
+						}
+						chunk = queue.removeFirst();
+					}
+					chunk.parse();
+				}
+			}
+		}.start();
+	}
+
+	private static class DATChunk {
+		final int parseMode;
+		final String[] lines = new String[DAT_PARSE_CHUNK];
+		int num_lines;
+
+		final IpRangeCompiledList ranges = new IpRangeCompiledList();
+		boolean aborted;
+
+		final AESemaphore done_sem = new AESemaphore("IpFilter:DATChunk");
+
+		DATChunk(int parseMode) {
+			this.parseMode = parseMode;
+		}
+
+		void parse() {
+			try {
 				int numConsecutiveUnknowns = 0;
 
-				while (numConsecutiveUnknowns < 1000) {
-					String line = reader.readLine();
-					//System.out.println("line=" + line);
-					if (line == null) {
+				for (int i = 0; i < num_lines; i++) {
+					if (numConsecutiveUnknowns >= 1000) {
+						aborted = true;
 						break;
 					}
 
-					line = line.trim();
+					String line = lines[i].trim();
+
+					lines[i] = null;
 
 					if (line.startsWith("#") || line.length() == 0) {
 						continue;
@@ -117,12 +278,9 @@ public class IpFilterAutoLoaderImpl
 					String endIp = null;
 					int level = 0;
 
-					if (parseMode <= 0 || parseMode == 1) {
-						Matcher matcher = pattern.matcher(line);
+					if (parseMode == 1) {
+						Matcher matcher = DAT_PATTERN.matcher(line);
 						if (matcher.find()) {
-							if (parseMode != 1) {
-								parseMode = 1;
-							}
 							description = matcher.group(1);
 							startIp = matcher.group(2);
 							endIp = matcher.group(3);
@@ -130,13 +288,7 @@ public class IpFilterAutoLoaderImpl
 							Logger.log(new LogEvent(LOGID, LogEvent.LT_WARNING,
 									"unrecognized line while reading ip filter: " + line));
 						}
-					}
-
-					if (parseMode != 1) {
-						if (parseMode != 2) {
-							parseMode = 2;
-						}
-
+					} else {
 						// spec says:
 						//    1.1.1.1, 1.1.1.2, 100, moo
 						// but I've seen dash format, such as
@@ -145,9 +297,8 @@ public class IpFilterAutoLoaderImpl
 						String[] sections = line.split(" *[-,] *", 4);
 
 						if (sections.length >= 2) {
-							if (sections[0].indexOf('.') < 0 || sections[1].indexOf('.') < 0
-									|| sections[0].length() > 15 || sections[1].length() > 15
-									|| sections[0].length() < 7 || sections[1].length() < 7) {
+							if (!isPlausibleAddress(sections[0])
+									|| !isPlausibleAddress(sections[1])) {
 								numConsecutiveUnknowns++;
 								continue;
 							}
@@ -164,8 +315,8 @@ public class IpFilterAutoLoaderImpl
 							} catch (NumberFormatException e) {
 								description = sections[2] + " " + description;
 							}
-							for (int i = 4; i < sections.length; i++) {
-								description += " " + sections[i];
+							for (int j = 4; j < sections.length; j++) {
+								description += " " + sections[j];
 							}
 							numConsecutiveUnknowns = 0;
 						} else if (sections.length == 3) {
@@ -191,43 +342,24 @@ public class IpFilterAutoLoaderImpl
 						continue;
 					}
 
-					IpRangeImpl ipRange = new IpRangeImpl(description, startIp, endIp,
-							true);
-
-					//System.out.println(parseMode + ":" + description + ";" + ipRange.getStartIp());
-					ipRange.setAddedToRangeList(true);
-
-					new_ipRanges.add(ipRange);
+					ranges.add(description, startIp, endIp);
 				}
-			} catch (IOException e) {
+			} catch (Throwable e) {
 				Debug.out(e);
 			} finally {
+				done_sem.release();
+			}
+		}
 
-				if (reader != null) {
-					try {
-						reader.close();
-					} catch (Throwable e) {
-					}
-				}
-				if (streamReader != null) {
-					try {
-						streamReader.close();
-					} catch (Throwable e) {
-					}
-				}
-
-				Iterator it = new_ipRanges.iterator();
-
-				while (it.hasNext()) {
-
-					((IpRange) it.next()).checkValid();
-				}
+		private static boolean isPlausibleAddress(String str) {
+			int len = str.length();
 
-				ipFilter.markAsUpToDate();
+			if (str.indexOf(':') != -1) {
+				// IPv6, allowing for an embedded IPv4 tail
+				return len >= 2 && len <= 45;
 			}
-		} finally {
 
-			class_mon.exit();
+			return str.indexOf('.') >= 0 && len >= 7 && len <= 15;
 		}
 	}
 
@@ -274,6 +406,10 @@ public class IpFilterAutoLoaderImpl
 
 			List new_ipRanges = new ArrayList(1024);
 
+			IpRangeCompiledList parsed = null;
+			File sourceFile = null;
+			boolean saveParsed = false;
+
 			InputStream fin = null;
 			BufferedInputStream bin = null;
 			boolean isURL = false;
@@ -317,6 +453,17 @@ public class IpFilterAutoLoaderImpl
 					}
 				}
 
+				// a precompiled copy of the list saves parsing it again
+
+				parsed = IpRangeCompiledList.load(filtersFile);
+
+				if (parsed != null) {
+					return;
+				}
+
+				sourceFile = filtersFile;
+				parsed = new IpRangeCompiledList();
+
 				fin = FileUtil.newFileInputStream(filtersFile);
 				bin = new BufferedInputStream(fin, 16384);
 
@@ -376,7 +523,8 @@ public class IpFilterAutoLoaderImpl
 
 				if (p2bVersion < 1 || p2bVersion > 3) {
 					bin.reset();
-					loadDATFilters(bin);
+					loadDATFilters(bin, parsed);
+					saveParsed = true;
 					return;
 				}
 
@@ -399,12 +547,7 @@ public class IpFilterAutoLoaderImpl
 						}
 						int endIp = ByteFormatter.byteArrayToInt(ipBytes);
 
-						IpRangeImpl ipRange = new IpRangeImpl(description, startIp, endIp,
-								true);
-
-						ipRange.setAddedToRangeList(true);
-
-						new_ipRanges.add(ipRange);
+						parsed.add(description, startIp, endIp);
 					}
 				} else { // version 3
 					int read = bin.read(ipBytes);
@@ -444,14 +587,11 @@ public class IpFilterAutoLoaderImpl
 						String description = descIdx < descs.length && descIdx >= 0
 								? descs[descIdx] : "";
 
-						IpRangeImpl ipRange = new IpRangeImpl(description, startIp, endIp,
-								true);
-
-						ipRange.setAddedToRangeList(true);
-
-						new_ipRanges.add(ipRange);
+						parsed.add(description, startIp, endIp);
 					}
 				}
+
+				saveParsed = true;
 			} catch (IOException e) {
 				Debug.out(e);
 			} finally {
@@ -469,6 +609,14 @@ public class IpFilterAutoLoaderImpl
 					}
 				}
 
+				if (parsed != null) {
+					if (saveParsed && parsed.size() > 0) {
+						IpRangeCompiledList.save(sourceFile, parsed);
+					}
+
+					parsed.createRanges(new_ipRanges);
+				}
+
 				Iterator it = new_ipRanges.iterator();
 
 				while (it.hasNext()) {
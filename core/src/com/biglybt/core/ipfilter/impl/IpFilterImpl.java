@@ -505,9 +505,10 @@ IpFilterImpl
 		  return( false );
 	  }
 
-	  	// don't currently support IPv6
+	  	// IPv6 addresses are only filtered if there are IPv6 ranges, otherwise an IPv4 allow-list
+	  	// would shut out all IPv6 peers
 
-	  if (ipAddress.contains(":")){
+	  if ( ipAddress.indexOf( ':' ) != -1 && !range_manager.hasIPv6Ranges()){
 
 		  return( false );
 	  }
@@ -632,9 +633,9 @@ IpFilterImpl
 		  return( false );
 	  }
 
-	  	// don't currently support IPv6
+	  	// as above, IPv6 only filtered if there are IPv6 ranges
 
-	  if ( ipAddress instanceof Inet6Address ){
+	  if ( ipAddress instanceof Inet6Address && !range_manager.hasIPv6Ranges()){
 
 		  return( false );
 	  }
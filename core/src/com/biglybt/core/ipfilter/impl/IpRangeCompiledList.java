@@ -0,0 +1,497 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.ipfilter.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.biglybt.core.ipfilter.IpFilterManagerFactory;
+import com.biglybt.core.logging.LogEvent;
+import com.biglybt.core.logging.LogIDs;
+import com.biglybt.core.logging.Logger;
+import com.biglybt.core.util.Constants;
+import com.biglybt.core.util.Debug;
+import com.biglybt.core.util.FileUtil;
+
+/**
+ * Parsed blocklist held as primitive arrays with de-duplicated descriptions. Loaders parse
+ * into one of these (possibly several in parallel that are then appended in order) and the
+ * range objects are created from it in one go.
+ * <p>
+ * The list can also be saved in a precompiled form keyed on the source file's path, size and
+ * modification time. At the next start-up this is memory mapped and read directly rather than
+ * re-parsing (and possibly decompressing) the original list
+ */
+
+class
+IpRangeCompiledList
+{
+	private static final LogIDs LOGID = LogIDs.CORE;
+
+	private static final int	MAGIC	= 0x42495046;	// BIPF
+	private static final int	VERSION	= 1;
+
+	private static final String	CACHE_FILE	= "ipfilter.bin";
+
+	private int[]	v4			= new int[3*512];	// start, end, desc
+	private int		v4_num;
+
+	private long[]	v6			= new long[0];		// start hi, lo, end hi, lo
+	private int[]	v6_descs	= new int[0];
+	private int		v6_num;
+
+	private final List<String>			descs		= new ArrayList<>();
+	private final Map<String,Integer>	desc_map	= new HashMap<>();
+
+	IpRangeCompiledList()
+	{
+	}
+
+	int
+	size()
+	{
+		return( v4_num + v6_num );
+	}
+
+	void
+	add(
+		String	description,
+		int		start,
+		int		end )
+	{
+		if ( v4_num*3 + 3 > v4.length ){
+
+			v4 = Arrays.copyOf( v4, Math.max( 3*512, v4.length*2 ));
+		}
+
+		int	pos = v4_num*3;
+
+		v4[pos]		= start;
+		v4[pos+1]	= end;
+		v4[pos+2]	= getDescIndex( description );
+
+		v4_num++;
+	}
+
+	void
+	addIPv6(
+		String	description,
+		long	start_hi,
+		long	start_lo,
+		long	end_hi,
+		long	end_lo )
+	{
+		if ( v6_num == v6_descs.length ){
+
+			int	len = Math.max( 16, v6_descs.length*2 );
+
+			v6			= Arrays.copyOf( v6, len*4 );
+			v6_descs	= Arrays.copyOf( v6_descs, len );
+		}
+
+		int	pos = v6_num*4;
+
+		v6[pos]		= start_hi;
+		v6[pos+1]	= start_lo;
+		v6[pos+2]	= end_hi;
+		v6[pos+3]	= end_lo;
+
+		v6_descs[v6_num++] = getDescIndex( description );
+	}
+
+		/**
+		 * Adds a start/end pair as parsed from text, quietly dropping anything that isn't a
+		 * valid IPv4 or IPv6 range (such entries never made it into the filter anyway)
+		 * @return false if dropped
+		 */
+
+	boolean
+	add(
+		String	description,
+		String	start,
+		String	end )
+	{
+		long	s = IPAddressRangeIndex.parseIPv4( start );
+		long	e = IPAddressRangeIndex.parseIPv4( end );
+
+		if ( s >= 0 && e >= 0 ){
+
+			if ( e < s ){
+
+				return( false );
+			}
+
+			add( description, (int)s, (int)e );
+
+			return( true );
+		}
+
+		if ( start.indexOf( ':' ) != -1 || end.indexOf( ':' ) != -1 ){
+
+			long[]	s6 = IPAddressRangeIndex.parseIPv6( start );
+			long[]	e6 = IPAddressRangeIndex.parseIPv6( end );
+
+			if ( s6 == null || e6 == null ){
+
+				return( false );
+			}
+
+			int	c = Long.compare( e6[0] ^ Long.MIN_VALUE, s6[0] ^ Long.MIN_VALUE );
+
+			if ( c < 0 || ( c == 0 && Long.compare( e6[1] ^ Long.MIN_VALUE, s6[1] ^ Long.MIN_VALUE ) < 0 )){
+
+				return( false );
+			}
+
+			addIPv6( description, s6[0], s6[1], e6[0], e6[1] );
+
+			return( true );
+		}
+
+			// unusual forms, let the range do the parsing
+
+		IpRangeImpl	range = new IpRangeImpl( "", start, end, true );
+
+		if ( !range.isValid()){
+
+			return( false );
+		}
+
+		add( description, (int)range.getStartIpLong(), (int)range.getEndIpLong());
+
+		return( true );
+	}
+
+	void
+	addAll(
+		IpRangeCompiledList		other )
+	{
+		int[]	desc_remap = new int[other.descs.size()];
+
+		for ( int i=0;i<desc_remap.length;i++){
+
+			desc_remap[i] = getDescIndex( other.descs.get(i));
+		}
+
+		if (( v4_num + other.v4_num )*3 > v4.length ){
+
+			v4 = Arrays.copyOf( v4, Math.max( v4.length*2, ( v4_num + other.v4_num )*3 ));
+		}
+
+		for ( int i=0;i<other.v4_num;i++){
+
+			int	pos = i*3;
+
+			int	to = v4_num*3;
+
+			v4[to]		= other.v4[pos];
+			v4[to+1]	= other.v4[pos+1];
+			v4[to+2]	= desc_remap[other.v4[pos+2]];
+
+			v4_num++;
+		}
+
+		for ( int i=0;i<other.v6_num;i++){
+
+			int	pos = i*4;
+
+			addIPv6( other.descs.get( other.v6_descs[i] ), other.v6[pos], other.v6[pos+1], other.v6[pos+2], other.v6[pos+3] );
+		}
+	}
+
+	private int
+	getDescIndex(
+		String	description )
+	{
+		Integer	index = desc_map.get( description );
+
+		if ( index == null ){
+
+			index = descs.size();
+
+			descs.add( description );
+
+			desc_map.put( description, index );
+		}
+
+		return( index );
+	}
+
+		/**
+		 * Creates the session-only ranges, marked as added to the range list but not yet
+		 * validated (the caller does this). Ranges with the same description share the
+		 * description cache entry
+		 */
+
+	void
+	createRanges(
+		List	ranges )
+	{
+		Object[]	desc_refs	= new Object[descs.size()];
+		boolean[]	desc_done	= new boolean[descs.size()];
+
+		for ( int i=0;i<v4_num;i++){
+
+			int	pos = i*3;
+
+			IpRangeImpl	range = new IpRangeImpl( "", v4[pos], v4[pos+1], true );
+
+			setDescription( range, v4[pos+2], desc_refs, desc_done );
+
+			range.setAddedToRangeList( true );
+
+			ranges.add( range );
+		}
+
+		for ( int i=0;i<v6_num;i++){
+
+			int	pos = i*4;
+
+			IpRangeImpl	range = new IpRangeImpl( "", v6[pos], v6[pos+1], v6[pos+2], v6[pos+3], true );
+
+			setDescription( range, v6_descs[i], desc_refs, desc_done );
+
+			range.setAddedToRangeList( true );
+
+			ranges.add( range );
+		}
+	}
+
+	private void
+	setDescription(
+		IpRangeImpl		range,
+		int				index,
+		Object[]		desc_refs,
+		boolean[]		desc_done )
+	{
+		if ( !desc_done[index] ){
+
+			desc_done[index] = true;
+
+			String	desc = descs.get( index );
+
+			if ( desc.length() > 0 ){
+
+				desc_refs[index] = IpFilterManagerFactory.getSingleton().addDescription( range, desc.getBytes());
+			}
+		}
+
+		range.setDescRef( desc_refs[index] );
+	}
+
+	static void
+	save(
+		File					source,
+		IpRangeCompiledList		list )
+	{
+		File	target 	= FileUtil.getUserFile( CACHE_FILE );
+		File	temp	= FileUtil.getUserFile( CACHE_FILE + ".tmp" );
+
+		DataOutputStream	dos = null;
+
+		try{
+			dos = new DataOutputStream( new BufferedOutputStream( FileUtil.newFileOutputStream( temp ), 65536 ));
+
+			dos.writeInt( MAGIC );
+			dos.writeInt( VERSION );
+			byte[]	path = source.getAbsolutePath().getBytes( Constants.UTF_8 );
+
+			dos.writeShort( path.length );
+			dos.write( path );
+			dos.writeLong( source.length());
+			dos.writeLong( source.lastModified());
+
+			dos.writeInt( list.descs.size());
+
+			for ( String desc: list.descs ){
+
+				byte[]	bytes = desc.getBytes( Constants.UTF_8 );
+
+				dos.writeShort( bytes.length );
+				dos.write( bytes );
+			}
+
+			dos.writeInt( list.v4_num );
+
+			for ( int i=0;i<list.v4_num*3;i++){
+
+				dos.writeInt( list.v4[i] );
+			}
+
+			dos.writeInt( list.v6_num );
+
+			for ( int i=0;i<list.v6_num;i++){
+
+				for ( int j=0;j<4;j++){
+
+					dos.writeLong( list.v6[i*4+j] );
+				}
+
+				dos.writeInt( list.v6_descs[i] );
+			}
+
+			dos.close();
+
+			dos = null;
+
+			target.delete();
+
+			if ( !temp.renameTo( target )){
+
+				temp.delete();
+			}
+		}catch( Throwable e ){
+
+			Debug.out( "Failed to save precompiled IP filter", e );
+
+			temp.delete();
+
+		}finally{
+
+			if ( dos != null ){
+
+				try{
+					dos.close();
+
+				}catch( Throwable e ){
+				}
+			}
+		}
+	}
+
+		/**
+		 * @return the precompiled list if it exists and matches the source file, null otherwise
+		 */
+
+	static IpRangeCompiledList
+	load(
+		File		source )
+	{
+		File	file = FileUtil.getUserFile( CACHE_FILE );
+
+		if ( !file.exists()){
+
+			return( null );
+		}
+
+		long	start = System.currentTimeMillis();
+
+		RandomAccessFile	raf = null;
+
+		try{
+			raf = new RandomAccessFile( file, "r" );
+
+			FileChannel	channel = raf.getChannel();
+
+			ByteBuffer	bb = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if ( bb.getInt() != MAGIC || bb.getInt() != VERSION ){
+
+				return( null );
+			}
+
+			byte[]	path = new byte[ bb.getShort() & 0xffff ];
+
+			bb.get( path );
+
+			if ( 	!new String( path, Constants.UTF_8 ).equals( source.getAbsolutePath()) ||
+					bb.getLong() != source.length() ||
+					bb.getLong() != source.lastModified()){
+
+				return( null );
+			}
+
+			IpRangeCompiledList	list = new IpRangeCompiledList();
+
+			int	num_descs = bb.getInt();
+
+			for ( int i=0;i<num_descs;i++){
+
+				byte[]	bytes = new byte[ bb.getShort() & 0xffff ];
+
+				bb.get( bytes );
+
+				list.getDescIndex( new String( bytes, Constants.UTF_8 ));
+			}
+
+			int	num_v4 = bb.getInt();
+
+			if ( num_v4 < 0 || num_v4 > bb.remaining()/12 ){
+
+				return( null );
+			}
+
+			list.v4 = new int[ Math.max( 3, num_v4*3 )];
+
+			bb.asIntBuffer().get( list.v4, 0, num_v4*3 );
+
+			bb.position( bb.position() + num_v4*12 );
+
+			list.v4_num = num_v4;
+
+			int	num_v6 = bb.getInt();
+
+			for ( int i=0;i<num_v6;i++){
+
+				long	s_hi	= bb.getLong();
+				long	s_lo	= bb.getLong();
+				long	e_hi	= bb.getLong();
+				long	e_lo	= bb.getLong();
+
+				list.addIPv6( list.descs.get( bb.getInt()), s_hi, s_lo, e_hi, e_lo );
+			}
+
+			for ( int i=0;i<num_v4;i++){
+
+				if ( list.v4[i*3+2] >= num_descs ){
+
+					return( null );
+				}
+			}
+
+			if (Logger.isEnabled())
+				Logger.log(new LogEvent(LOGID, "IP Filter: loaded " + list.size() + " precompiled ranges in " + ( System.currentTimeMillis() - start ) + "ms"));
+
+			return( list );
+
+		}catch( Throwable e ){
+
+				// corrupt/truncated, just re-parse the source
+
+			return( null );
+
+		}finally{
+
+			if ( raf != null ){
+
+				try{
+					raf.close();
+
+				}catch( Throwable e ){
+				}
+			}
+		}
+	}
+}
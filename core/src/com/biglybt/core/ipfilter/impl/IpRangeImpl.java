@@ -20,6 +20,7 @@
 
 package com.biglybt.core.ipfilter.impl;
 
+import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 import com.biglybt.core.ipfilter.IpFilterManagerFactory;
@@ -43,20 +44,24 @@ public class IpRangeImpl implements IpRange
 
 	private final static byte FLAG_INVALID = FLAG_INVALID_START | FLAG_INVALID_END;
 
+	private final static byte FLAG_IPV6_START = 0x20;
+
+	private final static byte FLAG_IPV6_END = 0x40;
+
+	private final static byte FLAG_IPV6 = FLAG_IPV6_START | FLAG_IPV6_END;
+
 	private int ipStart;
 
 	private int ipEnd;
 
+	// IPv6 start hi/lo, end hi/lo - only allocated if either end is IPv6
+	private long[] ip6;
+
 	private byte flags;
 
 	private Object descRef = null;
 
-	// Merging stuff
-	private final static byte FLAG_MERGED = 0x4;
-
-	private int merged_end;
-
-	private IpRange[] my_merged_entries;
+	// merge state used to be held here, it is now kept by the range manager's index
 
 	public IpRangeImpl(String _description, String _startIp, String _endIp,
 			boolean _sessionOnly) {
@@ -70,17 +75,29 @@ public class IpRangeImpl implements IpRange
 					"Invalid start/end values - null not supported"));
 		}
 
-		try {
-			ipStart = PRHelpers.addressToInt(_startIp);
-		} catch (UnknownHostException e) {
-			flags |= FLAG_INVALID_START;
+		setAddress(_startIp, true);
+		setAddress(_endIp, false);
+
+		if (_description.length() > 0) {
+			setDescription(_description);
 		}
-		try {
-			ipEnd = PRHelpers.addressToInt(_endIp);
-		} catch (UnknownHostException e) {
-			flags |= FLAG_INVALID_END;
+
+		checkValid();
+	}
+
+	/**
+	 * IPv6 range, addresses as hi/lo 64 bit halves
+	 */
+	public IpRangeImpl(String _description, long _startHi, long _startLo,
+			long _endHi, long _endLo, boolean _sessionOnly) {
+		if (_sessionOnly) {
+			flags = FLAG_SESSION_ONLY;
 		}
 
+		ip6 = new long[] { _startHi, _startLo, _endHi, _endLo };
+
+		flags |= FLAG_IPV6;
+
 		if (_description.length() > 0) {
 			setDescription(_description);
 		}
@@ -115,6 +132,15 @@ public class IpRangeImpl implements IpRange
 			return false;
 		}
 
+		int family = flags & FLAG_IPV6;
+
+		if (family == FLAG_IPV6) {
+			return (compareUnsigned(ip6[2], ip6[3], ip6[0], ip6[1]) >= 0);
+		} else if (family != 0) {
+			// mixed IPv4/IPv6
+			return false;
+		}
+
 		long start_address = ipStart;
 		long end_address = ipEnd;
 
@@ -136,6 +162,14 @@ public class IpRangeImpl implements IpRange
 			return false;
 		}
 
+		if (isIPv6()) {
+			long[] address = IPAddressRangeIndex.parseIPv6(ipAddress);
+
+			return (address != null
+					&& compareUnsigned(address[0], address[1], ip6[0], ip6[1]) >= 0
+					&& compareUnsigned(address[0], address[1], ip6[2], ip6[3]) <= 0);
+		}
+
 		try {
 			long int_address = PRHelpers.addressToInt(ipAddress);
 
@@ -178,13 +212,23 @@ public class IpRangeImpl implements IpRange
 
 	@Override
 	public String getStartIp() {
-		return (flags & FLAG_INVALID_START) > 0 ? ""
-				: PRHelpers.intToAddress(ipStart);
+		if ((flags & FLAG_INVALID_START) > 0) {
+			return "";
+		}
+
+		if ((flags & FLAG_IPV6_START) != 0) {
+			return IPv6ToString(ip6[0], ip6[1]);
+		}
+
+		return PRHelpers.intToAddress(ipStart);
 	}
 
+	/**
+	 * @return -1 if invalid or IPv6
+	 */
 	@Override
 	public long getStartIpLong() {
-		if ((flags & FLAG_INVALID_START) > 0) {
+		if ((flags & (FLAG_INVALID_START | FLAG_IPV6_START)) > 0) {
 			return -1;
 		}
 
@@ -208,12 +252,7 @@ public class IpRangeImpl implements IpRange
 			return;
 		}
 
-		flags &= ~FLAG_INVALID_START;
-		try {
-			ipStart = PRHelpers.addressToInt(str);
-		} catch (UnknownHostException e) {
-			flags |= FLAG_INVALID_START;
-		}
+		setAddress(str, true);
 
 		if ((flags & FLAG_INVALID) == 0) {
 			checkValid();
@@ -222,12 +261,23 @@ public class IpRangeImpl implements IpRange
 
 	@Override
 	public String getEndIp() {
-		return (flags & FLAG_INVALID_END) > 0 ? "" : PRHelpers.intToAddress(ipEnd);
+		if ((flags & FLAG_INVALID_END) > 0) {
+			return "";
+		}
+
+		if ((flags & FLAG_IPV6_END) != 0) {
+			return IPv6ToString(ip6[2], ip6[3]);
+		}
+
+		return PRHelpers.intToAddress(ipEnd);
 	}
 
+	/**
+	 * @return -1 if invalid or IPv6
+	 */
 	@Override
 	public long getEndIpLong() {
-		if ((flags & FLAG_INVALID_END) > 0) {
+		if ((flags & (FLAG_INVALID_END | FLAG_IPV6_END)) > 0) {
 			return -1;
 		}
 
@@ -252,12 +302,7 @@ public class IpRangeImpl implements IpRange
 			return;
 		}
 
-		flags &= ~FLAG_INVALID_END;
-		try {
-			ipEnd = PRHelpers.addressToInt(str);
-		} catch (UnknownHostException e) {
-			flags |= FLAG_INVALID_END;
-		}
+		setAddress(str, false);
 
 		if ((flags & FLAG_INVALID) == 0) {
 			checkValid();
@@ -284,7 +329,18 @@ public class IpRangeImpl implements IpRange
 
 	@Override
 	public int compareStartIpTo(IpRange other) {
-		long l = getStartIpLong() - ((IpRangeImpl) other).getStartIpLong();
+		IpRangeImpl o = (IpRangeImpl) other;
+
+		boolean v6 = (flags & FLAG_IPV6_START) != 0;
+
+		if (v6 != ((o.flags & FLAG_IPV6_START) != 0)) {
+			// IPv4 sorts before IPv6
+			return v6 ? 1 : -1;
+		} else if (v6) {
+			return compareUnsigned(ip6[0], ip6[1], o.ip6[0], o.ip6[1]);
+		}
+
+		long l = getStartIpLong() - o.getStartIpLong();
 
 		if (l < 0) {
 			return (-1);
@@ -297,7 +353,17 @@ public class IpRangeImpl implements IpRange
 
 	@Override
 	public int compareEndIpTo(IpRange other) {
-		long l = getEndIpLong() - ((IpRangeImpl) other).getEndIpLong();
+		IpRangeImpl o = (IpRangeImpl) other;
+
+		boolean v6 = (flags & FLAG_IPV6_END) != 0;
+
+		if (v6 != ((o.flags & FLAG_IPV6_END) != 0)) {
+			return v6 ? 1 : -1;
+		} else if (v6) {
+			return compareUnsigned(ip6[2], ip6[3], o.ip6[2], o.ip6[3]);
+		}
+
+		long l = getEndIpLong() - o.getEndIpLong();
 
 		if (l < 0) {
 			return (-1);
@@ -333,56 +399,103 @@ public class IpRangeImpl implements IpRange
 		this.descRef = descRef;
 	}
 
+	protected boolean isIPv6() {
+		return (flags & FLAG_IPV6) == FLAG_IPV6;
+	}
+
+	/**
+	 * Copies start hi/lo, end hi/lo into the array at the offset
+	 */
+	protected void getIPv6(long[] dest, int offset) {
+		System.arraycopy(ip6, 0, dest, offset, 4);
+	}
+
+	private void setAddress(String str, boolean start) {
+		byte invalid = start ? FLAG_INVALID_START : FLAG_INVALID_END;
+		byte v6 = start ? FLAG_IPV6_START : FLAG_IPV6_END;
+
+		flags &= ~(invalid | v6);
+
+		if (str.indexOf(':') != -1) {
+			long[] address = IPAddressRangeIndex.parseIPv6(str);
+
+			if (address == null) {
+				flags |= invalid;
+			} else {
+				if (ip6 == null) {
+					ip6 = new long[4];
+				}
+				System.arraycopy(address, 0, ip6, start ? 0 : 2, 2);
+				flags |= v6;
+			}
+			return;
+		}
+
+		long quick = IPAddressRangeIndex.parseIPv4(str);
+
+		try {
+			int address = quick >= 0 ? (int) quick : PRHelpers.addressToInt(str);
+
+			if (start) {
+				ipStart = address;
+			} else {
+				ipEnd = address;
+			}
+		} catch (UnknownHostException e) {
+			flags |= invalid;
+		}
+
+		if ((flags & FLAG_IPV6) == 0) {
+			ip6 = null;
+		}
+	}
+
+	private static String IPv6ToString(long hi, long lo) {
+		try {
+			return InetAddress.getByAddress(
+					IPAddressRangeIndex.fromIPv6(hi, lo)).getHostAddress();
+		} catch (UnknownHostException e) {
+			return "";
+		}
+	}
+
+	private static int compareUnsigned(long hi1, long lo1, long hi2, long lo2) {
+		int c = Long.compare(hi1 ^ Long.MIN_VALUE, hi2 ^ Long.MIN_VALUE);
+
+		return c != 0 ? c : Long.compare(lo1 ^ Long.MIN_VALUE, lo2 ^ Long.MIN_VALUE);
+	}
+
+	// The merge methods below are retained for the interface but the range manager no
+	// longer records merge state on the ranges (see IPAddressRangeIndex)
+
 	@Override
 	public long getMergedEndLong() {
-		return (merged_end < 0 ? (merged_end + 0x100000000L) : merged_end);
+		return getEndIpLong();
 	}
 
 	@Override
 	public IpRange[] getMergedEntries() {
-		return (my_merged_entries);
+		return null;
 	}
 
 	@Override
 	public void resetMergeInfo() {
-		flags &= ~FLAG_MERGED;
-
-		if ((flags & FLAG_INVALID_END) == 0) {
-			merged_end = ipEnd;
-		}
 	}
 
 	@Override
 	public boolean getMerged() {
-		return (flags & FLAG_MERGED) != 0;
+		return false;
 	}
 
 	@Override
 	public void setMerged() {
-		flags |= FLAG_MERGED;
 	}
 
 	@Override
 	public void setMergedEnd(long endIpLong) {
-		merged_end = (int) (endIpLong >= 0x100000000L ? endIpLong - 0x100000000L
-				: endIpLong);
 	}
 
 	@Override
 	public void addMergedEntry(IpRange e2) {
-		if (my_merged_entries == null) {
-
-			my_merged_entries = new IpRange[] { e2 };
-
-		} else {
-
-			IpRange[] x = new IpRange[my_merged_entries.length + 1];
-
-			System.arraycopy(my_merged_entries, 0, x, 0, my_merged_entries.length);
-
-			x[x.length - 1] = e2;
-
-			my_merged_entries = x;
-		}
 	}
 }
@@ -173,6 +173,22 @@ public class NetworkManager {
 
 		 write_controllers.add( new WriteController());
 	 }
+
+	 if ( num_read > 1 ){
+
+		 for ( ReadController controller: read_controllers ){
+
+			 controller.setSiblings( read_controllers );
+		 }
+	 }
+
+	 if ( num_write > 1 ){
+
+		 for ( WriteController controller: write_controllers ){
+
+			 controller.setSiblings( write_controllers );
+		 }
+	 }
 	 
 	  upload_processor = new TransferProcessor(
 			  TransferProcessor.TYPE_UPLOAD,
@@ -494,6 +510,16 @@ public class NetworkManager {
   }
 
 
+  /**
+   * Add one of the general pool upload entities, pools are spread over the write controllers.
+   * @param entity to add
+   * @param pool_index index of the pool
+   */
+  public void addPoolWriteEntity( RateControlledEntity entity, int pool_index ) {
+	  write_controllers.get( pool_index%write_controllers.size()).addWriteEntity( entity );
+  }
+
+
   /**
    * Remove an upload entity from write processing.
    * @param entity to remove
@@ -502,8 +528,12 @@ public class NetworkManager {
 	  if ( write_controllers.size() == 1 ){
 		  write_controllers.get(0).removeWriteEntity( entity );
 	  }else{
-		  for (WriteController write_controller: write_controllers ){
-			  write_controller.removeWriteEntity( entity );
+		  	// controllers hand entities to idle siblings while synchronized on the list
+
+		  synchronized( write_controllers ){
+			  for (WriteController write_controller: write_controllers ){
+				  write_controller.removeWriteEntity( entity );
+			  }
 		  }
 	  }
   }
@@ -527,6 +557,16 @@ public class NetworkManager {
   }
 
 
+  /**
+   * Add one of the general pool download entities, pools are spread over the read controllers.
+   * @param entity to add
+   * @param pool_index index of the pool
+   */
+  public void addPoolReadEntity( RateControlledEntity entity, int pool_index ) {
+	  read_controllers.get( pool_index%read_controllers.size()).addReadEntity( entity );
+  }
+
+
   /**
    * Remove a download entity from read processing.
    * @param entity to remove
@@ -535,8 +575,12 @@ public class NetworkManager {
 	  if ( read_controllers.size() == 1 ){
 		  read_controllers.get(0).removeReadEntity( entity );
 	  }else{
-		  for (ReadController read_controller: read_controllers ){
-			  read_controller.removeReadEntity( entity );
+		  	// controllers hand entities to idle siblings while synchronized on the list
+
+		  synchronized( read_controllers ){
+			  for (ReadController read_controller: read_controllers ){
+				  read_controller.removeReadEntity( entity );
+			  }
 		  }
 	  }
   }
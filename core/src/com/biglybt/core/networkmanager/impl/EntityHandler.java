@@ -21,6 +21,7 @@ package com.biglybt.core.networkmanager.impl;
 
 import java.util.HashMap;
 
+import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.networkmanager.NetworkConnectionBase;
 import com.biglybt.core.networkmanager.NetworkManager;
 import com.biglybt.core.networkmanager.RateHandler;
@@ -38,8 +39,8 @@ import com.biglybt.core.util.Debug;
 public class EntityHandler {
   private final HashMap upgraded_connections = new HashMap();
   private final AEMonitor lock = new AEMonitor( "EntityHandler" );
-  private final MultiPeerUploader global_uploader;
-  private final MultiPeerDownloader2 global_downloader;
+  private final MultiPeerUploader[] global_uploaders;
+  private final MultiPeerDownloader2[] global_downloaders;
   private boolean global_registered = false;
   private final int handler_type;
 
@@ -52,17 +53,43 @@ public class EntityHandler {
   public EntityHandler( int type, RateHandler rate_handler ) {
     this.handler_type = type;
     if( handler_type == TransferProcessor.TYPE_UPLOAD ) {
-      global_uploader = new MultiPeerUploader( rate_handler );
-      global_downloader = null;
+      global_uploaders = new MultiPeerUploader[ getPoolCount( "network.control.write.processor.count" )];
+      for (int i=0;i<global_uploaders.length;i++){
+        global_uploaders[i] = new MultiPeerUploader( rate_handler );
+      }
+      global_downloaders = null;
     }
     else {  //download type
-      global_downloader = new MultiPeerDownloader2( rate_handler );
-      global_uploader = null;
+      global_downloaders = new MultiPeerDownloader2[ getPoolCount( "network.control.read.processor.count" )];
+      for (int i=0;i<global_downloaders.length;i++){
+        global_downloaders[i] = new MultiPeerDownloader2( rate_handler );
+      }
+      global_uploaders = null;
     }
   }
 
 
 
+  /**
+   * With more than one read/write controller the general pool is split, one entity per
+   * controller, so pooled connections are spread over the processing threads.
+   */
+  private static int getPoolCount( String processor_count_key ) {
+    return Math.max( 1, COConfigurationManager.getIntParameter( processor_count_key ));
+  }
+
+  /**
+   * A connection always maps to the same pool entity.
+   */
+  private MultiPeerUploader getGlobalUploader( NetworkConnectionBase connection ) {
+    return global_uploaders.length==1?global_uploaders[0]:global_uploaders[( System.identityHashCode( connection ) & 0x7fffffff ) % global_uploaders.length];
+  }
+
+  private MultiPeerDownloader2 getGlobalDownloader( NetworkConnectionBase connection ) {
+    return global_downloaders.length==1?global_downloaders[0]:global_downloaders[( System.identityHashCode( connection ) & 0x7fffffff ) % global_downloaders.length];
+  }
+
+
   /**
    * Register a peer connection for management by the handler.
    * @param connection to add to the global pool
@@ -71,10 +98,14 @@ public class EntityHandler {
     try {  lock.enter();
       if( !global_registered ) {
         if( handler_type == TransferProcessor.TYPE_UPLOAD ) {
-          NetworkManager.getSingleton().addWriteEntity( global_uploader, -1 );  //register global upload entity
+          for (int i=0;i<global_uploaders.length;i++){
+            NetworkManager.getSingleton().addPoolWriteEntity( global_uploaders[i], i );  //register global upload entities
+          }
         }
         else {
-          NetworkManager.getSingleton().addReadEntity( global_downloader, -1 );  //register global download entity
+          for (int i=0;i<global_downloaders.length;i++){
+            NetworkManager.getSingleton().addPoolReadEntity( global_downloaders[i], i );  //register global download entities
+          }
         }
 
         global_registered = true;
@@ -83,10 +114,10 @@ public class EntityHandler {
     finally {  lock.exit();  }
 
     if( handler_type == TransferProcessor.TYPE_UPLOAD ) {
-      global_uploader.addPeerConnection( connection );
+      getGlobalUploader( connection ).addPeerConnection( connection );
     }
     else {
-      global_downloader.addPeerConnection( connection );
+      getGlobalDownloader( connection ).addPeerConnection( connection );
     }
   }
 
@@ -97,7 +128,7 @@ public class EntityHandler {
    */
   public void cancelPeerConnection( NetworkConnectionBase connection ) {
     if( handler_type == TransferProcessor.TYPE_UPLOAD ) {
-      if( !global_uploader.removePeerConnection( connection ) ) {  //if not found in the pool entity
+      if( !getGlobalUploader( connection ).removePeerConnection( connection ) ) {  //if not found in the pool entity
         SinglePeerUploader upload_entity = (SinglePeerUploader)upgraded_connections.remove( connection );  //check for it in the upgraded list
         if( upload_entity != null ) {
           NetworkManager.getSingleton().removeWriteEntity( upload_entity );  //cancel from write processing
@@ -105,7 +136,7 @@ public class EntityHandler {
       }
     }
     else {
-      if( !global_downloader.removePeerConnection( connection ) ) {  //if not found in the pool entity
+      if( !getGlobalDownloader( connection ).removePeerConnection( connection ) ) {  //if not found in the pool entity
         SinglePeerDownloader download_entity = (SinglePeerDownloader)upgraded_connections.remove( connection );  //check for it in the upgraded list
         if( download_entity != null ) {
           NetworkManager.getSingleton().removeReadEntity( download_entity );  //cancel from read processing
@@ -125,7 +156,7 @@ public class EntityHandler {
     try {  lock.enter();
       if( handler_type == TransferProcessor.TYPE_UPLOAD ) {
         SinglePeerUploader upload_entity = new SinglePeerUploader( connection, handler );
-        if( !global_uploader.removePeerConnection( connection ) ) {  //remove it from the general upload pool
+        if( !getGlobalUploader( connection ).removePeerConnection( connection ) ) {  //remove it from the general upload pool
           Debug.out( "upgradePeerConnection:: upload entity not found/removed !" );
         }
         NetworkManager.getSingleton().addWriteEntity( upload_entity, partition_id );  //register it for write processing
@@ -133,7 +164,7 @@ public class EntityHandler {
       }
       else {
         SinglePeerDownloader download_entity = new SinglePeerDownloader( connection, handler );
-        if( !global_downloader.removePeerConnection( connection ) ) {  //remove it from the general upload pool
+        if( !getGlobalDownloader( connection ).removePeerConnection( connection ) ) {  //remove it from the general upload pool
           Debug.out( "upgradePeerConnection:: download entity not found/removed !" );
         }
         NetworkManager.getSingleton().addReadEntity( download_entity, partition_id );  //register it for read processing
@@ -158,7 +189,7 @@ public class EntityHandler {
         else {
           Debug.out( "upload_entity == null" );
         }
-        global_uploader.addPeerConnection( connection );  //move back to the general pool
+        getGlobalUploader( connection ).addPeerConnection( connection );  //move back to the general pool
       }
       else {
         SinglePeerDownloader download_entity = (SinglePeerDownloader)upgraded_connections.remove( connection );  //remove from the upgraded list
@@ -168,7 +199,7 @@ public class EntityHandler {
         else {
           Debug.out( "download_entity == null" );
         }
-        global_downloader.addPeerConnection( connection );  //move back to the general pool
+        getGlobalDownloader( connection ).addPeerConnection( connection );  //move back to the general pool
       }
     }
     finally {  lock.exit();  }
@@ -190,7 +221,7 @@ public class EntityHandler {
 				  return( upload_entity.getRateHandler());
 			  }else{
 
-				  return( global_uploader.getRateHandler());
+				  return( getGlobalUploader( connection ).getRateHandler());
 			  }
 		  }else{
 
@@ -201,7 +232,7 @@ public class EntityHandler {
 				  return( download_entity.getRateHandler());
 			  }else{
 
-				  return( global_downloader.getRateHandler());
+				  return( getGlobalDownloader( connection ).getRateHandler());
 			  }
 		  }
 
@@ -221,9 +252,9 @@ public class EntityHandler {
   /*
   public boolean isGeneralPoolReserveNeeded() {
     if( handler_type == TransferProcessor.TYPE_UPLOAD ) {
-      return global_uploader.hasWriteDataAvailable();
+      return global_uploaders[0].hasWriteDataAvailable();
     }
-    return global_downloader.hasReadDataAvailable();
+    return global_downloaders[0].hasReadDataAvailable();
   }
   */
 
@@ -22,6 +22,8 @@ package com.biglybt.core.networkmanager.impl;
 import java.io.IOException;
 import java.util.*;
 
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ParameterListener;
 import com.biglybt.core.networkmanager.EventWaiter;
 import com.biglybt.core.networkmanager.NetworkConnectionBase;
 import com.biglybt.core.networkmanager.OutgoingMessageQueue;
@@ -39,11 +41,29 @@ import com.biglybt.core.util.SystemTime;
  * emphasis on transmitting packets with full payloads, i.e. it writes to the
  * transport in mss-sized chunks if at all possible. It also employs fair,
  * round-robin write scheduling, where connections each take turns writing a
- * single full packet per round.
+ * single full packet per round (or several whole packets in one gathering write
+ * when batching is configured).
  */
 public class MultiPeerUploader implements RateControlledEntity {
   private static final int FLUSH_CHECK_LOOP_TIME = 500;  //500ms
   private static final int FLUSH_WAIT_TIME = 3*1000;  //3sec no-new-data wait before forcing write flush
+
+  static int BATCH_BYTES;
+
+  static{
+	  COConfigurationManager.addAndFireParameterListener(
+		"network.control.write.batch.bytes",
+		new ParameterListener()
+		{
+			@Override
+			public void
+			parameterChanged(
+				String name )
+			{
+				BATCH_BYTES = COConfigurationManager.getIntParameter( "network.control.write.batch.bytes" );
+			}
+		});
+  }
   private long last_flush_check_time = 0;
 
 
@@ -346,8 +366,21 @@ public class MultiPeerUploader implements RateControlledEntity {
         }
 
         int mss_size = conn.getMssSize();
-        int num_bytes_allowed = num_bytes_remaining > mss_size ? mss_size : num_bytes_remaining;  //allow a single full packet at most
-        int num_bytes_available = total_size > mss_size ? mss_size : total_size;  //allow a single full packet at most
+
+        	// a turn is a single full packet unless batching is enabled, in which case up to the batch
+        	// size (in whole packets) goes out in one gathering write
+
+        int turn_size = BATCH_BYTES > mss_size ? ( BATCH_BYTES / mss_size ) * mss_size : mss_size;
+
+        int num_bytes_allowed = num_bytes_remaining > turn_size ? turn_size : num_bytes_remaining;
+        int num_bytes_available = total_size > turn_size ? turn_size : total_size;
+
+        if ( num_bytes_allowed < num_bytes_available && num_bytes_allowed >= mss_size ){
+
+        		// not allowed the whole batch, send as many full packets as we can
+
+        	num_bytes_available = ( num_bytes_allowed / mss_size ) * mss_size;
+        }
 
         if( num_bytes_allowed >= num_bytes_available ) { //we're allowed enough (for either a full packet or to drain any remaining data)
           int written = 0;
@@ -361,6 +394,11 @@ public class MultiPeerUploader implements RateControlledEntity {
 
             if( written > 0 ) {
               manual_notifications.add( conn );  //register it for manual listener notification
+
+              if ( written > mss_size ){
+
+            	  OutgoingMessageQueueImpl.addSavedWrites(( written - 1 ) / mss_size );
+              }
             }
 
             boolean has_urgent_data = conn.getOutgoingMessageQueue().hasUrgentMessage();
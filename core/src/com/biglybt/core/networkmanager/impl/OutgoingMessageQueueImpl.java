@@ -25,8 +25,11 @@ import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
 
 import com.biglybt.core.networkmanager.NetworkManager;
 import com.biglybt.core.networkmanager.OutgoingMessageQueue;
@@ -34,6 +37,8 @@ import com.biglybt.core.networkmanager.RawMessage;
 import com.biglybt.core.networkmanager.Transport;
 import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.peermanager.messaging.MessageStreamEncoder;
+import com.biglybt.core.stats.CoreStats;
+import com.biglybt.core.stats.CoreStatsProvider;
 import com.biglybt.core.util.AEMonitor;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.DirectByteBuffer;
@@ -74,6 +79,75 @@ OutgoingMessageQueueImpl
 
   private boolean	trace;
 
+  	// gathering write stats across all queues, not synchronized as they're only stats
+
+  static long	gather_write_count;
+  static long	gather_message_count;
+  static long	gather_byte_count;
+  static long	gather_saved_count;
+
+  static{
+	  Set	types = new HashSet();
+
+	  types.add( CoreStats.ST_NET_WRITE_GATHER_WRITE_COUNT );
+	  types.add( CoreStats.ST_NET_WRITE_GATHER_MESSAGE_COUNT );
+	  types.add( CoreStats.ST_NET_WRITE_GATHER_BYTE_COUNT );
+	  types.add( CoreStats.ST_NET_WRITE_GATHER_SAVED_COUNT );
+	  types.add( CoreStats.ST_NET_WRITE_GATHER_AVERAGE_BYTES );
+
+	  CoreStats.registerProvider(
+		  types,
+		  new CoreStatsProvider()
+		  {
+			  @Override
+			  public void
+			  updateStats(
+				  Set		types,
+				  Map		values )
+			  {
+				  long	writes = gather_write_count;
+				  long	bytes	= gather_byte_count;
+
+				  if ( types.contains( CoreStats.ST_NET_WRITE_GATHER_WRITE_COUNT )){
+
+					  values.put( CoreStats.ST_NET_WRITE_GATHER_WRITE_COUNT, new Long( writes ));
+				  }
+
+				  if ( types.contains( CoreStats.ST_NET_WRITE_GATHER_MESSAGE_COUNT )){
+
+					  values.put( CoreStats.ST_NET_WRITE_GATHER_MESSAGE_COUNT, new Long( gather_message_count ));
+				  }
+
+				  if ( types.contains( CoreStats.ST_NET_WRITE_GATHER_BYTE_COUNT )){
+
+					  values.put( CoreStats.ST_NET_WRITE_GATHER_BYTE_COUNT, new Long( bytes ));
+				  }
+
+				  if ( types.contains( CoreStats.ST_NET_WRITE_GATHER_SAVED_COUNT )){
+
+					  values.put( CoreStats.ST_NET_WRITE_GATHER_SAVED_COUNT, new Long( gather_saved_count ));
+				  }
+
+				  if ( types.contains( CoreStats.ST_NET_WRITE_GATHER_AVERAGE_BYTES )){
+
+					  values.put( CoreStats.ST_NET_WRITE_GATHER_AVERAGE_BYTES, new Long( writes==0?0:bytes/writes ));
+				  }
+			  }
+		  });
+  }
+
+  	/**
+  	 * Records writes avoided by a caller batching what would otherwise have been separate
+  	 * deliveries (e.g. mss sized packets) into one
+  	 */
+
+  static void
+  addSavedWrites(
+	int		saved )
+  {
+	  gather_saved_count += saved;
+  }
+
   /**
    * Create a new outgoing message queue.
    * @param stream_encoder default message encoder
@@ -552,15 +626,20 @@ OutgoingMessageQueueImpl
 
 
 			  int buffer_count	= 0;
+			  int message_count	= 0;
 
 			  int total_sofar_excluding_free 	= 0;
 			  int total_to_write				= 0;
 
+			  	// everything queued up to max_bytes goes out in a single gathering write
+
 outer:
 			  for( Iterator<RawMessage> i = queue.iterator(); i.hasNext(); ){
 
 				  RawMessage	message = i.next();
 
+				  message_count++;
+
 				  boolean msg_is_free = message.getType() == Message.TYPE_PROTOCOL_PAYLOAD && protocol_is_free;
 
 				  DirectByteBuffer[] payloads = message.getRawData();
@@ -627,10 +706,18 @@ outer:
 				  return( new int[2] );
 			  }
 
-			  transport.write( raw_buffers, 0, buffer_count );
+			  long	written_now = transport.write( raw_buffers, 0, buffer_count );
 
 			  last_buff.limit( orig_last_limit );
 
+			  if ( written_now > 0 ){
+
+				  gather_write_count++;
+				  gather_message_count	+= message_count;
+				  gather_byte_count		+= written_now;
+				  gather_saved_count	+= message_count - 1;
+			  }
+
 			  int pos = 0;
 			  boolean stop = false;
 
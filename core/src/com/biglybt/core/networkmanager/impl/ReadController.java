@@ -73,6 +73,17 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 
   private final EventWaiter 	read_waiter = new EventWaiter();
 
+  	// with more than one controller a busy controller hands a ready entity to an idle sibling
+
+  private static final int	BALANCE_PERIOD	= 1000;
+
+  private volatile List<ReadController>	siblings;
+
+  volatile boolean	idle;
+  private long		period_start;
+  private int		period_progress;
+  private long		handoff_count;
+
   private int			entity_count;
 
   public ReadController() {
@@ -115,6 +126,11 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
 		try{
 			writer.indent();
 
+			if ( siblings != null ){
+
+				writer.println( "idle=" + idle + ", handoffs=" + handoff_count );
+			}
+
 			ArrayList<RateControlledEntity> ref = normal_priority_entities;
 
 			writer.println( "normal - " + ref.size());
@@ -206,6 +222,8 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
   void readProcessorLoop() {
     boolean check_high_first = true;
 
+    period_start = SystemTime.getMonotonousTime();
+
     while( true ) {
       loop_count++;
       try {
@@ -216,7 +234,11 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
             	if ( read_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
             		wait_count++;
             	}
+            }else{
+            	period_progress++;
             }
+          }else{
+        	period_progress++;
           }
         }
         else {
@@ -226,9 +248,32 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
             	if ( read_waiter.waitForEvent(hasConnections()?IDLE_SLEEP_TIME:1000 )){
             		wait_count++;
             	}
+            }else{
+            	period_progress++;
             }
+          }else{
+        	period_progress++;
           }
         }
+
+        if ( siblings != null ){
+
+        	long now = SystemTime.getMonotonousTime();
+
+        	if ( now - period_start >= BALANCE_PERIOD ){
+
+        		period_start = now;
+
+        		idle = period_progress == 0;
+
+        		if ( !idle ){
+
+        			balance();
+        		}
+
+        		period_progress = 0;
+        	}
+        }
       }
       catch( Throwable t ) {
         Debug.out( "readProcessorLoop() EXCEPTION: ", t );
@@ -236,6 +281,78 @@ public class ReadController implements CoreStatsProvider, AEDiagnosticsEvidenceG
     }
   }
 
+  public void
+  setSiblings(
+	 List<ReadController>	_siblings )
+  {
+	  siblings = _siblings;
+  }
+
+  	/**
+  	 * Called on the processor thread so the entity handed off can't be mid-processing. Only
+  	 * done when there's more than one ready entity so the busy controller keeps working and
+  	 * entities don't bounce back and forth
+  	 */
+
+  private void
+  balance()
+  {
+	  List<ReadController> sibs = siblings;
+
+	  ReadController	target = null;
+
+	  for ( ReadController c: sibs ){
+
+		  if ( c != this && c.idle ){
+
+			  target = c;
+
+			  break;
+		  }
+	  }
+
+	  if ( target == null ){
+
+		  return;
+	  }
+
+	  ArrayList<RateControlledEntity> ref = normal_priority_entities;
+
+	  RateControlledEntity	candidate	= null;
+	  int					ready		= 0;
+
+	  for ( RateControlledEntity e: ref ){
+
+		  if ( e.canProcess( read_waiter )){
+
+			  ready++;
+
+			  candidate = e;
+		  }
+	  }
+
+	  if ( ready < 2 ){
+
+		  return;
+	  }
+
+	  	// NetworkManager removes entities from all controllers while synchronized on the same list
+
+	  synchronized( sibs ){
+
+		  if ( normal_priority_entities.contains( candidate )){
+
+			  removeReadEntity( candidate );
+
+			  target.idle = false;
+
+			  target.addReadEntity( candidate );
+
+			  handoff_count++;
+		  }
+	  }
+  }
+
   private boolean
   hasConnections()
   {
@@ -26,10 +26,6 @@ import java.security.spec.AlgorithmParameterSpec;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.gudy.bouncycastle.crypto.CipherParameters;
-import org.gudy.bouncycastle.crypto.engines.RC4Engine;
-import org.gudy.bouncycastle.crypto.params.KeyParameter;
-
 import com.biglybt.core.util.Debug;
 
 public class
@@ -37,8 +33,8 @@ TransportCipher
 {
 	private static boolean	internal_rc4	= true;	// force internal as we want 160 bit and JCE no supports it
 
-	private Cipher		cipher;
-	private RC4Engine	rc4_engine;
+	private Cipher				cipher;
+	private TransportCipherRC4	rc4_engine;
 
 	public
 	TransportCipher(
@@ -78,11 +74,7 @@ TransportCipher
 
 	    	if ( internal_rc4 ){
 
-	    		rc4_engine	= new RC4Engine();
-
-	    		CipherParameters	params = new KeyParameter(key_spec.getEncoded());
-
-	    		rc4_engine.init( mode == Cipher.ENCRYPT_MODE, params );
+	    		rc4_engine	= new TransportCipherRC4( key_spec.getEncoded());
 	    	}
 
 	    	//System.out.println( "RC4 key: " + ByteFormatter.encodeString( key_spec.getEncoded()));
@@ -145,33 +137,61 @@ TransportCipher
 		throws IOException
 	{
 		try{
-			// TODO: 1.5 supports update( ByteBuffer, ByteBuffer )
+				// both work directly on the buffers, no intermediate arrays
 
-			byte[]	source_bytes;
-			int		offset;
-			int		length	= source_buffer.remaining();
+			if ( rc4_engine != null ){
 
-			if ( source_buffer.hasArray()){
+				rc4_engine.process( source_buffer, target_buffer );
 
-				source_bytes 	= source_buffer.array();
+			}else if ( source_buffer.hasRemaining()){
 
-				offset			= source_buffer.arrayOffset() + source_buffer.position();
+				cipher.update( source_buffer, target_buffer );
+			}
+		}catch( Throwable e ){
 
-			}else{
+			throw( new IOException( Debug.getNestedExceptionMessage( e )));
+		}
+	}
 
-				source_bytes 	= new byte[length];
+		/**
+		 * Crypts buffer[from..to) in place leaving the buffer's position and limit unchanged.
+		 * Only valid for stream ciphers, which is all we negotiate
+		 */
 
-				offset			= 0;
+	protected void
+	updateInPlace(
+		ByteBuffer	buffer,
+		int			from,
+		int			to )
 
-				source_buffer.get( source_bytes );
-			}
+		throws IOException
+	{
+		if ( from >= to ){
+
+			return;
+		}
 
-			byte[]	target_bytes = update( source_bytes, offset, length );
+		try{
+			if ( rc4_engine != null ){
 
-			source_buffer.position( source_buffer.limit());
+				rc4_engine.process( buffer, from, to );
 
-			target_buffer.put( target_bytes );
+			}else{
 
+					// JCE refuses the same buffer object for input and output but is fine with
+					// overlapping ones
+
+				ByteBuffer	source = buffer.duplicate();
+				ByteBuffer	target = buffer.duplicate();
+
+				source.limit( to );
+				source.position( from );
+
+				target.limit( to );
+				target.position( from );
+
+				cipher.update( source, target );
+			}
 		}catch( Throwable e ){
 
 			throw( new IOException( Debug.getNestedExceptionMessage( e )));
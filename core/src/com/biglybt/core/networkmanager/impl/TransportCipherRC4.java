@@ -0,0 +1,206 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.networkmanager.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * RC4 keystream applied directly to byte arrays and ByteBuffers. Heap buffers are processed
+ * through their backing arrays, direct ones in chunks via a per-thread scratch array so that
+ * there's no per-call allocation. Source and target may be the same buffer (in-place).
+ * <p>
+ * Not thread safe, each instance is one direction of one connection
+ */
+
+final class
+TransportCipherRC4
+{
+	private static final int	SCRATCH_SIZE	= 8*1024;
+
+	private static final ThreadLocal<byte[]>	scratch =
+		new ThreadLocal<byte[]>()
+		{
+			@Override
+			protected byte[]
+			initialValue()
+			{
+				return( new byte[SCRATCH_SIZE] );
+			}
+		};
+
+		// int rather than byte state saves masking on every lookup in the inner loop
+
+	private final int[]		state = new int[256];
+
+	private int		x;
+	private int		y;
+
+	TransportCipherRC4(
+		byte[]		key )
+	{
+		for ( int i=0;i<256;i++){
+
+			state[i] = i;
+		}
+
+		int	key_len = key.length;
+
+		int	j = 0;
+
+		for ( int i=0;i<256;i++){
+
+			int	t = state[i];
+
+			j = ( j + ( key[i%key_len] & 0xff ) + t ) & 0xff;
+
+			state[i] = state[j];
+			state[j] = t;
+		}
+	}
+
+	void
+	processBytes(
+		byte[]		in,
+		int			in_offset,
+		int			length,
+		byte[]		out,
+		int			out_offset )
+	{
+		final int[]	s = state;
+
+		int	sx = x;
+		int	sy = y;
+
+		for ( int i=0;i<length;i++){
+
+			sx = ( sx + 1 ) & 0xff;
+
+			int	a = s[sx];
+
+			sy = ( sy + a ) & 0xff;
+
+			int	b = s[sy];
+
+			s[sx] = b;
+			s[sy] = a;
+
+			out[out_offset+i] = (byte)( in[in_offset+i] ^ s[( a + b ) & 0xff] );
+		}
+
+		x = sx;
+		y = sy;
+	}
+
+		/**
+		 * Processes source's remaining bytes into target, advancing both
+		 */
+
+	void
+	process(
+		ByteBuffer	source,
+		ByteBuffer	target )
+	{
+		int	length = source.remaining();
+
+		if ( target.remaining() < length ){
+
+			throw( new IllegalArgumentException( "target buffer too small" ));
+		}
+
+		if ( source.hasArray() && target.hasArray()){
+
+			int	source_pos = source.position();
+			int	target_pos = target.position();
+
+			processBytes(
+				source.array(), source.arrayOffset() + source_pos, length,
+				target.array(), target.arrayOffset() + target_pos );
+
+			source.position( source_pos + length );
+			target.position( target_pos + length );
+
+		}else{
+
+			byte[]	buffer = scratch.get();
+
+			while( length > 0 ){
+
+				int	chunk = Math.min( length, buffer.length );
+
+				source.get( buffer, 0, chunk );
+
+				processBytes( buffer, 0, chunk, buffer, 0 );
+
+				target.put( buffer, 0, chunk );
+
+				length -= chunk;
+			}
+		}
+	}
+
+		/**
+		 * Processes buffer[from..to) in place, the buffer's position and limit are unchanged
+		 */
+
+	void
+	process(
+		ByteBuffer	buffer,
+		int			from,
+		int			to )
+	{
+		if ( buffer.hasArray()){
+
+			int	offset = buffer.arrayOffset() + from;
+
+			processBytes( buffer.array(), offset, to - from, buffer.array(), offset );
+
+		}else{
+
+			byte[]	chunk_buffer = scratch.get();
+
+			int	position	= buffer.position();
+			int	limit		= buffer.limit();
+
+			buffer.limit( to );
+
+			try{
+				while( from < to ){
+
+					int	chunk = Math.min( to - from, chunk_buffer.length );
+
+					buffer.position( from );
+
+					buffer.get( chunk_buffer, 0, chunk );
+
+					processBytes( chunk_buffer, 0, chunk, chunk_buffer, 0 );
+
+					buffer.position( from );
+
+					buffer.put( chunk_buffer, 0, chunk );
+
+					from += chunk;
+				}
+			}finally{
+
+				buffer.limit( limit );
+				buffer.position( position );
+			}
+		}
+	}
+}
@@ -36,6 +36,8 @@ TransportHelperFilterStream
 	private DirectByteBuffer	write_buffer_pending_db;
 	private ByteBuffer			write_buffer_pending_byte;
 
+	private int[]				read_positions	= new int[2];
+
 	protected
 	TransportHelperFilterStream(
 		TransportHelper		_transport )
@@ -264,64 +266,41 @@ TransportHelperFilterStream
 
 		throws IOException
 	{
-		int	total_read	= 0;
-
-		DirectByteBuffer[]	copy_db = new DirectByteBuffer[buffers.length];
-		ByteBuffer[]		copy	= new ByteBuffer[buffers.length];
-
-		try{
-			for (int i=array_offset;i<array_offset+length;i++){
-
-				ByteBuffer	buffer = buffers[i];
-
-				int	size = buffer.remaining();
+			// stream ciphers let us read straight into the caller's buffers and decrypt the
+			// newly read bytes where they are, rather than going via a copy buffer per target
 
-				if ( size > 0 ){
+		int[]	positions = read_positions;
 
-					copy_db[i]	= DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_NET_CRYPT, size );
+		if ( positions.length < length ){
 
-					copy[i]	= copy_db[i].getBuffer( DirectByteBuffer.SS_NET );
-				}else{
-
-					copy[i] = ByteBuffer.allocate(0);
-				}
-			}
+			positions = read_positions = new int[length];
+		}
 
-			total_read += transport.read( copy, array_offset, length );
+		for (int i=0;i<length;i++){
 
-			for (int i=array_offset;i<array_offset+length;i++){
+			positions[i] = buffers[array_offset+i].position();
+		}
 
-				ByteBuffer	source_buffer	= copy[i];
+		long	total_read = transport.read( buffers, array_offset, length );
 
-				if ( source_buffer != null ){
+		if ( total_read > 0 ){
 
-					ByteBuffer	target_buffer 	= buffers[i];
+			for (int i=0;i<length;i++){
 
-					int	source_position	= source_buffer.position();
+				ByteBuffer	buffer = buffers[array_offset+i];
 
-					if ( source_position > 0 ){
+				int	position = buffer.position();
 
-						source_buffer.flip();
+				if ( position > positions[i] ){
 
-						cryptoIn( source_buffer, target_buffer );
-					}
+					cryptoIn( buffer, positions[i], position );
 				}
 			}
+		}
 
-			// System.out.println( "...read " + total_read );
-
-			return( total_read );
-
-		}finally{
-
-			for (int i=0;i<copy_db.length;i++){
-
-				if ( copy_db[i] != null ){
+		// System.out.println( "...read " + total_read );
 
-					copy_db[i].returnToPool();
-				}
-			}
-		}
+		return( total_read );
 	}
 
 	@Override
@@ -339,10 +318,15 @@ TransportHelperFilterStream
 
 		throws IOException;
 
+		/**
+		 * Decrypts buffer[from..to) in place, position and limit must be left unchanged
+		 */
+
 	protected abstract void
 	cryptoIn(
-		ByteBuffer	source_buffer,
-		ByteBuffer	target_buffer )
+		ByteBuffer	buffer,
+		int			from,
+		int			to )
 
 		throws IOException;
 }
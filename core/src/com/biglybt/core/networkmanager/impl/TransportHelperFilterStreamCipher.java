@@ -57,12 +57,13 @@ TransportHelperFilterStreamCipher
 	@Override
 	protected void
 	cryptoIn(
-		ByteBuffer	source_buffer,
-		ByteBuffer	target_buffer )
+		ByteBuffer	buffer,
+		int			from,
+		int			to )
 
 		throws IOException
 	{
-		read_cipher.update( source_buffer, target_buffer );
+		read_cipher.updateInPlace( buffer, from, to );
 	}
 
 	@Override
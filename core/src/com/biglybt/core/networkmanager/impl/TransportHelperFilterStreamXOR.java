@@ -69,20 +69,19 @@ TransportHelperFilterStreamXOR
 	@Override
 	protected void
 	cryptoIn(
-		ByteBuffer	source_buffer,
-		ByteBuffer	target_buffer )
+		ByteBuffer	buffer,
+		int			from,
+		int			to )
 
 		throws IOException
 	{
-		int	rem = source_buffer.remaining();
+		for (int i=from;i<to;i++){
 
-		for (int i=0;i<rem;i++){
-
-			byte	b = source_buffer.get();
+			byte	b = buffer.get( i );
 
 			b = (byte)( b ^ mask[ read_position++ ]);
 
-			target_buffer.put( b );
+			buffer.put( i, b );
 
 			if ( read_position == mask.length  ){
 
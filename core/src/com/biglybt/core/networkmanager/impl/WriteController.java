@@ -95,6 +95,17 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
 
   private final EventWaiter 	write_waiter = new EventWaiter();
 
+  	// with more than one controller a busy controller hands a ready entity to an idle sibling
+
+  private static final int	BALANCE_PERIOD	= 1000;
+
+  private volatile List<WriteController>	siblings;
+
+  volatile boolean	idle;
+  private long		period_start;
+  private int		period_progress;
+  private long		handoff_count;
+
   private NetworkManager	net_man;
 
   private int	entity_count = 0;
@@ -164,6 +175,11 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
 		try{
 			writer.indent();
 
+			if ( siblings != null ){
+
+				writer.println( "idle=" + idle + ", handoffs=" + handoff_count );
+			}
+
 			ArrayList ref = normal_priority_entities;
 
 			writer.println( "normal - " + ref.size());
@@ -269,6 +285,8 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
 
     int	tick_count = 0;
     
+    period_start = last_check;
+
     while( true ) {
 
       process_loop_time = SystemTime.getMonotonousTime();
@@ -283,7 +301,11 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
               if ( write_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
             	  wait_count++;
               }
+            }else{
+            	period_progress++;
             }
+          }else{
+        	period_progress++;
           }
         }
         else {
@@ -293,9 +315,27 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
             	if ( write_waiter.waitForEvent( hasConnections()?IDLE_SLEEP_TIME:1000 )){
             		wait_count++;
             	}
+            }else{
+            	period_progress++;
             }
+          }else{
+        	period_progress++;
           }
         }
+
+        if ( siblings != null && process_loop_time - period_start >= BALANCE_PERIOD ){
+
+        	period_start = process_loop_time;
+
+        	idle = period_progress == 0;
+
+        	if ( !idle ){
+
+        		balance();
+        	}
+
+        	period_progress = 0;
+        }
       }
       catch( Throwable t ) {
         Debug.out( "writeProcessorLoop() EXCEPTION: ", t );
@@ -378,6 +418,77 @@ public class WriteController implements CoreStatsProvider, AEDiagnosticsEvidence
     }
   }
 
+  public void
+  setSiblings(
+	 List<WriteController>	_siblings )
+  {
+	  siblings = _siblings;
+  }
+
+  	/**
+  	 * Called on the processor thread so the entity handed off can't be mid-processing. Only
+  	 * normal (not boosted) entities are moved and only when there's more than one ready
+  	 */
+
+  private void
+  balance()
+  {
+	  List<WriteController> sibs = siblings;
+
+	  WriteController	target = null;
+
+	  for ( WriteController c: sibs ){
+
+		  if ( c != this && c.idle ){
+
+			  target = c;
+
+			  break;
+		  }
+	  }
+
+	  if ( target == null ){
+
+		  return;
+	  }
+
+	  ArrayList<RateControlledEntity> ref = normal_priority_entities;
+
+	  RateControlledEntity	candidate	= null;
+	  int					ready		= 0;
+
+	  for ( RateControlledEntity e: ref ){
+
+		  if ( e.canProcess( write_waiter ) && !e.getPriorityBoost()){
+
+			  ready++;
+
+			  candidate = e;
+		  }
+	  }
+
+	  if ( ready < 2 ){
+
+		  return;
+	  }
+
+	  	// NetworkManager removes entities from all controllers while synchronized on the same list
+
+	  synchronized( sibs ){
+
+		  if ( normal_priority_entities.contains( candidate )){
+
+			  removeWriteEntity( candidate );
+
+			  target.idle = false;
+
+			  target.addWriteEntity( candidate );
+
+			  handoff_count++;
+		  }
+	  }
+  }
+
   private boolean
   hasConnections()
   {
@@ -21,6 +21,7 @@ package com.biglybt.core.networkmanager.impl.tcp;
 
 
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -47,6 +48,10 @@ TCPNetworkManager
 
 	protected static int tcp_mss_size;
 
+		// connections are spread over the selector loops by channel, each loop has its own thread
+
+	static final int	SELECT_LOOP_COUNT	= Math.max( 1, COConfigurationManager.getIntParameter( "network.tcp.select.loop.count" ));
+
 	private static final TCPNetworkManager instance = new TCPNetworkManager();
 
 	public static TCPNetworkManager getSingleton(){ return( instance ); }
@@ -119,10 +124,18 @@ TCPNetworkManager
 	    if( tcp_mss_size < 512 )  tcp_mss_size = 512;
 	}
 
-	final VirtualChannelSelector read_selector 	=
-			new VirtualChannelSelector( "TCP network manager reader", VirtualChannelSelector.OP_READ, true );
-	final VirtualChannelSelector write_selector =
-			new VirtualChannelSelector( "TCP network manager writer", VirtualChannelSelector.OP_WRITE, true );
+	final VirtualChannelSelector[]	read_selectors	= new VirtualChannelSelector[SELECT_LOOP_COUNT];
+	final VirtualChannelSelector[]	write_selectors	= new VirtualChannelSelector[SELECT_LOOP_COUNT];
+
+	{
+		for ( int i=0;i<SELECT_LOOP_COUNT;i++){
+
+			String	suffix = i==0?"":( " " + i );
+
+			read_selectors[i]	= new VirtualChannelSelector( "TCP network manager reader" + suffix, VirtualChannelSelector.OP_READ, true );
+			write_selectors[i]	= new VirtualChannelSelector( "TCP network manager writer" + suffix, VirtualChannelSelector.OP_WRITE, true );
+		}
+	}
 
 	private final TCPConnectionManager connect_disconnect_manager = new TCPConnectionManager();
 
@@ -135,8 +148,8 @@ TCPNetworkManager
 	
 	private List<IncomingSocketChannelManager>	additional_incoming_socketchannel_managers = new ArrayList<>();
 	
-	long	read_select_count;
-	long	write_select_count;
+	final long[]	read_select_counts	= new long[SELECT_LOOP_COUNT];
+	final long[]	write_select_counts	= new long[SELECT_LOOP_COUNT];
 
 
 	protected
@@ -159,19 +172,31 @@ TCPNetworkManager
 				{
 					if ( types.contains( CoreStats.ST_NET_TCP_SELECT_READ_COUNT )){
 
-						values.put( CoreStats.ST_NET_TCP_SELECT_READ_COUNT, new Long( read_select_count ));
+						values.put( CoreStats.ST_NET_TCP_SELECT_READ_COUNT, new Long( sum( read_select_counts )));
 					}
 					if ( types.contains( CoreStats.ST_NET_TCP_SELECT_WRITE_COUNT )){
 
-						values.put( CoreStats.ST_NET_TCP_SELECT_WRITE_COUNT, new Long( write_select_count ));
+						values.put( CoreStats.ST_NET_TCP_SELECT_WRITE_COUNT, new Long( sum( write_select_counts )));
 					}
 				}
 			});
 
-		   //start read selector processing
+		for ( int i=0;i<SELECT_LOOP_COUNT;i++){
+
+			startReadSelectLoop( i );
+
+			startWriteSelectLoop( i );
+		}
+	}
+
+	private void
+	startReadSelectLoop(
+		final int	index )
+	{
+		final VirtualChannelSelector	read_selector = read_selectors[index];
 
 		AEThread2 read_selector_thread =
-	    	new AEThread2( "ReadController:ReadSelector", true )
+	    	new AEThread2( "ReadController:ReadSelector" + (index==0?"":(" " + index )), true )
 	    	{
 		    	@Override
 			    public void
@@ -205,7 +230,7 @@ TCPNetworkManager
 			    				read_selector.select( READ_SELECT_LOOP_TIME );
 		    				}
 
-			    			read_select_count++;
+			    			read_select_counts[index]++;
 
 		    			}catch( Throwable t ) {
 
@@ -222,11 +247,16 @@ TCPNetworkManager
 
 	    read_selector_thread.setPriority( Thread.MAX_PRIORITY - 2 );
 	    read_selector_thread.start();
+	}
 
-	    	//start write selector processing
+	private void
+	startWriteSelectLoop(
+		final int	index )
+	{
+		final VirtualChannelSelector	write_selector = write_selectors[index];
 
 	    AEThread2 write_selector_thread =
-	    	new AEThread2( "WriteController:WriteSelector", true )
+	    	new AEThread2( "WriteController:WriteSelector" + (index==0?"":(" " + index )), true )
 	    	{
 		    	@Override
 			    public void
@@ -259,7 +289,7 @@ TCPNetworkManager
 
 		    	    			write_selector.select( WRITE_SELECT_LOOP_TIME );
 
-		    	    			write_select_count++;
+		    	    			write_select_counts[index]++;
 		    	    		}
 		    	    	}catch( Throwable t ) {
 
@@ -273,6 +303,20 @@ TCPNetworkManager
 	    write_selector_thread.start();
 	}
 
+	private static long
+	sum(
+		long[]	counts )
+	{
+		long	total = 0;
+
+		for ( long c: counts ){
+
+			total += c;
+		}
+
+		return( total );
+	}
+
 	public IncomingSocketChannelManager
 	getDefaultIncomingSocketManager()
 	{
@@ -294,14 +338,51 @@ TCPNetworkManager
 	 * Get the virtual selector used for socket channel read readiness.
 	 * @return read readiness selector
 	 */
-	public VirtualChannelSelector getReadSelector() {  return read_selector;  }
+	public VirtualChannelSelector getReadSelector() {  return read_selectors[0];  }
 
 
 	/**
 	 * Get the virtual selector used for socket channel write readiness.
 	 * @return write readiness selector
 	 */
-	public VirtualChannelSelector getWriteSelector() {  return write_selector;  }
+	public VirtualChannelSelector getWriteSelector() {  return write_selectors[0];  }
+
+	/**
+	 * Get the read selector loop that the channel is assigned to. A channel always maps to the
+	 * same loop so all of its selects are handled by one thread
+	 * @return read readiness selector
+	 */
+
+	public VirtualChannelSelector
+	getReadSelector(
+		SocketChannel	channel )
+	{
+		return( read_selectors[ getLoopIndex( channel )]);
+	}
+
+	/**
+	 * Get the write selector loop that the channel is assigned to.
+	 * @return write readiness selector
+	 */
+
+	public VirtualChannelSelector
+	getWriteSelector(
+		SocketChannel	channel )
+	{
+		return( write_selectors[ getLoopIndex( channel )]);
+	}
+
+	private static int
+	getLoopIndex(
+		SocketChannel	channel )
+	{
+		if ( SELECT_LOOP_COUNT == 1 ){
+
+			return( 0 );
+		}
+
+		return(( System.identityHashCode( channel ) & 0x7fffffff ) % SELECT_LOOP_COUNT );
+	}
 
 
 	public boolean
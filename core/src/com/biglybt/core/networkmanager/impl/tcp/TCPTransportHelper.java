@@ -406,7 +406,7 @@ TCPTransportHelper
 		final selectListener		listener,
 		Object						attachment )
 	{
-		TCPNetworkManager.getSingleton().getReadSelector().register(
+		TCPNetworkManager.getSingleton().getReadSelector( channel ).register(
 				channel,
 				new VirtualSelectorListener()
 				{
@@ -440,7 +440,7 @@ TCPTransportHelper
 		final selectListener		listener,
 		Object						attachment )
 	{
-		TCPNetworkManager.getSingleton().getWriteSelector().register(
+		TCPNetworkManager.getSingleton().getWriteSelector( channel ).register(
 				channel,
 				new VirtualSelectorListener()
 				{
@@ -476,7 +476,7 @@ TCPTransportHelper
 	public void
 	cancelReadSelects()
 	{
-		TCPNetworkManager.getSingleton().getReadSelector().cancel( channel );
+		TCPNetworkManager.getSingleton().getReadSelector( channel ).cancel( channel );
 	}
 
 	@Override
@@ -487,14 +487,14 @@ TCPTransportHelper
 			TimeFormatter.milliTrace( "tcp: cancel write selects" );
 		}
 
-		TCPNetworkManager.getSingleton().getWriteSelector().cancel( channel );
+		TCPNetworkManager.getSingleton().getWriteSelector( channel ).cancel( channel );
 	}
 
 	@Override
 	public void
 	resumeReadSelects()
 	{
-		TCPNetworkManager.getSingleton().getReadSelector().resumeSelects( channel );
+		TCPNetworkManager.getSingleton().getReadSelector( channel ).resumeSelects( channel );
 	}
 
 	@Override
@@ -505,14 +505,14 @@ TCPTransportHelper
 			TimeFormatter.milliTrace( "tcp: resume write selects" );
 		}
 
-		TCPNetworkManager.getSingleton().getWriteSelector().resumeSelects( channel );
+		TCPNetworkManager.getSingleton().getWriteSelector( channel ).resumeSelects( channel );
 	}
 
 	@Override
 	public void
 	pauseReadSelects()
 	{
-		TCPNetworkManager.getSingleton().getReadSelector().pauseSelects( channel );
+		TCPNetworkManager.getSingleton().getReadSelector( channel ).pauseSelects( channel );
 	}
 
 	@Override
@@ -523,7 +523,7 @@ TCPTransportHelper
 			TimeFormatter.milliTrace( "tcp: pause write selects" );
 		}
 
-		TCPNetworkManager.getSingleton().getWriteSelector().pauseSelects( channel );
+		TCPNetworkManager.getSingleton().getWriteSelector( channel ).pauseSelects( channel );
 	}
 
 	@Override
@@ -539,8 +539,8 @@ TCPTransportHelper
 	{
 		closed = true;
 
-		TCPNetworkManager.getSingleton().getReadSelector().cancel( channel );
-		TCPNetworkManager.getSingleton().getWriteSelector().cancel( channel );
+		TCPNetworkManager.getSingleton().getReadSelector( channel ).cancel( channel );
+		TCPNetworkManager.getSingleton().getWriteSelector( channel ).cancel( channel );
 		TCPNetworkManager.getSingleton().getConnectDisconnectManager().closeConnection( channel );
 	}
 
@@ -289,6 +289,7 @@ PEPeerControlImpl
 	private Average	_averageReceptionSpeed;
 
 	private long mainloop_loop_count;
+	private int	 schedule_periods = 1;
 
 	private static final int MAINLOOP_ONE_SECOND_INTERVAL = 1000 / PeerControlScheduler.SCHEDULE_PERIOD_MILLIS;
 	private static final int MAINLOOP_FIVE_SECOND_INTERVAL = MAINLOOP_ONE_SECOND_INTERVAL * 5;
@@ -1020,7 +1021,49 @@ PEPeerControlImpl
 
 			Debug.printStackTrace( e );
 		}
-		mainloop_loop_count++;
+		mainloop_loop_count += schedule_periods;
+	}
+
+	@Override
+	public void
+	schedule(
+		int		periods )
+	{
+		schedule_periods = periods;
+
+		try{
+			schedule();
+
+		}finally{
+
+			schedule_periods = 1;
+		}
+	}
+
+		/**
+		 * Everything done while seeding, or while we have no connections, is gated on one second
+		 * (or longer) intervals so in these states we only need scheduling once a second. The
+		 * stride is only offered when the loop count is aligned to it so the interval checks
+		 * still fire on the same loops
+		 */
+
+	@Override
+	public int
+	getScheduleStride()
+	{
+		if ( finish_in_progress != null || superSeedMode || piece_check_result_list.size() > 0 ){
+
+			return( 1 );
+		}
+
+		if ( !seeding_mode && !peer_transports_cow.isEmpty()){
+
+			return( 1 );
+		}
+
+		final int stride = Math.max( 1, MAINLOOP_ONE_SECOND_INTERVAL );
+
+		return( mainloop_loop_count % stride == 0 ? stride : 1 );
 	}
 
 
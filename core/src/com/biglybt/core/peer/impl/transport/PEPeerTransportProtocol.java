@@ -1640,6 +1640,10 @@ implements PEPeerTransport
 					}
 			},
 			other_peer_piece_version);
+
+			Transport	transport = connection.getTransport();
+
+			outgoing_piece_message_handler.setZeroCopyAllowed( transport.isTCP() && !transport.isEncrypted());
 		}
 	}
 
@@ -21,6 +21,29 @@ PeerControlInstance
 	public void
 	schedule();
 
+		/**
+		 * Schedule call standing in for the given number of schedule periods, only made by
+		 * schedulers that honour getScheduleStride and never with more periods than it returned
+		 */
+
+	public default void
+	schedule(
+		int		periods )
+	{
+		schedule();
+	}
+
+		/**
+		 * @return number of schedule periods the instance can currently go between schedule calls
+		 * without changing its behaviour, 1 if it needs every period
+		 */
+
+	public default int
+	getScheduleStride()
+	{
+		return( 1 );
+	}
+
 	public int
 	getSchedulePriority();
 
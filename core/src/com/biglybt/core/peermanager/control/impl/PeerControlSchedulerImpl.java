@@ -42,7 +42,8 @@ PeerControlSchedulerImpl
 
 		}else if ( num > 1 ){
 
-			if ( COConfigurationManager.getBooleanParameter( "peercontrol.scheduler.use.priorities" )){
+			if ( 	COConfigurationManager.getBooleanParameter( "peercontrol.scheduler.use.priorities" ) &&
+					!COConfigurationManager.getBooleanParameter( "peercontrol.scheduler.use.wheel" )){
 
 				Debug.out( "Multiple peer schedulers not supported for prioritised scheduling" );
 
@@ -74,7 +75,11 @@ PeerControlSchedulerImpl
 
 			PeerControlSchedulerImpl singleton;
 
-			if ( COConfigurationManager.getBooleanParameter( "peercontrol.scheduler.use.priorities" )){
+			if ( COConfigurationManager.getBooleanParameter( "peercontrol.scheduler.use.wheel" )){
+
+				singleton = new PeerControlSchedulerWheel();
+
+			}else if ( COConfigurationManager.getBooleanParameter( "peercontrol.scheduler.use.priorities" )){
 
 				singleton = new PeerControlSchedulerPrioritised();
 
@@ -0,0 +1,650 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.peermanager.control.impl;
+
+import java.util.*;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.peermanager.control.PeerControlInstance;
+import com.biglybt.core.peermanager.control.SpeedTokenDispenser;
+import com.biglybt.core.stats.CoreStatsProvider;
+import com.biglybt.core.util.*;
+
+/**
+ * Scheduler for large numbers of peer control instances. Instances sit in a two level timing
+ * wheel keyed on the schedule period they are next due in, so a tick only touches the instances
+ * that are due rather than walking all of them, and instances that report a schedule stride
+ * (seeding, no connections) are only picked up every stride periods. Due instances are handed
+ * to a small pool of workers - an instance is only ever in the wheel or with one worker so is
+ * never scheduled concurrently with itself.
+ * <p>
+ * Per-instance schedule cost is recorded and reported in the diagnostics. Request limiting
+ * priorities aren't supported (as with the basic scheduler)
+ */
+
+public class
+PeerControlSchedulerWheel
+	extends PeerControlSchedulerImpl
+	implements CoreStatsProvider, AEDiagnosticsEvidenceGenerator
+{
+	private static final int	WHEEL_BITS	= 6;
+	private static final int	WHEEL_SIZE	= 1 << WHEEL_BITS;
+	private static final int	WHEEL_MASK	= WHEEL_SIZE - 1;
+
+		// furthest ahead an instance can be placed, strides are clamped to this
+
+	static final int	MAX_STRIDE	= WHEEL_SIZE*WHEEL_SIZE - 1;
+
+	private static final int	LAG_LOG_MILLIS	= 1000;
+
+	private final int	num_workers;
+
+	private final Random	random = new Random();
+
+	private Map<PeerControlInstance,instanceWrapper>	instance_map = new HashMap<>();
+
+	private final Object instance_lock = new Object();
+
+	private final SpeedTokenDispenserBasic tokenDispenser = new SpeedTokenDispenserBasic();
+
+		// wheel state, all guarded by wheel_lock
+
+	private final Object				wheel_lock		= new Object();
+	private final instanceWrapper[]		level0			= new instanceWrapper[WHEEL_SIZE];
+	private final instanceWrapper[]		level1			= new instanceWrapper[WHEEL_SIZE];
+	private long						current_tick;
+
+		// dispatch queue, guarded by itself
+
+	private final LinkedList<instanceWrapper>	dispatch_queue	= new LinkedList<>();
+
+	private volatile long		latest_time;
+	private long				last_lag_log;
+
+	private volatile long		late_count;
+	private volatile long		max_lateness;
+
+	private long	next_peer_count_time = SystemTime.getMonotonousTime();
+
+	private volatile long		peer_count_active_time = 0;
+
+	private volatile int[]		last_peer_count = { 0, 0 };
+
+	protected
+	PeerControlSchedulerWheel()
+	{
+		int	workers = COConfigurationManager.getIntParameter( "peercontrol.scheduler.wheel.workers" );
+
+		if ( workers <= 0 ){
+
+			workers = Math.min( 4, Runtime.getRuntime().availableProcessors());
+		}
+
+		num_workers = Math.max( 1, workers );
+
+		current_tick = SystemTime.getMonotonousTime() / SCHEDULE_PERIOD_MILLIS;
+
+		AEDiagnostics.addEvidenceGenerator( this );
+	}
+
+	@Override
+	protected void
+	start()
+	{
+		for ( int i=0;i<num_workers;i++){
+
+			new AEThread2( "PeerControlScheduler:worker" + (num_workers==1?"":("-"+i)), true )
+			{
+				@Override
+				public void
+				run()
+				{
+					runWorker();
+				}
+
+			}.start();
+		}
+
+		super.start();
+	}
+
+	@Override
+	protected void
+	schedule()
+	{
+		List<instanceWrapper>	due = new ArrayList<>();
+
+		while( true ){
+
+			long	now = SystemTime.getMonotonousTime();
+
+			latest_time	= now;
+
+			long	target_tick = now / SCHEDULE_PERIOD_MILLIS;
+
+			synchronized( wheel_lock ){
+
+				while( current_tick < target_tick ){
+
+					advance( due );
+				}
+			}
+
+			if ( !due.isEmpty()){
+
+				dispatch( due, target_tick );
+
+				due.clear();
+			}
+
+			updatePeerCount( now );
+
+				// sleep through to the start of the next period
+
+			long	next_time = ( target_tick + 1 ) * SCHEDULE_PERIOD_MILLIS;
+
+			long	sleep = next_time - SystemTime.getMonotonousTime();
+
+			if ( sleep > 0 ){
+
+				wait_count++;
+
+				long wait_start = SystemTime.getHighPrecisionCounter();
+
+				try{
+					Thread.sleep( sleep );
+
+				}catch( Throwable e ){
+
+					Debug.printStackTrace(e);
+				}
+
+				total_wait_time += SystemTime.getHighPrecisionCounter() - wait_start;
+
+			}else{
+
+				yield_count++;
+			}
+		}
+	}
+
+		/**
+		 * Moves the wheel on one tick, appending instances due in it to the list. Caller holds
+		 * wheel_lock
+		 */
+
+	protected void
+	advance(
+		List<instanceWrapper>	due )
+	{
+		long	tick = ++current_tick;
+
+		int		slot0 = (int)( tick & WHEEL_MASK );
+
+		if ( slot0 == 0 ){
+
+				// start of a new level 0 revolution, bring down the level 1 entries that fall within it
+
+			int	slot1 = (int)(( tick >>> WHEEL_BITS ) & WHEEL_MASK );
+
+			instanceWrapper	w = level1[slot1];
+
+			level1[slot1] = null;
+
+			while( w != null ){
+
+				instanceWrapper	next = w.wheel_next;
+
+				int	s = (int)( w.due_tick & WHEEL_MASK );
+
+				w.wheel_next	= level0[s];
+				level0[s]		= w;
+
+				w = next;
+			}
+		}
+
+		instanceWrapper	w = level0[slot0];
+
+		level0[slot0] = null;
+
+		while( w != null ){
+
+			instanceWrapper	next = w.wheel_next;
+
+			w.wheel_next = null;
+
+			if ( !w.isUnregistered()){
+
+				due.add( w );
+			}
+
+			w = next;
+		}
+	}
+
+		/**
+		 * Places an instance in the wheel, ticks not after the current one are moved to the next.
+		 * Caller holds wheel_lock
+		 */
+
+	protected void
+	insert(
+		instanceWrapper		w,
+		long				due_tick )
+	{
+		if ( due_tick <= current_tick ){
+
+			due_tick = current_tick + 1;
+
+		}else if ( due_tick - current_tick > MAX_STRIDE ){
+
+			due_tick = current_tick + MAX_STRIDE;
+		}
+
+		w.due_tick = due_tick;
+
+			// level 0 holds everything due before the end of the current revolution, level 1 the rest
+
+		if (( due_tick >>> WHEEL_BITS ) == ( current_tick >>> WHEEL_BITS )){
+
+			int	s = (int)( due_tick & WHEEL_MASK );
+
+			w.wheel_next	= level0[s];
+			level0[s]		= w;
+
+		}else{
+
+			int	s = (int)(( due_tick >>> WHEEL_BITS ) & WHEEL_MASK );
+
+			w.wheel_next	= level1[s];
+			level1[s]		= w;
+		}
+	}
+
+	private void
+	dispatch(
+		List<instanceWrapper>	due,
+		long					tick )
+	{
+		for ( instanceWrapper w: due ){
+
+			long	lateness = ( tick - w.due_tick ) * SCHEDULE_PERIOD_MILLIS;
+
+			if ( lateness > 0 ){
+
+				late_count++;
+
+				if ( lateness > max_lateness ){
+
+					max_lateness = lateness;
+				}
+
+				if ( lateness >= LAG_LOG_MILLIS && latest_time - last_lag_log > LAG_LOG_MILLIS ){
+
+					last_lag_log = latest_time;
+
+					System.out.println( "Scheduling lagging: " + lateness + " - instances=" + instance_map.size());
+				}
+			}
+		}
+
+		schedule_count += due.size();
+
+		synchronized( dispatch_queue ){
+
+			dispatch_queue.addAll( due );
+
+			if ( due.size() >= num_workers ){
+
+				dispatch_queue.notifyAll();
+
+			}else{
+
+				for ( int i=0;i<due.size();i++){
+
+					dispatch_queue.notify();
+				}
+			}
+		}
+	}
+
+	private void
+	runWorker()
+	{
+		while( true ){
+
+			instanceWrapper	w;
+
+			synchronized( dispatch_queue ){
+
+				while( dispatch_queue.isEmpty()){
+
+					try{
+						dispatch_queue.wait();
+
+					}catch( Throwable e ){
+
+						Debug.printStackTrace(e);
+					}
+				}
+
+				w = dispatch_queue.removeFirst();
+			}
+
+			if ( w.isUnregistered()){
+
+				continue;
+			}
+
+			w.schedule();
+
+			int	stride = w.getStride();
+
+			synchronized( wheel_lock ){
+
+				if ( !w.isUnregistered()){
+
+					insert( w, w.due_tick + stride );
+				}
+			}
+		}
+	}
+
+	private void
+	updatePeerCount(
+		long		now )
+	{
+		if ( peer_count_active_time == 0 || now < next_peer_count_time ){
+
+			return;
+		}
+
+		if ( now - peer_count_active_time > 15*1000 ){
+
+			peer_count_active_time = 0;
+
+			return;
+		}
+
+		next_peer_count_time = now + 900;
+
+		int count1 = 0;
+		int count2 = 0;
+
+		for ( PeerControlInstance i: instance_map.keySet()){
+
+			int[] c = i.getPeerCount();
+
+			count1 += c[0];
+			count2 += c[1];
+		}
+
+		last_peer_count = new int[]{ count1, count2 };
+	}
+
+	@Override
+	public void
+	register(
+		PeerControlInstance	instance )
+	{
+		instanceWrapper wrapper = new instanceWrapper( instance );
+
+		synchronized( instance_lock ){
+
+			Map<PeerControlInstance,instanceWrapper>	new_map = new HashMap<>(instance_map);
+
+			new_map.put( instance, wrapper );
+
+			instance_map = new_map;
+		}
+
+		synchronized( wheel_lock ){
+
+				// spread new arrivals over the next second
+
+			int	spread = Math.max( 1, 1000 / SCHEDULE_PERIOD_MILLIS );
+
+			insert( wrapper, current_tick + 1 + random.nextInt( spread ));
+		}
+	}
+
+	@Override
+	public void
+	unregister(
+		PeerControlInstance	instance )
+	{
+		synchronized( instance_lock ){
+
+			Map<PeerControlInstance,instanceWrapper>	new_map = new HashMap<>(instance_map);
+
+			instanceWrapper wrapper = new_map.remove(instance);
+
+			if ( wrapper == null ){
+
+				Debug.out( "instance wrapper not found" );
+
+				return;
+			}
+
+				// lazily dropped from the wheel when next due
+
+			wrapper.unregister();
+
+			instance_map = new_map;
+		}
+	}
+
+	@Override
+	public SpeedTokenDispenser
+	getSpeedTokenDispenser()
+	{
+		return( tokenDispenser );
+	}
+
+	@Override
+	public void
+	updateScheduleOrdering()
+	{
+	}
+
+	@Override
+	public int[] getPeerCount()
+	{
+		peer_count_active_time = SystemTime.getMonotonousTime();
+
+		return( last_peer_count );
+	}
+
+	@Override
+	public void
+	generate(
+		IndentWriter		writer )
+	{
+		writer.println( "Peer Control Scheduler (wheel)" );
+
+		try{
+			writer.indent();
+
+			Collection<instanceWrapper>	instances = instance_map.values();
+
+			writer.println(
+				"instances=" + instances.size() + ", workers=" + num_workers +
+				", period=" + SCHEDULE_PERIOD_MILLIS + ", dispatched=" + schedule_count +
+				", late=" + late_count + ", max_lateness=" + max_lateness );
+
+			int	strided = 0;
+
+			for ( instanceWrapper w: instances ){
+
+				if ( w.getStride() > 1 ){
+
+					strided++;
+				}
+			}
+
+			writer.println( "strided instances=" + strided );
+
+			List<instanceWrapper>	sorted = new ArrayList<>( instances );
+
+			Collections.sort(
+				sorted,
+				new Comparator<instanceWrapper>()
+				{
+					@Override
+					public int
+					compare(
+						instanceWrapper o1,
+						instanceWrapper o2)
+					{
+						return( Long.compare( o2.getTotalCost(), o1.getTotalCost()));
+					}
+				});
+
+			writer.println( "most expensive:" );
+
+			try{
+				writer.indent();
+
+				for ( int i=0;i<Math.min( 20, sorted.size());i++){
+
+					writer.println( sorted.get(i).getString());
+				}
+			}finally{
+
+				writer.exdent();
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	protected class
+	instanceWrapper
+	{
+		private final PeerControlInstance		instance;
+		private volatile boolean				unregistered;
+
+			// wheel linkage, guarded by wheel_lock
+
+		instanceWrapper					wheel_next;
+		long							due_tick;
+
+			// only touched by the worker running the instance
+
+		private int						stride	= 1;
+
+		private volatile long			schedule_count;
+		private volatile long			total_cost;
+		private volatile long			max_cost;
+		private volatile long			recent_cost;
+
+		protected
+		instanceWrapper(
+			PeerControlInstance	_instance )
+		{
+			instance = _instance;
+		}
+
+		protected void
+		unregister()
+		{
+			unregistered	= true;
+		}
+
+		protected boolean
+		isUnregistered()
+		{
+			return( unregistered );
+		}
+
+		protected int
+		getStride()
+		{
+			return( stride );
+		}
+
+		protected long
+		getTotalCost()
+		{
+			return( total_cost );
+		}
+
+		protected void
+		schedule()
+		{
+			long	start = SystemTime.getHighPrecisionCounter();
+
+			try{
+				if ( stride == 1 ){
+
+					instance.schedule();
+
+				}else{
+
+					instance.schedule( stride );
+				}
+
+			}catch( Throwable e ){
+
+				Debug.printStackTrace(e);
+			}
+
+			long	cost = SystemTime.getHighPrecisionCounter() - start;
+
+			schedule_count++;
+
+			total_cost += cost;
+
+			if ( cost > max_cost ){
+
+				max_cost = cost;
+			}
+
+				// ~10 schedule moving average
+
+			recent_cost = recent_cost + ( cost - recent_cost ) / 10;
+
+			try{
+				stride = Math.max( 1, Math.min( MAX_STRIDE, instance.getScheduleStride()));
+
+			}catch( Throwable e ){
+
+				Debug.printStackTrace(e);
+
+				stride = 1;
+			}
+		}
+
+		protected String
+		getString()
+		{
+			long	count = schedule_count;
+
+			return(
+				instance.getName() + ": schedules=" + count +
+				", total=" + ( total_cost/1000000 ) + "ms" +
+				", avg=" + ( count==0?0:( total_cost/count/1000 )) + "us" +
+				", recent=" + ( recent_cost/1000 ) + "us" +
+				", max=" + ( max_cost/1000 ) + "us" +
+				", stride=" + stride );
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.peermanager.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.networkmanager.Transport;
+import com.biglybt.core.util.DirectByteBuffer;
+import com.biglybt.core.util.DirectByteBufferPool;
+
+/**
+ * Per-connection read-ahead buffer used by the stream decoders in batch mode. Reads pull as much
+ * as is allowed off the transport in one go and the decoder then parses every complete message
+ * out of the buffered bytes in a single pass, rather than doing a length read and a payload read
+ * per message.
+ * <p>
+ * Unparsed bytes are compacted to the front after each pass (rather than wrapping) so that a
+ * buffered message is always contiguous and can be handed out as a slice. The underlying pooled
+ * buffer is only held while there are unparsed bytes so idle connections don't pin memory.
+ */
+
+public class
+MessageStreamReadBuffer
+{
+	private static final byte SS = DirectByteBuffer.SS_MSG;
+
+	private static final int	MIN_SIZE	= 1024;
+
+	private static final boolean	ENABLED;
+	private static final int		SIZE;
+
+	static{
+		ENABLED = COConfigurationManager.getBooleanParameter( "network.transport.decode.batch.enable" );
+
+		SIZE = Math.max( MIN_SIZE, COConfigurationManager.getIntParameter( "network.transport.decode.batch.size" ));
+	}
+
+	public static boolean
+	isEnabled()
+	{
+		return( ENABLED );
+	}
+
+	private final byte			allocator;
+	private final int			size;
+	private final ByteBuffer[]	read_array = { null };
+
+	private DirectByteBuffer	buffer;
+	private ByteBuffer			bb;
+	private int					read_pos;
+
+	public
+	MessageStreamReadBuffer(
+		byte		_allocator )
+	{
+		allocator	= _allocator;
+		size		= SIZE;
+	}
+
+	public int
+	getSize()
+	{
+		return( size );
+	}
+
+		/**
+		 * Reads up to max bytes (limited by the free space) from the transport
+		 * @return bytes read, 0 if the buffer is full
+		 */
+
+	public int
+	read(
+		Transport	transport,
+		int			max )
+
+		throws IOException
+	{
+		if ( buffer == null ){
+
+			buffer	= DirectByteBufferPool.getBuffer( allocator, size );
+			bb		= buffer.getBuffer( SS );
+
+			bb.position( 0 );
+			bb.limit( size );
+
+			read_pos	= 0;
+		}
+
+		int	space = size - bb.position();
+
+		if ( space <= 0 || max <= 0 ){
+
+			return( 0 );
+		}
+
+		bb.limit( bb.position() + Math.min( space, max ));
+
+		read_array[0] = bb;
+
+		try{
+			return((int)transport.read( read_array, 0, 1 ));
+
+		}finally{
+
+			bb.limit( size );
+		}
+	}
+
+	public int
+	getFreeSpace()
+	{
+		return( bb == null?size:( size - bb.position()));
+	}
+
+	public int
+	available()
+	{
+		return( bb == null?0:( bb.position() - read_pos ));
+	}
+
+	public byte
+	get(
+		int		offset )
+	{
+		return( bb.get( read_pos + offset ));
+	}
+
+	public int
+	getInt(
+		int		offset )
+	{
+		return( bb.getInt( read_pos + offset ));
+	}
+
+	public void
+	skip(
+		int		len )
+	{
+		read_pos += len;
+	}
+
+		/**
+		 * Returns a view of the next len bytes and consumes them. The view is only valid until
+		 * the next compact/read so it must be fully consumed synchronously
+		 */
+
+	public ByteBuffer
+	slice(
+		int		len )
+	{
+		ByteBuffer	view = bb.duplicate();
+
+		view.limit( read_pos + len );
+		view.position( read_pos );
+
+		read_pos += len;
+
+		return( view.slice());
+	}
+
+		/**
+		 * Copies the next len bytes into the target's current position and consumes them
+		 */
+
+	public void
+	copyTo(
+		DirectByteBuffer	target,
+		int					len )
+	{
+		target.put( SS, slice( len ));
+	}
+
+		/**
+		 * Removes and returns (as a heap buffer) all unparsed bytes
+		 */
+
+	public ByteBuffer
+	takeRemaining()
+	{
+		int	avail = available();
+
+		ByteBuffer	result = ByteBuffer.allocate( avail );
+
+		if ( avail > 0 ){
+
+			result.put( slice( avail ));
+
+			result.flip();
+		}
+
+		compact();
+
+		return( result );
+	}
+
+	public void
+	compact()
+	{
+		if ( buffer == null ){
+
+			return;
+		}
+
+		int	avail = available();
+
+		if ( avail == 0 ){
+
+			release();
+
+		}else if ( read_pos > 0 ){
+
+			bb.limit( bb.position());
+			bb.position( read_pos );
+
+			bb.compact();
+
+			bb.limit( size );
+
+			read_pos = 0;
+		}
+	}
+
+	public void
+	release()
+	{
+		DirectByteBuffer	b = buffer;
+
+		buffer		= null;
+		bb			= null;
+		read_pos	= 0;
+
+		if ( b != null ){
+
+			b.returnToPoolIfNotFree();
+		}
+	}
+}
@@ -27,6 +27,9 @@ import com.biglybt.core.networkmanager.Transport;
 import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.peermanager.messaging.MessageManager;
 import com.biglybt.core.peermanager.messaging.MessageStreamDecoder;
+import com.biglybt.core.peermanager.messaging.MessageStreamReadBuffer;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTMessage;
+import com.biglybt.core.peermanager.messaging.bittorrent.BTMessageFactory;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.DirectByteBuffer;
 import com.biglybt.core.util.DirectByteBufferPool;
@@ -69,6 +72,13 @@ public class AZMessageDecoder implements MessageStreamDecoder {
 
   private int	maximum_message_size = MAX_MESSAGE_LENGTH;
 
+  	// batch mode reads into a read-ahead buffer and parses all complete messages from it in one pass
+
+  private final boolean batch_mode = MessageStreamReadBuffer.isEnabled();
+  private final MessageStreamReadBuffer read_ahead = batch_mode ? new MessageStreamReadBuffer( DirectByteBuffer.AL_MSG ) : null;
+
+  private int stream_message_type = -1;
+
   public AZMessageDecoder() {
     /*nothing*/
   }
@@ -85,6 +95,11 @@ public class AZMessageDecoder implements MessageStreamDecoder {
     protocol_bytes_last_read = 0;
     data_bytes_last_read = 0;
 
+    if ( batch_mode ){
+
+    	return( performBatchDecode( transport, max_bytes ));
+    }
+
     int bytes_remaining = max_bytes;
 
     while( bytes_remaining > 0 ) {
@@ -132,6 +147,310 @@ public class AZMessageDecoder implements MessageStreamDecoder {
 
 
 
+  private int
+  performBatchDecode(
+	Transport	transport,
+	int			max_bytes )
+
+	throws IOException
+  {
+	int bytes_remaining = max_bytes;
+
+	last_read_made_progress = false;
+
+	try{
+		while( bytes_remaining > 0 && !destroyed && !is_paused ){
+
+			if ( payload_buffer != null ){
+
+					// message didn't fit in the read-ahead buffer (or is a data message) so stream the
+					// rest of it directly into its payload buffer to avoid a second copy
+
+				ByteBuffer pb = payload_buffer.getBuffer( SS );
+
+				int start		= pb.position();
+				int possible	= Math.min( pb.remaining(), bytes_remaining );
+
+				pb.limit( start + possible );
+
+				decode_array[0] = pb;
+
+				transport.read( decode_array, 0, 1 );
+
+				int read = pb.position() - start;
+
+				payload_buffer.limit( SS, message_length );
+
+				last_read_made_progress = read > 0;
+
+				bytes_remaining -= read;
+
+				if ( getStreamMessageType() == Message.TYPE_DATA_PAYLOAD ){
+
+					data_bytes_last_read += read;
+
+				}else{
+
+					protocol_bytes_last_read += read;
+				}
+
+				if ( !payload_buffer.hasRemaining( SS )){
+
+					payload_buffer.position( SS, 0 );
+
+					DirectByteBuffer ref_buff = payload_buffer;
+
+					payload_buffer = null;
+
+					stream_message_type	= -1;
+					percent_complete	= -1;
+
+					addMessage( ref_buff );
+
+				}else{
+
+					percent_complete = (payload_buffer.position( SS ) * 100) / message_length;
+				}
+
+				if ( read < possible ){
+
+					break;
+				}
+			}else{
+
+				int possible = Math.min( read_ahead.getFreeSpace(), bytes_remaining );
+
+				int read = read_ahead.read( transport, bytes_remaining );
+
+				last_read_made_progress = read > 0;
+
+				bytes_remaining -= read;
+
+				parseReadAhead();
+
+				if ( read == 0 || read < possible ){
+
+					break;
+				}
+			}
+		}
+	}finally{
+
+		if ( !destroyed ){
+
+			read_ahead.compact();
+		}
+	}
+
+	return( max_bytes - bytes_remaining );
+  }
+
+  private void
+  parseReadAhead()
+
+  	throws IOException
+  {
+	while( !destroyed && !is_paused ){
+
+		int available = read_ahead.available();
+
+		if ( available < 4 ){
+
+			break;
+		}
+
+		int length = read_ahead.getInt( 0 );
+
+		if ( length < MIN_MESSAGE_LENGTH || length > maximum_message_size ){
+
+			throw new IOException( "Invalid message length given for AZ message decode: " + length + " (max=" + maximum_message_size + ")" );
+		}
+
+		Message message = null;
+
+		if ( available >= 8 ){
+
+			int id_size = read_ahead.getInt( 4 );
+
+			if ( id_size < 1 || id_size > 1024 ){
+
+				throw new IOException( "invalid id_size [" +id_size+ "]" );
+			}
+
+			if ( available >= 8 + id_size ){
+
+				byte[] id_bytes = new byte[ id_size ];
+
+				for ( int i=0;i<id_size;i++ ){
+
+					id_bytes[i] = read_ahead.get( 8 + i );
+				}
+
+				message = lookupMessage( id_bytes );
+			}
+		}
+
+		if ( available >= length + 4 ){
+
+			if ( message == null ){
+
+				throw new IOException( "invalid AZ id length for message length " + length );
+			}
+
+			read_ahead.skip( 4 );
+
+			protocol_bytes_last_read += 4;
+
+			if ( message.getType() == Message.TYPE_DATA_PAYLOAD ){
+
+				data_bytes_last_read += length;
+
+			}else{
+
+				protocol_bytes_last_read += length;
+			}
+
+			DirectByteBuffer ref_buff;
+
+			if ( 	message.getFeatureID().equals( BTMessage.BT_FEATURE_ID ) &&
+					BTMessageFactory.isTransientPayload( message.getFeatureSubID())){
+
+					// deserialisation copies out the content so a view of the read-ahead buffer will do
+
+				ref_buff = new DirectByteBuffer( read_ahead.slice( length ));
+
+			}else{
+
+				ref_buff = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_AZ_PAYLOAD, length );
+
+				read_ahead.copyTo( ref_buff, length );
+
+				ref_buff.flip( SS );
+			}
+
+			addMessage( ref_buff );
+
+		}else{
+
+				// incomplete message - keep accumulating unless it is a data message or too big for the buffer
+
+			if ( 	length + 4 > read_ahead.getSize() ||
+					( message != null && message.getType() == Message.TYPE_DATA_PAYLOAD )){
+
+				read_ahead.skip( 4 );
+
+				protocol_bytes_last_read += 4;
+
+				message_length = length;
+
+				payload_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_AZ_PAYLOAD, message_length );
+
+				stream_message_type = message == null ? -1 : message.getType();
+
+				int partial = available - 4;
+
+				if ( partial > 0 ){
+
+					read_ahead.copyTo( payload_buffer, partial );
+
+					if ( getStreamMessageType() == Message.TYPE_DATA_PAYLOAD ){
+
+						data_bytes_last_read += partial;
+
+					}else{
+
+						protocol_bytes_last_read += partial;
+					}
+				}
+
+				percent_complete = (partial * 100) / message_length;
+			}
+
+			break;
+		}
+	}
+  }
+
+  private int
+  getStreamMessageType()
+
+  	throws IOException
+  {
+	if ( stream_message_type == -1 ){
+
+		ByteBuffer pb = payload_buffer.getBuffer( SS );
+
+		int pos = pb.position();
+
+		if ( pos >= 4 ){
+
+			int id_size = pb.getInt( 0 );
+
+			if ( id_size < 1 || id_size > 1024 ){
+
+				throw new IOException( "invalid id_size [" +id_size+ "]" );
+			}
+
+			if ( pos >= 4 + id_size ){
+
+				byte[] id_bytes = new byte[ id_size ];
+
+				ByteBuffer dup = pb.duplicate();
+
+				dup.position( 4 );
+
+				dup.get( id_bytes );
+
+				stream_message_type = lookupMessage( id_bytes ).getType();
+			}
+		}
+	}
+
+	return( stream_message_type == -1 ? Message.TYPE_PROTOCOL_PAYLOAD : stream_message_type );
+  }
+
+  private Message
+  lookupMessage(
+	byte[]	id_bytes )
+
+	throws IOException
+  {
+	Message message = MessageManager.getSingleton().lookupMessage( id_bytes );
+
+	if ( message == null ){
+
+		Debug.out( "Unknown message type '" + new String( id_bytes ) + "'" );
+
+		throw( new IOException( "Unknown message type" ));
+	}
+
+	return( message );
+  }
+
+  private void
+  addMessage(
+	DirectByteBuffer	ref_buff )
+
+	throws IOException
+  {
+	try{
+		messages_last_read.add( AZMessageFactory.createAZMessage( ref_buff ));
+
+	}catch( Throwable e ){
+
+		ref_buff.returnToPoolIfNotFree();
+
+		if ( e instanceof RuntimeException ){
+
+			throw((RuntimeException)e );
+		}
+
+		throw new IOException( "AZ message decode failed: " + e.getMessage() );
+	}
+  }
+
+
+
   @Override
   public int getPercentDoneOfCurrentMessage() {
     return percent_complete;
@@ -195,6 +514,11 @@ public class AZMessageDecoder implements MessageStreamDecoder {
 
     length_buffer.returnToPool();
 
+    if ( read_ahead != null ){
+
+    	read_ahead.release();
+    }
+
     if( payload_buffer != null ) {
       payload_buffer.returnToPool();
       payload_buffer = null;
@@ -28,6 +28,7 @@ import com.biglybt.core.peermanager.messaging.Message;
 import com.biglybt.core.peermanager.messaging.MessageException;
 import com.biglybt.core.peermanager.messaging.MessageManager;
 import com.biglybt.core.peermanager.messaging.MessageStreamDecoder;
+import com.biglybt.core.peermanager.messaging.MessageStreamReadBuffer;
 import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.DirectByteBuffer;
 import com.biglybt.core.util.DirectByteBufferPool;
@@ -61,6 +62,11 @@ public class BTMessageDecoder implements MessageStreamDecoder {
   private volatile boolean destroyed = false;
   private volatile boolean is_paused = false;
 
+  	// batch mode reads into a read-ahead buffer and parses all complete messages from it in one pass
+
+  private final boolean batch_mode = MessageStreamReadBuffer.isEnabled();
+  private final MessageStreamReadBuffer read_ahead = batch_mode ? new MessageStreamReadBuffer( DirectByteBuffer.AL_MSG ) : null;
+
   private final ArrayList messages_last_read = new ArrayList();
   private int protocol_bytes_last_read = 0;
   private int data_bytes_last_read = 0;
@@ -79,6 +85,11 @@ public class BTMessageDecoder implements MessageStreamDecoder {
 	    protocol_bytes_last_read = 0;
 	    data_bytes_last_read = 0;
 
+	    if ( batch_mode ){
+
+	    	return( performBatchDecode( transport, max_bytes ));
+	    }
+
 	    int bytes_remaining = max_bytes;
 
 	    while( bytes_remaining > 0 ) {
@@ -137,6 +148,278 @@ public class BTMessageDecoder implements MessageStreamDecoder {
   }
 
 
+  private int
+  performBatchDecode(
+	Transport	transport,
+	int			max_bytes )
+
+	throws IOException
+  {
+	int bytes_remaining = max_bytes;
+	int pushed_back		= 0;
+
+	try{
+		while( bytes_remaining > 0 && !destroyed && !is_paused ){
+
+			if ( payload_buffer != null ){
+
+					// message didn't fit in the read-ahead buffer (or is a piece) so stream the rest
+					// of it directly into its payload buffer to avoid a second copy
+
+				ByteBuffer pb = payload_buffer.getBuffer( SS );
+
+				int start		= pb.position();
+				int possible	= Math.min( pb.remaining(), bytes_remaining );
+
+				pb.limit( start + possible );
+
+				decode_array[0] = pb;
+
+				transport.read( decode_array, 0, 1 );
+
+				int read = pb.position() - start;
+
+				payload_buffer.limit( SS, message_length );
+
+				bytes_remaining -= read;
+
+				if ( payload_buffer.position( SS ) > 0 ){
+
+					if ( BTMessageFactory.getMessageType( payload_buffer ) == Message.TYPE_DATA_PAYLOAD ){
+
+						data_bytes_last_read += read;
+
+					}else{
+
+						protocol_bytes_last_read += read;
+					}
+				}
+
+				if ( !payload_buffer.hasRemaining( SS )){
+
+					payload_buffer.position( SS, 0 );
+
+					DirectByteBuffer ref_buff = payload_buffer;
+
+					payload_buffer = null;
+
+					percent_complete = -1;
+
+					addMessage( ref_buff );
+
+				}else{
+
+					percent_complete = (payload_buffer.position( SS ) * 100) / message_length;
+				}
+
+				if ( read < possible ){
+
+					break;
+				}
+			}else{
+
+				int possible = Math.min( read_ahead.getFreeSpace(), bytes_remaining );
+
+				int read = read_ahead.read( transport, bytes_remaining );
+
+				bytes_remaining -= read;
+
+				parseReadAhead();
+
+				if ( read == 0 || read < possible ){
+
+					break;
+				}
+			}
+		}
+
+		if ( is_paused && !destroyed && read_ahead.available() > 0 ){
+
+				// don't sit on buffered bytes while paused (e.g. after the handshake when the next message
+				// might be AZ format) - hand them back to the transport so they get re-read on resume
+				// or by a replacement decoder
+
+			pushed_back = read_ahead.available();
+
+			transport.setAlreadyRead( read_ahead.takeRemaining());
+		}
+	}finally{
+
+		if ( !destroyed ){
+
+			read_ahead.compact();
+		}
+	}
+
+	return( max_bytes - bytes_remaining - pushed_back );
+  }
+
+  private void
+  parseReadAhead()
+
+  	throws IOException
+  {
+	while( !destroyed && !is_paused ){
+
+		int available = read_ahead.available();
+
+		if ( available < 4 ){
+
+			break;
+		}
+
+		int length = read_ahead.getInt( 0 );
+
+		if ( length == HANDSHAKE_FAKE_LENGTH ){
+
+			if ( available < 68 ){
+
+				break;
+			}
+
+			DirectByteBuffer handshake_data = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_BT_HAND, 68 );
+
+			read_ahead.copyTo( handshake_data, 68 );
+
+			handshake_data.flip( SS );
+
+			protocol_bytes_last_read += 68;
+
+			try{
+				Message handshake = MessageManager.getSingleton().createMessage( BTMessage.ID_BT_HANDSHAKE_BYTES, handshake_data, (byte)1 );
+
+				messages_last_read.add( handshake );
+
+			}catch( MessageException me ){
+
+				handshake_data.returnToPool();
+
+				throw new IOException( "BT message decode failed: " + me.getMessage() );
+			}
+
+				// as with the non-batched decode we must pause here until told to carry on
+
+			pauseDecoding();
+
+			break;
+
+		}else if ( length == 0 ){
+
+			read_ahead.skip( 4 );
+
+			protocol_bytes_last_read += 4;
+
+			try{
+				Message keep_alive = MessageManager.getSingleton().createMessage( BTMessage.ID_BT_KEEP_ALIVE_BYTES, null, (byte)1 );
+
+				messages_last_read.add( keep_alive );
+
+			}catch( MessageException me ){
+
+				throw new IOException( "BT message decode failed: " + me.getMessage() );
+			}
+		}else if ( length < MIN_MESSAGE_LENGTH || length > MAX_MESSAGE_LENGTH ){
+
+			throw new IOException( "Invalid message length given for BT message decode: " + length );
+
+		}else if ( available >= length + 4 ){
+
+			read_ahead.skip( 4 );
+
+			byte id = read_ahead.get( 0 );
+
+			protocol_bytes_last_read += 4;
+
+			if ( id == BTMessage.SUBID_BT_PIECE ){
+
+				data_bytes_last_read += length;
+
+			}else{
+
+				protocol_bytes_last_read += length;
+			}
+
+			DirectByteBuffer ref_buff;
+
+			if ( BTMessageFactory.isTransientPayload( id )){
+
+					// deserialisation of these copies out the content so a view of the read-ahead
+					// buffer will do (returnToPool is a no-op for it)
+
+				ref_buff = new DirectByteBuffer( read_ahead.slice( length ));
+
+			}else{
+
+				ref_buff = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_BT_PAYLOAD, length );
+
+				read_ahead.copyTo( ref_buff, length );
+
+				ref_buff.flip( SS );
+			}
+
+			addMessage( ref_buff );
+
+		}else{
+
+				// incomplete message - keep accumulating unless it is a piece or too big for the buffer
+
+			if ( length + 4 > read_ahead.getSize() || ( available > 4 && read_ahead.get( 4 ) == BTMessage.SUBID_BT_PIECE )){
+
+				read_ahead.skip( 4 );
+
+				protocol_bytes_last_read += 4;
+
+				message_length = length;
+
+				payload_buffer = DirectByteBufferPool.getBuffer( DirectByteBuffer.AL_MSG_BT_PAYLOAD, message_length );
+
+				int partial = available - 4;
+
+				if ( partial > 0 ){
+
+					read_ahead.copyTo( payload_buffer, partial );
+
+					if ( BTMessageFactory.getMessageType( payload_buffer ) == Message.TYPE_DATA_PAYLOAD ){
+
+						data_bytes_last_read += partial;
+
+					}else{
+
+						protocol_bytes_last_read += partial;
+					}
+				}
+
+				percent_complete = (partial * 100) / message_length;
+			}
+
+			break;
+		}
+	}
+  }
+
+  private void
+  addMessage(
+	DirectByteBuffer	ref_buff )
+
+	throws IOException
+  {
+	try{
+		messages_last_read.add( createMessage( ref_buff ));
+
+	}catch( Throwable e ){
+
+		ref_buff.returnToPoolIfNotFree();
+
+		if ( e instanceof RuntimeException ){
+
+			throw((RuntimeException)e );
+		}
+
+		throw new IOException( "BT message decode failed: " +e.getMessage() );
+	}
+  }
+
+
   @Override
   public int getPercentDoneOfCurrentMessage() {
     return percent_complete;
@@ -174,6 +457,11 @@ public class BTMessageDecoder implements MessageStreamDecoder {
     is_paused = true;
     destroyed = true;
 
+    if ( batch_mode ){
+
+    	return( destroyBatch());
+    }
+
     	// there's a concurrency issue with the decoder whereby it can be destroyed while will being messed with. Don't
     	// have the energy to look into it properly atm so just try to ensure that it doesn't bork too badly (parg: 29/04/2012)
     	// only occasional but does have potential to generate direct buffer mem leak ;(
@@ -263,6 +551,74 @@ public class BTMessageDecoder implements MessageStreamDecoder {
 
 
 
+  private ByteBuffer
+  destroyBatch()
+  {
+		// unused bytes are the partially streamed message (length + payload so far) followed
+		// by whatever is still unparsed in the read-ahead buffer
+
+	ByteBuffer unused;
+
+	try{
+		DirectByteBuffer plb = payload_buffer;
+
+		if ( plb != null && plb.hasBeenReturnedToPool()){
+
+			plb = null;
+		}
+
+		int pbuff_read = plb == null ? 0 : plb.position( SS );
+
+		ByteBuffer rest = read_ahead.takeRemaining();
+
+		unused = ByteBuffer.allocate((plb == null ? 0 : 4 ) + pbuff_read + rest.remaining());
+
+		if ( plb != null ){
+
+			unused.putInt( message_length );
+
+			plb.flip( SS );
+
+			unused.put( plb.getBuffer( SS ));
+
+			plb.returnToPool();
+
+			payload_buffer = null;
+		}
+
+		unused.put( rest );
+
+		unused.flip();
+
+	}catch( RuntimeException e ){
+
+		Debug.out( "hit known threading issue" );
+
+		unused = ByteBuffer.allocate( 0 );
+	}
+
+	read_ahead.release();
+
+	if ( !length_buffer.hasBeenReturnedToPool()){
+
+		length_buffer.returnToPool();
+	}
+
+	try{
+		for( int i=0; i < messages_last_read.size(); i++ ) {
+			Message msg = (Message)messages_last_read.get( i );
+			msg.destroy();
+		}
+	}catch( RuntimeException e ){
+		Debug.out( "hit known threading issue" );
+	}
+
+	messages_last_read.clear();
+
+	return( unused );
+  }
+
+
   private int preReadProcess( int allowed ) {
     if( allowed < 1 ) {
       Debug.out( "allowed < 1" );
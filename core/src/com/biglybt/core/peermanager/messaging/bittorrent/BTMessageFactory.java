@@ -253,6 +253,36 @@ public class BTMessageFactory {
 
 
 
+  /**
+   * Whether the given message's deserialisation copies everything it needs out of the payload
+   * buffer, in which case the decoder can hand it a view of its read buffer rather than a pooled copy.
+   * @param id message id
+   * @return true if the payload isn't retained
+   */
+  public static boolean isTransientPayload( int id ) {
+    switch( id ) {
+      case BTMessage.SUBID_BT_CHOKE:
+      case BTMessage.SUBID_BT_UNCHOKE:
+      case BTMessage.SUBID_BT_INTERESTED:
+      case BTMessage.SUBID_BT_UNINTERESTED:
+      case BTMessage.SUBID_BT_HAVE:
+      case BTMessage.SUBID_BT_REQUEST:
+      case BTMessage.SUBID_BT_CANCEL:
+      case BTMessage.SUBID_BT_DHT_PORT:
+      case BTMessage.SUBID_BT_SUGGEST_PIECE:
+      case BTMessage.SUBID_BT_HAVE_ALL:
+      case BTMessage.SUBID_BT_HAVE_NONE:
+      case BTMessage.SUBID_BT_REJECT_REQUEST:
+      case BTMessage.SUBID_BT_ALLOWED_FAST:
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+
+
   /**
    * Create the proper BT raw message from the given base message.
    * @param base_message to create from
@@ -20,6 +20,7 @@
 package com.biglybt.core.peermanager.piecepicker.impl;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.config.ParameterListener;
@@ -61,6 +62,16 @@ implements PiecePicker
 	private static final long TIME_MIN_PRIORITIES	= 999;
 	/** min ms for forced availability rebuild */
 	private static final long TIME_AVAIL_REBUILD	= 5*60*1000 -24;
+	/** max ms the cached file based component of base priorities is reused for */
+	private static final long TIME_MAX_FILE_PRIORITIES	= 10*1000;
+
+	/** disables the rarity index and priority ordered candidate selection in favour of full scans */
+	private static final boolean LEGACY_SCANS	= System.getProperty( "az.piecepicker.legacy", "0" ).equals( "1" );
+	/** start priorities at or above this can't be packed into a priority order key */
+	private static final int PRIORITY_ORDER_LIMIT	= 1<<24;
+	private static final int PRIORITY_ORDER_AVAIL_MAX	= (1<<13) -1;
+	/** fileStartPriorities entry not yet computed */
+	private static final int FILE_PRIORITY_UNKNOWN	= Integer.MIN_VALUE +1;
 
 	// The following are added to the base User setting based priorities (for all inspected pieces)
 	/** user select prioritize first/last */
@@ -159,6 +170,10 @@ implements PiecePicker
 	/** periodically updated consistent view of availability for calculating */
 	protected volatile int[]	availability;
 
+	/** availability buckets, tracks availabilityAsynch and is only accessed under availabilityMon */
+	private final PieceRarityIndex	rarityIndex;
+	private boolean				use_indexes	= !LEGACY_SCANS;
+
 	private long				time_last_avail;
 	protected volatile long	availabilityChange;
 	private volatile long		availabilityComputeChange;
@@ -197,6 +212,24 @@ implements PiecePicker
 	/** the priority for starting each piece/base priority for resuming */
 	private int[]				startPriorities;
 
+	/** cached file priority based component of startPriorities, MIN_VALUE if not wanted */
+	private int[]				fileStartPriorities;
+	private long				timeLastFilePriorities;
+
+	/** pieces that currently have a PEPiece */
+	private final Set<Integer>	activePieces = new ConcurrentSkipListSet<>();
+
+	/** start candidates ordered by priority desc, availability asc then piece, see buildPriorityOrder */
+	private long[]				priorityOrder;
+	private int					priorityOrderSize;
+	private long[]				priorityOrderRare;
+	private int					priorityOrderRareSize;
+	private int[]				priorityOrderSource;
+	private int[]				priorityOrderAvail;
+	private int					priorityOrderMinOthers;
+	private boolean				priorityOrderValid;
+	private int[]				candidatePieces	= new int[16];
+
 	protected volatile boolean	hasNeededUndonePiece;
 	protected volatile long		neededUndonePieceChange;
 
@@ -281,6 +314,8 @@ implements PiecePicker
 		// now do stuff related to availability
 		availability =new int[nbPieces];  //always needed
 
+		rarityIndex =new PieceRarityIndex(nbPieces, diskManager.getPieceLength(), nbPieces ==0 ?0 :dmPieces[nbPieces -1].getLength());
+
 
 		hasNeededUndonePiece =false;
 		neededUndonePieceChange =Long.MIN_VALUE;
@@ -299,6 +334,7 @@ implements PiecePicker
 				nbPiecesDone++;
 			}else{
 				hasNeededUndonePiece |=dmPieces[i].calcNeeded();
+				rarityIndex.setLinked(i, true);
 			}
 		}
 		if (hasNeededUndonePiece)
@@ -306,6 +342,12 @@ implements PiecePicker
 
 		updateAvailability();
 
+		for (int i =0; i <nbPieces; i++)
+		{
+			if (pePieces[i] !=null)
+				activePieces.add(i);
+		}
+
 		// with availability charged and primed, ready for peer messages
 		peerListeners =new HashMap();
 		peerManagerListener =new PEPeerManagerListenerImpl();
@@ -353,7 +395,7 @@ implements PiecePicker
 		if ( availabilityAsynch == null ){
 			availabilityAsynch = (int[])availability.clone();
 		}
-		++availabilityAsynch[pieceNumber];
+		rarityIndex.set(pieceNumber, ++availabilityAsynch[pieceNumber]);
 		availabilityChange++;
 		} finally {availabilityMon.exit();}
 
@@ -407,6 +449,7 @@ implements PiecePicker
 			}
 
 			availabilityAsynch	= new_availability;
+			rarityIndex.rebuild(new_availability);
 
 			availabilityDrift =0;
 			availabilityChange++;
@@ -416,6 +459,15 @@ implements PiecePicker
 			return;
 		}
 
+		int allMin =Integer.MAX_VALUE;
+		int allMax =0;
+		int rarestMin =Integer.MAX_VALUE;
+		int total =0;
+		int rarestActive =0;
+		long totalAvail =0;
+		long newBytesUnavailable = 0;
+		boolean indexed =false;
+
 		try
 		{	availabilityMon.enter();
 		time_last_avail =now;
@@ -426,52 +478,84 @@ implements PiecePicker
 			availability 		= availabilityAsynch;
 			availabilityAsynch	= null;
 		}
+
+		// the rarity index matches the snapshot at this point so the stats can be read off its
+		// levels, only the rarest outstanding pieces need to be visited
+		if (use_indexes)
+		{
+			indexed =true;
+			allMin =rarityIndex.getMin();
+			allMax =rarityIndex.getMax();
+			total =nbPieces -rarityIndex.getCount(allMin);
+			totalAvail =rarityIndex.getSum();
+			newBytesUnavailable =rarityIndex.getUnavailableBytes();
+
+			for (int level =Math.max(1, allMin); level <=allMax &&rarestMin ==Integer.MAX_VALUE; level++)
+			{
+				for (int i =rarityIndex.getFirst(level); i !=-1; i =rarityIndex.getNext(i))
+				{
+					final PEPiece	pePiece = pePieces[i];
+					if (dmPieces[i].isDownloadable() && (pePiece == null || pePiece.isRequestable()))
+					{
+						rarestMin =level;
+						break;
+					}
+				}
+			}
+
+			for (int level =Math.max(1, allMin); level <=allMax &&level <=rarestMin; level++)
+			{
+				for (int i =rarityIndex.getFirst(level); i !=-1; i =rarityIndex.getNext(i))
+				{
+					final PEPiece	pePiece = pePieces[i];
+					if (pePiece != null && !pePiece.isRequested() && dmPieces[i].isDownloadable())
+						rarestActive++;
+				}
+			}
+		}
 		} finally {availabilityMon.exit();}
 
-		int i;
-		int allMin =Integer.MAX_VALUE;
-		int allMax =0;
-		int rarestMin =Integer.MAX_VALUE;
-		for (i =0; i <nbPieces; i++)
+		if (!indexed)
 		{
-			final int avail =availability[i];
-			final DiskManagerPiece dmPiece =dmPieces[i];
-			final PEPiece	pePiece = pePieces[i];
+			for (int i =0; i <nbPieces; i++)
+			{
+				final int avail =availability[i];
+				final DiskManagerPiece dmPiece =dmPieces[i];
+				final PEPiece	pePiece = pePieces[i];
+
+				if (avail >0 &&avail <rarestMin && dmPiece.isDownloadable() && (pePiece == null || pePiece.isRequestable()))
+					rarestMin =avail;	// most important targets for near future requests from others
 
-			if (avail >0 &&avail <rarestMin && dmPiece.isDownloadable() && (pePiece == null || pePiece.isRequestable()))
-				rarestMin =avail;	// most important targets for near future requests from others
+				if (avail <allMin)
+					allMin =avail;
+				if (avail > allMax)
+					allMax =avail;
+			}
+
+			for (int i =0; i <nbPieces; i++ )
+			{
+				final int avail =availability[i];
+				final DiskManagerPiece dmPiece =dmPieces[i];
+				final PEPiece	pePiece = pePieces[i];
 
-			if (avail <allMin)
-				allMin =avail;
-			if (avail > allMax)
-				allMax =avail;
+				if (avail >0)
+				{
+					if (avail >allMin)
+						total++;
+					if (avail <=rarestMin &&dmPiece.isDownloadable() && pePiece != null && !pePiece.isRequested())
+						rarestActive++;
+					totalAvail +=avail;
+				} else {
+					newBytesUnavailable += dmPiece.getLength();
+				}
+			}
 		}
+
 		// copy updated local variables into globals
 		globalMin =allMin;
 		globalMax =allMax;
 		globalMinOthers =rarestMin;
 
-		int total =0;
-		int rarestActive =0;
-		long totalAvail =0;
-		long newBytesUnavailable = 0;
-		for (i =0; i <nbPieces; i++ )
-		{
-			final int avail =availability[i];
-			final DiskManagerPiece dmPiece =dmPieces[i];
-			final PEPiece	pePiece = pePieces[i];
-
-			if (avail >0)
-			{
-				if (avail >allMin)
-					total++;
-				if (avail <=rarestMin &&dmPiece.isDownloadable() && pePiece != null && !pePiece.isRequested())
-					rarestActive++;
-				totalAvail +=avail;
-			} else {
-				newBytesUnavailable += dmPiece.getLength();
-			}
-		}
 		// copy updated local variables into globals
 		float newGlobalAvail = (total /(float) nbPieces) +allMin;
 		if ( globalAvail >= 1.0 &&  newGlobalAvail < 1.0 ){
@@ -1239,17 +1323,43 @@ implements PiecePicker
 		// store the latest change indicators before we start making dependent calculations so that a
 		// further change while computing stuff doesn't get lost
 
+		// the file based part of the priorities only changes with user settings and file progress so
+		// is cached between these and otherwise only refreshed periodically. completion priority
+		// depends on file progress too closely to cache
+		final boolean completionPriorityL =completionPriority;
+
+		final boolean refreshFilePriorities =
+			fileStartPriorities ==null ||completionPriorityL ||
+			priorityParamChange !=paramPriorityChange ||priorityFileChange !=filePriorityChange ||
+			now <timeLastFilePriorities ||now -timeLastFilePriorities >TIME_MAX_FILE_PRIORITIES;
+
 		timeLastPriorities =now;
 		priorityParamChange =paramPriorityChange;
 		priorityFileChange =filePriorityChange;
 		priorityAvailChange =availabilityChange;
 
+		final int[]	filePriorities;
+
+		if (!use_indexes)
+		{
+			filePriorities =null;
+			fileStartPriorities =null;
+		} else if (refreshFilePriorities)
+		{
+			filePriorities =new int[nbPieces];
+			Arrays.fill(filePriorities, FILE_PRIORITY_UNKNOWN);
+			fileStartPriorities =filePriorities;
+			timeLastFilePriorities =now;
+		} else
+		{
+			filePriorities =fileStartPriorities;
+		}
+
 		boolean			foundPieceToDownload =false;
 		final int[]		newPriorities   =new int[nbPieces];
 
 		// locals are a tiny bit faster
 		final boolean firstPiecePriorityL =firstPiecePriority;
-		final boolean completionPriorityL =completionPriority;
 
 		final DMPieceMap	pieceMap = diskManager.getPieceMap();
 
@@ -1282,95 +1392,18 @@ implements PiecePicker
 					continue;	// nothing to do for pieces not needing requesting
 				}
 
-				int startPriority =Integer.MIN_VALUE;
+				int startPriority;
 
-				final DMPieceList pieceList =pieceMap.getPieceList(dmPiece.getPieceNumber());
-				final int pieceListSize =pieceList.size();
-				for (int j =0; j <pieceListSize; j++)
+				if (filePriorities ==null)
+				{
+					startPriority =computeFileStartPriority(i, pieceMap, firstPiecePriorityL, completionPriorityL);
+				} else
 				{
-					final DiskManagerFileInfo fileInfo =pieceList.get(j).getFile();
-					final long downloaded =fileInfo.getDownloaded();
-					final long length =fileInfo.getLength();
-					if (length >0 &&downloaded <length &&!fileInfo.isSkipped())
+					startPriority =filePriorities[i];
+					if (startPriority ==FILE_PRIORITY_UNKNOWN)
 					{
-						int priority =0;
-						// user option "prioritize first and last piece"
-						// TODO: should prioritize ~10% from edges of file
-
-						boolean hasFirstLastPriority = false;
-
-						if (firstPiecePriorityL &&fileInfo.getNbPieces() >FIRST_PIECE_MIN_NB){
-
-							/* backed out for the moment - reverting to old first/last piece only
-                        	int lastFirstPiece = fileInfo.getFirstPieceNumber() + FIRST_PIECE_RANGE_PERCENT * (fileInfo.getLastPieceNumber() - fileInfo.getFirstPieceNumber()) / 100;
-
-                        	if ( (i >=fileInfo.getFirstPieceNumber() && i<= lastFirstPiece ) ) {
-                                priority +=PRIORITY_W_FIRSTLAST + 10 * (lastFirstPiece - i) ;
-						}
-
-                            if( i ==fileInfo.getLastPieceNumber() ) {
-                            	priority +=PRIORITY_W_FIRSTLAST;
-                            }
-							 */
-
-							if (i == fileInfo.getFirstPieceNumber() ||i == fileInfo.getLastPieceNumber()){
-								hasFirstLastPriority = true;
-							}
-						}
-
-						// if the file is high-priority
-						// startPriority +=(1000 *fileInfo.getPriority()) /255;
-
-						int file_priority = fileInfo.getPriority();
-
-						int max = Math.max( file_priority, max_file_priority );
-						int min = Math.min( file_priority, min_file_priority );
-
-						int	range = max - min;
-
-						if ( range > 0 ){
-
-							int	relative_file_priority = file_priority - min;
-
-							priority += PRIORITY_W_FILE_BASE;
-
-							int adjustment;
-
-							if ( hasFirstLastPriority ){
-
-									// one less than the next higher priority file
-
-								adjustment = (( PRIORITY_W_FILE_RANGE * ( relative_file_priority+1 )) / range ) - 1;
-
-							}else{
-
-								adjustment = ( PRIORITY_W_FILE_RANGE*relative_file_priority ) / range;
-							}
-
-							priority += adjustment;
-
-						}else{
-
-							if ( hasFirstLastPriority ){
-
-								priority += PRIORITY_W_FIRSTLAST;
-							}
-						}
-
-						if ( completionPriorityL ){
-
-							final long percent =(1000 *downloaded) /length;
-
-							if ( percent >=900 ){
-
-								priority +=(PRIORITY_W_COMPLETION *downloaded) /diskManager.getTotalLength();
-							}
-						}
-
-						if ( priority > startPriority ){
-
-							startPriority = priority;
-						}
+						startPriority =computeFileStartPriority(i, pieceMap, firstPiecePriorityL, completionPriorityL);
+						filePriorities[i] =startPriority;
 					}
 				}
 
@@ -1501,6 +1534,112 @@ implements PiecePicker
 	}
 
 
+	/**
+	 * The user/file setting based part of a piece's start priority, Integer.MIN_VALUE if none of
+	 * the piece's files want it
+	 */
+	private int
+	computeFileStartPriority(
+		final int			pieceNumber,
+		final DMPieceMap	pieceMap,
+		final boolean		firstPiecePriorityL,
+		final boolean		completionPriorityL )
+	{
+		int startPriority =Integer.MIN_VALUE;
+
+		final DMPieceList pieceList =pieceMap.getPieceList(pieceNumber);
+		final int pieceListSize =pieceList.size();
+		for (int j =0; j <pieceListSize; j++)
+		{
+			final DiskManagerFileInfo fileInfo =pieceList.get(j).getFile();
+			final long downloaded =fileInfo.getDownloaded();
+			final long length =fileInfo.getLength();
+			if (length >0 &&downloaded <length &&!fileInfo.isSkipped())
+			{
+				int priority =0;
+				// user option "prioritize first and last piece"
+				// TODO: should prioritize ~10% from edges of file
+
+				boolean hasFirstLastPriority = false;
+
+				if (firstPiecePriorityL &&fileInfo.getNbPieces() >FIRST_PIECE_MIN_NB){
+
+					/* backed out for the moment - reverting to old first/last piece only
+					int lastFirstPiece = fileInfo.getFirstPieceNumber() + FIRST_PIECE_RANGE_PERCENT * (fileInfo.getLastPieceNumber() - fileInfo.getFirstPieceNumber()) / 100;
+
+					if ( (pieceNumber >=fileInfo.getFirstPieceNumber() && pieceNumber<= lastFirstPiece ) ) {
+						priority +=PRIORITY_W_FIRSTLAST + 10 * (lastFirstPiece - pieceNumber) ;
+					}
+
+					if( pieceNumber ==fileInfo.getLastPieceNumber() ) {
+						priority +=PRIORITY_W_FIRSTLAST;
+					}
+					 */
+
+					if (pieceNumber == fileInfo.getFirstPieceNumber() ||pieceNumber == fileInfo.getLastPieceNumber()){
+						hasFirstLastPriority = true;
+					}
+				}
+
+				// if the file is high-priority
+				// startPriority +=(1000 *fileInfo.getPriority()) /255;
+
+				int file_priority = fileInfo.getPriority();
+
+				int max = Math.max( file_priority, max_file_priority );
+				int min = Math.min( file_priority, min_file_priority );
+
+				int	range = max - min;
+
+				if ( range > 0 ){
+
+					int	relative_file_priority = file_priority - min;
+
+					priority += PRIORITY_W_FILE_BASE;
+
+					int adjustment;
+
+					if ( hasFirstLastPriority ){
+
+							// one less than the next higher priority file
+
+						adjustment = (( PRIORITY_W_FILE_RANGE * ( relative_file_priority+1 )) / range ) - 1;
+
+					}else{
+
+						adjustment = ( PRIORITY_W_FILE_RANGE*relative_file_priority ) / range;
+					}
+
+					priority += adjustment;
+
+				}else{
+
+					if ( hasFirstLastPriority ){
+
+						priority += PRIORITY_W_FIRSTLAST;
+					}
+				}
+
+				if ( completionPriorityL ){
+
+					final long percent =(1000 *downloaded) /length;
+
+					if ( percent >=900 ){
+
+						priority +=(PRIORITY_W_COMPLETION *downloaded) /diskManager.getTotalLength();
+					}
+				}
+
+				if ( priority > startPriority ){
+
+					startPriority = priority;
+				}
+			}
+		}
+
+		return startPriority;
+	}
+
 	private boolean isRarestOverride()
 	{
 		final int nbSeeds =peerControl.getNbSeeds();
@@ -2092,9 +2231,27 @@ implements PiecePicker
 
         CopyOnWriteSet<Integer>	forced = forced_pieces;
 
+        	// in the common case only the active pieces and the best group of pieces to start can
+        	// affect the outcome so just those are fed through the selection below rather than
+        	// everything the peer has
+
+        int	nbCandidates =-1;
+
+        if ( use_indexes && peerPriorities == null && forced == null && sequentialDownload == 0 &&
+        	( request_hint_piece_number == -1 || !enable_request_hints )){
+
+        	nbCandidates = collectRequestCandidates( peerHavePieces, rarestAllowed );
+        }
+
+        final int[]	candidates	= nbCandidates <0 ?null :candidatePieces;
+        final int	loopStart	= candidates ==null ?startI :0;
+        final int	loopEnd		= candidates ==null ?endI :nbCandidates -1;
+
 			// Try to continue a piece already loaded, according to priority
 
-        for (i =startI; i <=endI; i++){
+        for (int k =loopStart; k <=loopEnd; k++){
+
+        	i = candidates ==null ?k :candidates[k];
 
         		// is the piece available from this peer?
 
@@ -2339,6 +2496,154 @@ implements PiecePicker
 	}
 
 
+	/**
+	 * Gathers, in ascending piece order, the pieces getRequestCandidate needs to consider for the
+	 * peer: the active ones it has plus the group of pieces it has that tie for the best start
+	 * choice (highest priority rarest pieces if rarest is allowed and there are any, otherwise
+	 * highest priority then lowest availability)
+	 * @return number of pieces in candidatePieces, -1 if the priority order isn't usable
+	 */
+	private int
+	collectRequestCandidates(
+		final BitFlags	peerHavePieces,
+		final boolean	rarestAllowed )
+	{
+		if (!checkPriorityOrder())
+			return -1;
+
+		final boolean[]	peerFlags =peerHavePieces.flags;
+		int	count =0;
+
+		for (final Integer piece: activePieces)
+		{
+			final int i =piece;
+			if (peerFlags[i] &&pePieces[i] !=null)
+				count =addRequestCandidate(count, i);
+		}
+
+		boolean found =false;
+		if (rarestAllowed)
+		{
+			final int before =count;
+			count =addStartGroup(count, priorityOrderRare, priorityOrderRareSize, peerFlags, 39);
+			found =count >before;
+		}
+		if (!found)
+			count =addStartGroup(count, priorityOrder, priorityOrderSize, peerFlags, 26);
+
+		Arrays.sort(candidatePieces, 0, count);
+
+		return count;
+	}
+
+	/**
+	 * Walks an ordered key list to the first piece the peer can start and adds it along with the
+	 * following ones that share its key bits above the shift
+	 */
+	private int
+	addStartGroup(
+		int				count,
+		final long[]	order,
+		final int		size,
+		final boolean[]	peerFlags,
+		final int		groupShift )
+	{
+		long group =-1;
+		for (int k =0; k <size; k++)
+		{
+			final long key =order[k];
+			if (group !=-1 &&(key >>>groupShift) !=group)
+				break;
+			final int i =(int)(key &((1 <<26) -1));
+			if (peerFlags[i] &&pePieces[i] ==null &&dmPieces[i].isDownloadable())
+			{
+				group =key >>>groupShift;
+				count =addRequestCandidate(count, i);
+			}
+		}
+		return count;
+	}
+
+	private int
+	addRequestCandidate(
+		final int	count,
+		final int	pieceNumber )
+	{
+		if (count ==candidatePieces.length)
+			candidatePieces =Arrays.copyOf(candidatePieces, count *2);
+		candidatePieces[count] =pieceNumber;
+		return count +1;
+	}
+
+	/**
+	 * Rebuilds the ordered start candidates if the priorities, the availability snapshot or
+	 * the rarest level have moved on since they were built. Keys pack (inverted) start priority,
+	 * availability (clamped) and piece number so a plain sort orders them as the start selection
+	 * in getRequestCandidate would prefer them
+	 * @return false if some priority is out of range for the key packing
+	 */
+	private boolean
+	checkPriorityOrder()
+	{
+		final int[]	priorities =startPriorities;
+		final int[]	avails =availability;
+		final int	minOthers =globalMinOthers;
+
+		if (priorities ==priorityOrderSource &&avails ==priorityOrderAvail &&minOthers ==priorityOrderMinOthers)
+			return priorityOrderValid;
+
+		priorityOrderSource =priorities;
+		priorityOrderAvail =avails;
+		priorityOrderMinOthers =minOthers;
+		priorityOrderValid =false;
+
+		if (priorities ==null)
+			return false;
+
+		if (priorityOrder ==null ||priorityOrder.length <nbPieces)
+			priorityOrder =new long[nbPieces];
+		final long[]	order =priorityOrder;
+		int	size =0;
+
+		for (int i =0; i <nbPieces; i++)
+		{
+			// pick up any active piece whose addition we weren't told about
+			if (pePieces[i] !=null &&!activePieces.contains(i))
+				activePieces.add(i);
+			final int priority =priorities[i];
+			if (priority <0 ||dmPieces[i].isDone())
+				continue;
+			if (priority >=PRIORITY_ORDER_LIMIT)
+			{
+				priorityOrderSize =0;
+				priorityOrderRareSize =0;
+				return false;
+			}
+			final int avail =Math.min(Math.max(avails[i], 1), PRIORITY_ORDER_AVAIL_MAX);
+			order[size++] =((long)(PRIORITY_ORDER_LIMIT -1 -priority) <<39) |((long)avail <<26) |i;
+		}
+
+		Arrays.sort(order, 0, size);
+
+		if (priorityOrderRare ==null ||priorityOrderRare.length <nbPieces)
+			priorityOrderRare =new long[nbPieces];
+		final long[]	rare =priorityOrderRare;
+		int	rareSize =0;
+
+		for (int k =0; k <size; k++)
+		{
+			final int i =(int)(order[k] &((1 <<26) -1));
+			if (Math.max(avails[i], 1) <=minOthers)
+				rare[rareSize++] =order[k];
+		}
+
+		priorityOrderSize =size;
+		priorityOrderRareSize =rareSize;
+		priorityOrderValid =true;
+
+		return true;
+	}
+
 	/**
 	 * @param startCandidates BitFlags of potential candidates to choose from
 	 * @return int the piece number that was chosen to be started. Note it's possible for
@@ -3163,6 +3468,18 @@ implements PiecePicker
 			final PEPeerListenerImpl peerListener =(PEPeerListenerImpl)peerListeners.remove(peer);
 			peer.removeListener(peerListener);
 		}
+
+		@Override
+		public final void pieceAdded(final PEPeerManager manager, PEPiece piece, PEPeer for_peer)
+		{
+			activePieces.add(piece.getPieceNumber());
+		}
+
+		@Override
+		public final void pieceRemoved(final PEPeerManager manager, PEPiece piece)
+		{
+			activePieces.remove(piece.getPieceNumber());
+		}
 	}
 
 	/**
@@ -3214,7 +3531,7 @@ implements PiecePicker
 			for (int i =peerHavePieces.start; i <=peerHavePieces.end; i++)
 			{
 				if ( peerHavePieces.flags[i] ){
-					++availabilityAsynch[i];
+					rarityIndex.set(i, ++availabilityAsynch[i]);
 				}
 			}
 			availabilityChange++;
@@ -3242,7 +3559,7 @@ implements PiecePicker
 				if (peerHavePieces.flags[i])
 				{
 					if (availabilityAsynch[i] >(dmPieces[i].isDone() ?1 :0))
-						--availabilityAsynch[i];
+						rarityIndex.set(i, --availabilityAsynch[i]);
 					else
 						availabilityDrift++;
 				}
@@ -3309,6 +3626,10 @@ implements PiecePicker
 			if (dmPiece.isDone())
 			{
 				addHavePiece(null,pieceNumber);
+				try
+				{   availabilityMon.enter();
+				rarityIndex.setLinked(pieceNumber, false);
+				} finally {availabilityMon.exit();}
 				nbPiecesDone++;
 				if (nbPiecesDone >=nbPieces)
 					checkDownloadablePiece();
@@ -3320,9 +3641,10 @@ implements PiecePicker
 					availabilityAsynch = (int[])availability.clone();
 				}
 				if (availabilityAsynch[pieceNumber] >0)
-					--availabilityAsynch[pieceNumber];
+					rarityIndex.set(pieceNumber, --availabilityAsynch[pieceNumber]);
 				else
 					availabilityDrift++;
+				rarityIndex.setLinked(pieceNumber, true);
 				availabilityChange++;
 				} finally {availabilityMon.exit();}
 				nbPiecesDone--;
@@ -0,0 +1,350 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.peermanager.piecepicker.impl;
+
+import java.util.Arrays;
+
+/**
+ * Pieces bucketed by availability, maintained as availability changes rather than rebuilt by
+ * scanning. Keeps a count per availability level (so min/max/sums are O(levels)) and, for pieces
+ * that aren't done, a doubly linked list per level so the rarest outstanding pieces can be
+ * walked in ascending availability without touching the rest.
+ * <p>
+ * Not thread safe - the picker only uses it while holding its availability monitor
+ */
+
+class
+PieceRarityIndex
+{
+	private static final int	NONE = -1;
+
+	private final int		nb_pieces;
+	private final long		piece_length;
+	private final long		last_piece_length;
+
+	private final int[]		avail;
+	private final boolean[]	linked;
+	private final int[]		next;
+	private final int[]		prev;
+
+	private int[]			heads	= new int[8];
+	private int[]			counts	= new int[8];
+
+	private int				min;
+	private int				max;
+	private long			sum;
+	private int				nb_unavailable;
+
+	PieceRarityIndex(
+		int		_nb_pieces,
+		long	_piece_length,
+		long	_last_piece_length )
+	{
+		nb_pieces			= _nb_pieces;
+		piece_length		= _piece_length;
+		last_piece_length	= _last_piece_length;
+
+		avail	= new int[nb_pieces];
+		linked	= new boolean[nb_pieces];
+		next	= new int[nb_pieces];
+		prev	= new int[nb_pieces];
+
+		Arrays.fill( heads, NONE );
+
+		rebuild( new int[nb_pieces] );
+	}
+
+		/**
+		 * resets all levels from the supplied availability, link state is retained
+		 */
+
+	void
+	rebuild(
+		int[]	availability )
+	{
+		int	top = 0;
+
+		for ( int a: availability ){
+
+			if ( a > top ){
+
+				top = a;
+			}
+		}
+
+		ensureLevel( top );
+
+		Arrays.fill( heads, NONE );
+		Arrays.fill( counts, 0 );
+
+		sum				= 0;
+		nb_unavailable	= 0;
+
+		for ( int i=nb_pieces-1;i>=0;i--){
+
+			int	a = Math.max( 0, availability[i] );
+
+			avail[i] = a;
+
+			counts[a]++;
+
+			sum += a;
+
+			if ( a == 0 ){
+
+				nb_unavailable++;
+			}
+
+			if ( linked[i] ){
+
+				link( i );
+			}
+		}
+
+		min = 0;
+
+		while( min < top && counts[min] == 0 ){
+
+			min++;
+		}
+
+		max = top;
+	}
+
+		/**
+		 * Sets whether the piece is on the level lists (i.e. is still of interest to us)
+		 */
+
+	void
+	setLinked(
+		int			piece,
+		boolean		is_linked )
+	{
+		if ( linked[piece] == is_linked ){
+
+			return;
+		}
+
+		linked[piece] = is_linked;
+
+		if ( is_linked ){
+
+			link( piece );
+
+		}else{
+
+			unlink( piece );
+		}
+	}
+
+	void
+	set(
+		int		piece,
+		int		value )
+	{
+		int	old = avail[piece];
+
+		if ( value < 0 ){
+
+			value = 0;
+		}
+
+		if ( old == value ){
+
+			return;
+		}
+
+		ensureLevel( value );
+
+		if ( linked[piece] ){
+
+			unlink( piece );
+		}
+
+		counts[old]--;
+		counts[value]++;
+
+		avail[piece] = value;
+
+		sum += value - old;
+
+		if ( old == 0 ){
+
+			nb_unavailable--;
+
+		}else if ( value == 0 ){
+
+			nb_unavailable++;
+		}
+
+		if ( linked[piece] ){
+
+			link( piece );
+		}
+
+		if ( value < min ){
+
+			min = value;
+
+		}else if ( old == min && counts[old] == 0 ){
+
+			while( min < max && counts[min] == 0 ){
+
+				min++;
+			}
+		}
+
+		if ( value > max ){
+
+			max = value;
+
+		}else if ( old == max && counts[old] == 0 ){
+
+			while( max > min && counts[max] == 0 ){
+
+				max--;
+			}
+		}
+	}
+
+	int
+	getMin()
+	{
+		return( min );
+	}
+
+	int
+	getMax()
+	{
+		return( max );
+	}
+
+	long
+	getSum()
+	{
+		return( sum );
+	}
+
+	int
+	getCount(
+		int		level )
+	{
+		return( level < counts.length ? counts[level] : 0 );
+	}
+
+	long
+	getUnavailableBytes()
+	{
+		if ( nb_unavailable == 0 ){
+
+			return( 0 );
+		}
+
+		long	bytes = (long)nb_unavailable * piece_length;
+
+		if ( nb_pieces > 0 && avail[nb_pieces-1] == 0 ){
+
+			bytes += last_piece_length - piece_length;
+		}
+
+		return( bytes );
+	}
+
+		/**
+		 * @return first linked piece at the given level, -1 if none
+		 */
+
+	int
+	getFirst(
+		int		level )
+	{
+		return( level < heads.length ? heads[level] : NONE );
+	}
+
+		/**
+		 * @return next linked piece at the same level, -1 if none
+		 */
+
+	int
+	getNext(
+		int		piece )
+	{
+		return( next[piece] );
+	}
+
+	private void
+	link(
+		int		piece )
+	{
+		int	level	= avail[piece];
+		int	head	= heads[level];
+
+		prev[piece] = NONE;
+		next[piece] = head;
+
+		if ( head != NONE ){
+
+			prev[head] = piece;
+		}
+
+		heads[level] = piece;
+	}
+
+	private void
+	unlink(
+		int		piece )
+	{
+		int	p = prev[piece];
+		int	n = next[piece];
+
+		if ( p == NONE ){
+
+			heads[avail[piece]] = n;
+
+		}else{
+
+			next[p] = n;
+		}
+
+		if ( n != NONE ){
+
+			prev[n] = p;
+		}
+
+		prev[piece] = NONE;
+		next[piece] = NONE;
+	}
+
+	private void
+	ensureLevel(
+		int		level )
+	{
+		if ( level >= heads.length ){
+
+			int	old_len = heads.length;
+
+			int	new_len = Math.max( level + 1, old_len * 2 );
+
+			heads	= Arrays.copyOf( heads, new_len );
+			counts	= Arrays.copyOf( counts, new_len );
+
+			Arrays.fill( heads, old_len, new_len, NONE );
+		}
+	}
+}
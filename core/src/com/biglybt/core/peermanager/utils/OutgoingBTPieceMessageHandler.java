@@ -21,6 +21,8 @@ package com.biglybt.core.peermanager.utils;
 
 import java.util.*;
 
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.config.ParameterListener;
 import com.biglybt.core.disk.DiskManagerReadRequest;
 import com.biglybt.core.disk.DiskManagerReadRequestListener;
 import com.biglybt.core.networkmanager.OutgoingMessageQueue;
@@ -42,6 +44,24 @@ import com.biglybt.core.util.DirectByteBuffer;
  * does, before passing the messages onto the outgoing message queue for transmission.
  */
 public class OutgoingBTPieceMessageHandler {
+
+  static volatile boolean	zero_copy_enabled;
+
+  static{
+	  COConfigurationManager.addAndFireParameterListener(
+		"diskmanager.perf.read.mmap.upload",
+		new ParameterListener()
+		{
+			@Override
+			public void
+			parameterChanged(
+				String	name )
+			{
+				zero_copy_enabled = COConfigurationManager.getBooleanParameter( name );
+			}
+		});
+  }
+
   private final PEPeer					peer;
   private final OutgoingMessageQueue 	outgoing_message_queue;
   private 		byte					piece_version;
@@ -53,6 +73,7 @@ public class OutgoingBTPieceMessageHandler {
   private final AEMonitor	lock_mon	= new AEMonitor( "OutgoingBTPieceMessageHandler:lock");
   private boolean destroyed = false;
   private int request_read_ahead = 2;
+  private boolean zero_copy_allowed;
 
   final OutgoingBTPieceMessageHandlerAdapter	adapter;
 
@@ -85,6 +106,18 @@ public class OutgoingBTPieceMessageHandler {
 	  piece_version = version;
   }
 
+  	/**
+  	 * Piece data can be sent straight from a mapping of the file when nothing
+  	 * (e.g. an encryption filter) needs to transform it on the way out
+  	 */
+
+  public void
+  setZeroCopyAllowed(
+	boolean	allowed )
+  {
+	  zero_copy_allowed = allowed;
+  }
+
 
 
   private final DiskManagerReadRequestListener read_req_listener = new DiskManagerReadRequestListener() {
@@ -369,6 +402,9 @@ public class OutgoingBTPieceMessageHandler {
 
   		while( loading_messages.size() + queued_messages.size() < request_read_ahead && !requests.isEmpty() && !destroyed ) {
   			DiskManagerReadRequest dmr = (DiskManagerReadRequest)requests.removeFirst();
+  			if ( zero_copy_allowed && zero_copy_enabled ){
+  				dmr.setZeroCopy( true );
+  			}
   			loading_messages.add( dmr );
   			if( to_submit == null )  to_submit = new ArrayList();
   			to_submit.add( dmr );
@@ -70,6 +70,12 @@ CoreStats
 	public static final String ST_NET_WRITE_CONTROL_READY_CON_COUNT		= "net.write.control.ready.con.count";
 	public static final String ST_NET_WRITE_CONTROL_READY_BYTE_COUNT	= "net.write.control.ready.byte.count";
 
+	public static final String ST_NET_WRITE_GATHER_WRITE_COUNT			= "net.write.gather.write.count";
+	public static final String ST_NET_WRITE_GATHER_MESSAGE_COUNT		= "net.write.gather.message.count";
+	public static final String ST_NET_WRITE_GATHER_BYTE_COUNT			= "net.write.gather.byte.count";
+	public static final String ST_NET_WRITE_GATHER_SAVED_COUNT			= "net.write.gather.saved.count";
+	public static final String ST_NET_WRITE_GATHER_AVERAGE_BYTES		= "net.write.gather.average.bytes";
+
 	public static final String ST_NET_READ_CONTROL_LOOP_COUNT			= "net.read.control.loop.count";
 	public static final String ST_NET_READ_CONTROL_NP_COUNT				= "net.read.control.np.count";
 	public static final String ST_NET_READ_CONTROL_P_COUNT				= "net.read.control.p.count";
@@ -168,6 +174,12 @@ CoreStats
 		{ ST_NET_WRITE_CONTROL_READY_CON_COUNT,		POINT },
 		{ ST_NET_WRITE_CONTROL_READY_BYTE_COUNT,	POINT },
 
+		{ ST_NET_WRITE_GATHER_WRITE_COUNT,			CUMULATIVE },
+		{ ST_NET_WRITE_GATHER_MESSAGE_COUNT,		CUMULATIVE },
+		{ ST_NET_WRITE_GATHER_BYTE_COUNT,			CUMULATIVE },
+		{ ST_NET_WRITE_GATHER_SAVED_COUNT,			CUMULATIVE },
+		{ ST_NET_WRITE_GATHER_AVERAGE_BYTES,		POINT },
+
 		{ ST_NET_READ_CONTROL_LOOP_COUNT,			CUMULATIVE },
 		{ ST_NET_READ_CONTROL_P_COUNT,				CUMULATIVE },
 		{ ST_NET_READ_CONTROL_NP_COUNT,				CUMULATIVE },
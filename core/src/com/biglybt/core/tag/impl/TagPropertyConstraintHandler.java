@@ -62,6 +62,9 @@ TagPropertyConstraintHandler
 	
 	private static final String		EVAL_CTX_COLOURS = "colours";
 	
+	private static final int		TIMER_PERIOD		= 30*1000;
+	private static final int		FULL_SWEEP_TICKS	= 10;
+	
 	private final Core core;
 	private final TagManagerImpl	tag_manager;
 
@@ -105,6 +108,11 @@ TagPropertyConstraintHandler
 		
 	private TimerEventPeriodic		timer;
 
+		// only accessed on the dispatcher
+	
+	private int							periodic_ticks;
+	private Set<DownloadManager>		last_active = new IdentityHashSet<>();
+	
 	private
 	TagPropertyConstraintHandler()
 	{
@@ -402,7 +410,7 @@ TagPropertyConstraintHandler
 				timer =
 					SimpleTimer.addPeriodicEvent(
 						"tag:constraint:timer",
-						30*1000,
+						TIMER_PERIOD,
 						new TimerEventPerformer() {
 
 							@Override
@@ -812,14 +820,66 @@ TagPropertyConstraintHandler
 						cons = new ArrayList<>(constrained_tags.values());
 					}
 
+						// constraints are applied as downloads are added, change state and change tags so
+						// the periodic pass only needs to pick up values that drift: anything time based for
+						// all downloads and running stats for those that are, or just were, active. The rest
+						// waits for the occasional full sweep to pick up changes that don't raise events
+						// (renames, moves, flag changes)
+					
+					boolean	full_sweep = periodic_ticks++ % FULL_SWEEP_TICKS == 0;
+					
+					List<DownloadManager>	active_dms = getRecentlyActive( dms );
+					
 					for ( TagConstraint con: cons ){
 
-						con.apply( dms );
+						int	level = con.getDependsOnLevel();
+						
+						if ( full_sweep || level == TagConstraint.DEP_TIME ){
+							
+							con.apply( dms );
+							
+						}else if ( level == TagConstraint.DEP_RUNNING ){
+							
+							con.apply( active_dms );
+						}
 					}
 				}
 			});
 	}
 
+	private List<DownloadManager>
+	getRecentlyActive(
+		List<DownloadManager>	dms )
+	{
+			// include those active last time around so final values are seen once a download stops
+		
+		Set<DownloadManager>	active = new IdentityHashSet<>();
+		
+		List<DownloadManager>	result = new ArrayList<>();
+		
+		for ( DownloadManager dm: dms ){
+			
+			int	state = dm.getState();
+			
+			if ( 	state != DownloadManager.STATE_STOPPED &&
+					state != DownloadManager.STATE_QUEUED &&
+					state != DownloadManager.STATE_ERROR ){
+				
+				active.add( dm );
+				
+				result.add( dm );
+				
+			}else if ( last_active.contains( dm )){
+				
+				result.add( dm );
+			}
+		}
+		
+		last_active = active;
+		
+		return( result );
+	}
+
 	private TagConstraint.ConstraintExpr
 	compileConstraint(
 		String		expr )
@@ -891,8 +951,14 @@ TagPropertyConstraintHandler
 		private Set<Tag>		dependent_on_tags;
 		private boolean			must_check_dependencies;
 		
+		private boolean			uses_tags;
+		private boolean			uses_colours;
+		
 		private Average			activity_average = Average.getInstance( 1000, 60 );
 		
+		private volatile long	eval_count;
+		private volatile long	eval_nanos;
+		
 		private
 		TagConstraint(
 			TagPropertyConstraintHandler	_handler,
@@ -957,6 +1023,13 @@ TagPropertyConstraintHandler
 		{
 			String result = activity_average.getAverage() + "/" +  TimeFormatter.getLongSuffix( TimeFormatter.TS_SECOND );
 			
+			long	count = eval_count;
+			
+			if ( count > 0 ){
+				
+				result += ", " + count + " evals, avg " + ( eval_nanos/count/1000 ) + "\u00b5s";
+			}
+			
 			if ( Constants.IS_CVS_VERSION ){
 				
 				result +=  ", " + "DS=" + depends_on_download_state + ", DL=" + depends_on_level;
@@ -1029,6 +1102,12 @@ TagPropertyConstraintHandler
 			return( depends_on_download_state );
 		}			
 		
+		private int
+		getDependsOnLevel()
+		{
+			return( depends_on_level );
+		}
+		
 		private ConstraintExpr
 		compileStart(
 			String						str,
@@ -1498,8 +1577,6 @@ TagPropertyConstraintHandler
 								
 				activity_average.addValue( 1 );
 				
-				List<Tag> dm_tags = handler.tag_manager.getTagsForTaggable( dm );
-	
 				if ( expr == null ){
 				
 					if ( debug!=null){
@@ -1509,13 +1586,23 @@ TagPropertyConstraintHandler
 					return( false );
 				}
 				
-				Map<String,Object>	context = new HashMap<>();
+				long	start = SystemTime.getHighPrecisionCounter();
+				
+					// the tag list and context are only needed by a few functions, skip them otherwise
+				
+				List<Tag> dm_tags = uses_tags?handler.tag_manager.getTagsForTaggable( dm ):null;
+	
+				Map<String,Object>	context = uses_colours?new HashMap<String,Object>():null;
 				
 				boolean result = (Boolean)expr.eval( context, dm, dm_tags, debug );
 				
+				eval_nanos += SystemTime.getHighPrecisionCounter() - start;
+				
+				eval_count++;
+				
 				if ( result ){
 					
-					long[] colours = (long[])context.get( EVAL_CTX_COLOURS );
+					long[] colours = context==null?null:(long[])context.get( EVAL_CTX_COLOURS );
 					
 					tag.setColors( colours );
 				}
@@ -1541,6 +1628,33 @@ TagPropertyConstraintHandler
 			getString();
 		}
 
+			/**
+			 * A keyword argument resolved at compile time
+			 */
+		
+		private static final class
+		ConstraintKeyword
+		{
+			private final String	name;
+			private final int		kw;
+			
+			private
+			ConstraintKeyword(
+				String		_name,
+				int			_kw )
+			{
+				name	= _name;
+				kw		= _kw;
+			}
+			
+			@Override
+			public String
+			toString()
+			{
+				return( name );
+			}
+		}
+		
 		private static class
 		ConstraintExprTrue
 			implements ConstraintExpr
@@ -2255,6 +2369,13 @@ TagPropertyConstraintHandler
 							
 							for ( Tag t: tags ){
 								
+								if ( t.getTagType().getTagType() != TagType.TT_DOWNLOAD_MANUAL ){
+									
+										// we only get told about membership changes for manual tags
+									
+									depends_on_level = DEP_TIME;
+								}
+								
 								if ( t.getTagType().hasTagTypeFeature( TagFeature.TF_PROPERTIES )){
 									
 									if ( dependent_on_tags == null ){
@@ -2538,6 +2659,111 @@ TagPropertyConstraintHandler
 					throw( new RuntimeException( "Invalid parameters for function '" + func_name + "': " + params_expr.getString()));
 
 				}
+				
+					// dependencies beyond those of the keywords used, these decide when the periodic
+					// re-evaluation needs to visit a download
+				
+				switch( fn_type ){
+					case FT_HAS_TAG:{
+						
+						uses_tags = true;
+						
+						break;
+					}
+					case FT_HAS_TAG_GROUP:{
+						
+						uses_tags = true;
+						
+						depends_on_level = DEP_TIME;
+						
+						break;
+					}
+					case FT_HAS_TAG_AGE:
+					case FT_COUNT_TAG:
+					case FT_TAG_POSITION:
+					case FT_IS_NEW:
+					case FT_JAVASCRIPT:
+					case FT_GET_CONFIG:{
+						
+						depends_on_level = DEP_TIME;
+						
+						break;
+					}
+					case FT_CAN_ARCHIVE:{
+						
+						depends_on_download_state = true;
+						
+						depends_on_level = Math.max( depends_on_level, DEP_RUNNING );
+						
+						break;
+					}
+					case FT_SET_COLOURS:{
+						
+						uses_colours = true;
+						
+						break;
+					}
+					default:{
+						
+						if ( depends_on_download_state ){
+						
+							depends_on_level = Math.max( depends_on_level, DEP_RUNNING );
+						}
+					}
+				}
+				
+					// resolve keyword arguments now rather than looking them up on every evaluation
+				
+				switch( fn_type ){
+					case FT_GE:
+					case FT_GT:
+					case FT_LE:
+					case FT_LT:
+					case FT_EQ:
+					case FT_NEQ:{
+						
+						resolveKeyword( 0, true );
+						resolveKeyword( 1, true );
+						
+						break;
+					}
+					case FT_CONTAINS:{
+						
+						resolveKeyword( 0, false );
+						resolveKeyword( 1, false );
+						
+						break;
+					}
+					case FT_LOWERCASE:
+					case FT_MATCHES:{
+						
+						resolveKeyword( 0, false );
+						
+						break;
+					}
+				}
+			}
+
+			private void
+			resolveKeyword(
+				int			index,
+				boolean		numeric )
+			{
+				Object arg = params[index];
+				
+				if ( arg instanceof String ){
+					
+					String str = (String)arg;
+					
+						// numeric keywords have always been case insensitive, string ones not
+					
+					int[] kw_details = keyword_map.get( numeric?str.toLowerCase( Locale.US ):str );
+					
+					if ( kw_details != null ){
+						
+						params[index] = new ConstraintKeyword( str, kw_details[0] );
+					}
+				}
 			}
 
 			@Override
@@ -3305,6 +3531,20 @@ TagPropertyConstraintHandler
 						
 						return( new String[]{ res });
 						
+					}else if ( arg instanceof ConstraintKeyword ){
+						
+						ConstraintKeyword keyword = (ConstraintKeyword)arg;
+						
+						String[] result = getStringKeyword( dm, keyword.kw );
+						
+						if ( result == null ){
+		
+							throw( new Exception( "Invalid constraint string: " + keyword.name ));
+							
+						}else{
+							
+							return( result );
+						}
 					}else{
 						
 						throw( new Exception( "Invalid constraint string: " + arg ));
@@ -3326,162 +3566,164 @@ TagPropertyConstraintHandler
 				DownloadManager		dm,
 				String				str )
 			{
-				int		kw;
-				
 				if ( GeneralUtils.startsWithDoubleQuote( str ) && GeneralUtils.endsWithDoubleQuote( str )){
 
 					return( new String[]{ str.substring( 1, str.length() - 1 ).replace("\\\"", "\"")});
-
-				}else if ( str.equals( "name" )){
-
-					kw = KW_NAME;
-					
-					return( new String[]{ dm.getDisplayName()});
-
-				}else if ( str.equals( "file_names" ) || str.equals( "filenames" )){
-					
-					kw = KW_FILE_NAMES;
-					
-					String[] result = (String[])dm.getUserData( DM_FILE_NAMES );
+				}
+				
+				int[] kw_details = keyword_map.get( str );
+				
+				if ( kw_details == null ){
 					
-					if ( result == null ){
+					return( null );
+				}
+				
+				return( getStringKeyword( dm, kw_details[0] ));
+			}
+			
+			private String[]
+			getStringKeyword(
+				DownloadManager		dm,
+				int					kw )
+			{
+				switch( kw ){
+					case KW_NAME:{
 						
-						DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
+						return( new String[]{ dm.getDisplayName()});
+					}
+					case KW_FILE_NAMES:{
 						
-						result = new String[files.length];
+						String[] result = (String[])dm.getUserData( DM_FILE_NAMES );
 						
-						for ( int i=0;i<files.length;i++){
+						if ( result == null ){
+							
+							DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
 							
-							result[i] = files[i].getFile( false ).getName();
+							result = new String[files.length];
+							
+							for ( int i=0;i<files.length;i++){
+								
+								result[i] = files[i].getFile( false ).getName();
+							}
+							
+							dm.setUserData( DM_FILE_NAMES, result );
 						}
 						
-						dm.setUserData( DM_FILE_NAMES, result );
+						return( result );
 					}
-					
-					return( result );
-					
-			}else if ( str.equals( "file_exts" ) || str.equals( "fileexts" )){
-					
-					kw = KW_FILE_EXTS;
-					
-					String[] result = (String[])dm.getUserData( DM_FILE_EXTS);
-					
-					if ( result == null ){
-						
-						DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
+					case KW_FILE_EXTS:{
 						
-						Set<String>	exts = new HashSet<>();
+						String[] result = (String[])dm.getUserData( DM_FILE_EXTS);
 						
-						for ( int i=0;i<files.length;i++){
+						if ( result == null ){
 							
-							String ext = files[i].getExtension();
+							DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
 							
-							if ( ext != null && !ext.isEmpty() && !exts.contains( ext )){
+							Set<String>	exts = new HashSet<>();
+							
+							for ( int i=0;i<files.length;i++){
+								
+								String ext = files[i].getExtension();
 								
-								exts.add( ext.toLowerCase( Locale.US ));
+								if ( ext != null && !ext.isEmpty() && !exts.contains( ext )){
+									
+									exts.add( ext.toLowerCase( Locale.US ));
+								}
 							}
+							
+							result = exts.toArray( new String[0] );
+							
+							dm.setUserData( DM_FILE_EXTS, result );
 						}
 						
-						result = exts.toArray( new String[0] );
-						
-						dm.setUserData( DM_FILE_EXTS, result );
+						return( result );
 					}
+					case KW_FILE_EXTS_SELECTED:{
 					
-					return( result );
-					
-			}else if ( str.equals( "file_exts_selected" ) || str.equals( "fileextsselected" )){
-				
-				kw = KW_FILE_EXTS_SELECTED;
-				
-				String[] result = (String[])dm.getUserData( DM_FILE_EXTS_SELECTED);
-				
-				if ( result == null ){
-					
-					DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
-					
-					Set<String>	exts = new HashSet<>();
-					
-					for ( int i=0;i<files.length;i++){
+						String[] result = (String[])dm.getUserData( DM_FILE_EXTS_SELECTED);
 						
-						if ( files[i].isSkipped()){
+						if ( result == null ){
 							
-							continue;
-						}
-						
-						String ext = files[i].getExtension();
-						
-						if ( ext != null && !ext.isEmpty() && !exts.contains( ext )){
+							DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
 							
-							exts.add( ext.toLowerCase( Locale.US ));
+							Set<String>	exts = new HashSet<>();
+							
+							for ( int i=0;i<files.length;i++){
+								
+								if ( files[i].isSkipped()){
+									
+									continue;
+								}
+								
+								String ext = files[i].getExtension();
+								
+								if ( ext != null && !ext.isEmpty() && !exts.contains( ext )){
+									
+									exts.add( ext.toLowerCase( Locale.US ));
+								}
+							}
+							
+							result = exts.toArray( new String[0] );
+							
+							dm.setUserData( DM_FILE_EXTS_SELECTED, result );
+							
+							handler.checkDMListener( dm );
 						}
-					}
-					
-					result = exts.toArray( new String[0] );
-					
-					dm.setUserData( DM_FILE_EXTS_SELECTED, result );
-					
-					handler.checkDMListener( dm );
-				}
-				
-				return( result );
-				
-				}else if ( str.equals( "file_names_selected" ) || str.equals( "filenamesselected" )){
-					
-					kw = KW_FILE_NAMES_SELECTED;
-					
-					String[] result = (String[])dm.getUserData( DM_FILE_NAMES_SELECTED );
-					
-					if ( result == null ){
 						
-						DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
+						return( result );
+					}
+					case KW_FILE_NAMES_SELECTED:{
 						
-						List<String>	names = new ArrayList<>( files.length );
+						String[] result = (String[])dm.getUserData( DM_FILE_NAMES_SELECTED );
 						
-						for ( int i=0;i<files.length;i++){
+						if ( result == null ){
+							
+							DiskManagerFileInfo[] files = dm.getDiskManagerFileInfoSet().getFiles();
+							
+							List<String>	names = new ArrayList<>( files.length );
 							
-							if ( files[i].isSkipped()){
+							for ( int i=0;i<files.length;i++){
+								
+								if ( files[i].isSkipped()){
+									
+									continue;
+								}
 								
-								continue;
+								names.add( files[i].getFile( false ).getName());
 							}
 							
-							names.add( files[i].getFile( false ).getName());
+							result = names.toArray( new String[0] );
+							
+							dm.setUserData( DM_FILE_NAMES_SELECTED, result );
+							
+							handler.checkDMListener( dm );
 						}
 						
-						result = names.toArray( new String[0] );
-						
-						dm.setUserData( DM_FILE_NAMES_SELECTED, result );
+						return( result );
+					}
+					case KW_SAVE_PATH:{
 						
-						handler.checkDMListener( dm );
+						return( new String[]{ dm.getAbsoluteSaveLocation().getAbsolutePath()});
 					}
-					
-					return( result );
-					
-				}else if ( str.equals( "save_path" ) || str.equals( "savepath" )){
-					
-					kw = KW_SAVE_PATH;
-					
-					return( new String[]{ dm.getAbsoluteSaveLocation().getAbsolutePath()});
-					
-				}else if ( str.equals( "save_folder" ) || str.equals( "savefolder" )){
-					
-					kw = KW_SAVE_FOLDER;
-					
-					File save_loc = dm.getAbsoluteSaveLocation().getAbsoluteFile();
-					
-					File save_folder = save_loc.getParentFile();
-					
-					if ( save_folder.isDirectory()){
+					case KW_SAVE_FOLDER:{
 						
-						return( new String[]{ save_folder.getAbsolutePath()});
+						File save_loc = dm.getAbsoluteSaveLocation().getAbsoluteFile();
 						
-					}else{
+						File save_folder = save_loc.getParentFile();
 						
-						return( new String[]{ save_loc.getAbsolutePath()});
+						if ( save_folder.isDirectory()){
+							
+							return( new String[]{ save_folder.getAbsolutePath()});
+							
+						}else{
+							
+							return( new String[]{ save_loc.getAbsolutePath()});
+						}
+					}
+					default:{
+	
+						return( null );
 					}
-					
-				}else{
-
-					return( null );
 				}
 			}
 			
@@ -3520,6 +3762,22 @@ TagPropertyConstraintHandler
 					
 					return( res );
 					
+				}else if ( arg instanceof ConstraintKeyword ){
+					
+					ConstraintKeyword keyword = (ConstraintKeyword)arg;
+					
+					if ( debug!=null){
+						debug.append( "[" + keyword.name + "->" );
+					}			
+
+					Number res = getNumericKeyword( dm, keyword.kw, keyword.name );
+					
+					if ( debug!=null){
+						debug.append( res + "]" );
+					}
+	
+					return( res );
+
 				}else{
 
 					if ( debug!=null){
@@ -3626,333 +3884,347 @@ TagPropertyConstraintHandler
 							return( result );
 						}
 						
-						int kw = kw_details[0];
-
 						result = null;	// don't cache any results below as they are variable
 						
-						switch( kw ){
-							case KW_SHARE_RATIO:{
+						return( getNumericKeyword( dm, kw_details[0], str ));
+					}
+				}catch( Throwable e){
 
-								int sr = dm.getStats().getShareRatio();
+					setError( "Invalid constraint numeric: " + str );
 
-								if ( sr == -1 ){
+					return( result );
 
-									return( Integer.MAX_VALUE );
+				}finally{
 
-								}else{
+					if ( result != null ){
 
-									return( new Float( sr/1000.0f ));
-								}
-							}
-							case KW_PERCENT:{
+							// cache literal results
+
+						args[index] = result;
+					}
+				}
+			}
 
-									// 0->1000
+			private Number
+			getNumericKeyword(
+				DownloadManager		dm,
+				int					kw,
+				String				str )
+			{
+				try{
+					switch( kw ){
+						case KW_SHARE_RATIO:{
+
+							int sr = dm.getStats().getShareRatio();
+
+							if ( sr == -1 ){
 
-								int percent = dm.getStats().getPercentDoneExcludingDND();
+								return( Integer.MAX_VALUE );
 
-								return( new Float( percent/10.0f ));
+							}else{
+
+								return( new Float( sr/1000.0f ));
 							}
-							case KW_AGE:{
+						}
+						case KW_PERCENT:{
 
-								long added = dm.getDownloadState().getLongParameter( DownloadManagerState.PARAM_DOWNLOAD_ADDED_TIME );
+								// 0->1000
 
-								if ( added <= 0 ){
+							int percent = dm.getStats().getPercentDoneExcludingDND();
 
-									return( 0 );
-								}
+							return( new Float( percent/10.0f ));
+						}
+						case KW_AGE:{
+
+							long added = dm.getDownloadState().getLongParameter( DownloadManagerState.PARAM_DOWNLOAD_ADDED_TIME );
+
+							if ( added <= 0 ){
 
-								return(( SystemTime.getCurrentTime() - added )/1000 );		// secs
+								return( 0 );
 							}
-							case KW_COMPLETED_AGE:{
 
-								long comp = dm.getDownloadState().getLongParameter( DownloadManagerState.PARAM_DOWNLOAD_COMPLETED_TIME );
+							return(( SystemTime.getCurrentTime() - added )/1000 );		// secs
+						}
+						case KW_COMPLETED_AGE:{
 
-								if ( comp <= 0 ){
+							long comp = dm.getDownloadState().getLongParameter( DownloadManagerState.PARAM_DOWNLOAD_COMPLETED_TIME );
 
-									return( 0 );
-								}
+							if ( comp <= 0 ){
 
-								return(( SystemTime.getCurrentTime() - comp )/1000 );		// secs
+								return( 0 );
 							}
-							case KW_PEER_MAX_COMP:{
 
-								PEPeerManager pm = dm.getPeerManager();
-								
-								if ( pm == null ){
-									
-									return( 0 );
-								}
+							return(( SystemTime.getCurrentTime() - comp )/1000 );		// secs
+						}
+						case KW_PEER_MAX_COMP:{
+
+							PEPeerManager pm = dm.getPeerManager();
+							
+							if ( pm == null ){
 								
-								return(	new Float( pm.getMaxCompletionInThousandNotation( false )/10.0f ));
+								return( 0 );
 							}
-							case KW_LEECHER_MAX_COMP:{
+							
+							return(	new Float( pm.getMaxCompletionInThousandNotation( false )/10.0f ));
+						}
+						case KW_LEECHER_MAX_COMP:{
 
-								PEPeerManager pm = dm.getPeerManager();
-								
-								if ( pm == null ){
-									
-									return( 0 );
-								}
+							PEPeerManager pm = dm.getPeerManager();
+							
+							if ( pm == null ){
 								
-								return(	new Float( pm.getMaxCompletionInThousandNotation( true )/10.0f ));
+								return( 0 );
 							}
+							
+							return(	new Float( pm.getMaxCompletionInThousandNotation( true )/10.0f ));
+						}
 
-							case KW_PEER_AVERAGE_COMP:{
+						case KW_PEER_AVERAGE_COMP:{
 
-								PEPeerManager pm = dm.getPeerManager();
-								
-								if ( pm == null ){
-									
-									return( 0 );
-								}
+							PEPeerManager pm = dm.getPeerManager();
+							
+							if ( pm == null ){
 								
-								return(	new Float( pm.getAverageCompletionInThousandNotation()/10.0f ));
-							}
-							case KW_DOWNLOADING_FOR:{
-
-								return( dm.getStats().getSecondsDownloading());
+								return( 0 );
 							}
-							case KW_SEEDING_FOR:{
+							
+							return(	new Float( pm.getAverageCompletionInThousandNotation()/10.0f ));
+						}
+						case KW_DOWNLOADING_FOR:{
 
-								return( dm.getStats().getSecondsOnlySeeding());
-							}
-							case KW_LAST_ACTIVE:{
+							return( dm.getStats().getSecondsDownloading());
+						}
+						case KW_SEEDING_FOR:{
 
-								DownloadManagerState dms = dm.getDownloadState();
+							return( dm.getStats().getSecondsOnlySeeding());
+						}
+						case KW_LAST_ACTIVE:{
 
-								long	timestamp = dms.getLongAttribute( DownloadManagerState.AT_LAST_ADDED_TO_ACTIVE_TAG );
+							DownloadManagerState dms = dm.getDownloadState();
 
-								if ( timestamp <= 0 ){
+							long	timestamp = dms.getLongAttribute( DownloadManagerState.AT_LAST_ADDED_TO_ACTIVE_TAG );
 
-									return( Long.MAX_VALUE );
-								}
+							if ( timestamp <= 0 ){
 
-								return(( SystemTime.getCurrentTime() - timestamp )/1000 );
+								return( Long.MAX_VALUE );
 							}
-							case KW_RESUME_IN:{
 
-								long resume_millis = dm.getAutoResumeTime();
+							return(( SystemTime.getCurrentTime() - timestamp )/1000 );
+						}
+						case KW_RESUME_IN:{
 
-								long	now = SystemTime.getCurrentTime();
+							long resume_millis = dm.getAutoResumeTime();
 
-								if ( resume_millis <= 0 || resume_millis <= now ){
+							long	now = SystemTime.getCurrentTime();
 
-									return( 0 );
-								}
+							if ( resume_millis <= 0 || resume_millis <= now ){
 
-								return(( resume_millis - now )/1000 );
+								return( 0 );
 							}
-							case KW_MIN_OF_HOUR:{
 
-								long	now = SystemTime.getCurrentTime();
+							return(( resume_millis - now )/1000 );
+						}
+						case KW_MIN_OF_HOUR:{
 
-								GregorianCalendar cal = new GregorianCalendar();
+							long	now = SystemTime.getCurrentTime();
 
-								cal.setTime( new Date( now ));
+							GregorianCalendar cal = new GregorianCalendar();
 
-								return( cal.get( Calendar.MINUTE ));
-							}
-							case KW_HOUR_OF_DAY:{
+							cal.setTime( new Date( now ));
 
-								long	now = SystemTime.getCurrentTime();
+							return( cal.get( Calendar.MINUTE ));
+						}
+						case KW_HOUR_OF_DAY:{
 
-								GregorianCalendar cal = new GregorianCalendar();
+							long	now = SystemTime.getCurrentTime();
 
-								cal.setTime( new Date( now ));
+							GregorianCalendar cal = new GregorianCalendar();
 
-								return( cal.get( Calendar.HOUR_OF_DAY ));
-							}
-							case KW_DAY_OF_WEEK:{
+							cal.setTime( new Date( now ));
 
-								long	now = SystemTime.getCurrentTime();
+							return( cal.get( Calendar.HOUR_OF_DAY ));
+						}
+						case KW_DAY_OF_WEEK:{
 
-								GregorianCalendar cal = new GregorianCalendar();
+							long	now = SystemTime.getCurrentTime();
 
-								cal.setTime( new Date( now ));
+							GregorianCalendar cal = new GregorianCalendar();
 
-								return( cal.get( Calendar.DAY_OF_WEEK ));
-							}
-							case KW_SWARM_MERGE:{
+							cal.setTime( new Date( now ));
 
-								return( dm.getDownloadState().getLongAttribute( DownloadManagerState.AT_MERGED_DATA ));
-							}
-							case KW_SEED_COUNT:{
+							return( cal.get( Calendar.DAY_OF_WEEK ));
+						}
+						case KW_SWARM_MERGE:{
 
-								TRTrackerScraperResponse response = dm.getTrackerScrapeResponse();
+							return( dm.getDownloadState().getLongAttribute( DownloadManagerState.AT_MERGED_DATA ));
+						}
+						case KW_SEED_COUNT:{
 
-								int	seeds = dm.getNbSeeds();
+							TRTrackerScraperResponse response = dm.getTrackerScrapeResponse();
 
-								if ( response != null && response.isValid()){
+							int	seeds = dm.getNbSeeds();
 
-									seeds = Math.max( seeds, response.getSeeds());
-								}
+							if ( response != null && response.isValid()){
 
-								return( Math.max( 0, seeds ));
+								seeds = Math.max( seeds, response.getSeeds());
 							}
-							case KW_PEER_COUNT:{
 
-								TRTrackerScraperResponse response = dm.getTrackerScrapeResponse();
+							return( Math.max( 0, seeds ));
+						}
+						case KW_PEER_COUNT:{
 
-								int	peers = dm.getNbSeeds();
+							TRTrackerScraperResponse response = dm.getTrackerScrapeResponse();
 
-								if ( response != null && response.isValid()){
+							int	peers = dm.getNbSeeds();
 
-									peers = Math.max( peers, response.getPeers());
-								}
+							if ( response != null && response.isValid()){
 
-								return( Math.max( 0, peers ));
+								peers = Math.max( peers, response.getPeers());
 							}
-							case KW_SEED_PEER_RATIO:{
 
-								TRTrackerScraperResponse response = dm.getTrackerScrapeResponse();
+							return( Math.max( 0, peers ));
+						}
+						case KW_SEED_PEER_RATIO:{
 
-								int	seeds = dm.getNbSeeds();
-								int	peers = dm.getNbPeers();
+							TRTrackerScraperResponse response = dm.getTrackerScrapeResponse();
 
-								if ( response != null && response.isValid()){
+							int	seeds = dm.getNbSeeds();
+							int	peers = dm.getNbPeers();
 
-									seeds = Math.max( seeds, response.getSeeds());
-									peers = Math.max( peers, response.getPeers());
-								}
+							if ( response != null && response.isValid()){
 
-								float ratio;
+								seeds = Math.max( seeds, response.getSeeds());
+								peers = Math.max( peers, response.getPeers());
+							}
 
-								if ( peers < 0 || seeds < 0 ){
+							float ratio;
 
-									ratio = 0;
+							if ( peers < 0 || seeds < 0 ){
 
-								}else{
+								ratio = 0;
 
-									if ( peers == 0 ){
+							}else{
 
-										if ( seeds == 0 ){
+								if ( peers == 0 ){
 
-											ratio = 0;
+									if ( seeds == 0 ){
 
-										}else{
+										ratio = 0;
 
-											return( Integer.MAX_VALUE );
-										}
 									}else{
 
-										ratio = (float)seeds/peers;
+										return( Integer.MAX_VALUE );
 									}
-								}
+								}else{
 
-								return( ratio );
+									ratio = (float)seeds/peers;
+								}
 							}
-							case KW_TAG_AGE:{
 
-								long tag_added = tag.getTaggableAddedTime( dm );
+							return( ratio );
+						}
+						case KW_TAG_AGE:{
 
-								if ( tag_added <= 0 ){
+							long tag_added = tag.getTaggableAddedTime( dm );
 
-									return( 0 );
-								}
+							if ( tag_added <= 0 ){
 
-								long age = (( SystemTime.getCurrentTime() - tag_added )/1000 );		// secs
+								return( 0 );
+							}
 
-								if ( age < 0 ){
+							long age = (( SystemTime.getCurrentTime() - tag_added )/1000 );		// secs
 
-									age = 0;
-								}
+							if ( age < 0 ){
 
-								return( age );
+								age = 0;
 							}
 
-							case KW_SIZE:{
-								
-								return( dm.getSize());
-							}
-							case KW_SIZE_MB:{
-								
-								return( dm.getSize()/(1024*1024L));
-							}
-							case KW_SIZE_GB:{
-								
-								return( dm.getSize()/(1024*1024*1024L));
-							}
-							case KW_FILE_COUNT:{
-								
-								return( dm.getNumFileInfos());
-							}
-							case KW_AVAILABILITY:{
+							return( age );
+						}
 
-								PEPeerManager pm = dm.getPeerManager();
-								
-								if ( pm == null ){
-									
-									return( -1f );
-								}
-								
-								float avail = pm.getMinAvailability();
-								
-								return(	new Float( avail ));
-							}
-							case KW_UP_IDLE:{
-								
-								long secs = dm.getStats().getTimeSinceLastDataSentInSeconds();
+						case KW_SIZE:{
+							
+							return( dm.getSize());
+						}
+						case KW_SIZE_MB:{
+							
+							return( dm.getSize()/(1024*1024L));
+						}
+						case KW_SIZE_GB:{
+							
+							return( dm.getSize()/(1024*1024*1024L));
+						}
+						case KW_FILE_COUNT:{
+							
+							return( dm.getNumFileInfos());
+						}
+						case KW_AVAILABILITY:{
+
+							PEPeerManager pm = dm.getPeerManager();
+							
+							if ( pm == null ){
 								
-								if ( secs < 0 ){
-									
-									return( Long.MAX_VALUE );
-									
-								}else{
-									
-									return( secs );
-								}
+								return( -1f );
 							}
-							case KW_DOWN_IDLE:{
+							
+							float avail = pm.getMinAvailability();
+							
+							return(	new Float( avail ));
+						}
+						case KW_UP_IDLE:{
+							
+							long secs = dm.getStats().getTimeSinceLastDataSentInSeconds();
+							
+							if ( secs < 0 ){
 								
-								long secs = dm.getStats().getTimeSinceLastDataReceivedInSeconds();
+								return( Long.MAX_VALUE );
 								
-								if ( secs < 0 ){
-									
-									return( Long.MAX_VALUE );
-									
-								}else{
-									
-									return( secs );
-								}
-							}
-							case KW_DOWNLOADED:{
+							}else{
 								
-								return( dm.getStats().getTotalGoodDataBytesReceived());
+								return( secs );
 							}
-							case KW_UPLOADED:{
+						}
+						case KW_DOWN_IDLE:{
+							
+							long secs = dm.getStats().getTimeSinceLastDataReceivedInSeconds();
+							
+							if ( secs < 0 ){
 								
-								return( dm.getStats().getTotalDataBytesSent());
-							}
-							case KW_MAX_UP:{
+								return( Long.MAX_VALUE );
 								
-								return( dm.getStats().getUploadRateLimitBytesPerSecond());
-							}
-							case KW_MAX_DOWN:{
+							}else{
 								
-								return( dm.getStats().getDownloadRateLimitBytesPerSecond());
+								return( secs );
 							}
-							default:{
+						}
+						case KW_DOWNLOADED:{
+							
+							return( dm.getStats().getTotalGoodDataBytesReceived());
+						}
+						case KW_UPLOADED:{
+							
+							return( dm.getStats().getTotalDataBytesSent());
+						}
+						case KW_MAX_UP:{
+							
+							return( dm.getStats().getUploadRateLimitBytesPerSecond());
+						}
+						case KW_MAX_DOWN:{
+							
+							return( dm.getStats().getDownloadRateLimitBytesPerSecond());
+						}
+						default:{
 
-								setError( "Invalid constraint keyword: " + str );
+							setError( "Invalid constraint keyword: " + str );
 
-								return( result );
-							}
+							return( null );
 						}
 					}
 				}catch( Throwable e){
 
 					setError( "Invalid constraint numeric: " + str );
 
-					return( result );
-
-				}finally{
-
-					if ( result != null ){
-
-							// cache literal results
-
-						args[index] = result;
-					}
+					return( null );
 				}
 			}
 
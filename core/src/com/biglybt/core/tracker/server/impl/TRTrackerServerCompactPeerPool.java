@@ -0,0 +1,413 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.tracker.server.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.biglybt.core.tracker.server.TRTrackerServerPeer;
+
+/**
+ * Pre-encoded compact peer entries for a busy torrent, held in random order in one flat array
+ * per address family. A compact announce is answered by copying a slice starting at a random
+ * offset, so a random subset costs little more than an arraycopy. The pool is rebuilt when the
+ * torrent's peer set has changed materially (or it gets old) rather than on every change.
+ * <p>
+ * As with the random selection, when NAT checking is enabled peers that failed the check are only
+ * returned once those that didn't have been exhausted. NAT status is captured when the pool is
+ * built so a change is picked up by the next rebuild.
+ * <p>
+ * Not thread safe, used under the torrent's monitor
+ */
+
+final class
+TRTrackerServerCompactPeerPool
+{
+	private static final int	MAX_AGE					= 15*1000;
+	private static final int	MIN_CHANGES				= 8;
+	private static final int	CHANGE_DIVISOR			= 16;	// rebuild once 1/16 of the peers have come or gone
+
+	private static final byte	FLAG_SEED				= 0x01;
+	private static final byte	FLAG_CRYPTO_REQUIRED	= 0x02;
+	private static final byte	FLAG_BAD_NAT			= 0x04;
+
+	private final long		create_time;
+	private final int		create_changes;
+
+	private final family	v4;
+	private final family	v6;
+
+	private final boolean	has_bad_nat;
+
+	TRTrackerServerCompactPeerPool(
+		List		peer_list,
+		Random		random,
+		long		now,
+		int			peer_set_changes )
+	{
+		create_time		= now;
+		create_changes	= peer_set_changes;
+
+		int	size = peer_list.size();
+
+		byte[][]	entries = new byte[size][];
+		byte[]		flags	= new byte[size];
+
+		int	num		= 0;
+		int	num_v6	= 0;
+
+		boolean	nat_checking	= TRTrackerServerNATChecker.getSingleton().isEnabled();
+		boolean	bad_nat			= false;
+
+		for ( int i=0;i<size;i++){
+
+			TRTrackerServerPeerImpl	peer = (TRTrackerServerPeerImpl)peer_list.get(i);
+
+			if ( peer == null || peer.getTCPPort() == 0 || now > peer.getTimeout()){
+
+				continue;
+			}
+
+			byte[]	bytes = peer.getCompactBytes();
+
+			if ( bytes == null ){
+
+				continue;
+			}
+
+			byte	flag = 0;
+
+			if ( peer.isSeed()){
+
+				flag |= FLAG_SEED;
+			}
+
+			if ( peer.getCryptoLevel() == TRTrackerServerPeer.CRYPTO_REQUIRED ){
+
+				flag |= FLAG_CRYPTO_REQUIRED;
+			}
+
+			if ( nat_checking && peer.isNATStatusBad()){
+
+				flag |= FLAG_BAD_NAT;
+
+				bad_nat = true;
+			}
+
+			if ( bytes.length != 6 ){
+
+				num_v6++;
+			}
+
+			entries[num]	= bytes;
+			flags[num++]	= flag;
+		}
+
+			// shuffle so that a contiguous slice from a random offset is a random sample
+
+		for ( int i=num-1;i>0;i--){
+
+			int	j = random.nextInt( i+1 );
+
+			byte[]	e = entries[i];
+			byte	f = flags[i];
+
+			entries[i]	= entries[j];
+			flags[i]	= flags[j];
+
+			entries[j]	= e;
+			flags[j]	= f;
+		}
+
+		has_bad_nat = bad_nat;
+
+		v4 = new family( 6, num - num_v6 );
+		v6 = new family( 18, num_v6 );
+
+		for ( int i=0;i<num;i++){
+
+			( entries[i].length==6?v4:v6 ).add( entries[i], flags[i] );
+		}
+	}
+
+	boolean
+	isValid(
+		long		now,
+		int			peer_set_changes,
+		int			total_peers )
+	{
+		if ( now < create_time || now - create_time > MAX_AGE ){
+
+			return( false );
+		}
+
+		return( peer_set_changes - create_changes <= Math.max( MIN_CHANGES, total_peers/CHANGE_DIVISOR ));
+	}
+
+		/**
+		 * Adds "peers", "peers6" and "crypto_flags" to the response as the original per-peer
+		 * compact encoding does, excluding the requester itself
+		 * @return number of peers returned
+		 */
+
+	int
+	exportTo(
+		Map			root,
+		Random		random,
+		int			num_want,
+		byte[]		requester,
+		boolean		include_seeds,
+		boolean		include_crypto )
+	{
+		int	reject = ( include_seeds?0:FLAG_SEED ) | ( include_crypto?0:FLAG_CRYPTO_REQUIRED );
+
+		int	total	= v4.num + v6.num;
+		int	max		= Math.min( num_want, total );
+
+		slice	s4 = new slice( v4, random, max );
+		slice	s6 = new slice( v6, random, max );
+
+			// split in proportion to the pool, topping up from the other family if one runs dry
+
+		int	want_v6 = total==0?0:(int)((long)max*v6.num/total );
+
+		int	first_reject = has_bad_nat?( reject | FLAG_BAD_NAT ):reject;
+
+		s4.take( max - want_v6, first_reject, 0, requester );
+		s6.take( max - s4.num, first_reject, 0, requester );
+		s4.take( max - s4.num - s6.num, first_reject, 0, requester );
+
+		if ( has_bad_nat && s4.num + s6.num < max ){
+
+				// both families have been fully scanned, top up with the bad NAT peers
+
+			s4.restart();
+			s6.restart();
+
+			s4.take( max - s4.num - s6.num, reject, FLAG_BAD_NAT, requester );
+			s6.take( max - s4.num - s6.num, reject, FLAG_BAD_NAT, requester );
+		}
+
+		byte[]	peers = s4.getData();
+
+		if ( s6.num == 0 ){
+
+			root.put( "peers", peers );
+
+		}else{
+
+			if ( peers.length > 0 ){
+
+				root.put( "peers", peers );
+			}
+
+			root.put( "peers6", s6.getData());
+		}
+
+		int	num = s4.num + s6.num;
+
+		if ( include_crypto ){
+
+			byte[]	crypto_flags = new byte[num];
+
+			for ( int i=0;i<num;i++){
+
+				byte	flag = i<s4.num?s4.flags[i]:s6.flags[i-s4.num];
+
+				crypto_flags[i] = (byte)(( flag & FLAG_CRYPTO_REQUIRED ) == 0?0:1);
+			}
+
+			root.put( "crypto_flags", crypto_flags );
+		}
+
+		return( num );
+	}
+
+	private static final class
+	family
+	{
+		final int		entry_len;
+		final byte[]	data;
+		final byte[]	flags;
+
+		int				num;
+
+		family(
+			int		_entry_len,
+			int		_size )
+		{
+			entry_len	= _entry_len;
+			data		= new byte[_size*entry_len];
+			flags		= new byte[_size];
+		}
+
+		void
+		add(
+			byte[]	bytes,
+			byte	flag )
+		{
+			System.arraycopy( bytes, 0, data, num*entry_len, entry_len );
+
+			flags[num++] = flag;
+		}
+
+		boolean
+		matches(
+			int		index,
+			byte[]	bytes )
+		{
+			int	pos = index*entry_len;
+
+			for ( int i=0;i<entry_len;i++){
+
+				if ( data[pos+i] != bytes[i] ){
+
+					return( false );
+				}
+			}
+
+			return( true );
+		}
+	}
+
+		/**
+		 * Walks a family from a random start, wrapping, copying runs of acceptable entries
+		 * with a single arraycopy each. Further takes resume where the last one stopped unless
+		 * the slice is restarted
+		 */
+
+	private static final class
+	slice
+	{
+		final family	f;
+		final int		start;
+
+		final byte[]	data;
+		final byte[]	flags;
+
+		int				scanned;
+		int				num;
+
+		slice(
+			family		_f,
+			Random		random,
+			int			max )
+		{
+			f		= _f;
+			start	= f.num==0?0:random.nextInt( f.num );
+
+			int	cap = Math.min( max, f.num );
+
+			data	= new byte[cap*f.entry_len];
+			flags	= new byte[cap];
+		}
+
+		void
+		restart()
+		{
+			scanned = 0;
+		}
+
+			/**
+			 * Entries are accepted if they have none of the 'reject' flags and all of the 'require' ones
+			 */
+
+		void
+		take(
+			int			max,
+			int			reject,
+			int			require,
+			byte[]		exclude )
+		{
+			if ( exclude != null && exclude.length != f.entry_len ){
+
+				exclude = null;
+			}
+
+			int	taken		= 0;
+			int	run_start	= 0;
+			int	run_len		= 0;
+
+			while( taken < max && scanned < f.num ){
+
+				int	index = start + scanned++;
+
+				if ( index >= f.num ){
+
+					index -= f.num;
+				}
+
+				if ( index == 0 && run_len > 0 ){
+
+					flush( run_start, run_len );
+
+					run_len = 0;
+				}
+
+				int	flag = f.flags[index];
+
+				if (( flag & reject ) != 0 || ( flag & require ) != require || ( exclude != null && f.matches( index, exclude ))){
+
+					if ( run_len > 0 ){
+
+						flush( run_start, run_len );
+
+						run_len = 0;
+					}
+				}else{
+
+					if ( run_len == 0 ){
+
+						run_start = index;
+					}
+
+					run_len++;
+
+					taken++;
+				}
+			}
+
+			if ( run_len > 0 ){
+
+				flush( run_start, run_len );
+			}
+		}
+
+		private void
+		flush(
+			int		from,
+			int		len )
+		{
+			System.arraycopy( f.data, from*f.entry_len, data, num*f.entry_len, len*f.entry_len );
+			System.arraycopy( f.flags, from, flags, num, len );
+
+			num += len;
+		}
+
+		byte[]
+		getData()
+		{
+			int	len = num*f.entry_len;
+
+			return( len==data.length?data:Arrays.copyOf( data, len ));
+		}
+	}
+}
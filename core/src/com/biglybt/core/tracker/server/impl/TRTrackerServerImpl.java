@@ -20,10 +20,12 @@
 
 package com.biglybt.core.tracker.server.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 import com.biglybt.core.Core;
 import com.biglybt.core.CoreFactory;
@@ -369,6 +371,9 @@ TRTrackerServerImpl
 
 	private boolean						is_ready;
 
+	private Map							full_scrape_cache;
+	private long						full_scrape_cache_time;
+
 	public
 	TRTrackerServerImpl(
 		String		_name,
@@ -1089,6 +1094,73 @@ TRTrackerServerImpl
 		}
 	}
 
+		/**
+		 * A full scrape reply is shared, already encoded, for the scrape cache period. Not used
+		 * when request listeners are registered as they get to see and modify each reply
+		 */
+
+	protected Map
+	getCachedFullScrape()
+	{
+		if ( request_listeners.size() > 0 ){
+
+			return( null );
+		}
+
+		synchronized( this ){
+
+			if ( full_scrape_cache != null ){
+
+				long	now = SystemTime.getMonotonousTime();
+
+				if ( now - full_scrape_cache_time < getScrapeCachePeriod()){
+
+					return( full_scrape_cache );
+				}
+
+				full_scrape_cache = null;
+			}
+		}
+
+		return( null );
+	}
+
+	protected void
+	setCachedFullScrape(
+		Map		root )
+	{
+		if ( request_listeners.size() > 0 || getScrapeCachePeriod() <= 0 ){
+
+			return;
+		}
+
+			// pre-encode both forms, once cached the map is shared and mustn't be updated
+
+		try{
+			byte[]	data = BEncoder.encode( root );
+
+			ByteArrayOutputStream tos = new ByteArrayOutputStream( data.length );
+
+			GZIPOutputStream gos = new GZIPOutputStream( tos );
+
+			gos.write( data );
+
+			gos.close();
+
+			root.put( "_data", data );
+			root.put( "_gzipdata", tos.toByteArray());
+
+			synchronized( this ){
+
+				full_scrape_cache		= root;
+				full_scrape_cache_time	= SystemTime.getMonotonousTime();
+			}
+		}catch( Throwable e ){
+
+			Debug.out( e );
+		}
+	}
+
 	public TRTrackerServerTorrentImpl[]
 	getTorrents()
 	{
@@ -67,6 +67,8 @@ TRTrackerServerPeerImpl
 	private DHTNetworkPosition	network_position;
 	private Object				user_data;
 
+	private byte[]				compact_bytes;
+
 	protected
 	TRTrackerServerPeerImpl(
 		HashWrapper			_peer_id,
@@ -236,6 +238,8 @@ TRTrackerServerPeerImpl
 		ip_str 		= new String( ip );
 		ip_bytes	= null;
 
+		compact_bytes	= null;
+
 		HostNameToIPResolver.addResolverRequest( ip_str, this );
 
 			// a port of 0 is taken to mean that the client can't/won't receive incoming
@@ -271,6 +275,8 @@ TRTrackerServerPeerImpl
 			ip_str 		= address.getHostAddress();
 
 			ip_bytes	= address.getAddress();
+
+			compact_bytes	= null;
 		}
 	}
 
@@ -371,6 +377,41 @@ TRTrackerServerPeerImpl
 		return( ip_bytes );
 	}
 
+		/**
+		 * BEP 23/7 compact form - address bytes followed by the big-endian TCP port. Built once
+		 * per resolved address/port rather than per announce
+		 * @return null if resolution isn't complete
+		 */
+
+	protected byte[]
+	getCompactBytes()
+	{
+		byte[]	result = compact_bytes;
+
+		if ( result == null ){
+
+			byte[]	address = ip_bytes;
+
+			if ( address == null ){
+
+				return( null );
+			}
+
+			int	len = address.length;
+
+			result = new byte[len+2];
+
+			System.arraycopy( address, 0, result, 0, len );
+
+			result[len]		= (byte)( tcp_port >> 8 );
+			result[len+1]	= (byte)tcp_port;
+
+			compact_bytes = result;
+		}
+
+		return( result );
+	}
+
 	@Override
 	public int
 	getTCPPort()
@@ -443,6 +443,15 @@ TRTrackerServerProcessor
 				throw( new TRTrackerServerException( "Full scrape disabled" ));
 			}
 
+			Map	cached = server.getCachedFullScrape();
+
+			if ( cached != null ){
+
+				root_out[0] = cached;
+
+				return( null );
+			}
+
 			Map	files = new ByteEncodedKeyHashMap();
 
 			TRTrackerServerTorrentImpl[] torrents = server.getTorrents();
@@ -478,6 +487,8 @@ TRTrackerServerProcessor
 			addScrapeInterval( null, root );
 
 			root.put( "files", files );
+
+			server.setCachedFullScrape( root );
 		}
 
 		return( torrent );
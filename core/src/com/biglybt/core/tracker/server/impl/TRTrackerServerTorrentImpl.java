@@ -42,6 +42,10 @@ TRTrackerServerTorrentImpl
 
 	public static final int	MIN_CACHE_ENTRY_SIZE		= 10;
 
+		// compact announces for torrents at least this big are served from a pre-encoded pool
+
+	public static final int	MIN_COMPACT_POOL_PEERS		= 100;
+
 	public static final int MAX_UPLOAD_BYTES_PER_SEC	= 3*1024*1024;  //3MBs
 	public static final int MAX_DOWNLOAD_BYTES_PER_SEC	= MAX_UPLOAD_BYTES_PER_SEC;
 
@@ -91,6 +95,12 @@ TRTrackerServerTorrentImpl
 
 	private final LinkedHashMap		announce_cache	= new LinkedHashMap();
 
+		// bumped whenever a peer comes, goes, changes address or becomes a seed so that cached
+		// responses can tell how far the peer set has moved on
+
+	private int								peer_set_changes;
+	private TRTrackerServerCompactPeerPool	compact_pool;
+
 	private final TRTrackerServerTorrentStatsImpl	stats;
 
 	private final List			listeners	= new ArrayList();
@@ -184,6 +194,8 @@ TRTrackerServerTorrentImpl
 
 						peer_reuse_map.put( reuse_key, peer );
 
+						peer_set_changes++;
+
 						if ( peer.isSeed()){
 
 							seed_count++;
@@ -417,6 +429,8 @@ TRTrackerServerTorrentImpl
 
 					peer_reuse_map.put( reuse_key, peer );
 
+					peer_set_changes++;
+
 					if ( biased ){
 
 						peer.setBiased( true );
@@ -542,6 +556,8 @@ TRTrackerServerTorrentImpl
 						}
 
 						peer_reuse_map.put( new_key, peer );
+
+						peer_set_changes++;
 					}
 				}
 			}
@@ -610,6 +626,11 @@ TRTrackerServerTorrentImpl
 
 				boolean	is_seed		= peer.isSeed();
 
+				if ( is_seed != was_seed ){
+
+					peer_set_changes++;
+				}
+
 				if (!(event_type == TRTrackerServerTorrentPeerListener.ET_STOPPED || was_seed || !is_seed )){
 
 					seed_count++;
@@ -991,6 +1012,8 @@ TRTrackerServerTorrentImpl
 
 			removed_count++;
 
+			peer_set_changes++;
+
 		}finally{
 
 			this_mon.exit();
@@ -1281,9 +1304,16 @@ TRTrackerServerTorrentImpl
 								// make sure this is compatible
 
 							if ( 	entry.getSendPeerIds() == send_peer_ids &&
-									entry.getCompactMode() == compact_mode ){
+									entry.getCompactMode() == compact_mode &&
+									entry.getCryptoLevel() == crypto_level &&
+									entry.getIncludeSeeds() == include_seeds ){
+
+								if ( entry.isCurrent( peer_set_changes, total_peers )){
 
-								return( entry.getData());
+									return( entry.getData());
+								}
+
+								announce_cache.remove( new Integer(i));
 							}
 						}
 					}
@@ -1295,12 +1325,51 @@ TRTrackerServerTorrentImpl
 
 			LinkedList	rep_peers = new LinkedList();
 
+				// plain compact requests (by far the most common) collect the peers' precomputed
+				// compact encodings directly rather than building a map per peer
+
+			compactPeerList	compact_list = null;
+
+			if ( 	compact_mode == COMPACT_MODE_NORMAL &&
+					explicit_limited_peers == null &&
+					explicit_biased_peers == null &&
+					explicit_manual_biased_peers == null ){
+
+				compact_list = new compactPeerList( Math.min( num_want, total_peers ));
+			}
+
+			Map	pool_root		= null;
+			int	pool_returned	= 0;
+
+			if ( 	compact_list != null &&
+					num_want > 0 &&
+					total_peers >= MIN_COMPACT_POOL_PEERS &&
+					remove_ips == null &&
+					queued_peers == null &&
+					( biased_peers == null || biased_peers.isEmpty())){
+
+				if ( compact_pool == null || !compact_pool.isValid( now, peer_set_changes, total_peers )){
+
+					compact_pool = new TRTrackerServerCompactPeerPool( peer_list, random, now, peer_set_changes );
+				}
+
+				pool_root = new TreeMap();
+
+				pool_returned =
+					compact_pool.exportTo(
+						pool_root, random, num_want,
+						requesting_peer==null?null:requesting_peer.getCompactBytes(),
+						include_seeds, crypto_level != TRTrackerServerPeer.CRYPTO_NONE );
+
+				compact_list = null;
+			}
+
 
 			// System.out.println( "exportPeersToMap: num_want = " + num_want + ", max = " + max_peers );
 
 				// if they want them all simply give them the set
 
-			if ( num_want > 0 && explicit_limited_peers == null ){
+			if ( num_want > 0 && explicit_limited_peers == null && pool_root == null ){
 
 				if ( num_want >= total_peers){
 
@@ -1339,6 +1408,13 @@ TRTrackerServerTorrentImpl
 
 						}else if ( include_seeds || !peer.isSeed()){
 
+							if ( compact_list != null ){
+
+								compact_list.add( peer );
+
+								continue;
+							}
+
 							Map rep_peer = new HashMap(3);
 
 							if ( send_peer_ids ){
@@ -1552,6 +1628,13 @@ TRTrackerServerTorrentImpl
 
 											added++;
 
+											if ( compact_list != null ){
+
+												compact_list.add( peer );
+
+												continue;
+											}
+
 											Map rep_peer = new HashMap(3);
 
 											if ( send_peer_ids ){
@@ -1732,7 +1815,7 @@ TRTrackerServerTorrentImpl
 
 				List	added = new ArrayList( QUEUED_PEERS_ADD_MAX );
 
-				while( it.hasNext() && num_want > rep_peers.size() && added.size() < QUEUED_PEERS_ADD_MAX ){
+				while( it.hasNext() && num_want > ( compact_list==null?rep_peers.size():compact_list.size()) && added.size() < QUEUED_PEERS_ADD_MAX ){
 
 					QueuedPeer	peer = (QueuedPeer)it.next();
 
@@ -1750,6 +1833,24 @@ TRTrackerServerTorrentImpl
 
 					}else{
 
+						if ( compact_list != null ){
+
+							byte[]	peer_bytes = peer.getIPAddressBytes();
+
+							if ( peer_bytes == null ){
+
+								continue;
+							}
+
+							compact_list.add( peer_bytes, peer.getTCPPort(), peer.getCryptoLevel() == TRTrackerServerPeer.CRYPTO_REQUIRED );
+
+							added.add( peer );
+
+							it.remove();
+
+							continue;
+						}
+
 						Map rep_peer = new HashMap(3);
 
 						if ( compact_mode != COMPACT_MODE_NONE ){
@@ -1807,7 +1908,7 @@ TRTrackerServerTorrentImpl
 				queued_peers.addAll( added);
 			}
 
-			Map	root = new TreeMap();	// user TreeMap to pre-sort so encoding quicker
+			Map	root = pool_root==null?new TreeMap():pool_root;	// user TreeMap to pre-sort so encoding quicker
 
 			if ( preprocess_map.size() > 0 ){
 
@@ -1892,10 +1993,18 @@ TRTrackerServerTorrentImpl
 				}
 			}
 
-			int			num_peers_returned	= rep_peers.size();
+			int			num_peers_returned	= pool_root!=null?pool_returned:(compact_list==null?rep_peers.size():compact_list.size());
 			Iterator	it					= rep_peers.iterator();
 
-			if ( compact_mode == COMPACT_MODE_AZ ){
+			if ( pool_root != null ){
+
+					// peers already added from the pool
+
+			}else if ( compact_list != null ){
+
+				compact_list.exportTo( root, crypto_level != TRTrackerServerPeer.CRYPTO_NONE );
+
+			}else if ( compact_mode == COMPACT_MODE_AZ ){
 
 				byte[]	compact_peers = new byte[num_peers_returned*9];
 
@@ -2223,7 +2332,7 @@ TRTrackerServerTorrentImpl
 
 			if ( add_to_cache ){
 
-				announce_cache.put( new Integer((num_peers_returned+9)/10), new announceCacheEntry( root, send_peer_ids, compact_mode ));
+				announce_cache.put( new Integer((num_peers_returned+9)/10), new announceCacheEntry( root, send_peer_ids, compact_mode, crypto_level, include_seeds, peer_set_changes ));
 			}
 
 			return( root );
@@ -2859,24 +2968,231 @@ TRTrackerServerTorrentImpl
 		}
 	}
 
+		/**
+		 * Peers for a plain compact response, held as their compact encodings. Biased peers go
+		 * to the front (in reverse order of addition, as with the map based list)
+		 */
+
+	static final class
+	compactPeerList
+	{
+		private byte[][]	first_peers;
+		private byte[]		first_flags;
+		private int			first_num;
+
+		private byte[][]	last_peers;
+		private byte[]		last_flags;
+		private int			last_num;
+
+		compactPeerList(
+			int		expected )
+		{
+			expected = Math.max( 4, expected );
+
+			last_peers	= new byte[expected][];
+			last_flags	= new byte[expected];
+		}
+
+		void
+		add(
+			TRTrackerServerPeerImpl		peer )
+		{
+			byte[]	bytes = peer.getCompactBytes();
+
+			if ( bytes != null ){
+
+				add( bytes, peer.getCryptoLevel() == TRTrackerServerPeer.CRYPTO_REQUIRED, peer.isBiased());
+			}
+		}
+
+		void
+		add(
+			byte[]		ip,
+			int			port,
+			boolean		crypto_required )
+		{
+			byte[]	bytes = new byte[ip.length+2];
+
+			System.arraycopy( ip, 0, bytes, 0, ip.length );
+
+			bytes[ip.length]	= (byte)(port>>8);
+			bytes[ip.length+1]	= (byte)port;
+
+			add( bytes, crypto_required, false );
+		}
+
+		private void
+		add(
+			byte[]		bytes,
+			boolean		crypto_required,
+			boolean		first )
+		{
+			byte	flag = (byte)(crypto_required?1:0);
+
+			if ( first ){
+
+				if ( first_peers == null ){
+
+					first_peers	= new byte[4][];
+					first_flags	= new byte[4];
+
+				}else if ( first_num == first_peers.length ){
+
+					first_peers	= Arrays.copyOf( first_peers, first_num*2 );
+					first_flags	= Arrays.copyOf( first_flags, first_num*2 );
+				}
+
+				first_peers[first_num]		= bytes;
+				first_flags[first_num++]	= flag;
+
+			}else{
+
+				if ( last_num == last_peers.length ){
+
+					last_peers	= Arrays.copyOf( last_peers, last_num*2 );
+					last_flags	= Arrays.copyOf( last_flags, last_num*2 );
+				}
+
+				last_peers[last_num]		= bytes;
+				last_flags[last_num++]		= flag;
+			}
+		}
+
+		int
+		size()
+		{
+			return( first_num + last_num );
+		}
+
+		private byte[]
+		get(
+			int		index )
+		{
+			return( index < first_num?first_peers[first_num-index-1]:last_peers[index-first_num] );
+		}
+
+		void
+		exportTo(
+			Map			root,
+			boolean		include_crypto_flags )
+		{
+			int	num = size();
+
+			int	num_ipv4 = 0;
+
+			for ( int i=0;i<num;i++){
+
+				if ( get(i).length == 6 ){
+
+					num_ipv4++;
+				}
+			}
+
+			int	num_ipv6 = num - num_ipv4;
+
+			byte[]	peers	= new byte[num_ipv4*6];
+			byte[]	peers6	= num_ipv6==0?null:new byte[num_ipv6*18];
+
+			int	v4_pos	= 0;
+			int v6_pos	= 0;
+
+			for ( int i=0;i<num;i++){
+
+				byte[]	bytes = get(i);
+
+				if ( bytes.length == 6 ){
+
+					System.arraycopy( bytes, 0, peers, v4_pos, 6 );
+
+					v4_pos += 6;
+
+				}else{
+
+					System.arraycopy( bytes, 0, peers6, v6_pos, 18 );
+
+					v6_pos += 18;
+				}
+			}
+
+			if ( peers6 == null ){
+
+				root.put( "peers", peers );
+
+			}else{
+
+				if ( peers.length > 0 ){
+
+					root.put( "peers", peers );
+				}
+
+				root.put( "peers6", peers6 );
+			}
+
+			if ( include_crypto_flags ){
+
+				byte[]	crypto_flags = new byte[num];
+
+				for ( int i=0;i<num;i++){
+
+					crypto_flags[i] = i < first_num?first_flags[first_num-i-1]:last_flags[i-first_num];
+				}
+
+				root.put( "crypto_flags", crypto_flags );
+			}
+		}
+	}
+
 	static class
 	announceCacheEntry
 	{
 		protected final Map		data;
 		protected final boolean	send_peer_ids;
 		protected final byte		compact_mode;
+		protected final byte		crypto_level;
+		protected final boolean	include_seeds;
+		protected final int		peer_set_changes;
 		protected final long		time;
 
 		protected
 		announceCacheEntry(
 			Map		_data,
 			boolean	_send_peer_ids,
-			byte	_compact_mode )
+			byte	_compact_mode,
+			byte	_crypto_level,
+			boolean	_include_seeds,
+			int		_peer_set_changes )
+		{
+			data				= _data;
+			send_peer_ids		= _send_peer_ids;
+			compact_mode		= _compact_mode;
+			crypto_level		= _crypto_level;
+			include_seeds		= _include_seeds;
+			peer_set_changes	= _peer_set_changes;
+			time				= SystemTime.getCurrentTime();
+		}
+
+			/**
+			 * false once the peer set has moved on by more than a small fraction of its size
+			 */
+
+		protected boolean
+		isCurrent(
+			int		current_changes,
+			int		total_peers )
+		{
+			return( current_changes - peer_set_changes <= Math.max( 1, total_peers/20 ));
+		}
+
+		protected byte
+		getCryptoLevel()
+		{
+			return( crypto_level );
+		}
+
+		protected boolean
+		getIncludeSeeds()
 		{
-			data			= _data;
-			send_peer_ids	= _send_peer_ids;
-			compact_mode	= _compact_mode;
-			time			= SystemTime.getCurrentTime();
+			return( include_seeds );
 		}
 
 		protected boolean
@@ -79,8 +79,13 @@ TRNonBlockingServer
 
 	private TRNonBlockingServerProcessorFactory	processor_factory;
 
-	private final VirtualChannelSelector read_selector;
-	private final VirtualChannelSelector write_selector;
+		// connections are spread over one or more read/write selector pairs, each with its own
+		// threads, so a busy tracker isn't limited to a single core for request handling
+
+	private static final int MAX_SELECT_LOOPS	= 8;
+
+	private final VirtualChannelSelector[] read_selectors;
+	private final VirtualChannelSelector[] write_selectors;
 
 	private 	  List			connections_to_close 		= new ArrayList();
 
@@ -135,8 +140,23 @@ TRNonBlockingServer
 
 		processor_factory	= _processor_factory;
 
-		read_selector	 	= new VirtualChannelSelector( _name + ":" + _port, VirtualChannelSelector.OP_READ, false );
-		write_selector 		= new VirtualChannelSelector( _name + ":" + _port, VirtualChannelSelector.OP_WRITE, true );
+		int	select_loops = COConfigurationManager.getIntParameter( "Tracker TCP NonBlocking Select Loops" );
+
+		if ( select_loops <= 0 ){
+
+			select_loops = Runtime.getRuntime().availableProcessors();
+		}
+
+		select_loops = Math.max( 1, Math.min( select_loops, MAX_SELECT_LOOPS ));
+
+		read_selectors	= new VirtualChannelSelector[select_loops];
+		write_selectors	= new VirtualChannelSelector[select_loops];
+
+		for ( int i=0;i<select_loops;i++){
+
+			read_selectors[i]	= new VirtualChannelSelector( _name + ":" + _port, VirtualChannelSelector.OP_READ, false );
+			write_selectors[i]	= new VirtualChannelSelector( _name + ":" + _port, VirtualChannelSelector.OP_WRITE, true );
+		}
 
 		boolean	ok = false;
 
@@ -173,35 +193,45 @@ TRNonBlockingServer
 				setPort( accept_server.getPort());
 			}
 
-			AEThread	read_thread =
-				new AEThread( "TRTrackerServer:readSelector")
-				{
-					@Override
-					public void
-					runSupport()
+			for ( int i=0;i<select_loops;i++){
+
+				final VirtualChannelSelector	read_selector	= read_selectors[i];
+				final VirtualChannelSelector	write_selector	= write_selectors[i];
+
+				final boolean	check_timeouts = i == 0;
+
+				String	suffix = i==0?"":(":" + i );
+
+				AEThread	read_thread =
+					new AEThread( "TRTrackerServer:readSelector" + suffix )
 					{
-						selectLoop( read_selector );
-					}
-				};
+						@Override
+						public void
+						runSupport()
+						{
+							selectLoop( read_selector, check_timeouts );
+						}
+					};
 
-			read_thread.setDaemon(true);
+				read_thread.setDaemon(true);
 
-			read_thread.start();
+				read_thread.start();
 
-			AEThread	write_thread =
-				new AEThread( "TRTrackerServer:writeSelector")
-				{
-					@Override
-					public void
-					runSupport()
+				AEThread	write_thread =
+					new AEThread( "TRTrackerServer:writeSelector" + suffix )
 					{
-						selectLoop( write_selector );
-					}
-				};
+						@Override
+						public void
+						runSupport()
+						{
+							selectLoop( write_selector, false );
+						}
+					};
 
-			write_thread.setDaemon(true);
+				write_thread.setDaemon(true);
 
-			write_thread.start();
+				write_thread.start();
+			}
 
 			AEThread	close_thread =
 				new AEThread( "TRTrackerServer:closeScheduler")
@@ -257,7 +287,8 @@ TRNonBlockingServer
 
 	protected void
 	selectLoop(
-      VirtualChannelSelector	selector )
+		VirtualChannelSelector	selector,
+		boolean					check_timeouts )
 	{
 		long	last_time	= 0;
 
@@ -268,7 +299,7 @@ TRNonBlockingServer
 
 					// only use one selector to trigger the timeouts!
 
-				if ( selector == read_selector ){
+				if ( check_timeouts ){
 
 					long	now = SystemTime.getCurrentTime();
 
@@ -303,6 +334,8 @@ TRNonBlockingServer
         try{
         	this_mon.enter();
 
+        	processor.setSelectorIndex((int)( total_connections % read_selectors.length ));
+
         	total_connections++;
 
         	processors.add( processor );
@@ -326,6 +359,8 @@ TRNonBlockingServer
 
         }else{
 
+        	final VirtualChannelSelector	read_selector = read_selectors[processor.getSelectorIndex()];
+
         	VirtualChannelSelector.VirtualSelectorListener read_listener =
 	        	new VirtualChannelSelector.VirtualSelectorListener()
 				{
@@ -401,6 +436,9 @@ TRNonBlockingServer
 	readyToWrite(
 		final TRNonBlockingServerProcessor	processor )
     {
+    	final VirtualChannelSelector	read_selector	= read_selectors[processor.getSelectorIndex()];
+    	final VirtualChannelSelector	write_selector	= write_selectors[processor.getSelectorIndex()];
+
     	VirtualChannelSelector.VirtualSelectorListener write_listener = processor.getWriteListener();
 
     	if ( write_listener == null ){
@@ -492,8 +530,10 @@ TRNonBlockingServer
 
         	if ( processors.remove( processor )){
 
-        		read_selector.cancel( processor.getSocketChannel() );
-        		write_selector.cancel( processor.getSocketChannel() );
+        		int	index = processor.getSelectorIndex();
+
+        		read_selectors[index].cancel( processor.getSocketChannel() );
+        		write_selectors[index].cancel( processor.getSocketChannel() );
 
         		if ( immediate_close ){
 
@@ -559,8 +599,10 @@ TRNonBlockingServer
 
         		if ( now - processor.getStartTime() > PROCESSING_GET_LIMIT && !processor.areTimeoutsDisabled()){
 
-        			read_selector.cancel( processor.getSocketChannel() );
-        			write_selector.cancel( processor.getSocketChannel() );
+        			int	index = processor.getSelectorIndex();
+
+        			read_selectors[index].cancel( processor.getSocketChannel() );
+        			write_selectors[index].cancel( processor.getSocketChannel() );
 
         			connections_to_close.add( processor );
 
@@ -72,6 +72,8 @@ TRNonBlockingServerProcessor
 
 	private boolean						keep_alive;
 
+	private int							selector_index;
+
 	protected
 	TRNonBlockingServerProcessor(
 		TRTrackerServerTCP		_server,
@@ -88,6 +90,19 @@ TRNonBlockingServerProcessor
 		// System.out.println( "create: " + System.currentTimeMillis());
 	}
 
+	protected void
+	setSelectorIndex(
+		int		index )
+	{
+		selector_index	= index;
+	}
+
+	protected int
+	getSelectorIndex()
+	{
+		return( selector_index );
+	}
+
 	protected void
 	setReadListener(
 		VirtualChannelSelector.VirtualSelectorListener		rl )
@@ -29,6 +29,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.LinkedList;
 
 import com.biglybt.core.config.COConfigurationManager;
 import com.biglybt.core.logging.LogAlert;
@@ -38,7 +39,9 @@ import com.biglybt.core.logging.Logger;
 import com.biglybt.core.networkmanager.admin.NetworkAdmin;
 import com.biglybt.core.tracker.server.TRTrackerServerRequestListener;
 import com.biglybt.core.tracker.server.impl.TRTrackerServerImpl;
+import com.biglybt.core.util.AERunnable;
 import com.biglybt.core.util.AEThread;
+import com.biglybt.core.util.Debug;
 import com.biglybt.core.util.ThreadPool;
 import com.biglybt.net.udp.uc.PRUDPPacket;
 
@@ -50,8 +53,20 @@ TRTrackerServerUDP
 
 	private static final int THREAD_POOL_SIZE				= 10;
 
+		// received packets are queued and handled in batches by the pool threads, with another
+		// batch thread brought in each time the queue grows by BATCH_MAX. Beyond MAX_PENDING we
+		// drop, as the kernel would had we not read them
+
+	private static final int BATCH_MAX						= 64;
+	private static final int MAX_PENDING					= 4096;
+
 	private final ThreadPool	thread_pool;
 
+	private final LinkedList<DatagramPacket>	pending = new LinkedList<>();
+
+	private int					active_batches;
+	private long				dropped_packets;
+
 	private final int				port;
 	private InetAddress		current_bind_ip;
 
@@ -139,12 +154,14 @@ TRTrackerServerUDP
 		long	successful_accepts 	= 0;
 		long	failed_accepts		= 0;
 
+		byte[] buf = new byte[PRUDPPacket.MAX_PACKET_SIZE];
+
+		DatagramPacket packet = new DatagramPacket( buf, buf.length, address );
+
 		while( !closed ){
 
 			try{
-				byte[] buf = new byte[PRUDPPacket.MAX_PACKET_SIZE];
-
-				DatagramPacket packet = new DatagramPacket( buf, buf.length, address );
+				packet.setLength( buf.length );
 
 				socket.receive( packet );
 
@@ -156,7 +173,11 @@ TRTrackerServerUDP
 
 				if ( !ip_filter.isInRange( ip, "Tracker", null )){
 
-					thread_pool.run( new TRTrackerServerProcessorUDP( this, socket, packet ));
+					byte[]	data = new byte[packet.getLength()];
+
+					System.arraycopy( buf, packet.getOffset(), data, 0, data.length );
+
+					queuePacket( socket, new DatagramPacket( data, data.length, packet.getSocketAddress()));
 				}
 
 			}catch( Throwable e ){
@@ -184,6 +205,90 @@ TRTrackerServerUDP
 		}
 	}
 
+	protected void
+	queuePacket(
+		final DatagramSocket	socket,
+		DatagramPacket			packet )
+	{
+		synchronized( pending ){
+
+			if ( pending.size() >= MAX_PENDING ){
+
+				dropped_packets++;
+
+				if ( dropped_packets % 1000 == 1 ){
+
+					Logger.log(new LogEvent(LOGID,
+							"TRTrackerServerUDP: request queue full on port " + port + ", dropped=" + dropped_packets ));
+				}
+
+				return;
+			}
+
+			pending.add( packet );
+
+			if ( active_batches >= THREAD_POOL_SIZE || pending.size() <= BATCH_MAX*active_batches ){
+
+				return;
+			}
+
+			active_batches++;
+		}
+
+		thread_pool.run(
+			new AERunnable()
+			{
+				@Override
+				public void
+				runSupport()
+				{
+					processBatches( socket );
+				}
+			});
+	}
+
+	protected void
+	processBatches(
+		DatagramSocket		socket )
+	{
+		DatagramPacket[]	batch = new DatagramPacket[BATCH_MAX];
+
+		while( true ){
+
+			int	num;
+
+			synchronized( pending ){
+
+				num = Math.min( pending.size(), BATCH_MAX );
+
+				if ( num == 0 ){
+
+					active_batches--;
+
+					return;
+				}
+
+				for ( int i=0;i<num;i++){
+
+					batch[i] = pending.removeFirst();
+				}
+			}
+
+			for ( int i=0;i<num;i++){
+
+				try{
+					new TRTrackerServerProcessorUDP( this, socket, batch[i] ).runSupport();
+
+				}catch( Throwable e ){
+
+					Debug.printStackTrace(e);
+				}
+
+				batch[i] = null;
+			}
+		}
+	}
+
 	@Override
 	public int
 	getPort()
@@ -160,6 +160,34 @@ public class BDecoder
 		return( new BDecoder().decodeStream( is ));
 	}
 
+	/**
+	 * Returns a read-only map that decodes values on first access directly from the buffer,
+	 * see BDecoderCursor. The buffer's position is not changed and its content must not be
+	 * modified while the map is in use
+	 */
+
+	public static Map<String,Object>
+	decodeLazy(
+		ByteBuffer	buffer )
+
+		throws IOException
+	{
+		return( new BDecoderCursor( buffer ).readLazyMap());
+	}
+
+	/**
+	 * As above, memory mapping the file where appropriate
+	 */
+
+	public static Map<String,Object>
+	decodeLazy(
+		File		file )
+
+		throws IOException
+	{
+		return( BDecoderCursor.open( file ).readLazyMap());
+	}
+
 
 	public Map<String,Object>
 	decodeByteArray(
@@ -1403,13 +1431,28 @@ public class BDecoder
 
 		getByteArrayFromStream(dbis, length, tempArray);
 
-		if ( PORTABLE_ROOT != null && length >= PORTABLE_ROOT.length && tempArray[1] == ':' && tempArray[2] == '\\' && context != null ){
+		mapPortableRoot( tempArray, context );
+
+		return tempArray;
+	}
+
+	/**
+	 * Rewrites the drive letter of paths stored under the portable root when running portable.
+	 * Shared with BDecoderCursor so that lazily decoded values see the same mapping
+	 */
+
+	static void
+	mapPortableRoot(
+		byte[]		data,
+		String		context )
+	{
+		if ( PORTABLE_ROOT != null && data.length >= PORTABLE_ROOT.length && data[1] == ':' && data[2] == '\\' && context != null ){
 
 			boolean	mismatch = false;
 
 			for ( int i=2;i<PORTABLE_ROOT.length;i++){
 
-				if ( tempArray[i] != PORTABLE_ROOT[i] ){
+				if ( data[i] != PORTABLE_ROOT[i] ){
 
 					mismatch = true;
 
@@ -1432,24 +1475,22 @@ public class BDecoder
 						context.contains( "save" ) ||
 						context.contains( "torrent" )){
 
-					tempArray[0] = PORTABLE_ROOT[0];
+					data[0] = PORTABLE_ROOT[0];
 
 					/*
-					String	test = new String( tempArray, 0, tempArray.length > 80?80:tempArray.length );
+					String	test = new String( data, 0, data.length > 80?80:data.length );
 
-					System.out.println( "mapped " + context + "->" + tempArray.length + ": " + test );
+					System.out.println( "mapped " + context + "->" + data.length + ": " + test );
 					*/
 
 				}else{
 
-					String	test = new String( tempArray, 0, tempArray.length > 80?80:tempArray.length );
+					String	test = new String( data, 0, data.length > 80?80:data.length );
 
-					System.out.println( "Portable: not mapping " + context + "->" + tempArray.length + ": " + test );
+					System.out.println( "Portable: not mapping " + context + "->" + data.length + ": " + test );
 				}
 			}
 		}
-
-		return tempArray;
 	}
 
 	private void getByteArrayFromStream(InputStream dbis, int length, byte[] targetArray) throws IOException {
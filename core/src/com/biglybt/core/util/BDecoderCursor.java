@@ -0,0 +1,1336 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Pull style decoder for bencoded data held in a ByteBuffer (heap, direct or memory mapped).
+ * <p/>
+ * Nothing is materialised up front: callers step through the structure with {@link #next()}
+ * and copy out only what they need - byte strings can be viewed in place with
+ * {@link #getByteBuffer()} and unwanted values skipped without being decoded.
+ * {@link #readLazyMap()} returns a read-only Map over a dictionary that indexes the keys
+ * when created but only decodes a value the first time it is accessed.
+ * <p/>
+ * BDecoder's limits and special cases are preserved: byte strings are limited to
+ * MAX_BYTE_ARRAY_SIZE, entries with keys over 64K are dropped, 'piece layers' has raw byte
+ * keys, keys under 'file tree' are UTF-8 and portable root paths are mapped. As with BDecoder
+ * a top level container that is cut short by the end of the data is returned as far as it
+ * goes, truncation anywhere deeper is an error.
+ * A cursor is not thread safe, lazy maps are.
+ */
+
+public class
+BDecoderCursor
+{
+	public static final int	EV_EOF			= 0;
+	public static final int	EV_DICT_START	= 1;
+	public static final int	EV_LIST_START	= 2;
+	public static final int	EV_END			= 3;
+	public static final int	EV_KEY			= 4;
+	public static final int	EV_INTEGER		= 5;
+	public static final int	EV_BYTES		= 6;
+
+	private static final int	MAX_MAP_KEY_SIZE	= 64*1024;
+	private static final int	MAX_NESTING			= 1024;
+
+		// dictionaries smaller than this aren't worth the overhead of a lazy map
+
+	private static final int	LAZY_MIN_SIZE		= 1024;
+
+		// below this size reading a file is cheaper than mapping it
+
+	private static final int	MAP_MIN_SIZE		= 64*1024;
+
+	private static final byte	ST_LIST			= 0;
+	private static final byte	ST_DICT_KEY		= 1;
+	private static final byte	ST_DICT_VALUE	= 2;
+
+	private static final String	CTX_PIECE_LAYERS	= "piece layers";
+	private static final String	CTX_FILE_TREE		= "file tree";
+	private static final String	CTX_BINARY_KEY		= "<binary key>";
+
+	/**
+	 * Opens a cursor over the contents of a file. The file is memory mapped except when small
+	 * or on Windows, where a live mapping prevents the file from being replaced or deleted
+	 * until it is garbage collected.
+	 */
+
+	public static BDecoderCursor
+	open(
+		File		file )
+
+		throws IOException
+	{
+		return( new BDecoderCursor( readFile( file )));
+	}
+
+	private static ByteBuffer
+	readFile(
+		File		file )
+
+		throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile( file, "r" );
+
+		try{
+			FileChannel	channel = raf.getChannel();
+
+			long	size = channel.size();
+
+			if ( size > Integer.MAX_VALUE ){
+
+				throw( new IOException( "File too large to decode: " + file ));
+			}
+
+			if ( Constants.isWindows || size < MAP_MIN_SIZE ){
+
+				ByteBuffer	buffer = ByteBuffer.allocate((int)size );
+
+				while( buffer.hasRemaining()){
+
+					if ( channel.read( buffer ) < 0 ){
+
+						break;
+					}
+				}
+
+				buffer.flip();
+
+				return( buffer );
+			}
+
+				// the mapping remains valid after the channel is closed
+
+			return( channel.map( FileChannel.MapMode.READ_ONLY, 0, size ));
+
+		}finally{
+
+			raf.close();
+		}
+	}
+
+	private final ByteBuffer	buffer;
+	private final ByteBuffer	reader;
+	private final int			limit;
+	private final Charset		key_charset;
+	private final boolean		intern_keys;
+	private final String		root_context;
+	private final boolean		root;
+
+	private int		pos;
+	private boolean	finished;
+
+	private byte[]		states		= new byte[8];
+	private String[]	contexts	= new String[8];
+	private int			depth;
+
+		// index of the first container whose keys are decoded as UTF-8
+
+	private int			utf8_from	= Integer.MAX_VALUE;
+
+	private String		key;
+	private long		number;
+	private int			bytes_offset;
+	private int			bytes_length;
+	private String		bytes_context;
+
+	private final char[]	number_chars = new char[32];
+
+	private byte[]		key_bytes;
+
+	/**
+	 * Decodes from the buffer's position to its limit, the buffer itself isn't modified
+	 */
+
+	public
+	BDecoderCursor(
+		ByteBuffer	_buffer )
+	{
+		this( _buffer, Constants.BYTE_ENCODING_CHARSET, true );
+	}
+
+	public
+	BDecoderCursor(
+		ByteBuffer	_buffer,
+		Charset		_key_charset,
+		boolean		_intern_keys )
+	{
+		this( _buffer.duplicate(), _buffer.position(), _buffer.limit(), _key_charset, _intern_keys, "", false, true );
+	}
+
+	private
+	BDecoderCursor(
+		ByteBuffer	_buffer,
+		int			_offset,
+		int			_limit,
+		Charset		_key_charset,
+		boolean		_intern_keys,
+		String		_context,
+		boolean		_utf8_keys,
+		boolean		_root )
+	{
+		buffer			= _buffer;
+		reader			= _buffer.duplicate();
+		pos				= _offset;
+		limit			= _limit;
+		key_charset		= _key_charset;
+		intern_keys		= _intern_keys;
+		root_context	= _context;
+		root			= _root;
+
+		if ( _utf8_keys ){
+
+			utf8_from = 0;
+		}
+	}
+
+	/**
+	 * Advances to the next element. Inside a dictionary each entry is reported as EV_KEY followed
+	 * by the events for its value, containers finish with EV_END and EV_EOF is returned once the
+	 * top level value has been consumed
+	 */
+
+	public int
+	next()
+
+		throws IOException
+	{
+		while( true ){
+
+			if ( depth == 0 && finished ){
+
+				return( EV_EOF );
+			}
+
+			if ( depth > 0 && states[depth-1] == ST_DICT_KEY ){
+
+				if ( pos >= limit ){
+
+					if ( isTruncatedRoot()){
+
+						return( endContainer());
+					}
+
+					throw( new BEncodingException( "BDecoder: invalid input data, 'e' missing from end of dictionary" ));
+				}
+
+				if ( buffer.get( pos ) == 'e' ){
+
+					pos++;
+
+					return( endContainer());
+				}
+
+				int	len = readLength();
+
+				if ( len < 0 ){
+
+					throw( new BEncodingException( "BDecoder: invalid input data, truncated length" ));
+				}
+
+				checkAvailable( len );
+
+				if ( len > MAX_MAP_KEY_SIZE ){
+
+						// BDecoder drops these entries, so do we
+
+					System.err.println( "dictionary key is too large - " + len + ":, max=" + MAX_MAP_KEY_SIZE + ": skipping entry" );
+
+					pos += len;
+
+					if ( pos < limit && buffer.get( pos ) == 'e' ){
+
+						pos++;
+
+						return( endContainer());
+					}
+
+					skipRaw( depth );
+
+					continue;
+				}
+
+				key = decodeKey( pos, len );
+
+				pos += len;
+
+				states[depth-1] = ST_DICT_VALUE;
+
+				return( EV_KEY );
+			}
+
+			if ( pos >= limit ){
+
+				if ( depth == 0 ){
+
+					finished = true;
+
+					return( EV_EOF );
+				}
+
+				if ( isTruncatedRoot()){
+
+					return( endTruncatedRoot());
+				}
+
+				throw( new BEncodingException( "BDecoder: invalid input data, 'e' missing from end of " + ( states[depth-1]==ST_LIST?"list":"dictionary" )));
+			}
+
+			byte	b = buffer.get( pos );
+
+			switch( b ){
+
+				case 'd':
+				case 'l':{
+
+					pos++;
+
+					push( b=='d'?ST_DICT_KEY:ST_LIST );
+
+					return( b=='d'?EV_DICT_START:EV_LIST_START );
+				}
+				case 'e':{
+
+					if ( depth == 0 ){
+
+						throw( new BEncodingException( "BDecoder: unexpected 'e' at offset " + pos ));
+					}
+
+					pos++;
+
+					if ( states[depth-1] == ST_DICT_VALUE ){
+
+						System.err.println( "Invalid encoding - value not serialsied for '" + key + "' - ignoring" );
+					}
+
+					return( endContainer());
+				}
+				case 'i':{
+
+					pos++;
+
+					number = readNumber();
+
+					valueDone();
+
+					return( EV_INTEGER );
+				}
+				default:{
+
+					if ( b >= '0' && b <= '9' ){
+
+						int	len = readLength();
+
+						if ( len < 0 ){
+
+								// BDecoder treats a length cut short as a missing value
+
+							if ( isTruncatedRoot()){
+
+								return( endTruncatedRoot());
+							}
+
+							throw( new BEncodingException( "BDecoder: invalid input data, truncated length" ));
+						}
+
+						if ( len > BDecoder.MAX_BYTE_ARRAY_SIZE ){
+
+							throw( new IOException( "Byte array length too large (" + len + ")"));
+						}
+
+						checkAvailable( len );
+
+						bytes_context	= getValueContext();
+						bytes_offset	= pos;
+						bytes_length	= len;
+
+						pos += len;
+
+						valueDone();
+
+						return( EV_BYTES );
+					}
+
+					throw( new BEncodingException( "BDecoder: unknown command '" + b + "' at offset " + pos ));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Skips the next value without decoding it.
+	 * @return false if there was no value as the enclosing container ended
+	 */
+
+	public boolean
+	skipValue()
+
+		throws IOException
+	{
+		if ( depth == 0 && finished ){
+
+			return( false );
+		}
+
+		if ( depth == 0 ){
+
+			if ( pos >= limit ){
+
+				finished = true;
+
+				return( false );
+			}
+		}else{
+
+			byte	state = states[depth-1];
+
+			if ( state == ST_DICT_KEY ){
+
+				throw( new IllegalStateException( "Dictionary key expected" ));
+			}
+
+			if ( pos < limit && buffer.get( pos ) == 'e' ){
+
+				next();
+
+				return( false );
+			}
+		}
+
+		skipRaw( depth );
+
+		valueDone();
+
+		return( true );
+	}
+
+	/**
+	 * Skips the rest of the current list or dictionary including its terminator
+	 */
+
+	public void
+	skipContainer()
+
+		throws IOException
+	{
+		if ( depth == 0 ){
+
+			throw( new IllegalStateException( "Not in a container" ));
+		}
+
+		while( true ){
+
+			if ( pos >= limit ){
+
+				throw( new BEncodingException( "BDecoder: invalid input data, 'e' missing from end of container" ));
+			}
+
+			if ( buffer.get( pos ) == 'e' ){
+
+				pos++;
+
+				endContainer();
+
+				return;
+			}
+
+			skipRaw( depth );
+		}
+	}
+
+	/**
+	 * Decodes the next value in the same form that BDecoder produces
+	 * @return null if there was no value as the enclosing container ended
+	 */
+
+	public Object
+	readValue()
+
+		throws IOException
+	{
+		return( readValue( false ));
+	}
+
+	/**
+	 * Reads the next value, which must be a dictionary, as a lazily decoded read-only map.
+	 * Nested dictionaries of any size are also returned lazily
+	 */
+
+	public Map<String,Object>
+	readLazyMap()
+
+		throws IOException
+	{
+		if ( depth > 0 && states[depth-1] == ST_DICT_KEY ){
+
+			throw( new IllegalStateException( "Dictionary key expected" ));
+		}
+
+		if ( pos >= limit || ( depth == 0 && finished )){
+
+			throw( new BEncodingException( "BDecoder: no data" ));
+		}
+
+		if ( buffer.get( pos ) != 'd' ){
+
+			throw( new BEncodingException( "BDecoder: value isn't a Map" ));
+		}
+
+		return( readLazyDict( true ));
+	}
+
+	public int
+	getDepth()
+	{
+		return( depth );
+	}
+
+	public int
+	getPosition()
+	{
+		return( pos );
+	}
+
+	public String
+	getKey()
+	{
+		return( key );
+	}
+
+	public long
+	getLong()
+	{
+		return( number );
+	}
+
+	public int
+	getBytesLength()
+	{
+		return( bytes_length );
+	}
+
+	/**
+	 * @return a copy of the current byte string, as BDecoder would return it
+	 */
+
+	public byte[]
+	getBytes()
+	{
+		byte[]	data = new byte[bytes_length];
+
+		reader.limit( bytes_offset + bytes_length ).position( bytes_offset );
+
+		reader.get( data );
+
+		BDecoder.mapPortableRoot( data, bytes_context );
+
+		return( data );
+	}
+
+	/**
+	 * @return a read-only view of the current byte string without copying it. For mapped files
+	 * the view is only valid while the mapping is
+	 */
+
+	public ByteBuffer
+	getByteBuffer()
+	{
+		ByteBuffer	view = buffer.duplicate();
+
+		view.limit( bytes_offset + bytes_length ).position( bytes_offset );
+
+		return( view.slice().asReadOnlyBuffer());
+	}
+
+	private Object
+	readValue(
+		boolean		lazy )
+
+		throws IOException
+	{
+		if (	lazy &&
+				pos < limit &&
+				buffer.get( pos ) == 'd' &&
+				!( depth > 0 && states[depth-1] == ST_DICT_KEY )){
+
+			return( readLazyDict( false ));
+		}
+
+		int	event = next();
+
+		switch( event ){
+
+			case EV_INTEGER:{
+
+				return( Long.valueOf( number ));
+			}
+			case EV_BYTES:{
+
+				return( getBytes());
+			}
+			case EV_LIST_START:{
+
+				List<Object>	list = new ArrayList<>();
+
+				while( true ){
+
+					Object	value = readValue( lazy );
+
+					if ( value == null ){
+
+						break;
+					}
+
+					list.add( value );
+				}
+
+				return( list );
+			}
+			case EV_DICT_START:{
+
+				Map<String,Object>	map;
+
+				if ( contexts[depth-1] == CTX_PIECE_LAYERS ){
+
+					map = new ByteEncodedKeyHashMap<>();
+
+				}else{
+
+					map = new LightHashMap<>();
+				}
+
+				while( next() == EV_KEY ){
+
+					String	k = key;
+
+					Object	value = readValue( lazy );
+
+					if ( value == null ){
+
+						break;
+					}
+
+					map.put( k, value );
+				}
+
+				return( map );
+			}
+			default:{
+
+				return( null );
+			}
+		}
+	}
+
+	private Map<String,Object>
+	readLazyDict(
+		boolean		force )
+
+		throws IOException
+	{
+		String	context = getValueContext();
+
+		boolean	utf8 = utf8_from <= depth || context == CTX_FILE_TREE;
+
+		int	start = pos;
+
+		try{
+			skipRaw( depth );
+
+		}catch( BEncodingException e ){
+
+			if ( !( root && depth == 0 )){
+
+				throw( e );
+			}
+
+				// cut short, decode what there is the way BDecoder does rather than indexing it
+
+			pos = start;
+
+			return((Map<String,Object>)readValue( false ));
+		}
+
+		valueDone();
+
+			// 'piece layers' stays a ByteEncodedKeyHashMap so that it re-encodes correctly
+
+		if ( force || ( pos - start >= LAZY_MIN_SIZE && context != CTX_PIECE_LAYERS )){
+
+			return( new LazyMap( this, start, pos, context, utf8 ));
+		}
+
+		BDecoderCursor	cursor = new BDecoderCursor( buffer, start, pos, key_charset, intern_keys, context, utf8, false );
+
+		return((Map<String,Object>)cursor.readValue( false ));
+	}
+
+	private void
+	push(
+		byte		state )
+
+		throws IOException
+	{
+		if ( depth == MAX_NESTING ){
+
+			throw( new BEncodingException( "BDecoder: nesting too deep" ));
+		}
+
+		if ( depth == states.length ){
+
+			byte[]		new_states		= new byte[depth*2];
+			String[]	new_contexts	= new String[depth*2];
+
+			System.arraycopy( states, 0, new_states, 0, depth );
+			System.arraycopy( contexts, 0, new_contexts, 0, depth );
+
+			states		= new_states;
+			contexts	= new_contexts;
+		}
+
+		String	context = getValueContext();
+
+		if ( utf8_from == Integer.MAX_VALUE && context == CTX_FILE_TREE ){
+
+			utf8_from = depth;
+		}
+
+		states[depth]	= state;
+		contexts[depth]	= context;
+
+		depth++;
+	}
+
+		/**
+		 * BDecoder returns a top level container that runs into the end of the data as far as it
+		 * goes (a missing value for the last key is dropped), only nested containers must be closed
+		 */
+
+	private boolean
+	isTruncatedRoot()
+	{
+		return( root && depth == 1 && pos >= limit );
+	}
+
+	private int
+	endTruncatedRoot()
+
+		throws IOException
+	{
+		pos = limit;
+
+		if ( states[0] == ST_DICT_VALUE ){
+
+			System.err.println( "Invalid encoding - value not serialsied for '" + key + "' - ignoring" );
+		}
+
+		return( endContainer());
+	}
+
+	private int
+	endContainer()
+
+		throws IOException
+	{
+			// BDecoder insists on more data after a nested container, even a complete one
+
+		if ( depth > 1 && pos >= limit ){
+
+			throw( new BEncodingException( "BDecoder: invalid input data, 'e' missing from end of " + ( states[depth-1]==ST_LIST?"list":"dictionary" )));
+		}
+
+		depth--;
+
+		if ( depth == utf8_from ){
+
+			utf8_from = Integer.MAX_VALUE;
+		}
+
+		valueDone();
+
+		return( EV_END );
+	}
+
+	private void
+	valueDone()
+	{
+		if ( depth == 0 ){
+
+			finished = true;
+
+		}else if ( states[depth-1] == ST_DICT_VALUE ){
+
+			states[depth-1] = ST_DICT_KEY;
+		}
+	}
+
+		// context strings are compared by identity against the constants above, keys are
+		// interned (or canonicalised in decodeKey) so this matches BDecoder's equals tests
+
+	private String
+	getValueContext()
+	{
+		if ( depth == 0 ){
+
+			return( root_context );
+		}
+
+		int	index = depth - 1;
+
+		if ( states[index] == ST_LIST ){
+
+			return( contexts[index] );
+		}
+
+		if ( contexts[index] == CTX_PIECE_LAYERS ){
+
+			return( CTX_BINARY_KEY );
+		}
+
+		return( key );
+	}
+
+	private String
+	decodeKey(
+		int		offset,
+		int		len )
+	{
+		int	index = depth - 1;
+
+		boolean	binary	= contexts[index] == CTX_PIECE_LAYERS;
+		boolean	utf8	= !binary && index >= utf8_from;
+
+		Charset	charset = binary?Constants.BYTE_ENCODING_CHARSET:(utf8?Constants.DEFAULT_ENCODING_CHARSET:key_charset);
+
+		String	result;
+
+		if ( buffer.hasArray()){
+
+			result = new String( buffer.array(), buffer.arrayOffset() + offset, len, charset );
+
+		}else{
+
+			if ( key_bytes == null || key_bytes.length < len ){
+
+				key_bytes = new byte[Math.max( len, 32 )];
+			}
+
+			reader.limit( offset + len ).position( offset );
+
+			reader.get( key_bytes, 0, len );
+
+			result = new String( key_bytes, 0, len, charset );
+		}
+
+		if ( binary ){
+
+			return( result );
+		}
+
+		if ( intern_keys && !utf8 ){
+
+			result = StringInterner.intern( result );
+		}
+
+			// make the special keys identity comparable
+
+		if ( result.length() == 9 && result.equals( CTX_FILE_TREE )){
+
+			result = CTX_FILE_TREE;
+
+		}else if ( result.length() == 12 && result.equals( CTX_PIECE_LAYERS )){
+
+			result = CTX_PIECE_LAYERS;
+		}
+
+		return( result );
+	}
+
+	private void
+	checkAvailable(
+		int		len )
+
+		throws IOException
+	{
+		if ( len > limit - pos ){
+
+			throw( new BEncodingException( "BDecoder: invalid input data, byte string of length " + len + " truncated at offset " + pos ));
+		}
+	}
+
+		/**
+		 * @return -1 if the data ends before the ':'
+		 */
+
+	private int
+	readLength()
+
+		throws IOException
+	{
+		long	value = 0;
+
+		while( true ){
+
+			if ( pos >= limit ){
+
+				return( -1 );
+			}
+
+			int	b = buffer.get( pos++ );
+
+			if ( b == ':' ){
+
+				return((int)value );
+			}
+
+			if ( b < '0' || b > '9' ){
+
+				throw( new BEncodingException( "BDecoder: invalid input data, bad length character '" + (char)b + "'" ));
+			}
+
+			value = value*10 + ( b - '0' );
+
+			if ( value > Integer.MAX_VALUE ){
+
+				throw( new BEncodingException( "BDecoder: invalid input data, length too large" ));
+			}
+		}
+	}
+
+	private long
+	readNumber()
+
+		throws IOException
+	{
+		int	len = 0;
+
+		while( true ){
+
+			if ( pos >= limit ){
+
+					// as BDecoder, an enclosing container will then fail unless it is the top level one
+
+				return( -1 );
+			}
+
+			int	b = buffer.get( pos++ );
+
+			if ( b == 'e' ){
+
+				break;
+			}
+
+			number_chars[len++] = (char)b;
+
+			if ( len == number_chars.length ){
+
+				throw( new NumberFormatException( "Number too large: " + new String( number_chars, 0, len ) + "..." ));
+			}
+		}
+
+		if ( len == 0 ){
+
+				// support some borked impls that sometimes don't bother encoding anything
+
+			return( 0 );
+		}
+
+		try{
+			return( BDecoder.parseLong( number_chars, 0, len ));
+
+		}catch( NumberFormatException e ){
+
+			String temp = new String( number_chars, 0, len );
+
+			try{
+				long l = (long)Double.parseDouble( temp );
+
+				Debug.out( "Invalid number '" + temp + "' - decoding as " + l + " and attempting recovery" );
+
+				return( l );
+
+			}catch( Throwable f ){
+			}
+
+			throw( e );
+		}
+	}
+
+	private void
+	skipRaw(
+		int		nesting )
+
+		throws IOException
+	{
+		if ( nesting >= MAX_NESTING ){
+
+			throw( new BEncodingException( "BDecoder: nesting too deep" ));
+		}
+
+		if ( pos >= limit ){
+
+			throw( new BEncodingException( "BDecoder: invalid input data, value missing" ));
+		}
+
+		byte	b = buffer.get( pos );
+
+		if ( b == 'd' || b == 'l' ){
+
+				// dictionary keys are byte strings so both can be skipped element by element
+
+			pos++;
+
+			while( true ){
+
+				if ( pos >= limit ){
+
+					throw( new BEncodingException( "BDecoder: invalid input data, 'e' missing from end of " + ( b=='l'?"list":"dictionary" )));
+				}
+
+				if ( buffer.get( pos ) == 'e' ){
+
+					pos++;
+
+					if ( nesting > 0 && pos >= limit ){
+
+						throw( new BEncodingException( "BDecoder: invalid input data, 'e' missing from end of " + ( b=='l'?"list":"dictionary" )));
+					}
+
+					return;
+				}
+
+				skipRaw( nesting + 1 );
+			}
+		}else if ( b == 'i' ){
+
+			pos++;
+
+			while( true ){
+
+				if ( pos >= limit ){
+
+					throw( new BEncodingException( "BDecoder: invalid input data, truncated number" ));
+				}
+
+				if ( buffer.get( pos++ ) == 'e' ){
+
+					return;
+				}
+			}
+		}else if ( b >= '0' && b <= '9' ){
+
+			int	len = readLength();
+
+			if ( len < 0 ){
+
+				throw( new BEncodingException( "BDecoder: invalid input data, truncated length" ));
+			}
+
+			if ( len > BDecoder.MAX_BYTE_ARRAY_SIZE ){
+
+				throw( new IOException( "Byte array length too large (" + len + ")"));
+			}
+
+			checkAvailable( len );
+
+			pos += len;
+
+		}else{
+
+			throw( new BEncodingException( "BDecoder: unknown command '" + b + "' at offset " + pos ));
+		}
+	}
+
+	/**
+	 * Read-only dictionary view. Keys are decoded and indexed on creation, values are decoded
+	 * from the underlying buffer the first time they are requested and then retained
+	 */
+
+	private static class
+	LazyMap
+		extends AbstractMap<String,Object>
+	{
+			// below this number of entries a linear scan beats hashing
+
+		private static final int	INDEX_MIN_ENTRIES	= 8;
+
+		private final ByteBuffer	buffer;
+		private final Charset		key_charset;
+		private final boolean		intern_keys;
+		private final boolean		utf8_keys;
+		private final boolean		binary_keys;
+
+		private final String[]		keys;
+		private final int[]			offsets;
+		private final Object[]		values;
+		private final int			limit;
+
+		private final LightHashMap<String,Integer>	index;
+
+		private Set<Map.Entry<String,Object>>	entry_set;
+
+		private
+		LazyMap(
+			BDecoderCursor	parent,
+			int				start,
+			int				end,
+			String			context,
+			boolean			_utf8_keys )
+
+			throws IOException
+		{
+			buffer		= parent.buffer;
+			key_charset	= parent.key_charset;
+			intern_keys	= parent.intern_keys;
+			utf8_keys	= _utf8_keys;
+			binary_keys	= context == CTX_PIECE_LAYERS;
+			limit		= end;
+
+			BDecoderCursor	cursor = new BDecoderCursor( buffer, start, end, key_charset, intern_keys, context, utf8_keys, false );
+
+			cursor.next();
+
+			String[]	temp_keys		= new String[8];
+			int[]		temp_offsets	= new int[8];
+			int			num				= 0;
+
+			LightHashMap<String,Integer>	temp_index = null;
+
+			while( cursor.next() == EV_KEY ){
+
+				String	k		= cursor.key;
+				int		offset	= cursor.pos;
+
+				if ( !cursor.skipValue()){
+
+					break;
+				}
+
+				int	existing = find( temp_keys, num, temp_index, k );
+
+				if ( existing >= 0 ){
+
+						// last one wins as with BDecoder
+
+					temp_offsets[existing] = offset;
+
+					continue;
+				}
+
+				if ( num == temp_keys.length ){
+
+					String[]	nk = new String[num*2];
+					int[]		no = new int[num*2];
+
+					System.arraycopy( temp_keys, 0, nk, 0, num );
+					System.arraycopy( temp_offsets, 0, no, 0, num );
+
+					temp_keys		= nk;
+					temp_offsets	= no;
+				}
+
+				temp_keys[num]		= k;
+				temp_offsets[num]	= offset;
+
+				num++;
+
+				if ( num == INDEX_MIN_ENTRIES ){
+
+					temp_index = new LightHashMap<>( num*2 );
+
+					for ( int i=0;i<num;i++){
+
+						temp_index.put( temp_keys[i], i );
+					}
+				}else if ( temp_index != null ){
+
+					temp_index.put( k, num-1 );
+				}
+			}
+
+			keys	= new String[num];
+			offsets	= new int[num];
+			values	= new Object[num];
+			index	= temp_index;
+
+			System.arraycopy( temp_keys, 0, keys, 0, num );
+			System.arraycopy( temp_offsets, 0, offsets, 0, num );
+		}
+
+		private static int
+		find(
+			String[]						keys,
+			int								num,
+			LightHashMap<String,Integer>	index,
+			Object							key )
+		{
+			if ( index != null ){
+
+				Integer	i = index.get( key );
+
+				return( i==null?-1:i );
+			}
+
+			for ( int i=0;i<num;i++){
+
+				if ( keys[i].equals( key )){
+
+					return( i );
+				}
+			}
+
+			return( -1 );
+		}
+
+		@Override
+		public int
+		size()
+		{
+			return( keys.length );
+		}
+
+		@Override
+		public boolean
+		containsKey(
+			Object		key )
+		{
+			return( find( keys, keys.length, index, key ) >= 0 );
+		}
+
+		@Override
+		public Object
+		get(
+			Object		key )
+		{
+			int	i = find( keys, keys.length, index, key );
+
+			if ( i < 0 ){
+
+				return( null );
+			}
+
+			return( getValue( i ));
+		}
+
+		private synchronized Object
+		getValue(
+			int		i )
+		{
+			Object	value = values[i];
+
+			if ( value == null ){
+
+				String	key = keys[i];
+
+				int	offset = offsets[i];
+
+				BDecoderCursor	cursor = new BDecoderCursor( buffer, offset, limit, key_charset, intern_keys, binary_keys?CTX_BINARY_KEY:key, utf8_keys, false );
+
+				try{
+					value = cursor.readValue( true );
+
+				}catch( IOException e ){
+
+						// already validated when the map was indexed
+
+					throw( new RuntimeException( "BDecoder: lazy decode failed for '" + key + "'", e ));
+				}
+
+				values[i] = value;
+			}
+
+			return( value );
+		}
+
+		@Override
+		public Set<Map.Entry<String,Object>>
+		entrySet()
+		{
+			if ( entry_set == null ){
+
+				entry_set =
+					new AbstractSet<Map.Entry<String,Object>>()
+					{
+						@Override
+						public int
+						size()
+						{
+							return( keys.length );
+						}
+
+						@Override
+						public Iterator<Map.Entry<String,Object>>
+						iterator()
+						{
+							return(
+								new Iterator<Map.Entry<String,Object>>()
+								{
+									private int	next;
+
+									@Override
+									public boolean
+									hasNext()
+									{
+										return( next < keys.length );
+									}
+
+									@Override
+									public Map.Entry<String,Object>
+									next()
+									{
+										if ( next >= keys.length ){
+
+											throw( new NoSuchElementException());
+										}
+
+										int	i = next++;
+
+										return( new AbstractMap.SimpleImmutableEntry<>( keys[i], getValue( i )));
+									}
+
+									@Override
+									public void
+									remove()
+									{
+										throw( new UnsupportedOperationException());
+									}
+								});
+						}
+					};
+			}
+
+			return( entry_set );
+		}
+	}
+}
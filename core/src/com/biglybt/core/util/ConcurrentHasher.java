@@ -27,6 +27,8 @@ package com.biglybt.core.util;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -35,7 +37,20 @@ import com.biglybt.core.config.ParameterListener;
 
 public class
 ConcurrentHasher
+	implements AEDiagnosticsEvidenceGenerator
 {
+		// when batching, small requests queued behind each other are handed to a single
+		// pool thread together, up to these limits
+
+	private static final int	BATCH_MAX_REQUESTS		= 32;
+	private static final int	BATCH_MAX_BYTES			= 16*1024*1024;
+
+		// allow more requests to queue so that there is something to batch
+
+	private static final int	BATCH_QUEUE_FACTOR		= 4;
+
+	private static final int	BENCHMARK_BUFFER_SIZE	= 1024*1024;
+	private static final int	BENCHMARK_MILLIS		= 100;
 
 	protected static final ConcurrentHasher		singleton	= new ConcurrentHasher();
 
@@ -43,11 +58,22 @@ ConcurrentHasher
 
 	protected final List<ConcurrentHasherRequest>				requests		= new LinkedList<>();
 
-	protected final List<SHA1Hasher>	v1_hashers			= new LinkedList<>();
-	protected final List<MessageDigest>	v2_hashers			= new LinkedList<>();
+	protected final List<ConcurrentHasherBackend>	v1_hashers			= new LinkedList<>();
+	protected final List<MessageDigest>				v2_hashers			= new LinkedList<>();
 
 	protected final AESemaphore		request_sem		= new AESemaphore("ConcHashReqQ");
 	protected final AESemaphore		scheduler_sem	= new AESemaphore("ConcHashSched");
+	protected final AESemaphore		thread_sem		= new AESemaphore("ConcHashThread");
+
+	private final boolean			batching;
+
+	private volatile int			v1_backend_type	= ConcurrentHasherBackend.BT_BUILTIN;
+	private String					v1_backend_selection	= "pending";
+
+	private long					stats_requests;
+	private long					stats_batches;
+	private long					stats_batched_requests;
+	private long					stats_bytes;
 
 	protected final AEMonitor			requests_mon	= new AEMonitor( "ConcurrentHasher:R" );
 
@@ -93,7 +119,16 @@ ConcurrentHasher
 
 			// one more that proc num seems to improve performance ;)
 
-		for (int i=0;i<processor_num + 1;i++){
+		batching = COConfigurationManager.getBooleanParameter( "diskmanager.hashchecking.batch" );
+
+		int	threads = processor_num + 1;
+
+		for (int i=0;i<threads;i++){
+
+			thread_sem.release();
+		}
+
+		for (int i=0;i<threads*(batching?BATCH_QUEUE_FACTOR:1);i++){
 
 			scheduler_sem.release();
 		}
@@ -106,34 +141,62 @@ ConcurrentHasher
 			public void
 			run()
 			{
+				selectV1Backend();
+
 				while(true){
 
 						// get a request to run
 
 					request_sem.reserve();
 
+						// and a thread to run it on
+
+					thread_sem.reserve();
+
 						// now extract the request
 
 					final ConcurrentHasherRequest	req;
-					final SHA1Hasher				v1_hasher;
+					final ConcurrentHasherBackend	v1_hasher;
 					final MessageDigest				v2_hasher;
 
+					final List<ConcurrentHasherRequest>	batch;
+
 					try{
 						requests_mon.enter();
 
 						req	= requests.remove(0);
 
+						batch = getBatch( req );
+
 						if ( req.getHashVersion() == 1 ){
 							
 							v2_hasher = null;
 							
-							if ( v1_hashers.size() == 0 ){
-	
-								v1_hasher = new SHA1Hasher();
-	
+							int	type = v1_backend_type;
+
+							ConcurrentHasherBackend	pooled = null;
+
+							while( v1_hashers.size() > 0 ){
+
+								pooled = v1_hashers.remove(0);
+
+								if ( pooled.getType() == type ){
+
+									break;
+								}
+
+									// backend changed, discard old ones
+
+								pooled = null;
+							}
+
+							if ( pooled == null ){
+
+								v1_hasher = ConcurrentHasherBackend.create( type );
+
 							}else{
-	
-								v1_hasher	= v1_hashers.remove(0);
+
+								v1_hasher	= pooled;
 							}
 						}else{
 							v1_hasher = null;
@@ -147,8 +210,15 @@ ConcurrentHasher
 									
 									Debug.out( e );
 									
-									req.cancel();
-									
+									for ( ConcurrentHasherRequest r: batch ){
+
+										r.cancel();
+
+										scheduler_sem.release();
+									}
+
+									thread_sem.release();
+
 									continue;
 								}
 	
@@ -169,13 +239,28 @@ ConcurrentHasher
 								public void
 								runSupport()
 								{
+									int	total_size = 0;
+
+									boolean	low_priority = false;
+
 									try{
-										if ( v1_hasher != null ){
-										
-											req.run( v1_hasher );
-										}else{
-											
-											req.run( v2_hasher );
+										for ( ConcurrentHasherRequest r: batch ){
+
+											total_size += r.getSize();
+
+											if ( r.isLowPriority()){
+
+												low_priority = true;
+											}
+
+											if ( v1_hasher != null ){
+
+												r.run( v1_hasher );
+
+											}else{
+
+												r.run( v2_hasher );
+											}
 										}
 									}finally{
 										try{
@@ -189,15 +274,18 @@ ConcurrentHasher
 												
 												v2_hashers.add( v2_hasher );
 											}
+
+											stats_bytes += total_size;
+
 										}finally{
 
 											requests_mon.exit();
 										}
 
-										if ( friendly_hashing && req.isLowPriority()){
+										if ( friendly_hashing && low_priority ){
 
 											try{
-												int	size = req.getSize();
+												int	size = total_size;
 
 													// pieces can be several MB so delay based on size
 
@@ -222,7 +310,12 @@ ConcurrentHasher
 											}
 										}
 
-										scheduler_sem.release();
+										thread_sem.release();
+
+										for ( int i=0;i<batch.size();i++){
+
+											scheduler_sem.release();
+										}
 									}
 								}
 							});
@@ -230,6 +323,187 @@ ConcurrentHasher
 				}
 			}
 		}.start();
+
+		AEDiagnostics.addEvidenceGenerator( this );
+	}
+
+		/**
+		 * must be called with requests_mon held. Gathers further queued requests of the same
+		 * hash version to run along with the supplied one. We never take more than a fair
+		 * share of the queue given the number of idle threads so parallelism isn't reduced
+		 */
+
+	private List<ConcurrentHasherRequest>
+	getBatch(
+		ConcurrentHasherRequest		first )
+	{
+		stats_requests++;
+
+		if ( !batching || requests.isEmpty()){
+
+			return( Collections.singletonList( first ));
+		}
+
+		int	idle_threads = thread_sem.getValue() + 1;
+
+		int	max = Math.min( BATCH_MAX_REQUESTS, ( requests.size() + 1 ) / idle_threads );
+
+		if ( max <= 1 ){
+
+			return( Collections.singletonList( first ));
+		}
+
+		List<ConcurrentHasherRequest>	batch = new ArrayList<>( max );
+
+		batch.add( first );
+
+		int	bytes = first.getSize();
+
+		Iterator<ConcurrentHasherRequest>	it = requests.iterator();
+
+		while( it.hasNext() && batch.size() < max ){
+
+			ConcurrentHasherRequest	req = it.next();
+
+			if ( req.getHashVersion() != first.getHashVersion()){
+
+				continue;
+			}
+
+			if ( bytes + req.getSize() > BATCH_MAX_BYTES ){
+
+				break;
+			}
+
+				// we know the request is queued so its permit is available
+
+			if ( !request_sem.reserveIfAvailable()){
+
+				break;
+			}
+
+			it.remove();
+
+			batch.add( req );
+
+			bytes += req.getSize();
+		}
+
+		if ( batch.size() > 1 ){
+
+			stats_batches++;
+
+			stats_requests += batch.size() - 1;
+
+			stats_batched_requests += batch.size();
+		}
+
+		return( batch );
+	}
+
+		/**
+		 * The JDK's SHA-1 is intrinsified on some JVM/CPU combinations and much slower than
+		 * our own on others, so unless configured otherwise we time both and pick the faster
+		 */
+
+	private void
+	selectV1Backend()
+	{
+		int	configured = COConfigurationManager.getIntParameter( "diskmanager.hashchecking.v1.backend" );
+
+		if ( configured != ConcurrentHasherBackend.BT_AUTO ){
+
+			ConcurrentHasherBackend backend = ConcurrentHasherBackend.create( configured );
+
+			v1_backend_type	= backend.getType();
+
+			v1_backend_selection = "configured";
+
+			return;
+		}
+
+		try{
+			ByteBuffer	buffer = ByteBuffer.allocateDirect( BENCHMARK_BUFFER_SIZE );
+
+			long	best_rate	= -1;
+			int		best_type	= ConcurrentHasherBackend.BT_BUILTIN;
+
+			String	str = "";
+
+			for ( int type: new int[]{ ConcurrentHasherBackend.BT_BUILTIN, ConcurrentHasherBackend.BT_JDK }){
+
+				ConcurrentHasherBackend	backend = ConcurrentHasherBackend.create( type );
+
+				if ( backend.getType() != type ){
+
+					continue;
+				}
+
+					// warm up
+
+				for ( int i=0;i<8;i++){
+
+					backend.calculateHash( buffer );
+				}
+
+				long	start	= SystemTime.getHighPrecisionCounter();
+				long	end		= start + BENCHMARK_MILLIS*1000000L;
+				long	now;
+
+				long	bytes	= 0;
+
+				do{
+					backend.calculateHash( buffer );
+
+					bytes += BENCHMARK_BUFFER_SIZE;
+
+					now = SystemTime.getHighPrecisionCounter();
+
+				}while( now < end );
+
+				long	rate = bytes*1000000000L/Math.max( 1, now - start );
+
+				str += (str.isEmpty()?"":", ") + backend.getName() + "=" + ( rate/(1024*1024)) + " MB/s";
+
+				if ( rate > best_rate ){
+
+					best_rate	= rate;
+					best_type	= type;
+				}
+			}
+
+			v1_backend_type = best_type;
+
+			v1_backend_selection = "benchmark: " + str;
+
+		}catch( Throwable e ){
+
+			v1_backend_selection = "benchmark failed: " + Debug.getNestedExceptionMessage( e );
+
+			Debug.out( e );
+		}
+	}
+
+	@Override
+	public void
+	generate(
+		IndentWriter		writer )
+	{
+		writer.println( "Concurrent Hasher" );
+
+		try{
+			writer.indent();
+
+			writer.println( "v1 backend: " + ConcurrentHasherBackend.BT_NAMES[v1_backend_type] + " (" + v1_backend_selection + ")" );
+
+			writer.println( "threads=" + ( processor_num + 1 ) + ", batching=" + batching );
+
+			writer.println( "requests=" + stats_requests + ", batches=" + stats_batches + ", batched=" + stats_batched_requests + ", bytes=" + stats_bytes );
+
+		}finally{
+
+			writer.exdent();
+		}
 	}
 
 		/**
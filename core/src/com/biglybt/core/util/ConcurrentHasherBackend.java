@@ -0,0 +1,130 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+
+package com.biglybt.core.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * SHA-1 implementation used by ConcurrentHasher for v1 piece checks. Instances are
+ * pooled by the hasher and are not thread safe.
+ */
+
+public abstract class
+ConcurrentHasherBackend
+{
+	public static final int	BT_AUTO		= 0;
+	public static final int	BT_BUILTIN	= 1;
+	public static final int	BT_JDK		= 2;
+
+	public static final String[] BT_NAMES = { "auto", "builtin", "jdk" };
+
+	public static ConcurrentHasherBackend
+	create(
+		int		type )
+	{
+		if ( type == BT_JDK ){
+
+			try{
+				return( new JDK());
+
+			}catch( Throwable e ){
+
+				Debug.out( "JDK SHA-1 unavailable, falling back to builtin", e );
+			}
+		}
+
+		return( new Builtin());
+	}
+
+	public abstract int
+	getType();
+
+	public abstract byte[]
+	calculateHash(
+		ByteBuffer	buffer );
+
+	public String
+	getName()
+	{
+		return( BT_NAMES[getType()] );
+	}
+
+	private static class
+	Builtin
+		extends ConcurrentHasherBackend
+	{
+		private final SHA1Hasher	hasher = new SHA1Hasher();
+
+		@Override
+		public int
+		getType()
+		{
+			return( BT_BUILTIN );
+		}
+
+		@Override
+		public byte[]
+		calculateHash(
+			ByteBuffer	buffer )
+		{
+			return( hasher.calculateHash( buffer ));
+		}
+	}
+
+	private static class
+	JDK
+		extends ConcurrentHasherBackend
+	{
+		private final MessageDigest	digest;
+
+		private
+		JDK()
+
+			throws Exception
+		{
+			digest = MessageDigest.getInstance( "SHA-1" );
+		}
+
+		@Override
+		public int
+		getType()
+		{
+			return( BT_JDK );
+		}
+
+		@Override
+		public byte[]
+		calculateHash(
+			ByteBuffer	buffer )
+		{
+				// SHA1.digest leaves the buffer position unchanged, keep the same semantics
+
+			int	pos = buffer.position();
+
+			digest.reset();
+
+			digest.update( buffer );
+
+			buffer.position( pos );
+
+			return( digest.digest());
+		}
+	}
+}
@@ -142,7 +142,7 @@ ConcurrentHasherRequest
 
 	protected void
 	run(
-		SHA1Hasher	hasher )
+		ConcurrentHasherBackend	hasher )
 	{
 		if ( !cancelled ){
 
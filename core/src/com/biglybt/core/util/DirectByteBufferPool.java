@@ -37,7 +37,16 @@ DirectByteBufferPool
 			Debug.outNoStack( "******** USE_HEAP_BUFFERS MODE DEPRECATED ********" );
 		}
 
-		impl = new DirectByteBufferPoolReal();
+			// the original bucket pool is retained as a fallback for the slab allocator
+
+		if ( System.getProperty( "az.dbb.pool.legacy", "0" ).equals( "1" )){
+
+			impl = new DirectByteBufferPoolReal();
+
+		}else{
+
+			impl = new DirectByteBufferPoolSlab();
+		}
 	}
 
 
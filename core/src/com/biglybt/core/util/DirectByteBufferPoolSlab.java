@@ -0,0 +1,907 @@
+/*
+ * Created on 18-Oct-2026
+ * Copyright (C) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+
+package com.biglybt.core.util;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.biglybt.core.config.COConfigurationManager;
+import com.biglybt.core.disk.DiskManager;
+import com.biglybt.core.logging.LogAlert;
+import com.biglybt.core.logging.Logger;
+
+/**
+ * Size-class buffer pool with a small per-thread cache in front of lock-free global free lists.
+ * <p>
+ * Most buffers are returned by the thread that allocated them (or one that will shortly allocate
+ * the same size again) so the thread cache satisfies the bulk of requests without any shared state.
+ * Misses go to a per-size-class ConcurrentLinkedDeque, so network and disk threads never block each
+ * other on a pool lock. Buffers up to 2K are carved out of 64K slabs rather than allocated
+ * individually.
+ * <p>
+ * Free (pooled) memory, including what is sitting in thread caches, is bounded - returns that would
+ * push it over the limit are dropped and left for the GC. A periodic trim flushes the caches of
+ * threads that haven't used the pool since the last trim back to the free lists and decays idle
+ * free lists. There is no explicit System.gc(), the JVM already collects when a direct allocation
+ * would exceed the direct memory limit.
+ */
+
+public class
+DirectByteBufferPoolSlab
+	extends DirectByteBufferPool
+	implements AEDiagnosticsEvidenceGenerator
+{
+	protected static final boolean				DEBUG_TRACK_HANDEDOUT	= AEDiagnostics.TRACE_DBB_POOL_USAGE;
+	protected static final boolean				DEBUG_PRINT_MEM			= AEDiagnostics.PRINT_DBB_POOL_USAGE;
+
+	protected static final int					DEBUG_PRINT_TIME		= 120 * 1000;
+
+	private static final int START_POWER = 3;     // 8
+	private static final int END_POWER   = 28;    // 256MB as per the original pool
+
+	public static final int MAX_SIZE = 1 << END_POWER;
+
+		// the 16K+128 bucket avoids wasting 16K per block read with protocol header (see DirectByteBufferPoolReal)
+
+	private static final int[]	EXTRA_SIZES = { DiskManager.BLOCK_SIZE + 128 };
+
+	private static final int	SLAB_ENTRY_MAX_SIZE		= 2048;
+	private static final int	SLAB_SIZE				= 64*1024;
+
+		// thread caches only hold smaller classes, up to roughly this many bytes per class
+
+	private static final int	THREAD_CACHE_MAX_SIZE	= 32*1024;
+	private static final int	THREAD_CACHE_CLASS_BYTES= 128*1024;
+	private static final int	THREAD_CACHE_MAX_COUNT	= 32;
+
+	private static final long	TRIM_PERIOD		= 2*60*1000;
+	private static final long	MAX_FREE_BYTES	= 10*1024*1024;
+	private static final long	MIN_FREE_BYTES	= 1*1024*1024;
+
+	private final sizeClass[]	classes;
+	private final int[]			class_sizes;
+
+	private final long			max_free_bytes;
+
+	private final AtomicLong	free_bytes		= new AtomicLong();
+	private final AtomicLong	allocated_bytes	= new AtomicLong();
+	private final AtomicLong	oom_count		= new AtomicLong();
+
+		// per allocator (AL_*) accounting is kept per thread to avoid contention and summed when
+		// reported. counts from threads that have gone away are folded into these
+
+	private final int				num_al;
+
+	private final AtomicLongArray	al_in_use_count;
+	private final AtomicLongArray	al_in_use_bytes;
+	private final AtomicLongArray	al_total_count;
+
+	private final Queue<threadCache>	thread_caches = new ConcurrentLinkedQueue<>();
+
+	private final Map<ByteBuffer,DirectByteBuffer> handed_out	= new IdentityHashMap<>();	// for debugging
+
+	private final ThreadLocal<threadCache>	thread_cache =
+		new ThreadLocal<threadCache>()
+		{
+			@Override
+			protected threadCache
+			initialValue()
+			{
+				threadCache tc = new threadCache( classes, num_al );
+
+				thread_caches.add( tc );
+
+				return( tc );
+			}
+		};
+
+	protected
+	DirectByteBufferPoolSlab()
+	{
+		TreeSet<Integer>	sizes = new TreeSet<>();
+
+		for ( int p=START_POWER; p<=END_POWER; p++ ){
+
+			sizes.add( 1 << p );
+		}
+
+		for ( int s: EXTRA_SIZES ){
+
+			sizes.add( s );
+		}
+
+		classes		= new sizeClass[ sizes.size()];
+		class_sizes	= new int[ sizes.size()];
+
+		int	i = 0;
+
+		for ( int s: sizes ){
+
+			class_sizes[i]	= s;
+			classes[i]		= new sizeClass( i, s );
+
+			i++;
+		}
+
+			// historically this scaled the slice limits, keep it meaningful by scaling the free limit
+
+		int mult = COConfigurationManager.getIntParameter( "memory.slice.limit.multiplier" );
+
+		max_free_bytes = MAX_FREE_BYTES * Math.max( 1, mult );
+
+		num_al = DirectByteBuffer.AL_DESCS.length;
+
+		al_in_use_count	= new AtomicLongArray( num_al );
+		al_in_use_bytes	= new AtomicLongArray( num_al );
+		al_total_count	= new AtomicLongArray( num_al );
+
+		SimpleTimer.addPeriodicEvent(
+			"DirectBB:trim",
+			TRIM_PERIOD,
+			new TimerEventPerformer()
+			{
+				@Override
+				public void
+				perform(
+					TimerEvent ev )
+				{
+					trim();
+				}
+			});
+
+		if ( DEBUG_PRINT_MEM ){
+
+			Timer printer = new Timer("printer");
+
+			printer.addPeriodicEvent(
+				DEBUG_PRINT_TIME,
+				new TimerEventPerformer()
+				{
+					@Override
+					public void
+					perform(
+						TimerEvent ev )
+					{
+						PrintWriter pw = new PrintWriter( System.out );
+
+						generate( new IndentWriter( pw ));
+
+						pw.flush();
+					}
+				});
+		}
+
+		AEDiagnostics.addEvidenceGenerator( this );
+	}
+
+	@Override
+	protected DirectByteBuffer
+	getBufferSupport(
+		byte	_allocator,
+		int		_length )
+	{
+		if ( _length < 1 ){
+
+			Debug.out("requested length [" +_length+ "] < 1");
+
+			return( null );
+		}
+
+		if ( _length > MAX_SIZE ){
+
+			Debug.out("requested length [" +_length+ "] > MAX_SIZE [" +MAX_SIZE+ "]");
+
+			return( null );
+		}
+
+		sizeClass	sc = classes[ getClassIndex( _length )];
+
+		threadCache	tc = thread_cache.get();
+
+		ByteBuffer	buff = null;
+
+		if ( sc.thread_cache_max > 0 ){
+
+			buff = tc.pop( sc.index, sc.size );
+
+			if ( buff != null ){
+
+				free_bytes.addAndGet( -sc.size );
+			}
+		}
+
+		if ( buff == null ){
+
+			buff = sc.free.pollFirst();
+
+			if ( buff != null ){
+
+				sc.free_count.decrementAndGet();
+
+				free_bytes.addAndGet( -sc.size );
+
+				sc.global_hits.incrementAndGet();
+
+			}else{
+
+				buff = allocate( sc );
+			}
+		}
+
+			// clear doesn't actually zero the data, it just sets pos to 0 etc.
+
+		buff.clear();
+
+		buff.limit( _length );
+
+		DirectByteBuffer res = new DirectByteBuffer( _allocator, buff, this );
+
+		tc.al_in_use_count[_allocator]++;
+		tc.al_in_use_bytes[_allocator] += sc.size;
+		tc.al_total_count[_allocator]++;
+
+		if ( DEBUG_TRACK_HANDEDOUT ){
+
+			synchronized( handed_out ){
+
+				if ( handed_out.put( buff, res ) != null ){
+
+					Debug.out( "buffer handed out twice!!!!");
+
+					throw( new RuntimeException( "Buffer handed out twice" ));
+				}
+			}
+		}
+
+		return( res );
+	}
+
+	@Override
+	protected void
+	returnBufferSupport(
+		DirectByteBuffer ddb )
+	{
+		ByteBuffer	buff = ddb.getBufferInternal();
+
+		if ( buff == null ){
+
+			Debug.out( "Returned dbb has null delegate" );
+
+			throw( new RuntimeException( "Returned dbb has null delegate" ));
+		}
+
+		if ( DEBUG_TRACK_HANDEDOUT ){
+
+			synchronized( handed_out ){
+
+				if ( handed_out.remove( buff ) == null ){
+
+					Debug.out( "buffer not handed out" );
+
+					throw( new RuntimeException( "Buffer not handed out" ));
+				}
+			}
+		}
+
+		int	capacity	= buff.capacity();
+
+		int	index = Arrays.binarySearch( class_sizes, capacity );
+
+		if ( index < 0 ){
+
+			Debug.out( "Invalid buffer given; could not find proper size class for " + capacity );
+
+			return;
+		}
+
+		sizeClass	sc = classes[index];
+
+		byte	allocator = ddb.getAllocator();
+
+		threadCache	tc = thread_cache.get();
+
+		tc.al_in_use_count[allocator]--;
+		tc.al_in_use_bytes[allocator] -= capacity;
+
+			// cached buffers count towards the free limit the same as globally free ones. the check
+			// and the add have to be one step or concurrent returns can all pass the check together
+
+		while( true ){
+
+			long	free = free_bytes.get();
+
+			if ( free + capacity > max_free_bytes ){
+
+					// over the free limit, let the GC have it
+
+				sc.dropped.incrementAndGet();
+
+				return;
+			}
+
+			if ( free_bytes.compareAndSet( free, free + capacity )){
+
+				break;
+			}
+		}
+
+		if ( sc.thread_cache_max > 0 && tc.push( index, buff )){
+
+			return;
+		}
+
+		sc.free_count.incrementAndGet();
+
+		sc.free.offerFirst( buff );
+	}
+
+	long
+	getFreeBytes()
+	{
+		return( free_bytes.get());
+	}
+
+	long
+	getMaxFreeBytes()
+	{
+		return( max_free_bytes );
+	}
+
+	private int
+	getClassIndex(
+		int		length )
+	{
+		int	index = Arrays.binarySearch( class_sizes, length );
+
+		if ( index < 0 ){
+
+			index = -( index + 1 );
+		}
+
+		return( index );
+	}
+
+	private ByteBuffer
+	allocate(
+		sizeClass	sc )
+	{
+		if ( sc.size <= SLAB_ENTRY_MAX_SIZE ){
+
+				// carve a slab up, we keep the first and make the rest available globally
+
+			ByteBuffer	slab = allocateDirect( SLAB_SIZE );
+
+			int	entries = SLAB_SIZE / sc.size;
+
+			ByteBuffer	result = null;
+
+			for ( int i=0;i<entries;i++){
+
+				slab.limit(( i+1 ) * sc.size );
+				slab.position( i * sc.size );
+
+				ByteBuffer	slice = slab.slice();
+
+				if ( i == 0 ){
+
+					result = slice;
+
+				}else{
+
+					sc.free.offerLast( slice );
+				}
+			}
+
+			sc.free_count.addAndGet( entries - 1 );
+
+			free_bytes.addAndGet((long)( entries - 1 ) * sc.size );
+
+			sc.allocs.incrementAndGet();
+
+			return( result );
+
+		}else{
+
+			sc.allocs.incrementAndGet();
+
+			return( allocateDirect( sc.size ));
+		}
+	}
+
+	private ByteBuffer
+	allocateDirect(
+		int		size )
+	{
+		try{
+			ByteBuffer	result = ByteBuffer.allocateDirect( size );
+
+			allocated_bytes.addAndGet( size );
+
+			return( result );
+
+		}catch( OutOfMemoryError e ){
+
+			oom_count.incrementAndGet();
+
+				// release everything we are holding on to and try again. allocateDirect itself
+				// triggers a GC before failing so there's nothing to gain by forcing one here
+
+			clear();
+
+			try{
+				ByteBuffer	result = ByteBuffer.allocateDirect( size );
+
+				allocated_bytes.addAndGet( size );
+
+				return( result );
+
+			}catch( OutOfMemoryError ex ){
+
+				String msg = "Memory allocation failed: Out of direct memory space.\n"
+						+ "To fix: Use the -XX:MaxDirectMemorySize=512m command line option,\n"
+						+ "or upgrade your Java JRE to version 1.4.2_05 or 1.5 series or newer.";
+
+				Debug.out( msg );
+
+				Logger.log(new LogAlert(LogAlert.UNREPEATABLE, LogAlert.AT_ERROR, msg));
+
+				throw( ex );
+			}
+		}
+	}
+
+	private void
+	clear()
+	{
+		for ( threadCache tc: thread_caches ){
+
+			tc.flush( classes );
+		}
+
+		for ( sizeClass sc: classes ){
+
+			removeFree( sc, Integer.MAX_VALUE );
+		}
+	}
+
+	private int
+	removeFree(
+		sizeClass	sc,
+		int			max )
+	{
+		int	removed = 0;
+
+		while( removed < max ){
+
+			ByteBuffer	buff = sc.free.pollLast();
+
+			if ( buff == null ){
+
+				break;
+			}
+
+			sc.free_count.decrementAndGet();
+
+			free_bytes.addAndGet( -sc.size );
+
+			removed++;
+		}
+
+		return( removed );
+	}
+
+		/**
+		 * Same decay policy as the original pool's compaction - shrink free memory to between 50% and
+		 * 100% depending on how full we are, working from the largest classes down
+		 */
+
+	private void
+	trim()
+	{
+		retireDeadThreads();
+
+			// caches of live threads that have been idle since the last trim go back to the free
+			// lists so they are subject to the decay below
+
+		for ( threadCache tc: thread_caches ){
+
+			if ( !tc.resetUsed()){
+
+				tc.flush( classes );
+			}
+		}
+
+		long	free = free_bytes.get();
+
+		if ( free < MIN_FREE_BYTES ){
+
+			return;
+		}
+
+		float remaining_factor;
+
+		if ( free > max_free_bytes ){
+
+			remaining_factor = 0.5f * max_free_bytes / (float)free;
+
+		}else{
+
+			remaining_factor = 1.0f - 0.5f * free / (float)max_free_bytes;
+		}
+
+		for ( int i=classes.length-1; i>=0; i-- ){
+
+			sizeClass	sc = classes[i];
+
+			int	count = sc.free_count.get();
+
+			int	limit = (int)( count * remaining_factor );
+
+			if ( count > limit ){
+
+				sc.trimmed.addAndGet( removeFree( sc, count - limit ));
+			}
+		}
+	}
+
+		/**
+		 * Caches belonging to threads that have exited are dropped (their buffers go to the GC)
+		 * after their accounting has been folded into the totals
+		 */
+
+	private void
+	retireDeadThreads()
+	{
+		Iterator<threadCache>	it = thread_caches.iterator();
+
+		while( it.hasNext()){
+
+			threadCache	tc = it.next();
+
+			Thread	owner = tc.owner.get();
+
+			if ( owner == null || !owner.isAlive()){
+
+				it.remove();
+
+				free_bytes.addAndGet( -tc.discard());
+
+				for ( int i=0;i<num_al;i++){
+
+					al_in_use_count.addAndGet( i, tc.al_in_use_count[i] );
+					al_in_use_bytes.addAndGet( i, tc.al_in_use_bytes[i] );
+					al_total_count.addAndGet( i, tc.al_total_count[i] );
+				}
+			}
+		}
+	}
+
+	@Override
+	public void
+	generate(
+		IndentWriter		writer )
+	{
+		writer.println( "DirectByteBuffer Pool" );
+
+		try{
+			writer.indent();
+
+			writer.println(
+				"allocated=" + DisplayFormatters.formatByteCountToKiBEtc( allocated_bytes.get()) +
+				", free=" + DisplayFormatters.formatByteCountToKiBEtc( free_bytes.get()) +
+				" (max " + DisplayFormatters.formatByteCountToKiBEtc( max_free_bytes ) + ")" +
+				", oom=" + oom_count.get());
+
+			writer.println( "Size classes" );
+
+			try{
+				writer.indent();
+
+				for ( sizeClass sc: classes ){
+
+					long	allocs = sc.allocs.get();
+
+					if ( allocs == 0 ){
+
+						continue;
+					}
+
+					writer.println(
+						sc.size + ": allocs=" + allocs +
+						", global hits=" + sc.global_hits.get() +
+						", free=" + sc.free_count.get() +
+						", dropped=" + sc.dropped.get() +
+						", trimmed=" + sc.trimmed.get());
+				}
+			}finally{
+
+				writer.exdent();
+			}
+
+			retireDeadThreads();
+
+			long[]	in_use_count	= new long[num_al];
+			long[]	in_use_bytes	= new long[num_al];
+			long[]	total_count		= new long[num_al];
+
+			for ( int i=0;i<num_al;i++){
+
+				in_use_count[i]	= al_in_use_count.get( i );
+				in_use_bytes[i]	= al_in_use_bytes.get( i );
+				total_count[i]	= al_total_count.get( i );
+			}
+
+				// unsynchronised reads of the live threads' counters, good enough for diagnostics
+
+			for ( threadCache tc: thread_caches ){
+
+				for ( int i=0;i<num_al;i++){
+
+					in_use_count[i]	+= tc.al_in_use_count[i];
+					in_use_bytes[i]	+= tc.al_in_use_bytes[i];
+					total_count[i]	+= tc.al_total_count[i];
+				}
+			}
+
+			long	cached = 0;
+
+			for ( threadCache tc: thread_caches ){
+
+				cached += tc.cached_bytes;
+			}
+
+			writer.println( "Thread caches=" + thread_caches.size() + ", cached=" + DisplayFormatters.formatByteCountToKiBEtc( cached ));
+
+			writer.println( "Allocators" );
+
+			try{
+				writer.indent();
+
+				for ( int i=0;i<num_al;i++){
+
+					long	total = total_count[i];
+
+					if ( total == 0 ){
+
+						continue;
+					}
+
+					writer.println(
+						DirectByteBuffer.AL_DESCS[i] + ": in use=" + in_use_count[i] +
+						" (" + DisplayFormatters.formatByteCountToKiBEtc( in_use_bytes[i] ) + ")" +
+						", total=" + total );
+				}
+			}finally{
+
+				writer.exdent();
+			}
+		}finally{
+
+			writer.exdent();
+		}
+	}
+
+	private static class
+	sizeClass
+	{
+		final int		index;
+		final int		size;
+		final int		thread_cache_max;
+
+		final ConcurrentLinkedDeque<ByteBuffer>	free = new ConcurrentLinkedDeque<>();
+
+			// the deque's size() is O(n) so we track it ourselves
+
+		final AtomicInteger		free_count	= new AtomicInteger();
+
+		final AtomicLong		allocs		= new AtomicLong();
+		final AtomicLong		global_hits	= new AtomicLong();
+		final AtomicLong		dropped		= new AtomicLong();
+		final AtomicLong		trimmed		= new AtomicLong();
+
+		sizeClass(
+			int		_index,
+			int		_size )
+		{
+			index	= _index;
+			size	= _size;
+
+			if ( size <= THREAD_CACHE_MAX_SIZE ){
+
+				thread_cache_max = Math.max( 2, Math.min( THREAD_CACHE_MAX_COUNT, THREAD_CACHE_CLASS_BYTES / size ));
+
+			}else{
+
+				thread_cache_max = 0;
+			}
+		}
+	}
+
+		/**
+		 * Only the owning thread pushes and pops but trimming flushes caches from other threads,
+		 * hence the (almost always uncontended) synchronization
+		 */
+
+	private static class
+	threadCache
+	{
+		final WeakReference<Thread>		owner = new WeakReference<>( Thread.currentThread());
+
+		volatile long	cached_bytes;
+
+		private boolean	used;
+
+		final long[]	al_in_use_count;
+		final long[]	al_in_use_bytes;
+		final long[]	al_total_count;
+
+		private final ByteBuffer[][]	stacks;
+		private final int[]				counts;
+
+		threadCache(
+			sizeClass[]		classes,
+			int				num_al )
+		{
+			al_in_use_count	= new long[num_al];
+			al_in_use_bytes	= new long[num_al];
+			al_total_count	= new long[num_al];
+
+			stacks	= new ByteBuffer[classes.length][];
+			counts	= new int[classes.length];
+
+			for ( int i=0;i<classes.length;i++){
+
+				stacks[i] = new ByteBuffer[ classes[i].thread_cache_max ];
+			}
+		}
+
+		synchronized ByteBuffer
+		pop(
+			int		index,
+			int		size )
+		{
+			used = true;
+
+			int	count = counts[index];
+
+			if ( count == 0 ){
+
+				return( null );
+			}
+
+			count--;
+
+			ByteBuffer[]	stack = stacks[index];
+
+			ByteBuffer	result = stack[count];
+
+			stack[count] = null;
+
+			counts[index] = count;
+
+			cached_bytes -= size;
+
+			return( result );
+		}
+
+		synchronized boolean
+		push(
+			int			index,
+			ByteBuffer	buffer )
+		{
+			used = true;
+
+			ByteBuffer[]	stack = stacks[index];
+
+			int	count = counts[index];
+
+			if ( count == stack.length ){
+
+				return( false );
+			}
+
+			stack[count] = buffer;
+
+			counts[index] = count + 1;
+
+			cached_bytes += buffer.capacity();
+
+			return( true );
+		}
+
+			/**
+			 * @return whether the cache has been used since the last call
+			 */
+
+		synchronized boolean
+		resetUsed()
+		{
+			boolean	result = used;
+
+			used = false;
+
+			return( result );
+		}
+
+			/**
+			 * Moves everything cached to the global free lists, the bytes remain counted as free
+			 */
+
+		synchronized void
+		flush(
+			sizeClass[]		classes )
+		{
+			for ( int i=0;i<stacks.length;i++){
+
+				ByteBuffer[]	stack = stacks[i];
+
+				int	count = counts[i];
+
+				if ( count == 0 ){
+
+					continue;
+				}
+
+				sizeClass	sc = classes[i];
+
+				for ( int j=0;j<count;j++){
+
+					sc.free.offerLast( stack[j] );
+
+					stack[j] = null;
+				}
+
+				sc.free_count.addAndGet( count );
+
+				counts[i] = 0;
+			}
+
+			cached_bytes = 0;
+		}
+
+			/**
+			 * Drops everything cached
+			 * @return the number of bytes dropped
+			 */
+
+		synchronized long
+		discard()
+		{
+			long	result = cached_bytes;
+
+			for ( int i=0;i<stacks.length;i++){
+
+				Arrays.fill( stacks[i], null );
+
+				counts[i] = 0;
+			}
+
+			cached_bytes = 0;
+
+			return( result );
+		}
+	}
+}
@@ -584,6 +584,26 @@ public class FileUtil {
 	  writeResilientFile( parent_dir, file_name, data, use_backups );
   }
 
+  public static boolean
+  writeResilientConfigFileWithResult(
+  	String		file_name,
+	Map			data )
+  {
+	  File parent_dir = newFile(SystemProperties.getUserPath());
+
+	  if ( COConfigurationManager.getBooleanParameter("Use Config File Backups" )){
+
+		  File	originator = newFile( parent_dir, file_name );
+
+		  if ( originator.exists()){
+
+			  backupFile( originator, true );
+		  }
+	  }
+
+	  return( writeResilientFileWithResult( parent_dir, file_name, data ));
+  }
+
   public static void
   writeResilientFile(
 	File		file,
@@ -27,6 +27,21 @@ package com.biglybt.core.util;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Events are held in a hierarchical timing wheel: 10ms ticks, 256 slots at the bottom level and
+ * 64 at each of the three above it (covering about 7.7 days), with anything further out kept on
+ * an overflow list. Slots at the upper levels are cascaded down as the wheel turns, so add, cancel
+ * and dispatch are constant time regardless of the number of events.
+ * <p>
+ * The wheel itself is only touched under the timer's monitor, normally by the timer thread. Other
+ * threads queue additions and cancellations which the timer thread drains when it wakes, they only
+ * take the monitor to wake it when the new event is due before the currently scheduled wake up.
+ */
 
 public class Timer
 	extends 	AERunnable
@@ -36,13 +51,46 @@ public class Timer
 	private static ArrayList<WeakReference<Timer>> timers = null;
 	static final AEMonitor timers_mon = new AEMonitor("timers list");
 
+	private static final long	TICK_MILLIS		= 10;
+
+	private static final int	WHEEL_LEVELS	= 4;
+
+	private static final int[]	LEVEL_SHIFTS	= { 0, 8, 14, 20 };
+	private static final int[]	LEVEL_SIZES		= { 256, 64, 64, 64 };
+
+	private static final int	LEVEL_OVERFLOW	= WHEEL_LEVELS;
+	private static final int	LEVEL_READY		= WHEEL_LEVELS + 1;
+
+		// wheel_level values of events not linked into the wheel
+
+	static final int	WL_PENDING		= -1;
+	static final int	WL_CANCELLED	= -2;
+	static final int	WL_DONE			= -3;
+
+		// wake the timer thread to drain the queues if they get this long, regardless of when it's due
+
+	private static final int	PENDING_WAKE_LIMIT	= 1024;
+
+	private static final int	STATS_LOGGED		= 25;
+
 	private ThreadPool	thread_pool;
 
-	private Set<TimerEvent>	events = new TreeSet<>();
+	private final TimerEvent[][]	slots		= new TimerEvent[WHEEL_LEVELS+2][];
+	private final long[][]			occupied	= new long[WHEEL_LEVELS][];
+
+	private long	current_tick;
 
-	private long	unique_id_next	= 0;
+	private final ConcurrentLinkedQueue<TimerEvent>	pending_adds 	= new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<TimerEvent>	pending_cancels = new ConcurrentLinkedQueue<>();
 
-	private long				current_when;
+	private final AtomicInteger		pending_count	= new AtomicInteger();
+	private final AtomicInteger		event_count		= new AtomicInteger();
+
+	private final AtomicLong	unique_id_next	= new AtomicLong();
+
+	private final ConcurrentHashMap<String,eventStats>	event_stats = new ConcurrentHashMap<>();
+
+	private volatile long		current_when;
 	private volatile boolean	destroyed;
 	private boolean				indestructable;
 
@@ -85,6 +133,17 @@ public class Timer
 			}
 		}
 
+		for ( int i=0;i<WHEEL_LEVELS;i++){
+
+			slots[i]	= new TimerEvent[LEVEL_SIZES[i]];
+			occupied[i]	= new long[( LEVEL_SIZES[i] + 63 )/64];
+		}
+
+		slots[LEVEL_OVERFLOW]	= new TimerEvent[1];
+		slots[LEVEL_READY]		= new TimerEvent[1];
+
+		current_tick = SystemTime.getCurrentTime()/TICK_MILLIS;
+
 		thread_pool = new ThreadPool(name,thread_pool_size);
 
 		SystemTime.registerClockChangeListener( this );
@@ -113,14 +172,16 @@ public class Timer
 	public synchronized long
 	getLag()
 	{
-		if ( events.isEmpty()){
+		drainPending();
+
+		TimerEvent ev = getEarliestEvent();
+
+		if ( ev == null ){
 			
 			return( 0 );
 			
 		}else{
 			
-			TimerEvent ev = events.iterator().next();
-		
 			long lag = SystemTime.getCurrentTime()-ev.getWhen();
 		
 			if ( lag < 0 ){
@@ -137,13 +198,34 @@ public class Timer
 	public synchronized List<TimerEvent>
 	getEvents()
 	{
-		return(new ArrayList<>(events));
+		drainPending();
+
+		List<TimerEvent>	result = new ArrayList<>( event_count.get());
+
+		for ( TimerEvent[] level: slots ){
+
+			for ( TimerEvent ev: level ){
+
+				while( ev != null ){
+
+					result.add( ev );
+
+					ev = ev.wheel_next;
+				}
+			}
+		}
+
+		Collections.sort( result );
+
+		return( result );
 	}
 	
 	public synchronized List<TimerEvent>
 	getEvents(
 		long	up_to_when )
 	{
+		List<TimerEvent>	events = getEvents();
+		
 		List<TimerEvent>	result = new ArrayList<>( events.size());
 				
 		for ( TimerEvent ev: events ){
@@ -165,26 +247,14 @@ public class Timer
 	public int
 	getEventCount()
 	{
-		return( events.size());
+		return( event_count.get());
 	}
 	
 	public synchronized int
 	getEventCount(
 		long	up_to_when )
 	{
-		int	result = 0;
-		
-		for ( TimerEvent ev: events ){
-			
-			if ( ev.getWhen() >= up_to_when ){
-			
-				break;
-			}
-			
-			result++;
-		}
-		
-		return( result );
+		return( getEvents( up_to_when ).size());
 	}
 	
 	public void
@@ -221,11 +291,11 @@ public class Timer
 	public void
 	runSupport()
 	{
+		List<TimerEvent>	to_run = new ArrayList<>();
+
 		while( true ){
 
 			try{
-				TimerEvent	event_to_run = null;
-
 				synchronized(this){
 
 					if ( destroyed ){
@@ -233,121 +303,512 @@ public class Timer
 						break;
 					}
 
-					if ( events.isEmpty()){
+					drainPending();
 
-						// System.out.println( "waiting forever" );
+					long	now = SystemTime.getCurrentTime();
 
-						try{
-							current_when = Integer.MAX_VALUE;
+					long	now_tick = now/TICK_MILLIS;
 
-							this.wait();
+					if ( now_tick < current_tick ){
 
-						}finally{
+							// clock has gone backwards without us being told (small changes aren't reported)
 
-							current_when = 0;
-						}
-					}else{
+						reschedule( now_tick, removeAll());
+					}
 
-						long	now = SystemTime.getCurrentTime();
+					advance( now_tick );
 
-						TimerEvent	next_event = (TimerEvent)events.iterator().next();
+					takeReady( to_run );
 
-						long	when = next_event.getWhen();
+					if ( to_run.isEmpty()){
 
-						long	delay = when - now;
+						long	next_tick = getNextTick();
 
-						if ( delay > 0 ){
+						long	when = next_tick==Long.MAX_VALUE?Long.MAX_VALUE:next_tick*TICK_MILLIS;
 
-							// System.out.println( "waiting for " + delay );
+						current_when = when;
 
-							try{
-								current_when = when;
+						try{
+								// anything queued after we drained either saw current_when and woke us or is
+								// due after it
+
+							if ( pending_count.get() <= 0 ){
+
+								if ( when == Long.MAX_VALUE ){
 
-								this.wait(delay);
+									// System.out.println( "waiting forever" );
 
-							}finally{
+									this.wait();
 
-								current_when = 0;
+								}else{
+
+									// System.out.println( "waiting for " + ( when - now ));
+
+									this.wait( Math.max( 1, when - now ));
+								}
 							}
+						}finally{
+
+							current_when = 0;
 						}
+
+						continue;
 					}
+				}
 
-					if ( destroyed ){
+					// dispatch everything that came due together, in schedule order
 
-						break;
-					}
+				if ( to_run.size() > 1 ){
 
-					if ( events.isEmpty()){
+					Collections.sort( to_run );
+				}
 
-						continue;
+				for ( TimerEvent event: to_run ){
+
+					try{
+						dispatch( event );
+
+					}catch( Throwable e ){
+
+						Debug.printStackTrace( e );
 					}
+				}
 
-					long	now = SystemTime.getCurrentTime();
+			}catch( Throwable e ){
+
+				Debug.printStackTrace( e );
 
-					Iterator<TimerEvent>	it = events.iterator();
+			}finally{
 
-					TimerEvent	next_event = it.next();
+				to_run.clear();
+			}
+		}
+	}
 
-					long rem = next_event.getWhen() - now;
+	private void
+	dispatch(
+		TimerEvent		event_to_run )
+	{
+			// may have been cancelled while earlier events in the batch were dispatched
 
-					if ( rem <= SystemTime.TIME_GRANULARITY_MILLIS ){
+		if ( event_to_run.isCancelled()){
 
-						event_to_run = next_event;
+			return;
+		}
 
-						it.remove();
+		event_to_run.setHasRun();
 
-						/*
-						if ( rem < -100 ){
+		if (log) {
+			System.out.println( "running: " + event_to_run.getString() );
+		}
+		
+		if ( Constants.IS_CVS_VERSION && slow_event_limit > 0 ){
+			
+			final TimerEvent event = event_to_run;
+			
+			thread_pool.run(
+				new AERunnable.AERunnableNamed( event.getName()){
+						
+					long queued = SystemTime.getMonotonousTime();
 
-							System.out.println( "Late scheduling [" + (-rem) + "] of " + event_to_run.getString());
+					@Override
+					public void runSupport(){
+						
+						event.getRunnable().runSupport();
+						
+						long elapsed = SystemTime.getMonotonousTime() - queued;
+						
+						if ( elapsed > slow_event_limit ){
+						
+							System.out.println( "Timer event '" + event.getName() + "' took " + elapsed );
 						}
-						*/
 					}
+				});
+		}else{
+
+			thread_pool.run(event_to_run.getRunnable());
+		}
+	}
+
+		// wheel maintenance, all under the monitor
+
+	private void
+	drainPending()
+	{
+		int	drained = 0;
+
+		TimerEvent	event;
+
+		while(( event = pending_adds.poll()) != null ){
+
+			drained++;
+
+			if ( event.wheel_level == WL_CANCELLED ){
+
+				event.wheel_level = WL_DONE;
+
+				event_count.decrementAndGet();
+
+			}else{
+
+				schedule( event );
+			}
+		}
+
+		while(( event = pending_cancels.poll()) != null ){
+
+			drained++;
+
+			int	level = event.wheel_level;
+
+			if ( level >= 0 ){
+
+				unlink( event );
+
+				event.wheel_level = WL_DONE;
+
+				event_count.decrementAndGet();
+
+			}else if ( level == WL_PENDING ){
+
+					// added after we drained the additions, picked up next time around
+
+				event.wheel_level = WL_CANCELLED;
+			}
+		}
+
+		if ( drained > 0 ){
+
+			pending_count.addAndGet( -drained );
+		}
+	}
+
+	private void
+	schedule(
+		TimerEvent	event )
+	{
+		long	tick	= event.getWhen()/TICK_MILLIS;
+		long	delta	= tick - current_tick;
+
+		if ( delta <= 0 ){
+
+			link( event, LEVEL_READY, 0 );
+
+			return;
+		}
+
+		for ( int level=0;level<WHEEL_LEVELS;level++){
+
+			int	shift = LEVEL_SHIFTS[level];
+
+			if ( delta < ((long)LEVEL_SIZES[level]) << shift ){
+
+				link( event, level, (int)(( tick >> shift ) & ( LEVEL_SIZES[level] - 1 )));
+
+				return;
+			}
+		}
+
+		link( event, LEVEL_OVERFLOW, 0 );
+	}
+
+	private void
+	link(
+		TimerEvent	event,
+		int			level,
+		int			slot )
+	{
+		TimerEvent	head = slots[level][slot];
+
+		event.wheel_prev	= null;
+		event.wheel_next	= head;
+
+		if ( head != null ){
+
+			head.wheel_prev = event;
+		}
+
+		slots[level][slot] = event;
+
+		event.wheel_level	= level;
+		event.wheel_slot	= slot;
+
+		if ( level < WHEEL_LEVELS ){
+
+			occupied[level][slot>>>6] |= 1L << ( slot & 63 );
+		}
+	}
+
+	private void
+	unlink(
+		TimerEvent	event )
+	{
+		int	level	= event.wheel_level;
+		int	slot	= event.wheel_slot;
+
+		TimerEvent	prev = event.wheel_prev;
+		TimerEvent	next = event.wheel_next;
+
+		if ( prev == null ){
+
+			slots[level][slot] = next;
+
+		}else{
+
+			prev.wheel_next = next;
+		}
+
+		if ( next != null ){
+
+			next.wheel_prev = prev;
+		}
+
+		event.wheel_prev	= null;
+		event.wheel_next	= null;
+
+		if ( level < WHEEL_LEVELS && slots[level][slot] == null ){
+
+			occupied[level][slot>>>6] &= ~( 1L << ( slot & 63 ));
+		}
+	}
+
+	private TimerEvent
+	detachSlot(
+		int		level,
+		int		slot )
+	{
+		TimerEvent	head = slots[level][slot];
+
+		slots[level][slot] = null;
+
+		if ( level < WHEEL_LEVELS ){
+
+			occupied[level][slot>>>6] &= ~( 1L << ( slot & 63 ));
+		}
+
+		return( head );
+	}
+
+	private void
+	rescheduleChain(
+		TimerEvent	event )
+	{
+		while( event != null ){
+
+			TimerEvent	next = event.wheel_next;
+
+			schedule( event );
+
+			event = next;
+		}
+	}
+
+		/**
+		 * Distance from start to the first occupied slot of a level, wrapping, -1 if empty
+		 */
+
+	private int
+	nextOccupied(
+		int		level,
+		int		start )
+	{
+		long[]	bits	= occupied[level];
+		int		size	= LEVEL_SIZES[level];
+
+		for ( int i=0;i<size;){
+
+			int	index = ( start + i ) & ( size - 1 );
+
+			long	word = bits[index>>>6] >>> ( index & 63 );
+
+			if ( word != 0 ){
+
+				int	distance = i + Long.numberOfTrailingZeros( word );
+
+				return( distance<size?distance:-1 );
+			}
+
+			i += 64 - ( index & 63 );
+		}
+
+		return( -1 );
+	}
+
+		/**
+		 * The next tick at which something needs doing: a bottom level slot coming due or an
+		 * occupied upper level slot (or the overflow list) needing to be cascaded
+		 */
 
-					// System.out.println( getName() +": events=" + events.size() + ", to_run=" +  (event_to_run==null?"null":event_to_run.getString()));
+	private long
+	getNextTick()
+	{
+		long	result = Long.MAX_VALUE;
+
+		for ( int level=0;level<WHEEL_LEVELS;level++){
+
+			int		shift	= LEVEL_SHIFTS[level];
+			long	base	= current_tick >> shift;
+
+			int	distance = nextOccupied( level, (int)(( base + 1 ) & ( LEVEL_SIZES[level] - 1 )));
+
+			if ( distance >= 0 ){
+
+				result = Math.min( result, ( base + 1 + distance ) << shift );
+			}
+		}
+
+		if ( slots[LEVEL_OVERFLOW][0] != null ){
+
+			int	shift = LEVEL_SHIFTS[WHEEL_LEVELS-1];
+
+			result = Math.min( result, (( current_tick >> shift ) + 1 ) << shift );
+		}
+
+		return( result );
+	}
+
+	private void
+	advance(
+		long		now_tick )
+	{
+		while( current_tick < now_tick ){
+
+			long	next_tick = getNextTick();
+
+			if ( next_tick > now_tick ){
+
+				current_tick = now_tick;
+
+				break;
+			}
+
+			current_tick = next_tick;
+
+				// cascade from the top down so events can move through several levels at once
+
+			int	top_shift = LEVEL_SHIFTS[WHEEL_LEVELS-1];
+
+			if (( next_tick & (( 1L << top_shift ) - 1 )) == 0 ){
+
+				rescheduleChain( detachSlot( LEVEL_OVERFLOW, 0 ));
+			}
+
+			for ( int level=WHEEL_LEVELS-1;level>0;level--){
+
+				int	shift = LEVEL_SHIFTS[level];
+
+				if (( next_tick & (( 1L << shift ) - 1 )) == 0 ){
+
+					rescheduleChain( detachSlot( level, (int)(( next_tick >> shift ) & ( LEVEL_SIZES[level] - 1 ))));
 				}
+			}
 
-				if ( event_to_run != null ){
+			rescheduleChain( detachSlot( 0, (int)( next_tick & ( LEVEL_SIZES[0] - 1 ))));
+		}
+	}
 
-					event_to_run.setHasRun();
+	private void
+	takeReady(
+		List<TimerEvent>	result )
+	{
+		TimerEvent	event = detachSlot( LEVEL_READY, 0 );
 
-					if (log) {
-						System.out.println( "running: " + event_to_run.getString() );
-					}
-					
-					if ( Constants.IS_CVS_VERSION && slow_event_limit > 0 ){
-						
-						final TimerEvent event = event_to_run;
-						
-						thread_pool.run(
-							new AERunnable.AERunnableNamed( event.getName()){
-									
-								long queued = SystemTime.getMonotonousTime();
-
-								@Override
-								public void runSupport(){
-									
-									event.getRunnable().runSupport();
-									
-									long elapsed = SystemTime.getMonotonousTime() - queued;
-									
-									if ( elapsed > slow_event_limit ){
-									
-										System.out.println( "Timer event '" + event.getName() + "' took " + elapsed );
-									}
-								}
-							});
-					}else{
+		while( event != null ){
 
-						thread_pool.run(event_to_run.getRunnable());
-					}
+			TimerEvent	next = event.wheel_next;
+
+			event.wheel_prev	= null;
+			event.wheel_next	= null;
+			event.wheel_level	= WL_DONE;
+
+			event_count.decrementAndGet();
+
+				// a cancel made since the last drain is still queued, don't let the event run
+
+			if ( !event.isCancelled()){
+
+				result.add( event );
+			}
+
+			event = next;
+		}
+	}
+
+	private List<TimerEvent>
+	removeAll()
+	{
+		List<TimerEvent>	result = new ArrayList<>( event_count.get());
+
+		for ( int level=0;level<slots.length;level++){
+
+			for ( int slot=0;slot<slots[level].length;slot++){
+
+				TimerEvent	event = detachSlot( level, slot );
+
+				while( event != null ){
+
+					result.add( event );
+
+					event = event.wheel_next;
 				}
+			}
+		}
 
-			}catch( Throwable e ){
+		return( result );
+	}
 
-				Debug.printStackTrace( e );
+	private void
+	reschedule(
+		long				base_tick,
+		List<TimerEvent>	events )
+	{
+		current_tick = base_tick;
+
+		for ( TimerEvent event: events ){
+
+			schedule( event );
+		}
+	}
+
+	private TimerEvent
+	getEarliestEvent()
+	{
+			// the first occupied slot of each level holds that level's earliest events
+
+		List<TimerEvent>	candidates = new ArrayList<>();
+
+		candidates.add( slots[LEVEL_READY][0] );
+		candidates.add( slots[LEVEL_OVERFLOW][0] );
+
+		for ( int level=0;level<WHEEL_LEVELS;level++){
+
+			int		size	= LEVEL_SIZES[level];
+			long	base	= current_tick >> LEVEL_SHIFTS[level];
+
+			int	distance = nextOccupied( level, (int)(( base + 1 ) & ( size - 1 )));
+
+			if ( distance >= 0 ){
+
+				candidates.add( slots[level][(int)(( base + 1 + distance ) & ( size - 1 ))]);
 			}
 		}
+
+		TimerEvent	result = null;
+
+		for ( TimerEvent event: candidates ){
+
+			while( event != null ){
+
+				if ( result == null || event.compareTo( result ) < 0 ){
+
+					result = event;
+				}
+
+				event = event.wheel_next;
+			}
+		}
+
+		return( result );
 	}
 
 	@Override
@@ -362,13 +823,11 @@ public class Timer
 
 			synchronized( this ){
 
-				Iterator<TimerEvent>	it = events.iterator();
+				drainPending();
 
-				List<TimerEvent>	updated_events = new ArrayList<>(events.size());
+				List<TimerEvent>	events = removeAll();
 
-				while (it.hasNext()){
-
-					TimerEvent	event = (TimerEvent)it.next();
+				for ( TimerEvent event: events ){
 
 						// absolute events don't have their timings fiddled with
 
@@ -410,15 +869,11 @@ public class Timer
 							event.setWhen( new_when );
 						}
 					}
-
-					updated_events.add( event );
 				}
 
-					// resort - we have to use an alternative list of events as input because if we just throw the
-					// treeset in the constructor optimises things under the assumption that the original set
-					// was correctly sorted...
+					// the wheel is positioned relative to the (new) current time
 
-				events = new TreeSet<>(updated_events);
+				reschedule( current_time/TICK_MILLIS, events );
 			}
 		}
 	}
@@ -438,13 +893,11 @@ public class Timer
 
 			synchronized( this ){
 
-				Iterator<TimerEvent>	it = events.iterator();
-
-				boolean	updated = false;
+				drainPending();
 
-				while ( it.hasNext()){
+				List<TimerEvent>	events = removeAll();
 
-					TimerEvent	event = (TimerEvent)it.next();
+				for ( TimerEvent event: events ){
 
 						// absolute events don't have their timings fiddled with
 
@@ -469,17 +922,14 @@ public class Timer
 								//Debug.outNoStack( periodic_event.getName() + ": clock change sanity check. Reduced schedule time from " + old_when + " to " +  adjusted_when );
 
 								event.setWhen( adjusted_when );
-
-								updated = true;
 							}
 						}
 					}
 				}
 
-				if ( updated ){
+					// the timer thread may have moved the wheel on using the old time in the meantime
 
-					events = new TreeSet<>(new ArrayList<>(events));
-				}
+				reschedule( current_time/TICK_MILLIS, events );
 
 				// must have this notify here as the scheduling code uses the current time to calculate
 				// how long to sleep for and this needs to be guaranteed to be using the correct (new) time
@@ -497,15 +947,11 @@ public class Timer
 
 		synchronized (this) {
 
-				// as we're adjusting all events by the same amount the ordering remains valid
-
-			Iterator<TimerEvent> it = events.iterator();
+			drainPending();
 
-			boolean resort = false;
+			List<TimerEvent> events = removeAll();
 
-			while (it.hasNext()) {
-
-				TimerEvent event = it.next();
+			for ( TimerEvent event: events ){
 
 				long old_when = event.getWhen();
 				long new_when = old_when + offset;
@@ -516,8 +962,6 @@ public class Timer
 
 					// Debug.out( "Ignoring wrap around for " + event.getName());
 
-					resort = true;
-
 				}else{
 
 					// System.out.println( "    adjusted: " + old_when + " -> " + new_when );
@@ -526,10 +970,7 @@ public class Timer
 				}
 			}
 
-			if ( resort ){
-
-				events = new TreeSet<>(new ArrayList<>(events));
-			}
+			reschedule( current_tick, events );
 
 			notify();
 		}
@@ -542,13 +983,17 @@ public class Timer
 	{
 		synchronized( this ){
 			
-			if ( events.remove( event )){
+			drainPending();
+
+			if ( event.wheel_level >= 0 ){
 				
+				unlink( event );
+
 				event.setWhen( new_when );
 				
-				events.add( event );
+				schedule( event );
 				
-				if ( current_when == Integer.MAX_VALUE || new_when < current_when ){
+				if ( new_when < current_when ){
 
 					notify();
 				}
@@ -556,7 +1001,7 @@ public class Timer
 		}
 	}
 	
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		long				when,
 		TimerEventPerformer	performer )
@@ -564,7 +1009,7 @@ public class Timer
 		return( addEvent( SystemTime.getCurrentTime(), when, performer ));
 	}
 
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		String				name,
 		long				when,
@@ -573,7 +1018,7 @@ public class Timer
 		return( addEvent( name, SystemTime.getCurrentTime(), when, performer ));
 	}
 
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		String				name,
 		long				when,
@@ -583,7 +1028,7 @@ public class Timer
 		return( addEvent( name, SystemTime.getCurrentTime(), when, absolute, performer ));
 	}
 
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		long				creation_time,
 		long				when,
@@ -592,7 +1037,7 @@ public class Timer
 		return( addEvent( null, creation_time, when, performer ));
 	}
 
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		long				creation_time,
 		long				when,
@@ -602,7 +1047,7 @@ public class Timer
 		return( addEvent( null, creation_time, when, absolute, performer ));
 	}
 
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		String				name,
 		long				creation_time,
@@ -612,7 +1057,7 @@ public class Timer
 		return( addEvent( name, creation_time, when, false, performer ));
 	}
 
-	public synchronized TimerEvent
+	public TimerEvent
 	addEvent(
 		String				name,
 		long				creation_time,
@@ -620,36 +1065,45 @@ public class Timer
 		boolean				absolute,
 		TimerEventPerformer	performer )
 	{
-		TimerEvent	event = new TimerEvent( this, unique_id_next++, creation_time, when, absolute, performer );
+		TimerEvent	event = new TimerEvent( this, unique_id_next.getAndIncrement(), creation_time, when, absolute, performer );
 
 		if ( name != null ){
 
 			event.setName( name );
 		}
 
-		events.add( event );
+		int	count = event_count.incrementAndGet();
+
+		pending_adds.add( event );
+
+		int	pending = pending_count.incrementAndGet();
 
 		if ( log ){
 
-			if ( events.size() > max_events_logged ){
+			if ( count > max_events_logged ){
 
-				max_events_logged = events.size();
+				max_events_logged = count;
 
 				System.out.println( "Timer '" + thread_pool.getName() + "' - events = " + max_events_logged );
 			}
 		}
 
-		// System.out.println( "event added (" + when + ") - queue = " + events.size());
+		// System.out.println( "event added (" + when + ") - queue = " + count );
 
-		if ( current_when == Integer.MAX_VALUE || when < current_when ){
+			// current_when is 0 while the timer thread is awake, it'll drain the queue before sleeping again
 
-			notify();
+		if ( when < current_when || ( pending > PENDING_WAKE_LIMIT && current_when != 0 )){
+
+			synchronized( this ){
+
+				notify();
+			}
 		}
 
 		return( event );
 	}
 
-	public synchronized TimerEventPeriodic
+	public TimerEventPeriodic
 	addPeriodicEvent(
 		long				frequency,
 		TimerEventPerformer	performer )
@@ -657,7 +1111,7 @@ public class Timer
 		return( addPeriodicEvent( null, frequency, performer ));
 	}
 
-	public synchronized TimerEventPeriodic
+	public TimerEventPeriodic
 	addPeriodicEvent(
 		String				name,
 		long				frequency,
@@ -666,7 +1120,7 @@ public class Timer
 		return( addPeriodicEvent( name, frequency, false, performer ));
 	}
 
-	public synchronized TimerEventPeriodic
+	public TimerEventPeriodic
 	addPeriodicEvent(
 		String				name,
 		long				frequency,
@@ -688,18 +1142,106 @@ public class Timer
 		return( periodic_performer );
 	}
 
-	protected synchronized void
+	protected void
 	cancelEvent(
 		TimerEvent	event )
 	{
-		if ( events.contains( event )){
+			// removed from the wheel when next drained, the timer thread will wake for it if it
+			// was next but will just find nothing to do
 
-			events.remove( event );
+		pending_cancels.add( event );
 
-			// System.out.println( "event cancelled (" + event.getWhen() + ") - queue = " + events.size());
+		if ( pending_count.incrementAndGet() > PENDING_WAKE_LIMIT && current_when != 0 ){
 
-			notify();
+			synchronized( this ){
+
+				notify();
+			}
+		}
+	}
+
+	protected void
+	eventRun(
+		TimerEvent	event,
+		long		lateness,
+		long		elapsed )
+	{
+		String	name = event.getName();
+
+		TimerEventPerformer	performer = event.getPerformer();
+
+		boolean	overrun = false;
+
+		if ( performer instanceof TimerEventPeriodic ){
+
+			TimerEventPeriodic	periodic = (TimerEventPeriodic)performer;
+
+			overrun = elapsed >= periodic.getFrequency();
+
+			performer = periodic.getPerformer();
+		}
+
+		if ( name == null ){
+
+			name = performer.getClass().getName();
+		}
+
+		lateness = Math.max( 0, lateness );
+
+		eventStats	stats = event_stats.get( name );
+
+		if ( stats == null ){
+
+				// publish with the first run recorded so a concurrent dump never sees runs == 0
+
+			stats = new eventStats( name );
+
+			stats.update( lateness, elapsed, overrun );
+
+			eventStats existing = event_stats.putIfAbsent( name, stats );
+
+			if ( existing == null ){
+
+				return;
+			}
+
+			stats = existing;
+		}
+
+		stats.update( lateness, elapsed, overrun );
+	}
+
+		/**
+		 * Per event name run statistics, busiest first
+		 */
+
+	public List<String>
+	getEventStats()
+	{
+		List<eventStats>	stats = new ArrayList<>( event_stats.values());
+
+		Collections.sort(
+			stats,
+			new Comparator<eventStats>()
+			{
+				@Override
+				public int
+				compare(
+					eventStats	s1,
+					eventStats	s2 )
+				{
+					return( Long.compare( s2.getRunTotal(), s1.getRunTotal()));
+				}
+			});
+
+		List<String>	result = new ArrayList<>( stats.size());
+
+		for ( eventStats s: stats ){
+
+			result.add( s.getString());
 		}
+
+		return( result );
 	}
 
 	public synchronized void
@@ -746,7 +1288,7 @@ public class Timer
 	{
 		System.out.println( "Timer '" + thread_pool.getName() + "': dump" );
 
-		Iterator	it = events.iterator();
+		Iterator	it = getEvents().iterator();
 
 		while(it.hasNext()){
 
@@ -756,6 +1298,65 @@ public class Timer
 		}
 	}
 
+	private static final class
+	eventStats
+	{
+		private final String	name;
+
+		private long	runs;
+		private long	overruns;
+		private long	late_total;
+		private long	late_max;
+		private long	run_total;
+		private long	run_max;
+
+		private
+		eventStats(
+			String		_name )
+		{
+			name	= _name;
+		}
+
+		private synchronized void
+		update(
+			long		lateness,
+			long		elapsed,
+			boolean		overrun )
+		{
+			runs++;
+
+			if ( overrun ){
+
+				overruns++;
+			}
+
+			late_total	+= lateness;
+			run_total	+= elapsed;
+
+			if ( lateness > late_max ){
+
+				late_max = lateness;
+			}
+
+			if ( elapsed > run_max ){
+
+				run_max = elapsed;
+			}
+		}
+
+		private synchronized long
+		getRunTotal()
+		{
+			return( run_total );
+		}
+
+		private synchronized String
+		getString()
+		{
+			return( name + ": runs=" + runs + ",run=" + run_total + "/" + (run_total/runs) + "/" + run_max + ",late=" + (late_total/runs) + "/" + late_max + (overruns==0?"":(",overruns=" + overruns )));
+		}
+	}
+
 	private static class
 	evidenceGenerator implements AEDiagnosticsEvidenceGenerator
 	{
@@ -790,6 +1391,18 @@ public class Timer
 
 								lines.add("  " + ev.getString());
 							}
+
+							List<String>	stats = timer.getEventStats();
+
+							if ( !stats.isEmpty()){
+
+								lines.add("  stats (total/avg/max run ms, avg/max lateness ms):");
+
+								for ( int i=0;i<Math.min( stats.size(), STATS_LOGGED );i++){
+
+									lines.add("    " + stats.get(i));
+								}
+							}
 						}
 					}
 				} finally {
@@ -43,6 +43,13 @@ TimerEvent
 
 	private long			unique_id	= 1;
 
+		// position in the owning timer's wheel, only accessed under its monitor
+
+	TimerEvent		wheel_prev;
+	TimerEvent		wheel_next;
+	int				wheel_level	= Timer.WL_PENDING;
+	int				wheel_slot;
+
 	protected
 	TimerEvent(
 		Timer					_timer,
@@ -130,7 +137,16 @@ TimerEvent
 	public void
 	runSupport()
 	{
-		performer.perform( this );
+		long	start 		= SystemTime.getMonotonousTime();
+		long	lateness	= SystemTime.getCurrentTime() - when;
+
+		try{
+			performer.perform( this );
+
+		}finally{
+
+			timer.eventRun( this, lateness, SystemTime.getMonotonousTime() - start );
+		}
 	}
 
 	public synchronized void
@@ -3564,6 +3564,29 @@ TorrentUtils
 	   			do_fluff = false;
 	   		}
 
+	   		if ( do_fluff && !do_pieces ){
+
+	   				// only the fluff (resume data, tracker cache) is wanted, pick those entries out of
+	   				// the file rather than decoding the whole torrent again
+
+	   			Map<String,Object>	fluff = readFluffFromFile( file );
+
+	   			if ( fluff != null ){
+
+		   			for (Iterator it = torrentFluffKeyset.iterator(); it.hasNext();){
+
+						String fluffKey = (String) it.next();
+
+						if ( delegate.getAdditionalMapProperty( fluffKey ) == fluffThombstone ){
+
+							delegate.setAdditionalMapProperty(fluffKey, (Map)fluff.get( fluffKey ));
+						}
+		   			}
+
+		   			return( new boolean[]{ false, true });
+	   			}
+	   		}
+
 	   		if ( do_pieces || do_fluff ){
 
 		   		TOTorrent	temp = readFromFile( file, false );
@@ -3595,6 +3618,43 @@ TorrentUtils
 	   		return( new boolean[]{ do_pieces, do_fluff });
 		}
 
+		/**
+		 * Decodes just the fluff entries from the top level of a torrent file, the rest of the
+		 * file (info, pieces...) is skipped over without being decoded
+		 * @return null if the file can't be read this way, e.g. it is gzipped
+		 */
+
+		private Map<String,Object>
+		readFluffFromFile(
+			File		file )
+		{
+			try{
+				Map<String,Object>	meta_data = BDecoder.decodeLazy( file );
+
+				Map<String,Object>	result = new HashMap<>();
+
+				for (Iterator it = torrentFluffKeyset.iterator(); it.hasNext();){
+
+					String fluffKey = (String) it.next();
+
+					Object	value = meta_data.get( fluffKey );
+
+					if ( value instanceof Map ){
+
+							// the lazy map is read-only and holds on to the file's buffer
+
+						result.put( fluffKey, BEncoder.cloneMap((Map)value ));
+					}
+				}
+
+				return( result );
+
+			}catch( Throwable e ){
+
+				return( null );
+			}
+		}
+
 			/**
 			 * peeks the pieces, will return null if they are discarded
 			 * @return
@@ -27,8 +27,14 @@ package com.biglybt.net.udp.uc.impl;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.UnsupportedAddressTypeException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.gudy.bouncycastle.util.encoders.Base64;
 
@@ -95,9 +101,35 @@ PRUDPPacketHandlerImpl
 	}
 
 
+		// the reader drains up to this many datagrams per wakeup before servicing pending sends
+
+	private static final int	RECEIVE_BATCH_SIZE			= 64;
+	private static final int	MAX_PENDING_SENDS			= 1024;
+	private static final int	MAX_POOLED_BUFFERS			= 256;
+	private static final long	MAX_DISPATCH_QUEUE_DATA_SIZE	= 1*1024*1024;
+
+		// replies with actions below this belong to the UDP tracker protocol, the DHT's start at 1024
+
+	private static final int	TRACKER_ACTION_LIMIT		= 1024;
+
+	private static final int	QUEUE_TRACKER_REPLY			= 0;
+	private static final int	QUEUE_REPLY					= 1;
+
 	private int				port;
 	private DatagramSocket	socket;
 
+	private volatile DatagramChannel	channel;
+	private volatile Selector			selector;
+
+	private final LinkedList<Object[]>	pending_sends	= new LinkedList<>();
+
+	private final ArrayList<byte[]>		buffer_pool		= new ArrayList<>();
+
+	private final dispatchQueue[]	dispatch_queues = {
+			new dispatchQueue( "tracker" ),
+			new dispatchQueue( "reply" ),
+	};
+
 	private CopyOnWriteList<PRUDPPrimordialHandler>	primordial_handlers = new CopyOnWriteList<>();
 	private PRUDPRequestHandler request_handler;
 
@@ -126,7 +158,7 @@ PRUDPPacketHandlerImpl
 
 	private long		total_requests_received;
 	private long		total_requests_processed;
-	private long		total_replies;
+	private final AtomicLong	total_replies	= new AtomicLong();
 	private long		last_error_report;
 
 	private AEMonitor	bind_address_mon	= new AEMonitor( "PRUDPPH:bind" );
@@ -527,32 +559,23 @@ PRUDPPacketHandlerImpl
 
 			while( !( failed || destroyed )){
 
-				if ( socket != null ){
-
-					try{
-						socket.close();
-
-					}catch( Throwable e ){
-
-						Debug.printStackTrace(e);
-					}
-				}
+				closeChannel();
 
 				InetSocketAddress	address		= null;
-				DatagramSocket		new_socket	= null;
+				DatagramChannel		new_channel	= null;
 
 				try{
 					if ( target_bind_ip == null ){
 
 						address = new InetSocketAddress("127.0.0.1",port);
 
-						new_socket = new DatagramSocket( port );
+						new_channel = openChannel( new InetSocketAddress( port ));
 
 					}else{
 
 						address = new InetSocketAddress( target_bind_ip, port );
 
-						new_socket = new DatagramSocket( address );
+						new_channel = openChannel( address );
 					}
 				}catch( BindException e ){
 
@@ -579,13 +602,13 @@ PRUDPPacketHandlerImpl
 
 								address = new InetSocketAddress("127.0.0.1",port);
 
-								new_socket = new DatagramSocket( port );
+								new_channel = openChannel( new InetSocketAddress( port ));
 
 							}else{
 
 								address = new InetSocketAddress( target_bind_ip, port );
 
-								new_socket = new DatagramSocket( address );
+								new_channel = openChannel( address );
 							}
 
 							if (Logger.isEnabled())
@@ -623,7 +646,7 @@ PRUDPPacketHandlerImpl
 
 									InetSocketAddress guess_address = new InetSocketAddress( guess, port );
 
-									new_socket = new DatagramSocket( guess_address );
+									new_channel = openChannel( guess_address );
 
 									target_bind_ip 	= guess;
 									address			= guess_address;
@@ -646,15 +669,28 @@ PRUDPPacketHandlerImpl
 					}
 				}
 
-				new_socket.setReuseAddress(true);
+				new_channel.socket().setReuseAddress(true);
+
+					// bigger socket buffer absorbs bursts (e.g. DHT lookups) while the reader catches up
 
-					// short timeout on receive so that we can interrupt a receive fairly quickly
+				int	rcv_size = COConfigurationManager.getIntParameter( "network.udp.socket.SO_RCVBUF" );
+
+				if ( rcv_size > 0 ){
+
+					new_channel.socket().setReceiveBufferSize( rcv_size );
+				}
 
-				new_socket.setSoTimeout( 1000 );
+				new_channel.configureBlocking( false );
 
-					// only make the socket public once fully configured
+				Selector	new_selector = Selector.open();
 
-				socket = new_socket;
+				SelectionKey	key = new_channel.register( new_selector, SelectionKey.OP_READ );
+
+					// only make the channel public once fully configured
+
+				selector	= new_selector;
+				channel		= new_channel;
+				socket		= new_channel.socket();
 
 				current_bind_ip	= target_bind_ip;
 
@@ -664,8 +700,6 @@ PRUDPPacketHandlerImpl
 					Logger.log(new LogEvent(LOGID,
 							"PRUDPPacketReceiver: receiver established on port " + port + (current_bind_ip==null?"":(", bound to " + current_bind_ip ))));
 
-				byte[] buffer = null;
-
 				long	successful_accepts 	= 0;
 				long	failed_accepts		= 0;
 
@@ -677,65 +711,82 @@ PRUDPPacketHandlerImpl
 					}
 
 					try{
+						key.interestOps( hasPendingSends()?( SelectionKey.OP_READ | SelectionKey.OP_WRITE ):SelectionKey.OP_READ );
 
-						if ( buffer == null ){
+							// short timeout so that we pick up bind changes and destruction fairly quickly
 
-							buffer = new byte[MAX_PACKET_SIZE];
-						}
+						new_selector.select( 1000 );
+
+						new_selector.selectedKeys().clear();
+
+						sendPending( new_channel );
 
-						DatagramPacket packet = new DatagramPacket( buffer, buffer.length, address );
+							// this thread only does the I/O, processing is handed off to the request
+							// thread and the dispatch queues so a burst of one kind of traffic doesn't
+							// hold up the rest
 
-						receiveFromSocket( packet );
+						for ( int i=0;i<RECEIVE_BATCH_SIZE;i++){
 
-						if ( packet.getLength() > MAX_PACKET_SIZE ){
+							byte[]	buffer = allocateBuffer();
 
-							if ( MAX_PACKET_SIZE < PRUDPPacket.MAX_PACKET_SIZE ){
+							DatagramPacket packet = receiveFromChannel( new_channel, buffer );
 
-								Debug.out( "UDP Packet truncated: received length=" + packet.getLength() + ", current max=" + MAX_PACKET_SIZE );
+							if ( packet == null ){
 
-								MAX_PACKET_SIZE = Math.min( packet.getLength() + 256, PRUDPPacket.MAX_PACKET_SIZE );
+								releaseBuffer( buffer );
 
-								buffer = null;
+								break;
+							}
+
+							if ( packet.getLength() > MAX_PACKET_SIZE ){
+
+								if ( MAX_PACKET_SIZE < PRUDPPacket.MAX_PACKET_SIZE ){
 
-								continue;
+									Debug.out( "UDP Packet truncated: received length=" + packet.getLength() + ", current max=" + MAX_PACKET_SIZE );
+
+									MAX_PACKET_SIZE = Math.min( packet.getLength() + 256, PRUDPPacket.MAX_PACKET_SIZE );
+
+									continue;
+								}
 							}
-						}
 
-						long	receive_time = SystemTime.getCurrentTime();
+							long	receive_time = SystemTime.getCurrentTime();
 
-						successful_accepts++;
+							successful_accepts++;
 
-						failed_accepts = 0;
+							failed_accepts = 0;
 
-						for ( PRUDPPrimordialHandler prim_hand: primordial_handlers ){
+							boolean	consumed = false;
 
-							if ( prim_hand.packetReceived( packet )){
+							for ( PRUDPPrimordialHandler prim_hand: primordial_handlers ){
 
-									// primordial handlers get their own buffer as we can't guarantee
-									// that they don't need to hang onto the data
+								if ( prim_hand.packetReceived( packet )){
 
-								buffer	= null;
+										// primordial handlers keep the buffer as we can't guarantee
+										// that they don't need to hang onto the data
 
-								stats.primordialPacketReceived( packet.getLength());
+									stats.primordialPacketReceived( packet.getLength());
 
-								break;
+									consumed = true;
+
+									break;
+								}
 							}
-						}
 
-						if ( buffer != null ){
+							if ( !consumed ){
 
-							process( packet, receive_time );
+								dispatch( packet, buffer, receive_time );
+							}
 						}
 
-					}catch( SocketTimeoutException e ){
-
 					}catch( Throwable e ){
 
 							// on vista we get periodic socket closures
 
 						String	message = e.getMessage();
 
-						if ( 	socket.isClosed() ||
+						if ( 	!new_channel.isOpen() ||
+								e instanceof ClosedChannelException ||
 								( message != null &&
 									message.toLowerCase().contains("socket closed"))){
 
@@ -809,16 +860,7 @@ PRUDPPacketHandlerImpl
 
 			destroy_sem.releaseForever();
 
-			if ( socket != null ){
-
-				try{
-					socket.close();
-
-				}catch( Throwable e ){
-
-					Debug.printStackTrace(e);
-				}
-			}
+			closeChannel();
 
 			// make sure we destroy the delegate too if something happend
 			PRUDPPacketHandlerImpl delegate = altProtocolDelegate;
@@ -914,8 +956,6 @@ PRUDPPacketHandlerImpl
 
 			boolean	request_packet;
 
-			stats.packetReceived(packet_len);
-
 			InetSocketAddress originator = (InetSocketAddress)dg_packet.getSocketAddress();
 
 			if ( ( packet_data[0]&0x80 ) == 0 ){
@@ -945,8 +985,6 @@ PRUDPPacketHandlerImpl
 
 			if ( request_packet ){
 
-				total_requests_received++;
-
 				// System.out.println( "Incoming from " + dg_packet.getAddress());
 
 				if ( TRACE_REQUESTS ){
@@ -955,150 +993,18 @@ PRUDPPacketHandlerImpl
 									+ packet.getString()));
 				}
 
-				if ( receive_delay > 0 ){
-
-						// we take the processing offline so that these incoming requests don't
-						// interfere with replies to outgoing requests
-
-					try{
-						recv_queue_mon.enter();
-
-						if ( recv_queue_data_size > MAX_RECV_QUEUE_DATA_SIZE ){
-
-							long	now = SystemTime.getCurrentTime();
-
-							if ( now - last_error_report > 30000 ){
-
-								last_error_report	= now;
-
-								Debug.out( "Receive queue size limit exceeded (" +
-											MAX_RECV_QUEUE_DATA_SIZE + "), dropping request packet [" +
-											total_requests_received + "/" + total_requests_processed + ":" + total_replies + "]");
-							}
-
-						}else if ( receive_delay * recv_queue.size() > queued_request_timeout ){
-
-								// by the time this request gets processed it'll have timed out
-								// in the caller anyway, so discard it
-
-							long	now = SystemTime.getCurrentTime();
-
-							if ( now - last_error_report > 30000 ){
-
-								last_error_report	= now;
-
-								Debug.out( "Receive queue entry limit exceeded (" +
-											recv_queue.size() + "), dropping request packet [" +
-											total_requests_received + "/" + total_requests_processed + ":" + total_replies + "]");
-							}
-
-						}else{
-
-							recv_queue.add( new Object[]{ packet, new Integer( dg_packet.getLength()) });
-
-							recv_queue_data_size	+= dg_packet.getLength();
-
-							recv_queue_sem.release();
-
-							if ( recv_thread == null ){
-
-								recv_thread =
-									new AEThread2( "PRUDPPacketHandler:receiver" )
-									{
-										@Override
-										public void
-										run()
-										{
-											Average		request_receive_average = Average.getInstance( 1000, 10 );
-
-											while( true ){
-
-												try{
-													recv_queue_sem.reserve();
-
-													Object[]	data;
-
-													try{
-														recv_queue_mon.enter();
-
-														data = (Object[])recv_queue.remove(0);
-														
-														total_requests_processed++;
-
-														recv_queue_data_size -= ((Integer)data[1]).intValue();
-
-														request_receive_average.addValue( 1 );
-
-													}finally{
-
-														recv_queue_mon.exit();
-													}
-
-													PRUDPPacketRequest	p = (PRUDPPacketRequest)data[0];
-
-													PRUDPRequestHandler	handler = request_handler;
-
-													if ( handler != null ){
-														
-														handler.process( p );
-
-														if ( receive_delay > 0 ){
-
-															int 	max_req_per_sec = 1000/receive_delay;
-
-															long	request_per_sec = request_receive_average.getAverage();
-
-															//System.out.println( request_per_sec + "/" + max_req_per_sec + " - " + recv_queue_data_size );
-
-															if ( request_per_sec > max_req_per_sec ){
-
-																Thread.sleep( receive_delay );
-
-															}else{
+					// requests are only ever processed on the request thread
 
-																/* no point in this, just backs up the request queue. if we're really
-																 * overloaded then we'll hit the above condition
-																 * 
-																long	delay = ( receive_delay * request_per_sec ) / max_req_per_sec;
+				PRUDPRequestHandler	handler = request_handler;
 
-																if ( delay >= 5 ){
+				if ( handler != null ){
 
-																	Thread.sleep( delay );
-																}
-																*/
-
-															}
-														}
-													}
-
-												}catch( Throwable e ){
-
-													Debug.printStackTrace(e);
-												}
-											}
-										}
-									};
-
-								recv_thread.start();
-							}
-						}
-					}finally{
-
-						recv_queue_mon.exit();
-					}
-				}else{
-
-					PRUDPRequestHandler	handler = request_handler;
-
-					if ( handler != null ){
-
-						handler.process( (PRUDPPacketRequest)packet );
-					}
+					handler.process( (PRUDPPacketRequest)packet );
 				}
 
 			}else{
 
-				total_replies++;
+				total_replies.incrementAndGet();
 
 				if ( TRACE_REQUESTS ){
 					Logger.log(new LogEvent(LOGID,
@@ -1702,6 +1608,11 @@ PRUDPPacketHandlerImpl
 	{
 		long size = recv_queue.size();
 
+		for ( dispatchQueue queue: dispatch_queues ){
+
+			size += queue.size();
+		}
+
 		PRUDPPacketHandlerImpl delegate = altProtocolDelegate;
 
 		if ( delegate != null ){
@@ -1762,6 +1673,61 @@ PRUDPPacketHandlerImpl
 		}
 	}
 
+	private DatagramChannel
+	openChannel(
+		InetSocketAddress	address )
+
+		throws IOException
+	{
+		DatagramChannel	new_channel = DatagramChannel.open();
+
+		try{
+			new_channel.socket().bind( address );
+
+			return( new_channel );
+
+		}catch( IOException e ){
+
+			new_channel.close();
+
+			throw( e );
+		}
+	}
+
+	private void
+	closeChannel()
+	{
+		Selector	current_selector = selector;
+
+		if ( current_selector != null ){
+
+			selector = null;
+
+				// closing the selector first deregisters the channel so that its close is immediate
+
+			try{
+				current_selector.close();
+
+			}catch( Throwable e ){
+
+				Debug.printStackTrace(e);
+			}
+		}
+
+		DatagramChannel	current_channel = channel;
+
+		if ( current_channel != null ){
+
+			try{
+				current_channel.close();
+
+			}catch( Throwable e ){
+
+				Debug.printStackTrace(e);
+			}
+		}
+	}
+
 	private void
 	sendToSocket(
 		DatagramPacket	p )
@@ -1772,22 +1738,362 @@ PRUDPPacketHandlerImpl
 
 			packet_transformer.transformSend( p );
 		}
-		
-		socket.send( p );
+
+		ByteBuffer		buffer	= ByteBuffer.wrap( p.getData(), p.getOffset(), p.getLength());
+		SocketAddress	target	= p.getSocketAddress();
+
+		synchronized( pending_sends ){
+
+				// anything already queued goes first to preserve ordering
+
+			if ( pending_sends.isEmpty()){
+
+				if ( channel.send( buffer, target ) > 0 || !buffer.hasRemaining()){
+
+					return;
+				}
+			}
+
+				// socket buffer is full, hand off to the reader which sends when the channel
+				// becomes writable. the caller can reuse its buffer once we return so copy
+
+			if ( pending_sends.size() >= MAX_PENDING_SENDS ){
+
+				throw( new IOException( "Send queue full" ));
+			}
+
+			byte[]	copy = new byte[buffer.remaining()];
+
+			buffer.get( copy );
+
+			pending_sends.add( new Object[]{ ByteBuffer.wrap( copy ), target });
+
+			if ( pending_sends.size() > 1 ){
+
+				return;
+			}
+		}
+
+		Selector	current_selector = selector;
+
+		if ( current_selector != null ){
+
+			current_selector.wakeup();
+		}
+	}
+
+	private boolean
+	hasPendingSends()
+	{
+		synchronized( pending_sends ){
+
+			return( !pending_sends.isEmpty());
+		}
 	}
 
 	private void
-	receiveFromSocket(
-		DatagramPacket	p )
+	sendPending(
+		DatagramChannel		current_channel )
+	{
+		synchronized( pending_sends ){
+
+			while( !pending_sends.isEmpty()){
+
+				Object[]	entry = pending_sends.getFirst();
+
+				ByteBuffer		buffer	= (ByteBuffer)entry[0];
+				SocketAddress	target	= (SocketAddress)entry[1];
+
+				try{
+					if ( current_channel.send( buffer, target ) == 0 && buffer.hasRemaining()){
+
+							// still not writable
+
+						return;
+					}
+				}catch( Throwable e ){
+
+						// the sender has moved on so all we can do is log
+
+					if (Logger.isEnabled())
+						Logger.log(new LogEvent(LOGID, LogEvent.LT_ERROR, "PRUDPPacketHandler: queued send to " + target + " failed: " + Debug.getNestedExceptionMessage(e)));
+				}
+
+				pending_sends.removeFirst();
+			}
+		}
+	}
+
+	private DatagramPacket
+	receiveFromChannel(
+		DatagramChannel		current_channel,
+		byte[]				buffer )
 
 		throws IOException
 	{
-		socket.receive( p );
+		ByteBuffer	bb = ByteBuffer.wrap( buffer );
+
+		SocketAddress	originator = current_channel.receive( bb );
+
+		if ( originator == null ){
+
+			return( null );
+		}
+
+		DatagramPacket	p = new DatagramPacket( buffer, bb.position(), originator );
 
 		if ( packet_transformer != null ){
 
 			packet_transformer.transformReceive( p );
 		}
+
+		return( p );
+	}
+
+	private byte[]
+	allocateBuffer()
+	{
+			// one spare byte so that we can spot truncation
+
+		int	size = MAX_PACKET_SIZE + 1;
+
+		synchronized( buffer_pool ){
+
+			int	num = buffer_pool.size();
+
+			if ( num > 0 ){
+
+				byte[]	buffer = buffer_pool.remove( num-1 );
+
+				if ( buffer.length == size ){
+
+					return( buffer );
+				}
+
+					// max packet size has changed, the rest are stale too
+
+				buffer_pool.clear();
+			}
+		}
+
+		return( new byte[size] );
+	}
+
+	private void
+	releaseBuffer(
+		byte[]		buffer )
+	{
+		if ( buffer.length != MAX_PACKET_SIZE + 1 ){
+
+			return;
+		}
+
+		synchronized( buffer_pool ){
+
+			if ( buffer_pool.size() < MAX_POOLED_BUFFERS ){
+
+				buffer_pool.add( buffer );
+			}
+		}
+	}
+
+		/**
+		 * Queues a received packet for processing: incoming requests (the DHT's) go to the request
+		 * thread, replies to UDP tracker announces and scrapes and all other replies to their
+		 * dispatchers. Called on the reader thread only
+		 */
+
+	private void
+	dispatch(
+		DatagramPacket	packet,
+		byte[]			buffer,
+		long			receive_time )
+	{
+		byte[]	data	= packet.getData();
+		int		len		= packet.getLength();
+
+		stats.packetReceived( len );
+
+		if ( len > 0 && ( data[0]&0x80 ) != 0 ){
+
+			if ( !queueRequest( packet, buffer, receive_time )){
+
+				releaseBuffer( buffer );
+			}
+
+			return;
+		}
+
+		int	queue;
+
+		if ( len >= 4 && ((( data[0]&0xff ) << 24 ) | (( data[1]&0xff ) << 16 ) | (( data[2]&0xff ) << 8 ) | ( data[3]&0xff )) < TRACKER_ACTION_LIMIT ){
+
+			queue = QUEUE_TRACKER_REPLY;
+
+		}else{
+
+			queue = QUEUE_REPLY;
+		}
+
+		if ( !dispatch_queues[queue].add( packet, buffer, receive_time )){
+
+			releaseBuffer( buffer );
+		}
+	}
+
+		/**
+		 * We take request processing offline so that incoming requests don't interfere with
+		 * replies to outgoing ones
+		 * @return false if the request was dropped, the caller still owns the buffer
+		 */
+
+	private boolean
+	queueRequest(
+		DatagramPacket	packet,
+		byte[]			buffer,
+		long			receive_time )
+	{
+		try{
+			recv_queue_mon.enter();
+
+			total_requests_received++;
+
+			if ( recv_queue_data_size > MAX_RECV_QUEUE_DATA_SIZE ){
+
+				long	now = SystemTime.getCurrentTime();
+
+				if ( now - last_error_report > 30000 ){
+
+					last_error_report	= now;
+
+					Debug.out( "Receive queue size limit exceeded (" +
+								MAX_RECV_QUEUE_DATA_SIZE + "), dropping request packet [" +
+								total_requests_received + "/" + total_requests_processed + ":" + total_replies.get() + "]");
+				}
+
+				return( false );
+
+			}else if ( receive_delay * recv_queue.size() > queued_request_timeout ){
+
+					// by the time this request gets processed it'll have timed out
+					// in the caller anyway, so discard it
+
+				long	now = SystemTime.getCurrentTime();
+
+				if ( now - last_error_report > 30000 ){
+
+					last_error_report	= now;
+
+					Debug.out( "Receive queue entry limit exceeded (" +
+								recv_queue.size() + "), dropping request packet [" +
+								total_requests_received + "/" + total_requests_processed + ":" + total_replies.get() + "]");
+				}
+
+				return( false );
+			}
+
+			recv_queue.add( new Object[]{ packet, buffer, receive_time });
+
+			recv_queue_data_size	+= packet.getLength();
+
+			recv_queue_sem.release();
+
+			if ( recv_thread == null ){
+
+				recv_thread =
+					new AEThread2( "PRUDPPacketHandler:receiver" )
+					{
+						@Override
+						public void
+						run()
+						{
+							requestLoop();
+						}
+					};
+
+				recv_thread.start();
+			}
+
+			return( true );
+
+		}finally{
+
+			recv_queue_mon.exit();
+		}
+	}
+
+	private void
+	requestLoop()
+	{
+		Average		request_receive_average = Average.getInstance( 1000, 10 );
+
+		while( true ){
+
+			try{
+				recv_queue_sem.reserve();
+
+				Object[]		data;
+				DatagramPacket	packet;
+
+				try{
+					recv_queue_mon.enter();
+
+					data = recv_queue.remove(0);
+
+					total_requests_processed++;
+
+					packet = (DatagramPacket)data[0];
+
+					recv_queue_data_size -= packet.getLength();
+
+					request_receive_average.addValue( 1 );
+
+				}finally{
+
+					recv_queue_mon.exit();
+				}
+
+				try{
+					process( packet, (Long)data[2] );
+
+				}finally{
+
+					releaseBuffer((byte[])data[1] );
+				}
+
+				if ( receive_delay > 0 ){
+
+					int 	max_req_per_sec = 1000/receive_delay;
+
+					long	request_per_sec = request_receive_average.getAverage();
+
+					//System.out.println( request_per_sec + "/" + max_req_per_sec + " - " + recv_queue_data_size );
+
+					if ( request_per_sec > max_req_per_sec ){
+
+						Thread.sleep( receive_delay );
+
+					}else{
+
+						/* no point in this, just backs up the request queue. if we're really
+						 * overloaded then we'll hit the above condition
+						 *
+						long	delay = ( receive_delay * request_per_sec ) / max_req_per_sec;
+
+						if ( delay >= 5 ){
+
+							Thread.sleep( delay );
+						}
+						*/
+
+					}
+				}
+
+			}catch( Throwable e ){
+
+				Debug.printStackTrace(e);
+			}
+		}
 	}
 
 	@Override
@@ -1839,6 +2145,129 @@ PRUDPPacketHandlerImpl
 	{
 	}
 
+		/**
+		 * Packets of one kind waiting to be processed, drained a batch at a time by a thread of
+		 * its own so that a backlog in one doesn't delay the others
+		 */
+
+	private class
+	dispatchQueue
+	{
+		private final String		name;
+
+		private ArrayList<Object[]>	queue	= new ArrayList<>();
+		private ArrayList<Object[]>	batch	= new ArrayList<>();
+
+		private long				queue_data_size;
+		private long				last_drop_report;
+
+		private AEThread2			thread;
+
+		private
+		dispatchQueue(
+			String		_name )
+		{
+			name	= _name;
+		}
+
+		private synchronized boolean
+		add(
+			DatagramPacket	packet,
+			byte[]			buffer,
+			long			receive_time )
+		{
+			if ( queue_data_size > MAX_DISPATCH_QUEUE_DATA_SIZE ){
+
+				long	now = SystemTime.getMonotonousTime();
+
+				if ( now - last_drop_report > 30000 ){
+
+					last_drop_report = now;
+
+					Debug.out( "Dispatch queue '" + name + "' size limit exceeded (" + MAX_DISPATCH_QUEUE_DATA_SIZE + "), dropping packets" );
+				}
+
+				return( false );
+			}
+
+			queue.add( new Object[]{ packet, buffer, receive_time });
+
+			queue_data_size += packet.getLength();
+
+			if ( thread == null ){
+
+				thread =
+					new AEThread2( "PRUDPPacketHandler:dispatch:" + name + ":" + port )
+					{
+						@Override
+						public void
+						run()
+						{
+							dispatchLoop();
+						}
+					};
+
+				thread.start();
+
+			}else if ( queue.size() == 1 ){
+
+				notify();
+			}
+
+			return( true );
+		}
+
+		private synchronized int
+		size()
+		{
+			return( queue.size());
+		}
+
+		private void
+		dispatchLoop()
+		{
+			while( !destroyed ){
+
+				ArrayList<Object[]>	entries;
+
+				synchronized( this ){
+
+					if ( queue.isEmpty()){
+
+						try{
+							wait( 1000 );
+
+						}catch( InterruptedException e ){
+						}
+
+						continue;
+					}
+
+					entries	= queue;
+					queue	= batch;
+					batch	= entries;
+
+					queue_data_size = 0;
+				}
+
+				for ( Object[] entry: entries ){
+
+					try{
+						process((DatagramPacket)entry[0], (Long)entry[2] );
+
+					}catch( Throwable e ){
+
+						Debug.printStackTrace(e);
+					}
+
+					releaseBuffer((byte[])entry[1] );
+				}
+
+				entries.clear();
+			}
+		}
+	}
+
 	private static class
 	MyByteArrayOutputStream
 		extends ByteArrayOutputStream
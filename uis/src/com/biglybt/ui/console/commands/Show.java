@@ -649,7 +649,14 @@ public class Show extends IConsoleCommand {
 						   	",dir=" + dbv_details[DHTDBStats.VD_DIRECT_SIZE]+
 						   	",ind=" + dbv_details[DHTDBStats.VD_INDIRECT_SIZE]+
 						   	",div_f=" + dbv_details[DHTDBStats.VD_DIV_FREQ]+
-						   	",div_s=" + dbv_details[DHTDBStats.VD_DIV_SIZE] );
+						   	",div_s=" + dbv_details[DHTDBStats.VD_DIV_SIZE]+
+						   	",mem=" + d_stats.getEstimatedMemory()+
+						   	",offheap=" + d_stats.getValueStoreMemory()+
+						   	",mem/val=" + d_stats.getEstimatedMemoryPerValue());
+
+				ci.out.println(
+							"Lookups:ms(50/90/99)=" + c_stats.getLookupLatency( 50 ) + "/" + c_stats.getLookupLatency( 90 ) + "/" + c_stats.getLookupLatency( 99 ) +
+							",coalesced=" + c_stats.getLookupsCoalesced());
 
 				dht.getRouter().print();
 			}